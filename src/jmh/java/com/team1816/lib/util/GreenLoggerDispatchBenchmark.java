@@ -0,0 +1,160 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.networktables.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares the old {@link GreenLogger} periodic dispatch (a {@link HashMap} walked by key with an
+ * {@code instanceof} chain per entry) against the pre-bound {@link LogTopic} array walk.
+ * <p>
+ * Run with {@code ./gradlew jmh}. Both sides publish to their own topics on a private
+ * NetworkTables instance with the same mix of value types, so the only difference is dispatch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GreenLoggerDispatchBenchmark {
+
+    @Param({"50", "200", "1000"})
+    public int topicCount;
+
+    private NetworkTableInstance instance;
+    private final Map<Publisher, Supplier<?>> legacyLogs = new HashMap<>();
+    private LogTopic[] topics;
+
+    // Mutated every invocation so the published values are not constant.
+    private double counter = 0;
+
+    private enum WantedState { IDLE, ACTIVE }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        instance = NetworkTableInstance.create();
+        NetworkTable legacyTable = instance.getTable("legacy");
+        NetworkTable table = instance.getTable("bound");
+        topics = new LogTopic[topicCount];
+
+        for (int i = 0; i < topicCount; i++) {
+            String name = "topic" + i;
+            // Same mix of types the robot actually logs: mostly doubles and booleans, with some
+            // structs, integers and enums.
+            switch (i % 5) {
+                case 0 -> {
+                    Supplier<Double> supplier = () -> counter;
+                    legacyLogs.put(legacyTable.getDoubleTopic(name).publish(), supplier);
+                    topics[i] = GreenLogger.createPeriodicLog(table, name, supplier, null);
+                }
+                case 1 -> {
+                    Supplier<Boolean> supplier = () -> ((long) counter & 1) == 0;
+                    legacyLogs.put(legacyTable.getBooleanTopic(name).publish(), supplier);
+                    topics[i] = GreenLogger.createPeriodicLog(table, name, supplier, null);
+                }
+                case 2 -> {
+                    Supplier<Integer> supplier = () -> (int) counter;
+                    legacyLogs.put(legacyTable.getIntegerTopic(name).publish(), supplier);
+                    topics[i] = GreenLogger.createPeriodicLog(table, name, supplier, null);
+                }
+                case 3 -> {
+                    Supplier<Pose2d> supplier = () -> new Pose2d(counter, 1, Rotation2d.kZero);
+                    legacyLogs.put(legacyTable.getStructTopic(name, Pose2d.struct).publish(), supplier);
+                    topics[i] = GreenLogger.createPeriodicLog(table, name, supplier, Pose2d.struct);
+                }
+                default -> {
+                    Supplier<WantedState> supplier =
+                        () -> ((long) counter & 1) == 0 ? WantedState.IDLE : WantedState.ACTIVE;
+                    legacyLogs.put(legacyTable.getStringTopic(name).publish(), supplier);
+                    topics[i] = GreenLogger.createPeriodicLog(table, name, supplier, null);
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        instance.close();
+    }
+
+    @Benchmark
+    public void legacyInstanceofDispatch() {
+        counter++;
+        legacyUpdatePeriodic();
+    }
+
+    @Benchmark
+    public void boundTopicArray() {
+        counter++;
+        long timestampMicros = (long) counter * 50_000;
+        // Sample and publish in one go here, the legacy dispatch did both in the same pass.
+        for (int i = 0; i < topics.length; i++) {
+            topics[i].sample(0, timestampMicros);
+            topics[i].publish(0, timestampMicros);
+        }
+    }
+
+    /**
+     * The dispatch loop {@link GreenLogger} used before topics were pre-bound, with every branch
+     * kept so the {@code instanceof} chain is as long as it was.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void legacyUpdatePeriodic() {
+        for (Publisher entry : legacyLogs.keySet()) {
+            var supplier = legacyLogs.get(entry);
+            if (entry instanceof DoublePublisher) {
+                ((DoublePublisher) entry).set((Double) supplier.get());
+            } else if (entry instanceof IntegerPublisher) {
+                ((IntegerPublisher) entry).set((Integer) supplier.get());
+            } else if (entry instanceof BooleanPublisher) {
+                ((BooleanPublisher) entry).set((Boolean) supplier.get());
+            } else if (entry instanceof FloatPublisher) {
+                ((FloatPublisher) entry).set((Float) supplier.get());
+            } else if (entry instanceof StructPublisher) {
+                ((StructPublisher) entry).set(supplier.get());
+            } else if (entry instanceof DoubleArrayPublisher) {
+                var value = ((List<Double>) supplier.get()).stream()
+                    .mapToDouble(Double::doubleValue)
+                    .toArray();
+                ((DoubleArrayPublisher) entry).set(value);
+            } else if (entry instanceof IntegerArrayPublisher) {
+                var value = ((List<Integer>) supplier.get()).stream()
+                    .mapToLong(Integer::longValue)
+                    .toArray();
+                ((IntegerArrayPublisher) entry).set(value);
+            } else if (entry instanceof BooleanArrayPublisher) {
+                List<Boolean> booleanList = (List<Boolean>) supplier.get();
+                boolean[] value = new boolean[booleanList.size()];
+                for (int i = 0; i < booleanList.size(); i++) {
+                    value[i] = Objects.requireNonNullElse(booleanList.get(i), false);
+                }
+                ((BooleanArrayPublisher) entry).set(value);
+            } else if (entry instanceof FloatArrayPublisher) {
+                List<Float> floatList = (List<Float>) supplier.get();
+                float[] value = new float[floatList.size()];
+                for (int i = 0; i < floatList.size(); i++) {
+                    value[i] = Objects.requireNonNullElse(floatList.get(i), Float.NaN);
+                }
+                ((FloatArrayPublisher) entry).set(value);
+            } else if (entry instanceof StringArrayPublisher) {
+                var value = ((List<?>) supplier.get()).stream()
+                    .map(String::valueOf)
+                    .toArray(String[]::new);
+                ((StringArrayPublisher) entry).set(value);
+            } else if (entry instanceof StructArrayPublisher) {
+                ((StructArrayPublisher) entry).set(((List) supplier.get()).toArray());
+            } else if (entry != null) {
+                ((StringPublisher) entry).set(String.valueOf(supplier.get()));
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.team1816.lib.util.ShooterCalculator;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares solving a shot with {@link HenryShooterCalculator#solve} and the launch velocity lookup
+ * against interpolating it from a {@link BallisticGrid}.
+ * <p>
+ * Run with {@code ./gradlew jmh}. Both sides aim the same shots, cycling through a fixed set of
+ * random shots inside of the grid so the branch predictor can't learn a single one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BallisticGridBenchmark {
+
+    private static final double ANGLE_OF_ENTRY_DEGREES = 45;
+    private static final double DELTA_Z_METERS = 1.4;
+    private static final int SHOTS = 1024;
+
+    private LinearMPSToLauncherRPSLookup linearMPSToLauncherRPSLookup;
+    private BallisticGrid grid;
+    private final double[] distances = new double[SHOTS];
+    private final double[] deltaZs = new double[SHOTS];
+    private final double[] radialVelocities = new double[SHOTS];
+    private final double[] tangentialVelocities = new double[SHOTS];
+    private final double[] out = new double[3];
+    private int shot = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        linearMPSToLauncherRPSLookup = new LinearMPSToLauncherRPSLookup(
+            new double[] {4, 6, 8, 10, 12, 14},
+            new double[] {26, 37, 50, 64, 79, 95}
+        );
+        grid = HenryShooterCalculator.createBallisticGrid(
+            ANGLE_OF_ENTRY_DEGREES, DELTA_Z_METERS, linearMPSToLauncherRPSLookup
+        );
+
+        var random = new Random(0);
+        for (int i = 0; i < SHOTS; i++) {
+            // Only keep shots the grid has, so both sides do the same work.
+            do {
+                distances[i] = 1 + 7 * random.nextDouble();
+                deltaZs[i] = DELTA_Z_METERS - 0.5 + random.nextDouble();
+                radialVelocities[i] = -4 + 8 * random.nextDouble();
+                tangentialVelocities[i] = -4 + 8 * random.nextDouble();
+            } while (!grid.lookup(distances[i], deltaZs[i], radialVelocities[i], tangentialVelocities[i], out));
+        }
+    }
+
+    @Benchmark
+    public void analytic(Blackhole blackhole) {
+        int i = shot++ & (SHOTS - 1);
+        var solution = HenryShooterCalculator.solve(
+            distances[i],
+            0,
+            deltaZs[i],
+            radialVelocities[i],
+            tangentialVelocities[i],
+            Math.tan(Math.toRadians(ANGLE_OF_ENTRY_DEGREES))
+        );
+        blackhole.consume(solution.fieldRelativeTurretAngleRadians());
+        blackhole.consume(solution.inclineAngleRadians());
+        blackhole.consume(
+            linearMPSToLauncherRPSLookup.getLaunchVelocityRPS(solution.linearLaunchVelocityMPS())
+        );
+    }
+
+    @Benchmark
+    public void grid(Blackhole blackhole) {
+        int i = shot++ & (SHOTS - 1);
+        grid.lookup(distances[i], deltaZs[i], radialVelocities[i], tangentialVelocities[i], out);
+        blackhole.consume(out[0]);
+        blackhole.consume(out[1]);
+        blackhole.consume(out[2]);
+    }
+}
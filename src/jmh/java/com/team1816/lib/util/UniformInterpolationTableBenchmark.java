@@ -0,0 +1,67 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.math.MathUtil;
+import org.apache.commons.math3.analysis.interpolation.LinearInterpolator;
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old shooter table lookups (cloning the knots of a {@link PolynomialSplineFunction}
+ * to clamp, then a binary search) against a {@link UniformInterpolationTable}.
+ * <p>
+ * Run with {@code ./gradlew jmh}. Both sides look up the same cycle of random x values, including
+ * some outside of the table so clamping is exercised. Run with {@code -prof gc} to see the
+ * allocation the knot clones cause.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UniformInterpolationTableBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({"8", "64"})
+    public int pointCount;
+
+    private PolynomialSplineFunction spline;
+    private UniformInterpolationTable table;
+    private final double[] lookups = new double[LOOKUPS];
+    private int lookup = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var random = new Random(0);
+        // Unevenly spaced, like a table tuned by hand.
+        double[] xs = new double[pointCount];
+        double[] ys = new double[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            xs[i] = (i == 0 ? 40 : xs[i - 1]) + 5 + 20 * random.nextDouble();
+            ys[i] = 30 + 0.2 * xs[i] + random.nextDouble();
+        }
+        spline = new LinearInterpolator().interpolate(xs, ys);
+        table = new UniformInterpolationTable(xs, ys);
+
+        double range = xs[pointCount - 1] - xs[0];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = xs[0] - 0.1 * range + 1.2 * range * random.nextDouble();
+        }
+    }
+
+    @Benchmark
+    public double splineWithKnotClamp() {
+        double x = lookups[lookup++ & (LOOKUPS - 1)];
+        var knots = spline.getKnots();
+        return spline.value(MathUtil.clamp(x, knots[0], knots[knots.length - 1]));
+    }
+
+    @Benchmark
+    public double uniformTable() {
+        return table.get(lookups[lookup++ & (LOOKUPS - 1)]);
+    }
+}
@@ -1,5 +1,6 @@
 package com.team1816.lib;
 
+import edu.wpi.first.apriltag.AprilTag;
 import edu.wpi.first.apriltag.AprilTagFieldLayout;
 import edu.wpi.first.apriltag.AprilTagFields;
 import edu.wpi.first.math.Matrix;
@@ -7,6 +8,8 @@ import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
 
+import java.util.Arrays;
+
 public final class BaseConstants {
     public static final class VisionConstants {
         public static final AprilTagFieldLayout aprilTagFieldLayout =
@@ -19,6 +22,102 @@ public final class BaseConstants {
 //                ), 16.48, 8.10
 //            );
             AprilTagFieldLayout.loadField(AprilTagFields.kDefaultField);
+
+        /*
+         * The field positions of the AprilTags in the aprilTagFieldLayout, in meters, indexed by
+         * fiducial ID. IDs that aren't in the layout are NaN. These are precomputed so the vision
+         * hot path can look tags up without the Optional and list scan of
+         * AprilTagFieldLayout.getTagPose. The arrays are private so they can't be modified, use
+         * the accessors below.
+         */
+        private static final double[] aprilTagX;
+        private static final double[] aprilTagY;
+        private static final double[] aprilTagZ;
+
+        static {
+            int maxId = -1;
+            for (AprilTag tag : aprilTagFieldLayout.getTags()) {
+                maxId = Math.max(maxId, tag.ID);
+            }
+            aprilTagX = new double[maxId + 1];
+            aprilTagY = new double[maxId + 1];
+            aprilTagZ = new double[maxId + 1];
+            Arrays.fill(aprilTagX, Double.NaN);
+            Arrays.fill(aprilTagY, Double.NaN);
+            Arrays.fill(aprilTagZ, Double.NaN);
+            for (AprilTag tag : aprilTagFieldLayout.getTags()) {
+                if (tag.ID < 0) continue;
+                aprilTagX[tag.ID] = tag.pose.getX();
+                aprilTagY[tag.ID] = tag.pose.getY();
+                aprilTagZ[tag.ID] = tag.pose.getZ();
+            }
+        }
+
+        /**
+         * @return If the AprilTag with the fiducial ID is in the {@link #aprilTagFieldLayout}.
+         */
+        public static boolean hasAprilTag(int id) {
+            return id >= 0 && id < aprilTagX.length && !Double.isNaN(aprilTagX[id]);
+        }
+
+        /**
+         * @return The field x position of the AprilTag in meters, or {@link Double#NaN} if it
+         * isn't in the {@link #aprilTagFieldLayout}.
+         */
+        public static double getAprilTagX(int id) {
+            return hasAprilTag(id) ? aprilTagX[id] : Double.NaN;
+        }
+
+        /**
+         * @return The field y position of the AprilTag in meters, or {@link Double#NaN} if it
+         * isn't in the {@link #aprilTagFieldLayout}.
+         */
+        public static double getAprilTagY(int id) {
+            return hasAprilTag(id) ? aprilTagY[id] : Double.NaN;
+        }
+
+        /**
+         * @return The field z position of the AprilTag in meters, or {@link Double#NaN} if it
+         * isn't in the {@link #aprilTagFieldLayout}.
+         */
+        public static double getAprilTagZ(int id) {
+            return hasAprilTag(id) ? aprilTagZ[id] : Double.NaN;
+        }
+
+        /**
+         * Gets the 3D distance from a point on the field to an AprilTag without allocating.
+         *
+         * @param id The fiducial ID of the AprilTag.
+         * @param x  The field x position of the point in meters.
+         * @param y  The field y position of the point in meters.
+         * @param z  The field z position of the point in meters.
+         * @return The distance in meters, or {@link Double#NaN} if the AprilTag isn't in the
+         * {@link #aprilTagFieldLayout}.
+         */
+        public static double distanceToAprilTag(int id, double x, double y, double z) {
+            if (!hasAprilTag(id)) return Double.NaN;
+            double dx = aprilTagX[id] - x;
+            double dy = aprilTagY[id] - y;
+            double dz = aprilTagZ[id] - z;
+            return Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+
+        /**
+         * Gets the distance along the floor from a point on the field to an AprilTag without
+         * allocating.
+         *
+         * @param id The fiducial ID of the AprilTag.
+         * @param x  The field x position of the point in meters.
+         * @param y  The field y position of the point in meters.
+         * @return The distance in meters, or {@link Double#NaN} if the AprilTag isn't in the
+         * {@link #aprilTagFieldLayout}.
+         */
+        public static double distanceToAprilTag2d(int id, double x, double y) {
+            if (!hasAprilTag(id)) return Double.NaN;
+            double dx = aprilTagX[id] - x;
+            double dy = aprilTagY[id] - y;
+            return Math.sqrt(dx * dx + dy * dy);
+        }
     }
 
     public static final class DrivetrainConstants {
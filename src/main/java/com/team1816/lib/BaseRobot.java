@@ -2,11 +2,13 @@ package com.team1816.lib;
 
 import com.team1816.lib.util.FieldContainer;
 import com.team1816.lib.util.GreenLogger;
+import com.team1816.lib.util.LoopProfiler;
 import edu.wpi.first.wpilibj.TimedRobot;
 
 public abstract class BaseRobot extends TimedRobot {
     private final BaseRobotContainer baseRobotContainer;
     private long lastVisionErrorLogMs = 0;
+    private final LoopProfiler.Phase addVisionMeasurementsPhase = LoopProfiler.phase("vision/addVisionMeasurements");
 
     protected BaseRobot() {
         baseRobotContainer = createRobotContainer();
@@ -20,7 +22,7 @@ public abstract class BaseRobot extends TimedRobot {
         // estimate.
         addPeriodic(
             () -> {
-                try {
+                try (var ignored = addVisionMeasurementsPhase.start()) {
                     baseRobotContainer.addVisionMeasurementsToDrivetrain();
                 }
                 catch (Throwable t) {
@@ -29,7 +29,7 @@ public class BaseRobotState {
      * its pose. Other cases might be if we leave the ground while climbing, or if we had to use a
      * default auto without the correct starting pose.
      */
-    public static boolean hasAccuratePoseEstimate = true;
+    public static volatile boolean hasAccuratePoseEstimate = true;
 
     /**
      * If you are trying to get the pose of the robot on the field, you probably want to use the
@@ -42,7 +42,7 @@ public class BaseRobotState {
      * as the source of truth during simulation, while the raw odometry position is just supposed
      * to be the pre-vision position estimate of the real robot.
      */
-    public static Pose2d simActualOrRawOdometryPose = Pose2d.kZero;
+    public static volatile Pose2d simActualOrRawOdometryPose = Pose2d.kZero;
 
     /**
      * If autonomous has ever been initialized.
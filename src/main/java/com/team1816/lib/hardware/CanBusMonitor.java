@@ -0,0 +1,211 @@
+package com.team1816.lib.hardware;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.CANBus;
+import com.team1816.lib.hardware.factory.RobotFactory;
+import com.team1816.lib.util.Elastic;
+import com.team1816.lib.util.GreenLogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.team1816.lib.Singleton.factory;
+
+/**
+ * Publishes the health of every CAN bus and how stale each device's status signals are, so we can
+ * see a bus getting close to saturation before it shows up as loop overruns.
+ * <p>
+ * Every {@code canBusMonitorPeriodLoops} robot loops, the {@link CANBus.CANBusStatus} of every bus
+ * the {@link com.team1816.lib.hardware.factory.RobotFactory} created a device on is logged under
+ * {@code canBus/<bus name>/}: bus utilization, receive and transmit error counts, transmit buffer
+ * full count and bus off count.
+ * <p>
+ * Every loop, the age of each device's monitored signals (the time since the oldest of them was
+ * received) is recorded into a fixed size ring, and the 50th and 99th percentile ages over the
+ * ring are logged under the device's log path on the same period as the bus status. Every device
+ * the factory creates is monitored, see {@link RobotFactory#getMonitoredDevices()}.
+ * <p>
+ * An Elastic notification is sent when a bus goes over {@code canBusUtilizationWarning} (as a
+ * fraction), a bus goes bus off, or a device's 99th percentile signal age goes over {@code
+ * canSignalAgeWarningMs} or two periods of its slowest monitored signal, whichever is longer.
+ * Each warning is sent once, and is sent again only after the value has
+ * gone back under its threshold. All three constants are top level constants in the robot YAML.
+ * <p>
+ * Get the instance with {@code Singleton.get(CanBusMonitor.class)}.
+ */
+public class CanBusMonitor {
+
+    // The number of loops of signal ages kept for each device, about 2.5 seconds at 50Hz.
+    private static final int AGE_RING_SIZE = 128;
+
+    private final List<BusMonitor> busMonitors = new ArrayList<>();
+    private final List<DeviceMonitor> deviceMonitors = new ArrayList<>();
+    // Scratch space for sorting a device's ring when computing percentiles.
+    private final double[] sortedAges = new double[AGE_RING_SIZE];
+    private final int periodLoops;
+    private final double utilizationWarning;
+    private final double signalAgeWarningMs;
+    private int loopCount = 0;
+
+    public CanBusMonitor() {
+        var constants = factory.getConstants();
+        periodLoops = (int) Math.max(1, getConstant(constants, "canBusMonitorPeriodLoops", 25));
+        utilizationWarning = getConstant(constants, "canBusUtilizationWarning", 0.8);
+        signalAgeWarningMs = getConstant(constants, "canSignalAgeWarningMs", 50);
+    }
+
+    private static double getConstant(Map<String, Double> constants, String name, double defaultVal) {
+        return constants == null ? defaultVal : constants.getOrDefault(name, defaultVal);
+    }
+
+    /**
+     * Records the age of every device's signals, and publishes the bus status and signal age
+     * statistics every {@code canBusMonitorPeriodLoops} loops. This should be called once every
+     * robot loop, after {@link HardwareSnapshot#capture()}.
+     */
+    public void update() {
+        bindNewBusesAndDevices();
+
+        for (int i = 0; i < deviceMonitors.size(); i++) {
+            deviceMonitors.get(i).recordAge();
+        }
+
+        if (++loopCount < periodLoops) return;
+        loopCount = 0;
+
+        for (int i = 0; i < busMonitors.size(); i++) {
+            busMonitors.get(i).update();
+        }
+        for (int i = 0; i < deviceMonitors.size(); i++) {
+            deviceMonitors.get(i).updateStatistics();
+        }
+    }
+
+    /**
+     * Starts monitoring any buses and devices created since the last loop. Devices are usually
+     * all created at startup, so this only does work once.
+     */
+    private void bindNewBusesAndDevices() {
+        var devices = factory.getMonitoredDevices();
+        for (int i = deviceMonitors.size(); i < devices.size(); i++) {
+            deviceMonitors.add(new DeviceMonitor(devices.get(i)));
+        }
+        var buses = factory.getCanBuses();
+        if (buses.size() == busMonitors.size()) return;
+        for (var bus : buses) {
+            if (busMonitors.stream().noneMatch(monitor -> monitor.bus == bus)) {
+                busMonitors.add(new BusMonitor(bus));
+            }
+        }
+    }
+
+    private class BusMonitor {
+        private final CANBus bus;
+        private final boolean ghost;
+        private double utilizationPercent;
+        private long receiveErrorCount;
+        private long transmitErrorCount;
+        private long transmitFullCount;
+        private long busOffCount;
+        private boolean utilizationWarned = false;
+
+        private BusMonitor(CANBus bus) {
+            this.bus = bus;
+            ghost = bus.getName().equals("ghost");
+            if (ghost) return;
+            var logPath = "canBus/" + bus.getName() + "/";
+            GreenLogger.periodicLogDouble(logPath + "Utilization (%)", () -> utilizationPercent);
+            GreenLogger.periodicLogLong(logPath + "Receive Error Count", () -> receiveErrorCount);
+            GreenLogger.periodicLogLong(logPath + "Transmit Error Count", () -> transmitErrorCount);
+            GreenLogger.periodicLogLong(logPath + "Transmit Full Count", () -> transmitFullCount);
+            GreenLogger.periodicLogLong(logPath + "Bus Off Count", () -> busOffCount);
+        }
+
+        private void update() {
+            if (ghost) return;
+            var status = bus.getStatus();
+            if (!status.Status.isOK()) return;
+            utilizationPercent = status.BusUtilization * 100;
+            receiveErrorCount = status.REC;
+            transmitErrorCount = status.TEC;
+            transmitFullCount = status.TxFullCount;
+
+            if (status.BusOffCount > busOffCount) {
+                GreenLogger.logToElastic(
+                    "CAN bus " + bus.getName() + " went bus off",
+                    "Bus off count is now " + status.BusOffCount,
+                    Elastic.Notification.NotificationLevel.ERROR
+                );
+            }
+            busOffCount = status.BusOffCount;
+
+            boolean overUtilized = status.BusUtilization > utilizationWarning;
+            if (overUtilized && !utilizationWarned) {
+                GreenLogger.logToElastic(
+                    "CAN bus " + bus.getName() + " is busy",
+                    "Bus utilization is " + Math.round(utilizationPercent) + "%",
+                    Elastic.Notification.NotificationLevel.WARNING
+                );
+            }
+            utilizationWarned = overUtilized;
+        }
+    }
+
+    private class DeviceMonitor {
+        private final String logPath;
+        private final BaseStatusSignal[] signals;
+        private final double[] agesMs = new double[AGE_RING_SIZE];
+        private int ageCount = 0;
+        private int nextAge = 0;
+        private double p50AgeMs;
+        private double p99AgeMs;
+        private final double ageWarningMs;
+        private boolean ageWarned = false;
+
+        private DeviceMonitor(RobotFactory.MonitoredDevice device) {
+            logPath = device.logPath();
+            signals = device.signals();
+            double slowestPeriodMs = 0;
+            for (BaseStatusSignal signal : signals) {
+                double frequencyHz = signal.getAppliedUpdateFrequency();
+                if (frequencyHz > 0) {
+                    slowestPeriodMs = Math.max(slowestPeriodMs, 1000 / frequencyHz);
+                }
+            }
+            // A signal is normally up to a period old, so only warn past two.
+            ageWarningMs = Math.max(signalAgeWarningMs, 2 * slowestPeriodMs);
+            GreenLogger.periodicLogDouble(logPath + "Signal Age p50 (ms)", () -> p50AgeMs);
+            GreenLogger.periodicLogDouble(logPath + "Signal Age p99 (ms)", () -> p99AgeMs);
+        }
+
+        private void recordAge() {
+            double oldestSeconds = 0;
+            for (BaseStatusSignal signal : signals) {
+                oldestSeconds = Math.max(oldestSeconds, signal.getTimestamp().getLatency());
+            }
+            agesMs[nextAge] = oldestSeconds * 1000;
+            nextAge = (nextAge + 1) % AGE_RING_SIZE;
+            ageCount = Math.min(ageCount + 1, AGE_RING_SIZE);
+        }
+
+        private void updateStatistics() {
+            if (ageCount == 0) return;
+            System.arraycopy(agesMs, 0, sortedAges, 0, ageCount);
+            Arrays.sort(sortedAges, 0, ageCount);
+            p50AgeMs = sortedAges[(int) (0.50 * (ageCount - 1))];
+            p99AgeMs = sortedAges[(int) Math.ceil(0.99 * (ageCount - 1))];
+
+            boolean stale = p99AgeMs > ageWarningMs;
+            if (stale && !ageWarned) {
+                GreenLogger.logToElastic(
+                    "Stale CAN signals on " + logPath,
+                    "p99 signal age is " + Math.round(p99AgeMs) + "ms",
+                    Elastic.Notification.NotificationLevel.WARNING
+                );
+            }
+            ageWarned = stale;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.team1816.lib.hardware;
+
+import com.ctre.phoenix6.Utils;
+import com.team1816.lib.Singleton;
+import com.team1816.lib.hardware.components.motor.IMotor;
+import edu.wpi.first.wpilibj.DigitalInput;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.team1816.lib.Singleton.factory;
+
+/**
+ * Captures a time-aligned snapshot of the robot's sensors once at the start of every robot loop.
+ * <p>
+ * Without this, a subsystem reading several motors and sensors during {@code readFromHardware()}
+ * gets each value at a slightly different time, and anything calling a getter later in the loop
+ * (like {@code isAimed()} from the superstructure or the logger) may see a different value again.
+ * Instead, subsystems register their motors and {@link DigitalInput}s here once, and read the
+ * returned {@link MotorSample}s and {@link DigitalInputSample}s, which only change when {@link
+ * #capture()} is called.
+ * <p>
+ * Capturing waits on every signal in the {@link SignalRegistry} with {@link
+ * SignalRegistry#waitForAll(double)}, then latency compensates motor positions to the capture
+ * time using their velocity. The wait timeout comes from the top level
+ * {@code hardwareSnapshotTimeoutSeconds} constant in the robot YAML. It defaults to zero, which
+ * refreshes without blocking, since waiting only helps when every waited signal updates faster
+ * than the robot loop. Slow signals like faults are never waited on, see {@link
+ * SignalRegistry#registerSlow}. All timestamps are in the Phoenix time base ({@link Utils#getCurrentTimeSeconds()}).
+ * <p>
+ * Get the instance with {@code Singleton.get(HardwareSnapshot.class)}.
+ */
+public class HardwareSnapshot {
+
+    private final SignalRegistry signalRegistry = Singleton.get(SignalRegistry.class);
+    private final List<MotorSample> motorSamples = new ArrayList<>();
+    private final List<DigitalInputSample> digitalInputSamples = new ArrayList<>();
+    private final double timeoutSeconds;
+    private double captureTimestampSeconds = 0;
+
+    public HardwareSnapshot() {
+        var constants = factory.getConstants();
+        timeoutSeconds = constants == null
+            ? 0
+            : constants.getOrDefault("hardwareSnapshotTimeoutSeconds", 0.0);
+    }
+
+    /**
+     * Registers a motor to be sampled every loop.
+     *
+     * @param motor The motor to sample.
+     * @return The sample that will hold the motor's values as of the latest capture.
+     */
+    public MotorSample registerMotor(IMotor motor) {
+        var sample = new MotorSample(motor);
+        motorSamples.add(sample);
+        return sample;
+    }
+
+    /**
+     * Registers a {@link DigitalInput} to be sampled every loop.
+     *
+     * @param input The input to sample.
+     * @return The sample that will hold the input's value as of the latest capture.
+     */
+    public DigitalInputSample registerDigitalInput(DigitalInput input) {
+        var sample = new DigitalInputSample(input);
+        digitalInputSamples.add(sample);
+        return sample;
+    }
+
+    /**
+     * Captures a new snapshot of every registered signal, motor and {@link DigitalInput}. This
+     * should be called once at the start of every robot loop, before any subsystem reads from its
+     * hardware.
+     */
+    public void capture() {
+        if (timeoutSeconds > 0) {
+            signalRegistry.waitForAll(timeoutSeconds);
+        } else {
+            signalRegistry.refreshAll();
+        }
+        captureTimestampSeconds = Utils.getCurrentTimeSeconds();
+        for (int i = 0; i < motorSamples.size(); i++) {
+            motorSamples.get(i).update();
+        }
+        for (int i = 0; i < digitalInputSamples.size(); i++) {
+            digitalInputSamples.get(i).update(captureTimestampSeconds);
+        }
+    }
+
+    /**
+     * @return The time of the latest capture in seconds, in the Phoenix time base.
+     */
+    public double getCaptureTimestampSeconds() {
+        return captureTimestampSeconds;
+    }
+
+    /**
+     * The values of a motor as of the latest {@link #capture()}.
+     */
+    public static class MotorSample {
+        private final IMotor motor;
+        private double positionRotations;
+        private double velocityRPS;
+        private double timestampSeconds;
+
+        private MotorSample(IMotor motor) {
+            this.motor = motor;
+        }
+
+        private void update() {
+            positionRotations = motor.getLatencyCompensatedMotorPosition();
+            velocityRPS = motor.getMotorVelocity();
+            timestampSeconds = motor.getMotorTimestamp();
+        }
+
+        /**
+         * @return The rotor position in rotations, latency compensated to the capture time.
+         */
+        public double getPositionRotations() {
+            return positionRotations;
+        }
+
+        /**
+         * @return The rotor velocity in rotations per second.
+         */
+        public double getVelocityRPS() {
+            return velocityRPS;
+        }
+
+        /**
+         * @return When the motor's signals were received in seconds, in the Phoenix time base.
+         */
+        public double getTimestampSeconds() {
+            return timestampSeconds;
+        }
+    }
+
+    /**
+     * The value of a {@link DigitalInput} as of the latest {@link #capture()}.
+     */
+    public static class DigitalInputSample {
+        private final DigitalInput input;
+        private boolean value;
+        private double timestampSeconds;
+
+        private DigitalInputSample(DigitalInput input) {
+            this.input = input;
+        }
+
+        private void update(double captureTimestampSeconds) {
+            value = input.get();
+            timestampSeconds = captureTimestampSeconds;
+        }
+
+        /**
+         * @return The value of the input, the same as {@link DigitalInput#get()}.
+         */
+        public boolean get() {
+            return value;
+        }
+
+        /**
+         * @return When the input was read in seconds, in the Phoenix time base.
+         */
+        public double getTimestampSeconds() {
+            return timestampSeconds;
+        }
+    }
+}
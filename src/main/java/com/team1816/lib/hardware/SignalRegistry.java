@@ -0,0 +1,177 @@
+package com.team1816.lib.hardware;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.CANBus;
+import com.ctre.phoenix6.StatusCode;
+import com.team1816.lib.util.GreenLogger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the CTRE {@link BaseStatusSignal}s that subsystems and loggers read every loop so they
+ * can all be refreshed together.
+ * <p>
+ * Calling {@code getVelocity(true)} (or any signal getter with a refresh) on every read means
+ * every read is its own call into the Phoenix backend. Instead, devices register the signals they
+ * expose here when they are configured, they are all refreshed once at the start of every robot
+ * loop by {@link HardwareSnapshot#capture()}, and the device getters (like {@link
+ * com.team1816.lib.hardware.components.motor.IMotor#getMotorVelocity()}) return the cached values.
+ * <p>
+ * {@link BaseStatusSignal#refreshAll(BaseStatusSignal...)} requires every signal passed in to be
+ * on the same CAN bus, so signals are grouped by the {@link CANBus} from the {@link
+ * com.team1816.lib.hardware.factory.RobotFactory}, giving one refresh call per bus.
+ * <p>
+ * Signals that only need to be current to within a few loops, like sticky faults, are registered
+ * with {@link #registerSlow(String, CANBus, BaseStatusSignal...)}. They are refreshed with the
+ * rest but never waited on, since they update far slower than the robot loop.
+ * <p>
+ * Get the instance with {@code Singleton.get(SignalRegistry.class)}.
+ */
+public class SignalRegistry {
+
+    private final Map<String, BusSignals> signalsByBus = new LinkedHashMap<>();
+    // Flat copy of the values of signalsByBus so refreshing doesn't need an iterator.
+    private BusSignals[] buses = new BusSignals[0];
+    private final List<Registration> registrations = new ArrayList<>();
+    private long lastErrorLogMs = 0;
+
+    /**
+     * Registers signals to be refreshed every loop.
+     *
+     * @param logPath The log path of the device the signals belong to (for example,
+     *                {@code "shooter/turretMotor/"}).
+     * @param bus     The {@link CANBus} the device is on.
+     * @param signals The signals to refresh.
+     */
+    public void register(String logPath, CANBus bus, BaseStatusSignal... signals) {
+        add(logPath, bus, signals, true);
+    }
+
+    /**
+     * Registers slow signals to be refreshed every loop, without {@link #waitForAll(double)}
+     * waiting for them. These keep the update frequency the device streams them at.
+     *
+     * @param logPath The log path of the device the signals belong to (for example,
+     *                {@code "shooter/turretMotor/"}).
+     * @param bus     The {@link CANBus} the device is on.
+     * @param signals The signals to refresh.
+     */
+    public void registerSlow(String logPath, CANBus bus, BaseStatusSignal... signals) {
+        add(logPath, bus, signals, false);
+    }
+
+    private void add(String logPath, CANBus bus, BaseStatusSignal[] signals, boolean waited) {
+        if (signals.length == 0) return;
+        var busSignals = signalsByBus.get(bus.getName());
+        if (busSignals == null) {
+            busSignals = new BusSignals(bus);
+            signalsByBus.put(bus.getName(), busSignals);
+            buses = signalsByBus.values().toArray(new BusSignals[0]);
+        }
+        busSignals.add(signals, waited);
+        registrations.add(new Registration(logPath, bus, signals, waited));
+    }
+
+    /**
+     * Refreshes every registered signal, once per {@link CANBus}. This should be called once at
+     * the start of every robot loop, before any subsystem reads from its hardware.
+     */
+    public void refreshAll() {
+        for (BusSignals bus : buses) {
+            StatusCode status = BaseStatusSignal.refreshAll(bus.signals);
+            if (!status.isOK()) {
+                logError(bus, status);
+            }
+        }
+    }
+
+    /**
+     * Waits for every signal registered with {@link #register(String, CANBus, BaseStatusSignal...)}
+     * to receive new data, once per {@link CANBus}, then refreshes them. Slow signals are only
+     * refreshed. This blocks for up to the timeout <i>per bus</i>, so it should only be used with a
+     * short timeout and with signal update frequencies faster than the robot loop.
+     *
+     * @param timeoutSeconds The maximum time to wait on each bus in seconds. A timeout of zero
+     *                       does not block, and behaves the same as {@link #refreshAll()}.
+     */
+    public void waitForAll(double timeoutSeconds) {
+        for (BusSignals bus : buses) {
+            if (bus.waitedSignals.length > 0) {
+                StatusCode status = BaseStatusSignal.waitForAll(timeoutSeconds, bus.waitedSignals);
+                if (!status.isOK()) {
+                    logError(bus, status);
+                }
+            }
+            if (bus.slowSignals.length > 0) {
+                StatusCode status = BaseStatusSignal.refreshAll(bus.slowSignals);
+                if (!status.isOK()) {
+                    logError(bus, status);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Every registration made so far, in the order they were made.
+     */
+    public List<Registration> getRegistrations() {
+        return Collections.unmodifiableList(registrations);
+    }
+
+    /**
+     * @return The total number of registered signals across all buses.
+     */
+    public int getSignalCount() {
+        int count = 0;
+        for (BusSignals bus : buses) {
+            count += bus.signals.length;
+        }
+        return count;
+    }
+
+    private void logError(BusSignals bus, StatusCode status) {
+        // Rate-limit error logging to once per second so a disconnected bus can't flood the logs.
+        long now = System.currentTimeMillis();
+        if (now - lastErrorLogMs > 1000) {
+            GreenLogger.log("Failed to get signals on CAN bus \"" + bus.bus.getName() + "\": " + status);
+            lastErrorLogMs = now;
+        }
+    }
+
+    /**
+     * A set of signals registered for a single device.
+     *
+     * @param logPath The log path of the device the signals belong to.
+     * @param bus     The {@link CANBus} the device is on.
+     * @param signals The registered signals.
+     * @param waited  If {@link #waitForAll(double)} waits for the signals, false for slow signals.
+     */
+    public record Registration(String logPath, CANBus bus, BaseStatusSignal[] signals, boolean waited) {}
+
+    private static class BusSignals {
+        private final CANBus bus;
+        private final List<BaseStatusSignal> waitedSignalList = new ArrayList<>();
+        private final List<BaseStatusSignal> slowSignalList = new ArrayList<>();
+        // Every signal on the bus, the waited signals then the slow ones.
+        private BaseStatusSignal[] signals = new BaseStatusSignal[0];
+        private BaseStatusSignal[] waitedSignals = new BaseStatusSignal[0];
+        private BaseStatusSignal[] slowSignals = new BaseStatusSignal[0];
+
+        private BusSignals(CANBus bus) {
+            this.bus = bus;
+        }
+
+        private void add(BaseStatusSignal[] newSignals, boolean waited) {
+            Collections.addAll(waited ? waitedSignalList : slowSignalList, newSignals);
+            waitedSignals = waitedSignalList.toArray(new BaseStatusSignal[0]);
+            slowSignals = slowSignalList.toArray(new BaseStatusSignal[0]);
+            signals = new BaseStatusSignal[waitedSignals.length + slowSignals.length];
+            System.arraycopy(waitedSignals, 0, signals, 0, waitedSignals.length);
+            System.arraycopy(slowSignals, 0, signals, waitedSignals.length, slowSignals.length);
+        }
+    }
+}
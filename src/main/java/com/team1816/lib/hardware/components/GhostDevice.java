@@ -42,6 +42,16 @@ public class GhostDevice implements IMotor {
         return 0;
     }
 
+    @Override
+    public double getLatencyCompensatedMotorPosition() {
+        return 0;
+    }
+
+    @Override
+    public double getMotorTimestamp() {
+        return 0;
+    }
+
     @Override
     public void zeroMotorPosition() {}
 
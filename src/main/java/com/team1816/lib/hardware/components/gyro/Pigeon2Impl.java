@@ -2,13 +2,17 @@ package com.team1816.lib.hardware.components.gyro;
 
 import com.ctre.phoenix6.CANBus;
 import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.ParentConfiguration;
 import com.ctre.phoenix6.configs.Pigeon2Configuration;
 import com.ctre.phoenix6.hardware.Pigeon2;
 import com.ctre.phoenix6.sim.Pigeon2SimState;
+import com.team1816.lib.Singleton;
+import com.team1816.lib.hardware.SignalRegistry;
 import com.team1816.lib.hardware.components.IPhoenix6;
 import com.team1816.lib.util.GreenLogger;
 import com.team1816.season.Robot;
+import edu.wpi.first.units.measure.Angle;
 
 /**
  * A class that interfaces with the Pigeon2
@@ -16,9 +20,14 @@ import com.team1816.season.Robot;
 public class Pigeon2Impl extends Pigeon2 implements IPhoenix6, IGyro {
 
     private Pigeon2SimState simState;
+    private final CANBus canbus;
+    // Cached signal, refreshed once per loop by the SignalRegistry.
+    private final StatusSignal<Angle> yawSignal;
 
     public Pigeon2Impl(int deviceId, CANBus canbus) {
         super(deviceId, canbus);
+        this.canbus = canbus;
+        yawSignal = getYaw(false);
         if(Robot.isSimulation()){
             simState = getSimState();
         }
@@ -26,14 +35,15 @@ public class Pigeon2Impl extends Pigeon2 implements IPhoenix6, IGyro {
 
     @Override
     public StatusCode applyConfiguration(ParentConfiguration config, String logPath, boolean logging) {
-        GreenLogger.periodicLog(logPath + "Connected", this::isConnected);
-        GreenLogger.periodicLog(logPath + "Yaw", this::getGyroYaw);
+        GreenLogger.periodicLogBoolean(logPath + "Connected", this::isConnected);
+        GreenLogger.periodicLogDouble(logPath + "Yaw", this::getGyroYaw);
+        Singleton.get(SignalRegistry.class).register(logPath, canbus, yawSignal);
         return this.getConfigurator().apply((Pigeon2Configuration) config);
     }
 
     @Override
     public double getGyroYaw() {
-        return getYaw().getValueAsDouble();
+        return yawSignal.getValueAsDouble();
     }
 
     @Override
@@ -25,7 +25,7 @@ public class CANdleImpl extends CANdle implements IPhoenix6 {
 
     @Override
     public StatusCode applyConfiguration(ParentConfiguration config, String logPath, boolean logging) {
-        GreenLogger.periodicLog(logPath + "Connected", this::isConnected);
+        GreenLogger.periodicLogBoolean(logPath + "Connected", this::isConnected);
         return this.getConfigurator().apply((CANdleConfiguration) config);
     }
 
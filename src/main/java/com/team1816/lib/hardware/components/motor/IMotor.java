@@ -4,11 +4,15 @@ import com.ctre.phoenix6.StatusCode;
 import com.team1816.lib.hardware.components.IPhoenix6;
 
 public interface IMotor extends IPhoenix6 {
-    // method to get the current velocity of rotor in rps
+    // method to get the current velocity of rotor in rps, as of the last SignalRegistry refresh
     double getMotorVelocity();
 
-    // method to get the angle of rotor in rotations
+    // method to get the angle of rotor in rotations, as of the last SignalRegistry refresh
     double getMotorPosition();
+    // method to get the angle of rotor in rotations, extrapolated to now using the velocity
+    double getLatencyCompensatedMotorPosition();
+    // method to get when the position and velocity were received, in the Phoenix time base
+    double getMotorTimestamp();
     // used to zero the motor position
     void zeroMotorPosition();
     StatusCode setPosition(double newValue);
@@ -1,24 +1,40 @@
 package com.team1816.lib.hardware.components.motor;
 
+import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.CANBus;
 import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.ParentConfiguration;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.sim.ChassisReference;
 import com.ctre.phoenix6.sim.TalonFXSimState;
+import com.team1816.lib.Singleton;
+import com.team1816.lib.hardware.SignalRegistry;
 import com.team1816.lib.hardware.components.ICTREDevice;
 import com.team1816.lib.util.GreenLogger;
 import com.team1816.season.Robot;
+import edu.wpi.first.units.measure.Angle;
+import edu.wpi.first.units.measure.AngularVelocity;
 
 public class TalonFXImpl extends TalonFX implements ICTREDevice, IMotor {
 
     private TalonFXConfiguration config;
     private TalonFXSimState simState;
 
+    private final CANBus canbus;
+    // Cached signals, refreshed once per loop by the SignalRegistry.
+    private final StatusSignal<Angle> positionSignal;
+    private final StatusSignal<AngularVelocity> velocitySignal;
+    private final StatusSignal<Boolean> bootDuringEnableSignal;
+
     public TalonFXImpl(int deviceId, CANBus canbus) {
         super(deviceId, canbus);
+        this.canbus = canbus;
+        positionSignal = getPosition(false);
+        velocitySignal = getVelocity(false);
+        bootDuringEnableSignal = getStickyFault_BootDuringEnable(false);
     }
 
     @SuppressWarnings("DuplicatedCode")
@@ -27,14 +43,18 @@ public class TalonFXImpl extends TalonFX implements ICTREDevice, IMotor {
         this.config = (TalonFXConfiguration) config;
         // add default logging for target and actual position/velocities
         if (logDetails) {
-            GreenLogger.periodicLog(logPath + "Actual Position (rotations)", this::getMotorPosition);
-            GreenLogger.periodicLog(logPath + "Actual Velocity (rps)", this::getMotorVelocity);
+            GreenLogger.periodicLogDouble(logPath + "Actual Position (rotations)", this::getMotorPosition);
+            GreenLogger.periodicLogDouble(logPath + "Actual Velocity (rps)", this::getMotorVelocity);
         }
         if(Robot.isSimulation()){
             simState = getSimState();
             var clockwise = ((TalonFXConfiguration) config).MotorOutput.Inverted == InvertedValue.Clockwise_Positive;
             simState.Orientation = clockwise ? ChassisReference.Clockwise_Positive : ChassisReference.CounterClockwise_Positive;
         }
+        var signalRegistry = Singleton.get(SignalRegistry.class);
+        signalRegistry.register(logPath, canbus, positionSignal, velocitySignal);
+        // Faults only stream a few times a second, so they are refreshed but not waited on.
+        signalRegistry.registerSlow(logPath, canbus, bootDuringEnableSignal);
         return this.getConfigurator().apply(this.config);
     }
 
@@ -50,14 +70,24 @@ public class TalonFXImpl extends TalonFX implements ICTREDevice, IMotor {
 
     @Override
     public double getMotorVelocity() {
-        return getVelocity(true).getValueAsDouble();
+        return velocitySignal.getValueAsDouble();
     }
 
     @Override
-    public double getMotorPosition() {  return getPosition(true).getValueAsDouble(); }
+    public double getMotorPosition() { return positionSignal.getValueAsDouble(); }
+
+    @Override
+    public boolean hasDeviceCrashed() { return bootDuringEnableSignal.getValue(); }
 
     @Override
-    public boolean hasDeviceCrashed() { return getStickyFault_BootDuringEnable(true).getValue(); }
+    public double getLatencyCompensatedMotorPosition() {
+        return BaseStatusSignal.getLatencyCompensatedValueAsDouble(positionSignal, velocitySignal);
+    }
+
+    @Override
+    public double getMotorTimestamp() {
+        return positionSignal.getTimestamp().getTime();
+    }
 
     @Override
     public void zeroMotorPosition() {
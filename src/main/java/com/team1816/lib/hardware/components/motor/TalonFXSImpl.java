@@ -1,24 +1,40 @@
 package com.team1816.lib.hardware.components.motor;
 
+import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.CANBus;
 import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.ParentConfiguration;
 import com.ctre.phoenix6.configs.TalonFXSConfiguration;
 import com.ctre.phoenix6.hardware.TalonFXS;
 import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.sim.ChassisReference;
 import com.ctre.phoenix6.sim.TalonFXSSimState;
+import com.team1816.lib.Singleton;
+import com.team1816.lib.hardware.SignalRegistry;
 import com.team1816.lib.hardware.components.ICTREDevice;
 import com.team1816.lib.util.GreenLogger;
 import com.team1816.season.Robot;
+import edu.wpi.first.units.measure.Angle;
+import edu.wpi.first.units.measure.AngularVelocity;
 
 public class TalonFXSImpl extends TalonFXS implements ICTREDevice, IMotor {
 
     private TalonFXSSimState simState;
     private TalonFXSConfiguration config;
 
+    private final CANBus canbus;
+    // Cached signals, refreshed once per loop by the SignalRegistry.
+    private final StatusSignal<Angle> positionSignal;
+    private final StatusSignal<AngularVelocity> velocitySignal;
+    private final StatusSignal<Boolean> bootDuringEnableSignal;
+
     public TalonFXSImpl(int deviceId, CANBus canbus) {
         super(deviceId, canbus);
+        this.canbus = canbus;
+        positionSignal = getPosition(false);
+        velocitySignal = getVelocity(false);
+        bootDuringEnableSignal = getStickyFault_BootDuringEnable(false);
     }
 
     @SuppressWarnings("DuplicatedCode")
@@ -30,6 +46,10 @@ public class TalonFXSImpl extends TalonFXS implements ICTREDevice, IMotor {
             var clockwise = ((TalonFXSConfiguration) config).MotorOutput.Inverted == InvertedValue.Clockwise_Positive;
             simState.MotorOrientation = clockwise ? ChassisReference.Clockwise_Positive : ChassisReference.CounterClockwise_Positive;
         }
+        var signalRegistry = Singleton.get(SignalRegistry.class);
+        signalRegistry.register(logPath, canbus, positionSignal, velocitySignal);
+        // Faults only stream a few times a second, so they are refreshed but not waited on.
+        signalRegistry.registerSlow(logPath, canbus, bootDuringEnableSignal);
         return this.getConfigurator().apply(this.config);
     }
 
@@ -50,12 +70,22 @@ public class TalonFXSImpl extends TalonFXS implements ICTREDevice, IMotor {
 
     @Override
     public double getMotorVelocity() {
-        return getVelocity().getValueAsDouble();
+        return velocitySignal.getValueAsDouble();
     }
 
     @Override
     public double getMotorPosition() {
-        return getPosition().getValueAsDouble();
+        return positionSignal.getValueAsDouble();
+    }
+
+    @Override
+    public double getLatencyCompensatedMotorPosition() {
+        return BaseStatusSignal.getLatencyCompensatedValueAsDouble(positionSignal, velocitySignal);
+    }
+
+    @Override
+    public double getMotorTimestamp() {
+        return positionSignal.getTimestamp().getTime();
     }
 
     @Override
@@ -84,6 +114,6 @@ public class TalonFXSImpl extends TalonFXS implements ICTREDevice, IMotor {
     }
 
     @Override
-    public boolean hasDeviceCrashed() { return getStickyFault_BootDuringEnable().getValue(); }
+    public boolean hasDeviceCrashed() { return bootDuringEnableSignal.getValue(); }
 }
 
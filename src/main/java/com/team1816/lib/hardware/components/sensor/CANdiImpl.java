@@ -2,10 +2,13 @@ package com.team1816.lib.hardware.components.sensor;
 
 import com.ctre.phoenix6.CANBus;
 import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.CANdiConfiguration;
 import com.ctre.phoenix6.configs.ParentConfiguration;
 import com.ctre.phoenix6.hardware.CANdi;
 import com.ctre.phoenix6.sim.CANdiSimState;
+import com.team1816.lib.Singleton;
+import com.team1816.lib.hardware.SignalRegistry;
 import com.team1816.lib.hardware.components.IPhoenix6;
 import com.team1816.lib.util.GreenLogger;
 import com.team1816.season.Robot;
@@ -13,10 +16,17 @@ import com.team1816.season.Robot;
 public class CANdiImpl extends CANdi implements IPhoenix6 {
 
     private CANdiSimState simState;
+    private final CANBus canbus;
+    // Cached signals, refreshed once per loop by the SignalRegistry.
+    private final StatusSignal<Boolean> s1ClosedSignal;
+    private final StatusSignal<Boolean> s2ClosedSignal;
 
     public CANdiImpl(Integer canID, CANBus canBusName) {
 
         super(canID, canBusName);
+        canbus = canBusName;
+        s1ClosedSignal = getS1Closed(false);
+        s2ClosedSignal = getS2Closed(false);
         if(Robot.isSimulation()){
             simState = getSimState();
         }
@@ -24,9 +34,10 @@ public class CANdiImpl extends CANdi implements IPhoenix6 {
 
     @Override
     public StatusCode applyConfiguration(ParentConfiguration config, String logPath, boolean logging) {
-        GreenLogger.periodicLog(logPath + "Connected", this::isConnected);
-        GreenLogger.periodicLog(logPath + "S1", this::getS1Closed);
-        GreenLogger.periodicLog(logPath + "S2", this::getS2Closed);
+        GreenLogger.periodicLogBoolean(logPath + "Connected", this::isConnected);
+        GreenLogger.periodicLogBoolean(logPath + "S1", s1ClosedSignal::getValue);
+        GreenLogger.periodicLogBoolean(logPath + "S2", s2ClosedSignal::getValue);
+        Singleton.get(SignalRegistry.class).register(logPath, canbus, s1ClosedSignal, s2ClosedSignal);
         return this.getConfigurator().apply((CANdiConfiguration) config);
     }
 
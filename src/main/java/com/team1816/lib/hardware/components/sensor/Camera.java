@@ -7,6 +7,7 @@ import edu.wpi.first.math.Nat;
 import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Transform3d;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
@@ -20,10 +21,12 @@ import org.photonvision.simulation.VisionSystemSim;
 import org.photonvision.targeting.PhotonPipelineResult;
 import org.photonvision.targeting.PhotonTrackedTarget;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import static com.team1816.lib.BaseConstants.VisionConstants.*;
 
@@ -44,20 +47,70 @@ public class Camera {
     public final PhotonCamera photonCamera;
     public final PhotonPoseEstimator poseEstimator;
     private final SimCameraProperties simCameraProperties;
+    private final boolean simEnableStreams;
     private final boolean simulateWithPhysicalCamera;
     /**
-     * A list of the poses of all AprilTags seen in the latest pipeline result for this camera.
-     * <p>
-     * Poses are field relative, calculated by transforming from the camera relative AprilTag pose
-     * from the pipeline result to a robot relative pose using the {@link #robotToCamera} for this
-     * {@link Camera}, and then transforming from the robot relative pose to a field relative pose
-     * using the estimated robot pose on the field from the drivetrain.
+     * The most AprilTags from a single pipeline result that are kept for logging.
+     */
+    private static final int MAX_SEEN_APRIL_TAGS = 16;
+    /**
+     * The number of doubles used for each pose in {@link SeenAprilTags#poses} (x, y, z, qw, qx,
+     * qy, qz).
+     */
+    private static final int POSE_ARRAY_LENGTH = 7;
+    /**
+     * How many times a reader tries to copy the seen AprilTags before giving up and keeping its
+     * last copy, see {@link #copySeenAprilTags}.
+     */
+    private static final int MAX_SEEN_APRIL_TAG_COPY_ATTEMPTS = 3;
+    /**
+     * Two banks of preallocated buffers for the seen AprilTag IDs and poses, indexed by bank and
+     * then by the number of tags seen, so there is an exact length array for every tag count.
+     * The vision worker thread fills the bank that isn't being read, then swaps which bank
+     * {@link #seenAprilTags} points to.
      */
-    private List<Pose3d> seenAprilTagPoses = List.of();
+    private final SeenAprilTags[][] seenAprilTagBanks = new SeenAprilTags[2][];
+    private int backBank = 1;
     /**
-     * A list of the IDs of all AprilTags seen in the latest pipeline result for this camera.
+     * The AprilTags seen in the latest pipeline result for this camera. Readers on other threads
+     * must copy these with {@link #copySeenAprilTags} instead of reading them directly.
      */
-    private List<Integer> seenAprilTagIDs = List.of();
+    private volatile SeenAprilTags seenAprilTags;
+    /**
+     * Counts the vision worker thread's updates to the seen AprilTags, and is odd while one is in
+     * progress. Readers use it to check that their copy wasn't overwritten while they copied it.
+     */
+    private volatile long seenAprilTagSequence = 0;
+    /**
+     * The main thread's copy of the seen AprilTags for logging, and the buffers it is copied into.
+     */
+    private final SeenAprilTags[] loggedSeenAprilTagBank = SeenAprilTags.createBank();
+    private SeenAprilTags loggedSeenAprilTags;
+    /**
+     * The simulation thread's buffers for copying the seen AprilTags, see {@link
+     * #updateCameraOnSimField(VisionSystemSim)}.
+     */
+    private final SeenAprilTags[] simSeenAprilTagBank = SeenAprilTags.createBank();
+    private SeenAprilTags simSeenAprilTags;
+    /**
+     * The {@link #robotToCamera} split into primitives for transforming tag poses.
+     */
+    private final double robotToCameraX, robotToCameraY, robotToCameraZ;
+    private final double robotToCameraQW, robotToCameraQX, robotToCameraQY, robotToCameraQZ;
+    /**
+     * Scratch space for rotating vectors by quaternions, only used on the vision worker thread.
+     */
+    private final double[] rotatedVector = new double[3];
+    /**
+     * The estimates returned by {@link #getEstimatedRobotPosesFromAllUnreadResults()}, reused
+     * between calls.
+     */
+    private final List<EstimatedRobotPose> estimatedRobotPoses = new ArrayList<>();
+    /**
+     * Records every pipeline result this camera reads, or null if this camera isn't being
+     * recorded. See {@link #startRecording(File)}.
+     */
+    private PhotonResultRecorder recorder = null;
     /**
      * The latest estimated position from this camera based on a single pipeline result. It is
      * expected for this to jump around a fair amount.
@@ -65,11 +118,29 @@ public class Camera {
      * This is not to be confused with the pose estimate from the drivetrain that combines all
      * vision estimates and odometry data.
      */
-    private Pose3d latestPoseEstimate = Pose3d.kZero;
+    private volatile Pose3d latestPoseEstimate = Pose3d.kZero;
     /**
      * The latest vision standard deviations from this camera, for logging purposes.
      */
     public Matrix<N3, N1> latestVisionStdDevs = VecBuilder.fill(0.0, 0.0, 0.0);
+    /**
+     * The number of estimates from this camera that passed and failed the innovation gate in
+     * {@link com.team1816.lib.subsystems.Vision}, for logging purposes.
+     */
+    public long gateAcceptedCount = 0;
+    public long gateRejectedCount = 0;
+    /**
+     * The squared Mahalanobis distance of the latest gated estimate from this camera, for logging
+     * purposes.
+     */
+    public double latestInnovationDistanceSquared = 0;
+    /**
+     * The standard deviation curves for this camera's single-tag and multi-tag estimates, or null
+     * to use the defaults in {@link com.team1816.lib.subsystems.Vision}. These are read on the
+     * vision worker thread, and can be replaced at any time with a calibrated curve.
+     */
+    public volatile StdDevCurve singleTagStdDevCurve = null;
+    public volatile StdDevCurve multiTagStdDevCurve = null;
 
     /**
      * Constructs a {@link Camera} with the specified configuration values.
@@ -84,6 +155,10 @@ public class Camera {
      * @param simCameraProperties        The properties to use when simulating the camera. For the most
      *                                   accurate simulation, these should match the behavior of the real
      *                                   camera.
+     * @param simEnableStreams           If the simulated camera should render its raw and processed
+     *                                   video streams. Rendering the streams is by far the slowest
+     *                                   part of simulating a camera, so only enable them when you
+     *                                   need to watch them.
      * @param simulateWithPhysicalCamera If a physical camera will be used for this camera while
      *                                   running the sim.
      */
@@ -93,15 +168,33 @@ public class Camera {
         Transform3d robotToCamera,
         DetectionType detectionType,
         SimCameraProperties simCameraProperties,
+        boolean simEnableStreams,
         boolean simulateWithPhysicalCamera
     ) {
         this.name = name;
         this.robotToCamera = robotToCamera;
         this.detectionType = detectionType;
         this.simCameraProperties = simCameraProperties;
+        this.simEnableStreams = simEnableStreams;
         this.simulateWithPhysicalCamera = simulateWithPhysicalCamera;
         photonCamera = new PhotonCamera(photonVisionUIName);
 
+        robotToCameraX = robotToCamera.getX();
+        robotToCameraY = robotToCamera.getY();
+        robotToCameraZ = robotToCamera.getZ();
+        var robotToCameraQuaternion = robotToCamera.getRotation().getQuaternion();
+        robotToCameraQW = robotToCameraQuaternion.getW();
+        robotToCameraQX = robotToCameraQuaternion.getX();
+        robotToCameraQY = robotToCameraQuaternion.getY();
+        robotToCameraQZ = robotToCameraQuaternion.getZ();
+
+        for (int bank = 0; bank < 2; bank++) {
+            seenAprilTagBanks[bank] = SeenAprilTags.createBank();
+        }
+        seenAprilTags = seenAprilTagBanks[0][0];
+        loggedSeenAprilTags = loggedSeenAprilTagBank[0];
+        simSeenAprilTags = simSeenAprilTagBank[0];
+
         // Construct the pose estimator using the robotToCamera for this camera.
         poseEstimator = new PhotonPoseEstimator(
             aprilTagFieldLayout,
@@ -126,11 +219,28 @@ public class Camera {
             PhotonCameraSim cameraSim = new PhotonCameraSim(
                 photonCamera, simCameraProperties, aprilTagFieldLayout
             );
-            cameraSim.enableDrawWireframe(true);
+            cameraSim.enableRawStream(simEnableStreams);
+            cameraSim.enableProcessedStream(simEnableStreams);
+            cameraSim.enableDrawWireframe(simEnableStreams);
             sim.addCamera(cameraSim, robotToCamera);
         }
     }
 
+    /**
+     * @return If this camera is simulated by PhotonVision in the sim, instead of using a physical
+     * camera.
+     */
+    public boolean isSimulated() {
+        return !simulateWithPhysicalCamera;
+    }
+
+    /**
+     * @return The frame rate this camera is simulated at.
+     */
+    public double getSimFps() {
+        return simCameraProperties.getFPS();
+    }
+
     /**
      * Uses this {@link Camera}'s {@link PhotonPoseEstimator} to get {@link EstimatedRobotPose}s
      * for all unread {@link PhotonPipelineResult}s stored on the {@link PhotonCamera} for this
@@ -138,63 +248,191 @@ public class Camera {
      * <p>
      * The pose estimator uses AprilTags seen in the pipeline result and the known position of the
      * camera on the robot to calculate an estimate of the robot's position on the field.
+     * <p>
+     * This is called from the vision worker thread, see {@link
+     * com.team1816.lib.subsystems.Vision#startProcessing}.
      *
      * @return A list of {@link EstimatedRobotPose}s calculated from all unread pipeline results on
-     * this {@link Camera}'s {@link PhotonCamera}.
+     * this {@link Camera}'s {@link PhotonCamera}. The same list is reused by every call, so it is
+     * only valid until the next call.
      */
     public List<EstimatedRobotPose> getEstimatedRobotPosesFromAllUnreadResults() {
-        List<EstimatedRobotPose> estimatedRobotPoses = new ArrayList<>();
+        estimatedRobotPoses.clear();
 
         // Get position estimates from all the unread PhotonPipelineResults on the PhotonCamera. A
         // PhotonPipelineResult can essentially be thought of as a frame from the camera.
-        for (PhotonPipelineResult pipelineResult : photonCamera.getAllUnreadResults()) {
-            int targetsSize = pipelineResult.targets.size();
-            if (targetsSize > 0) {
-                Optional<EstimatedRobotPose> poseEstimate = targetsSize > 1 ?
-                    poseEstimator.estimateCoprocMultiTagPose(pipelineResult) :
-                    poseEstimator.estimateLowestAmbiguityPose(pipelineResult);
-
-
-                // If we weren't able to get a multi-tag estimate (this would happen if there weren't
-                // multiple tags visible), try to get a result using lowest ambiguity. (Technically, it
-                // doesn't matter that it is using the lowest ambiguity tag because at this point we
-                // know there is only one tag, but it has to be some estimation strategy that works
-                // with only one tag.)
-//            if (poseEstimate.isEmpty()) {
-//                poseEstimate = poseEstimator.estimateLowestAmbiguityPose(pipelineResult);
-//            }
-
-                // If we got an estimate, add it to the list to return and update the latest pose
-                // estimate.
-                poseEstimate.ifPresent(estimate -> {
-                    estimatedRobotPoses.add(estimate);
-                    latestPoseEstimate = estimate.estimatedPose;
-                });
-
-                // Set the seen AprilTag poses and IDs based on the tags from the latest pipeline
-                // result.
-                List<PhotonTrackedTarget> targets = pipelineResult.getTargets();
-                seenAprilTagPoses = targets.stream()
-                    .map(target ->
-                        // Find the AprilTag's pose on the field based on its position relative to the
-                        // camera, the position of the camera on the robot, and the current estimated
-                        // position of the robot on the field.
-                        new Pose3d(BaseRobotState.robotPose)
-                            .plus(robotToCamera)
-                            .plus(target.getBestCameraToTarget())
-                    )
-                    .collect(Collectors.toList());
-                seenAprilTagIDs = targets.stream()
-                    .map(PhotonTrackedTarget::getFiducialId)
-                    .collect(Collectors.toList());
-            } else {
-                seenAprilTagPoses = List.of();
-                seenAprilTagIDs = List.of();
+        List<PhotonPipelineResult> pipelineResults = photonCamera.getAllUnreadResults();
+        for (int i = 0; i < pipelineResults.size(); i++) {
+            PhotonPipelineResult pipelineResult = pipelineResults.get(i);
+            if (recorder != null) {
+                recorder.record(
+                    pipelineResult, BaseRobotState.simActualOrRawOdometryPose, BaseRobotState.robotPose
+                );
+            }
+            Optional<EstimatedRobotPose> poseEstimate = estimateRobotPose(poseEstimator, pipelineResult);
+
+            // If we got an estimate, add it to the list to return and update the latest pose
+            // estimate.
+            if (poseEstimate.isPresent()) {
+                estimatedRobotPoses.add(poseEstimate.get());
+                latestPoseEstimate = poseEstimate.get().estimatedPose;
             }
         }
+
+        // Only the latest result's tags are logged, so there's no need to find the tags for the
+        // results before it.
+        if (!pipelineResults.isEmpty()) {
+            updateSeenAprilTags(pipelineResults.get(pipelineResults.size() - 1).targets);
+        }
         return estimatedRobotPoses;
     }
 
+    /**
+     * Estimates the robot's pose from a single pipeline result. This is separate from any {@link
+     * Camera} so recorded results can be replayed through the same estimation offline, see {@link
+     * com.team1816.tools.VisionReplay}.
+     *
+     * @param poseEstimator  The pose estimator for the camera the result came from.
+     * @param pipelineResult The pipeline result to estimate from.
+     * @return The estimate, or an empty optional if the result has no usable targets.
+     */
+    public static Optional<EstimatedRobotPose> estimateRobotPose(
+        PhotonPoseEstimator poseEstimator, PhotonPipelineResult pipelineResult
+    ) {
+        int targetsSize = pipelineResult.targets.size();
+        if (targetsSize == 0) {
+            return Optional.empty();
+        }
+        // Use the coprocessor's multi-tag result if there are multiple tags, otherwise the
+        // lowest ambiguity tag. (Technically, it doesn't matter that it is using the lowest
+        // ambiguity tag because at this point we know there is only one tag, but it has to be
+        // some estimation strategy that works with only one tag.)
+        return targetsSize > 1 ?
+            poseEstimator.estimateCoprocMultiTagPose(pipelineResult) :
+            poseEstimator.estimateLowestAmbiguityPose(pipelineResult);
+    }
+
+    /**
+     * Starts recording every pipeline result this camera reads to a new file in the directory,
+     * for replaying offline. Calling this more than once does nothing.
+     *
+     * @param directory The directory to create the recording in.
+     */
+    public void startRecording(File directory) {
+        if (recorder != null) return;
+        try {
+            recorder = new PhotonResultRecorder(directory, name, robotToCamera);
+            GreenLogger.log("Recording camera " + name + " to " + recorder.getFile());
+        } catch (IOException e) {
+            GreenLogger.log("Failed to start recording camera " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fills the back bank of seen AprilTag buffers with the IDs and field relative poses of the
+     * targets, then swaps it in for logging.
+     */
+    private void updateSeenAprilTags(List<PhotonTrackedTarget> targets) {
+        // Only this thread writes the sequence, so the increment can't race.
+        seenAprilTagSequence++;
+        // Keep the writes to the back bank from being seen before the sequence changed.
+        VarHandle.storeStoreFence();
+
+        int count = Math.min(targets.size(), MAX_SEEN_APRIL_TAGS);
+        SeenAprilTags back = seenAprilTagBanks[backBank][count];
+        long[] ids = back.ids;
+        double[] poses = back.poses;
+
+        // Find the camera's pose on the field based on the position of the camera on the robot
+        // and the current estimated position of the robot on the field. This is the same as
+        // new Pose3d(robotPose).plus(robotToCamera), just without allocating.
+        Pose2d robotPose = BaseRobotState.robotPose;
+        double halfYaw = robotPose.getRotation().getRadians() / 2;
+        double robotQW = Math.cos(halfYaw);
+        double robotQZ = Math.sin(halfYaw);
+        rotate(robotQW, 0, 0, robotQZ, robotToCameraX, robotToCameraY, robotToCameraZ);
+        double cameraX = robotPose.getX() + rotatedVector[0];
+        double cameraY = robotPose.getY() + rotatedVector[1];
+        double cameraZ = rotatedVector[2];
+        double cameraQW = robotQW * robotToCameraQW - robotQZ * robotToCameraQZ;
+        double cameraQX = robotQW * robotToCameraQX - robotQZ * robotToCameraQY;
+        double cameraQY = robotQW * robotToCameraQY + robotQZ * robotToCameraQX;
+        double cameraQZ = robotQW * robotToCameraQZ + robotQZ * robotToCameraQW;
+
+        for (int i = 0; i < count; i++) {
+            PhotonTrackedTarget target = targets.get(i);
+            ids[i] = target.getFiducialId();
+
+            // Find the AprilTag's pose on the field based on its position relative to the camera.
+            Transform3d cameraToTarget = target.getBestCameraToTarget();
+            var targetQuaternion = cameraToTarget.getRotation().getQuaternion();
+            double targetQW = targetQuaternion.getW();
+            double targetQX = targetQuaternion.getX();
+            double targetQY = targetQuaternion.getY();
+            double targetQZ = targetQuaternion.getZ();
+            rotate(
+                cameraQW, cameraQX, cameraQY, cameraQZ,
+                cameraToTarget.getX(), cameraToTarget.getY(), cameraToTarget.getZ()
+            );
+            int offset = i * POSE_ARRAY_LENGTH;
+            poses[offset] = cameraX + rotatedVector[0];
+            poses[offset + 1] = cameraY + rotatedVector[1];
+            poses[offset + 2] = cameraZ + rotatedVector[2];
+            poses[offset + 3] = cameraQW * targetQW - cameraQX * targetQX - cameraQY * targetQY - cameraQZ * targetQZ;
+            poses[offset + 4] = cameraQW * targetQX + cameraQX * targetQW + cameraQY * targetQZ - cameraQZ * targetQY;
+            poses[offset + 5] = cameraQW * targetQY - cameraQX * targetQZ + cameraQY * targetQW + cameraQZ * targetQX;
+            poses[offset + 6] = cameraQW * targetQZ + cameraQX * targetQY - cameraQY * targetQX + cameraQZ * targetQW;
+        }
+
+        seenAprilTags = back;
+        backBank = 1 - backBank;
+        seenAprilTagSequence++;
+    }
+
+    /**
+     * Copies the seen AprilTags from the vision worker thread into a reader's own buffers.
+     * <p>
+     * The worker only writes to the bank that isn't being read, so a copy can only be torn if the
+     * worker finished one update and started the next one while it was copying. That is checked
+     * with {@link #seenAprilTagSequence}, retrying if it happened. Each reader thread needs its own
+     * bank of buffers.
+     *
+     * @param bank     The reader's buffers, from {@link SeenAprilTags#createBank()}.
+     * @param previous The reader's last copy, kept if a consistent copy couldn't be made.
+     * @return The buffers holding the copy.
+     */
+    private SeenAprilTags copySeenAprilTags(SeenAprilTags[] bank, SeenAprilTags previous) {
+        for (int attempt = 0; attempt < MAX_SEEN_APRIL_TAG_COPY_ATTEMPTS; attempt++) {
+            long sequence = seenAprilTagSequence;
+            SeenAprilTags source = seenAprilTags;
+            SeenAprilTags copy = bank[source.ids.length];
+            System.arraycopy(source.ids, 0, copy.ids, 0, source.ids.length);
+            System.arraycopy(source.poses, 0, copy.poses, 0, source.poses.length);
+            // Keep the copy from being read after the sequence is checked.
+            VarHandle.loadLoadFence();
+            // One update started means the other bank is being written, two means this one may
+            // have been.
+            if (seenAprilTagSequence - sequence <= 1) {
+                return copy;
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Rotates the vector (x, y, z) by the unit quaternion (w, qx, qy, qz), storing the result in
+     * {@link #rotatedVector}.
+     */
+    private void rotate(double w, double qx, double qy, double qz, double x, double y, double z) {
+        // v' = v + w * t + q x t, where t = 2 * (q x v)
+        double tx = 2 * (qy * z - qz * y);
+        double ty = 2 * (qz * x - qx * z);
+        double tz = 2 * (qx * y - qy * x);
+        rotatedVector[0] = x + w * tx + (qy * tz - qz * ty);
+        rotatedVector[1] = y + w * ty + (qz * tx - qx * tz);
+        rotatedVector[2] = z + w * tz + (qx * ty - qy * tx);
+    }
+
     /**
      * Updates the field on the passed in {@link VisionSystemSim} with the most recent single-frame
      * pose estimate from this camera.
@@ -223,16 +461,26 @@ public class Camera {
             // other physical sim cameras added, add our poses from this camera to that list, and
             // then set the poses on the field to the combined list.
             List<Pose2d> visibleTargetPoses = simField.getObject("physicalCams/visibleTargetPoses").getPoses();
-            visibleTargetPoses.addAll(
-                // Get a list of Pose2ds from the list of AprilTag Pose3ds.
-                // This won't behave in exactly the same way as the cameras with a PhotonCameraSim
-                // because those poses are shown relative to the "actual" robot position in the
-                // sim, and the seenAprilTagPoses are relative to the estimated robot pose from the
-                // drivetrain because they are not only used in sim (so there sometimes is no known
-                // "actual" position for them to be calculated from), but this difference is really
-                // not important.
-                seenAprilTagPoses.stream().map(Pose3d::toPose2d).toList()
-            );
+            // Add a Pose2d for each of the seen AprilTag poses.
+            // This won't behave in exactly the same way as the cameras with a PhotonCameraSim
+            // because those poses are shown relative to the "actual" robot position in the
+            // sim, and the seen AprilTag poses are relative to the estimated robot pose from the
+            // drivetrain because they are not only used in sim (so there sometimes is no known
+            // "actual" position for them to be calculated from), but this difference is really
+            // not important.
+            simSeenAprilTags = copySeenAprilTags(simSeenAprilTagBank, simSeenAprilTags);
+            double[] poses = simSeenAprilTags.poses;
+            for (int offset = 0; offset < poses.length; offset += POSE_ARRAY_LENGTH) {
+                double w = poses[offset + 3];
+                double x = poses[offset + 4];
+                double y = poses[offset + 5];
+                double z = poses[offset + 6];
+                visibleTargetPoses.add(new Pose2d(
+                    poses[offset],
+                    poses[offset + 1],
+                    new Rotation2d(Math.atan2(2 * (w * z + x * y), 1 - 2 * (y * y + z * z)))
+                ));
+            }
             simField.getObject("physicalCams/visibleTargetPoses").setPoses(visibleTargetPoses);
 
             List<Pose2d> cameras = simField.getObject("physicalCams/cameras").getPoses();
@@ -247,12 +495,14 @@ public class Camera {
      * @param logPath The path to log values under.
      */
     public void setUpPeriodicLogging(String logPath) {
-        GreenLogger.periodicLogList(
-            logPath + "Seen AprilTag Poses", () -> seenAprilTagPoses, Pose3d.class, Pose3d.struct
-        );
-        GreenLogger.periodicLogList(
-            logPath + "Seen AprilTag IDs", () -> seenAprilTagIDs, Integer.class
-        );
+        // Logged as x, y, z, qw, qx, qy, qz for each tag, which AdvantageScope reads as Pose3ds.
+        // The topics are sampled in the order they were added, so the poses are copied once for
+        // both, and the IDs are always from the same pipeline result.
+        GreenLogger.periodicLogDoubleArray(logPath + "Seen AprilTag Poses", () -> {
+            loggedSeenAprilTags = copySeenAprilTags(loggedSeenAprilTagBank, loggedSeenAprilTags);
+            return loggedSeenAprilTags.poses;
+        });
+        GreenLogger.periodicLogLongArray(logPath + "Seen AprilTag IDs", () -> loggedSeenAprilTags.ids);
         GreenLogger.periodicLog(
             logPath + "Latest Pose Estimate", () -> latestPoseEstimate, Pose3d.struct
         );
@@ -261,6 +511,13 @@ public class Camera {
             () -> latestVisionStdDevs,
             Matrix.getStruct(Nat.N3(), Nat.N1())
         );
+        GreenLogger.periodicLogLong(logPath + "Gate Accepted Count", () -> gateAcceptedCount)
+            .publishOnChange();
+        GreenLogger.periodicLogLong(logPath + "Gate Rejected Count", () -> gateRejectedCount)
+            .publishOnChange();
+        GreenLogger.periodicLogDouble(
+            logPath + "Latest Innovation Distance Squared", () -> latestInnovationDistanceSquared
+        );
         GreenLogger.periodicLog(
             logPath + "Camera Pose",
             () -> new Pose3d(BaseRobotState.robotPose).plus(robotToCamera),
@@ -268,6 +525,60 @@ public class Camera {
         );
     }
 
+    /**
+     * The IDs and field relative poses of the AprilTags seen in a pipeline result, in exact length
+     * arrays.
+     * <p>
+     * Poses are flattened as x, y, z in meters and the rotation quaternion w, x, y, z for each
+     * tag. They are calculated by transforming from the camera relative AprilTag pose from the
+     * pipeline result to a robot relative pose using the {@link #robotToCamera} for the {@link
+     * Camera}, and then transforming from the robot relative pose to a field relative pose using
+     * the estimated robot pose on the field from the drivetrain.
+     */
+    private static final class SeenAprilTags {
+        final long[] ids;
+        final double[] poses;
+
+        private SeenAprilTags(int count) {
+            ids = new long[count];
+            poses = new double[count * POSE_ARRAY_LENGTH];
+        }
+
+        /**
+         * @return Buffers for every tag count, indexed by the count.
+         */
+        static SeenAprilTags[] createBank() {
+            var bank = new SeenAprilTags[MAX_SEEN_APRIL_TAGS + 1];
+            for (int count = 0; count <= MAX_SEEN_APRIL_TAGS; count++) {
+                bank[count] = new SeenAprilTags(count);
+            }
+            return bank;
+        }
+    }
+
+    /**
+     * An exponential growth curve for the standard deviations of a vision estimate, in the form
+     * a * b ^ distance, where distance is the distance to the AprilTags used in meters.
+     *
+     * @param a The initial value for each axis (x meters, y meters, theta radians).
+     * @param b The growth factor for each axis (x meters, y meters, theta radians).
+     */
+    public record StdDevCurve(Matrix<N3, N1> a, Matrix<N3, N1> b) {
+        /**
+         * Constructs a {@link StdDevCurve} that uses the same values for the x and y axes.
+         */
+        public StdDevCurve(double xyA, double xyB, double thetaA, double thetaB) {
+            this(VecBuilder.fill(xyA, xyA, thetaA), VecBuilder.fill(xyB, xyB, thetaB));
+        }
+
+        /**
+         * @return The standard deviations at the given distance.
+         */
+        public Matrix<N3, N1> at(double distance) {
+            return a.elementTimes(b.elementPower(distance));
+        }
+    }
+
     /**
      * Types of detection that a {@link Camera} can perform.
      * <p>
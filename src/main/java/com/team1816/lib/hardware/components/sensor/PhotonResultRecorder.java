@@ -0,0 +1,142 @@
+package com.team1816.lib.hardware.components.sensor;
+
+import com.team1816.lib.util.GreenLogger;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import org.photonvision.common.dataflow.structures.Packet;
+import org.photonvision.targeting.PhotonPipelineResult;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records every raw {@link PhotonPipelineResult} a {@link Camera} reads, along with the robot's
+ * pose when it was read, to a compact binary file so vision can be replayed offline with {@link
+ * com.team1816.tools.VisionReplay}.
+ * <p>
+ * The file is big-endian, starting with a header:
+ * <pre>
+ * long    {@link #MAGIC}
+ * int     {@link #VERSION}
+ * UTF     camera name
+ * double  robotToCamera x, y, z (meters) and rotation quaternion w, x, y, z
+ * </pre>
+ * followed by one record per pipeline result until the end of the file:
+ * <pre>
+ * double  result timestamp (FPGA seconds, from {@link PhotonPipelineResult#getTimestampSeconds()})
+ * double  raw odometry (or simulated actual) pose x, y (meters), heading (radians)
+ * double  fused robot pose x, y (meters), heading (radians)
+ * int     result length in bytes
+ * byte[]  result, serialized with {@link PhotonPipelineResult#photonStruct}
+ * </pre>
+ * Results are serialized on the vision worker thread and written to disk on this recorder's own
+ * thread. If the writer falls behind, results are dropped and counted instead of blocking vision.
+ */
+public class PhotonResultRecorder {
+    public static final long MAGIC = 0x3138313656524543L; // "1816VREC"
+    public static final int VERSION = 1;
+
+    private record Frame(
+        double timestampSeconds, Pose2d odometryPose, Pose2d robotPose, byte[] result
+    ) {}
+
+    private final BlockingQueue<Frame> frames = new ArrayBlockingQueue<>(256);
+    private final DataOutputStream output;
+    private final File file;
+    private volatile long droppedCount = 0;
+
+    /**
+     * Creates a recording file for a camera and starts the thread that writes to it.
+     *
+     * @param directory     The directory to create the recording in.
+     * @param cameraName    The name of the camera being recorded.
+     * @param robotToCamera The camera's position on the robot.
+     * @throws IOException If the recording file could not be created.
+     */
+    public PhotonResultRecorder(File directory, String cameraName, Transform3d robotToCamera) throws IOException {
+        file = new File(directory, "vision_" + cameraName + "_" + System.currentTimeMillis() + ".bin");
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        output.writeLong(MAGIC);
+        output.writeInt(VERSION);
+        output.writeUTF(cameraName);
+        output.writeDouble(robotToCamera.getX());
+        output.writeDouble(robotToCamera.getY());
+        output.writeDouble(robotToCamera.getZ());
+        var rotation = robotToCamera.getRotation().getQuaternion();
+        output.writeDouble(rotation.getW());
+        output.writeDouble(rotation.getX());
+        output.writeDouble(rotation.getY());
+        output.writeDouble(rotation.getZ());
+
+        var writer = new Thread(this::writeFrames, "PhotonResultRecorder " + cameraName);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a pipeline result to be written. Call this from the thread reading the camera.
+     *
+     * @param result        The pipeline result, as read from the camera.
+     * @param odometryPose  The raw odometry pose (or simulated actual pose) when it was read.
+     * @param robotPose     The fused robot pose estimate when it was read.
+     */
+    public void record(PhotonPipelineResult result, Pose2d odometryPose, Pose2d robotPose) {
+        var packet = new Packet(256);
+        PhotonPipelineResult.photonStruct.pack(packet, result);
+        if (!frames.offer(
+            new Frame(result.getTimestampSeconds(), odometryPose, robotPose, packet.getWrittenDataCopy())
+        )) {
+            droppedCount++;
+        }
+    }
+
+    /**
+     * @return The number of results dropped because the writer fell behind.
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return The file being recorded to.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    private void writeFrames() {
+        try {
+            while (true) {
+                // Flush whenever the queue runs dry, so a recording cut off by a power loss is
+                // missing at most the last moment.
+                Frame frame = frames.poll(1, TimeUnit.SECONDS);
+                if (frame == null) {
+                    output.flush();
+                    continue;
+                }
+                output.writeDouble(frame.timestampSeconds());
+                writePose(frame.odometryPose());
+                writePose(frame.robotPose());
+                output.writeInt(frame.result().length);
+                output.write(frame.result());
+                if (frames.isEmpty()) {
+                    output.flush();
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            GreenLogger.log("Stopped recording vision to " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void writePose(Pose2d pose) throws IOException {
+        output.writeDouble(pose.getX());
+        output.writeDouble(pose.getY());
+        output.writeDouble(pose.getRotation().getRadians());
+    }
+}
@@ -1,5 +1,6 @@
 package com.team1816.lib.hardware.factory;
 
+import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.CANBus;
 import com.ctre.phoenix6.configs.*;
 import com.ctre.phoenix6.hardware.ParentDevice;
@@ -9,6 +10,7 @@ import com.ctre.phoenix6.swerve.SwerveDrivetrainConstants;
 import com.ctre.phoenix6.swerve.SwerveModuleConstants;
 import com.ctre.phoenix6.swerve.SwerveModuleConstantsFactory;
 import com.pathplanner.lib.path.PathConstraints;
+import com.team1816.lib.Singleton;
 import com.team1816.lib.commands.PathfindToPoseCommand;
 import com.team1816.lib.hardware.*;
 import com.team1816.lib.hardware.components.GhostDevice;
@@ -33,10 +35,13 @@ import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj.RobotBase;
 import org.photonvision.simulation.SimCameraProperties;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static com.team1816.lib.Singleton.factory;
 import static com.team1816.lib.hardware.components.motor.WpiMotorUtil.getModuleName;
@@ -46,9 +51,24 @@ import static com.team1816.lib.util.FormatUtils.GetDisplay;
 public class RobotFactory {
 
     private RobotConfiguration config;
+    private String robotName;
     public boolean robotIsReal; // Use to detect real or simulation public to override for tests
+    private final List<Runnable> tuningListeners = new CopyOnWriteArrayList<>();
+    private TuningFileWatcher tuningFileWatcher;
     private static final int startingGhostId = 50;
     private final Map<String, CANBus> canBusMap = new HashMap<>();
+    private final List<MonitoredDevice> monitoredDevices = new ArrayList<>();
+    // Estimated status frames per second on each bus from devices with a signals section
+    private final Map<String, Double> signalFramesPerSecondByBus = new LinkedHashMap<>();
+    // Devices on each bus without a signals section, which stream every default status frame
+    private final Map<String, Integer> unoptimizedDevicesByBus = new LinkedHashMap<>();
+    // Update frequency for signals read every loop through the SignalRegistry that are not in the signals section
+    private static final double defaultRegisteredSignalFrequencyHz = 50;
+    // Update frequency for slow signals registered with the SignalRegistry, the Phoenix default for faults
+    private static final double defaultSlowSignalFrequencyHz = 4;
+    // Worst case bits in a classic CAN frame with an 8 byte payload, including bit stuffing
+    private static final double bitsPerCanFrame = 130;
+    private static final double classicCanBitrate = 1e6;
 
     /**
      * Initializes robot configuration by using ROBOT_NAME environment variable to read the correct YAML.
@@ -57,7 +77,7 @@ public class RobotFactory {
      */
     public RobotFactory() {
         robotIsReal = RobotBase.isReal();
-        var robotName = System.getenv("ROBOT_NAME");
+        robotName = System.getenv("ROBOT_NAME");
         if (robotName == null) {
             GreenLogger.log("ROBOT_NAME environment variable not defined using test yaml");
             robotName = "test";
@@ -77,6 +97,109 @@ public class RobotFactory {
         return config.constants;
     }
 
+    /**
+     * Adds a listener to call after a tuning file is merged into the configuration, so values read
+     * through this factory can be read again. See {@link #startTuningWatcher()}.
+     * <p>
+     * Listeners are called on the tuning watcher thread, so they shouldn't touch hardware or
+     * state the main loop uses. Instead, they should build whatever needs rebuilding and hand it
+     * to the main loop to swap in all at once.
+     *
+     * @param listener The listener to call after every reload.
+     */
+    public void addTuningListener(Runnable listener) {
+        tuningListeners.add(listener);
+    }
+
+    /**
+     * Starts watching {@code tuning/<robot name>.yml} in the deploy directory. Whenever it changes,
+     * it is merged over the configuration and the tuning listeners are called, so tuning only
+     * takes copying that file to the robot instead of a redeploy and restart. For example, with
+     * {@code scp ztldr.yml lvuser@10.18.16.2:deploy/tuning/}.
+     * <p>
+     * The file is in the same format as the robot YAML, but only needs the values being tuned.
+     * The {@code shooterSettings} and {@code linearMPSToLaunchRPS} tables are replaced if present,
+     * and top level and subsystem constants are merged in. Only values read by a tuning listener
+     * change, everything else still needs a restart. Since the file stays on the robot, it is also
+     * applied every time the robot code starts, until it is deleted.
+     */
+    public void startTuningWatcher() {
+        if (tuningFileWatcher != null || config == null) return;
+        var file = new File(new File(Filesystem.getDeployDirectory(), "tuning"), robotName + ".yml");
+        tuningFileWatcher = new TuningFileWatcher(file, this::applyTuning);
+        tuningFileWatcher.start();
+    }
+
+    /**
+     * Merges a tuning file over the configuration and calls the tuning listeners. Every change is
+     * a single reference swap, so anything reading the configuration at the same time sees either
+     * the old or the new value, never part of a map being updated.
+     */
+    private void applyTuning(RobotConfiguration tuning) {
+        int changedCount = 0;
+        if (tuning.shooterSettings != null) {
+            config.shooterSettings = tuning.shooterSettings;
+            changedCount++;
+        }
+        if (tuning.linearMPSToLaunchRPS != null) {
+            config.linearMPSToLaunchRPS = tuning.linearMPSToLaunchRPS;
+            changedCount++;
+        }
+        if (tuning.constants != null) {
+            config.constants = mergeConstants(config.constants, tuning.constants);
+            changedCount += tuning.constants.size();
+        }
+        if (tuning.subsystems != null) {
+            for (var entry : tuning.subsystems.entrySet()) {
+                var subsystem = config.subsystems.get(entry.getKey());
+                if (subsystem == null || entry.getValue() == null || entry.getValue().constants == null) {
+                    continue;
+                }
+                subsystem.constants = mergeConstants(subsystem.constants, entry.getValue().constants);
+                changedCount += entry.getValue().constants.size();
+            }
+        }
+        GreenLogger.log("Tuned " + changedCount + " values, reloading " + tuningListeners.size() + " listeners");
+
+        for (Runnable listener : tuningListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                GreenLogger.log("Tuning listener failed, keeping its previous values: " + e.getMessage());
+            }
+        }
+    }
+
+    private static Map<String, Double> mergeConstants(Map<String, Double> constants, Map<String, Double> tuned) {
+        var merged = constants == null ? new HashMap<String, Double>() : new HashMap<>(constants);
+        merged.putAll(tuned);
+        return merged;
+    }
+
+    /**
+     * @return Every {@link CANBus} a device has been created on so far, including the ghost bus.
+     */
+    public Collection<CANBus> getCanBuses() {
+        return Collections.unmodifiableCollection(canBusMap.values());
+    }
+
+    /**
+     * @return Every non-ghost device created so far that has status signals, in the order they
+     * were created.
+     */
+    public List<MonitoredDevice> getMonitoredDevices() {
+        return Collections.unmodifiableList(monitoredDevices);
+    }
+
+    /**
+     * A device created by the factory, with the signals {@link CanBusMonitor} tracks the age of.
+     *
+     * @param logPath The log path of the device (for example, {@code "shooter/turretMotor/"}).
+     * @param bus     The {@link CANBus} the device is on.
+     * @param signals The signals whose age is tracked.
+     */
+    public record MonitoredDevice(String logPath, CANBus bus, BaseStatusSignal[] signals) {}
+
     public SubsystemConfig getSubsystemConfig(String subsystemName) {
         var subsystem = config.subsystems.get(subsystemName);
         if (subsystem == null) {
@@ -277,14 +400,6 @@ public class RobotFactory {
         // if subsystem is not implemented we don't need anything from it
         if (!subsystem.implemented) return new ArrayList<>();
 
-        // TODO: Make the simCameraProperties in YAML hold the actual values we need.
-        var cameraProp = new SimCameraProperties();
-        cameraProp.setCalibration(960, 720, Rotation2d.fromDegrees(90));
-        cameraProp.setCalibError(0.35, 0.10);
-        cameraProp.setFPS(15);
-        cameraProp.setAvgLatencyMs(50);
-        cameraProp.setLatencyStdDevMs(15);
-
         List<Camera> cameras = new ArrayList<>();
         for (Map.Entry<String, CameraConfiguration> entry : subsystem.cameras.entrySet()) {
             try {
@@ -304,7 +419,17 @@ public class RobotFactory {
                                 ", yawDegrees=" + robotToCam.yawDegrees
                         );
                         GreenLogger.log("  detectionType: " + cameraConfig.detectionType);
-                        GreenLogger.log("  simCameraProperties: " + cameraConfig.simCameraProperties);
+                        SimCameraConfig simConfig = cameraConfig.simCameraProperties != null
+                            ? cameraConfig.simCameraProperties
+                            : new SimCameraConfig();
+                        SimCameraProperties cameraProp = getSimCameraProperties(simConfig);
+                        GreenLogger.log(
+                            "  simCameraProperties: " + cameraProp.getResWidth() + "x" + cameraProp.getResHeight() +
+                                ", diagonalFovDegrees=" + cameraProp.getDiagFOV().getDegrees() +
+                                ", fps=" + cameraProp.getFPS() +
+                                ", avgLatencyMs=" + cameraProp.getAvgLatencyMs() +
+                                ", enableStreams=" + simConfig.enableStreams
+                        );
                         GreenLogger.log("  simulateWithPhysicalCamera: " + cameraConfig.simulateWithPhysicalCamera);
 
                         Camera camera = new Camera(
@@ -324,8 +449,13 @@ public class RobotFactory {
                             ),
                             cameraConfig.detectionType,
                             cameraProp,
+                            Boolean.TRUE.equals(simConfig.enableStreams),
                             cameraConfig.simulateWithPhysicalCamera
                         );
+                        camera.singleTagStdDevCurve = getStdDevCurve(cameraConfig.singleTagStdDevs);
+                        camera.multiTagStdDevCurve = getStdDevCurve(cameraConfig.multiTagStdDevs);
+                        GreenLogger.log("  singleTagStdDevs: " + camera.singleTagStdDevCurve);
+                        GreenLogger.log("  multiTagStdDevs: " + camera.multiTagStdDevCurve);
 
                         cameras.add(camera);
 
@@ -341,6 +471,46 @@ public class RobotFactory {
         return cameras;
     }
 
+    /**
+     * Builds the {@link SimCameraProperties} for a camera from its configuration. Any value that
+     * isn't configured uses our defaults for a 960x720, 90 degree, 15 FPS camera.
+     */
+    private SimCameraProperties getSimCameraProperties(SimCameraConfig config) {
+        var cameraProp = new SimCameraProperties();
+        cameraProp.setCalibration(
+            config.resolutionWidth != null ? config.resolutionWidth : 960,
+            config.resolutionHeight != null ? config.resolutionHeight : 720,
+            Rotation2d.fromDegrees(config.diagonalFovDegrees != null ? config.diagonalFovDegrees : 90)
+        );
+        cameraProp.setCalibError(
+            config.avgCalibrationErrorPixels != null ? config.avgCalibrationErrorPixels : 0.35,
+            config.calibrationErrorStdDevPixels != null ? config.calibrationErrorStdDevPixels : 0.10
+        );
+        double fps = config.fps != null ? config.fps : 15;
+        if (fps <= 0) {
+            throw new IllegalArgumentException("Sim camera fps must be positive");
+        }
+        cameraProp.setFPS(fps);
+        cameraProp.setAvgLatencyMs(config.avgLatencyMs != null ? config.avgLatencyMs : 50);
+        cameraProp.setLatencyStdDevMs(config.latencyStdDevMs != null ? config.latencyStdDevMs : 15);
+        return cameraProp;
+    }
+
+    /**
+     * Converts a camera's standard deviation curve configuration to a {@link Camera.StdDevCurve}.
+     *
+     * @return The curve, or null if the configuration is missing or incomplete, in which case the
+     * camera uses the default curve from {@link com.team1816.lib.subsystems.Vision}.
+     */
+    public static Camera.StdDevCurve getStdDevCurve(StdDevCurveConfig config) {
+        if (config == null) return null;
+        if (config.xyA == null || config.xyB == null || config.thetaA == null || config.thetaB == null) {
+            GreenLogger.log("  Ignoring incomplete standard deviation curve, xyA, xyB, thetaA, and thetaB are required");
+            return null;
+        }
+        return new Camera.StdDevCurve(config.xyA, config.xyB, config.thetaA, config.thetaB);
+    }
+
     /**
      * Constructs a swerve drivetrain from the YAML configuration for the provided subsystem.
      *
@@ -418,14 +588,156 @@ public class RobotFactory {
             default -> GreenLogger.log("Device type " + deviceConfig.deviceType + " not implemented");
         }
         var parentConfig = getCTREConfig(subsystemConfig, deviceConfig);
+        var logPath = subsystemConfig.name + "/" + deviceConfig.name + "/";
         if (parentConfig != null) {
-            var logPath = subsystemConfig.name + "/" + deviceConfig.name + "/";
             // apply the configuration
             devInst.applyConfiguration(parentConfig, logPath, logDetails);
         }
+        // before applying frequencies, so the monitored signals keep streaming
+        addMonitoredDevice(devInst, logPath, canbus);
+        applySignalFrequencies(devInst, deviceConfig, subsystemConfig, canbus);
         return devInst;
     }
 
+    /**
+     * Picks the signals {@link CanBusMonitor} tracks the age of for a device: the signals it
+     * registered to be read every loop, or if it registered none, its supply voltage, which is
+     * then refreshed every loop as a slow signal. Phoenix 5 devices have no status signals, so
+     * they aren't monitored.
+     */
+    private void addMonitoredDevice(IPhoenix6 devInst, String logPath, CANBus canbus) {
+        // ghost devices never receive anything, so their signals are always stale
+        if (canbus.getName().equals("ghost")) return;
+        var signalRegistry = Singleton.get(SignalRegistry.class);
+        var signals = new ArrayList<BaseStatusSignal>();
+        for (var registration : signalRegistry.getRegistrations()) {
+            if (!registration.waited() || registration.bus() != canbus) continue;
+            if (!registration.logPath().equals(logPath)) continue;
+            Collections.addAll(signals, registration.signals());
+        }
+        if (signals.isEmpty() && devInst instanceof ParentDevice device) {
+            var supplyVoltage = getStatusSignal(device, "supplyVoltage");
+            if (supplyVoltage != null) {
+                signalRegistry.registerSlow(logPath, canbus, supplyVoltage);
+                signals.add(supplyVoltage);
+            }
+        }
+        if (signals.isEmpty()) return;
+        monitoredDevices.add(new MonitoredDevice(logPath, canbus, signals.toArray(new BaseStatusSignal[0])));
+    }
+
+    /**
+     * Applies the status signal update frequencies from the signals section of a device's YAML
+     * configuration, then turns off every other status frame the device would stream with
+     * {@link ParentDevice#optimizeBusUtilization()}.
+     * <p>
+     * Each key in the signals section is the name of a signal getter on the device without the
+     * {@code get} prefix (for example, {@code velocity} for {@code getVelocity()}), and each value
+     * is the update frequency in Hz. Signals the device registered with the {@link SignalRegistry}
+     * are always kept at {@link #defaultRegisteredSignalFrequencyHz} or faster, so the values read
+     * every loop never go stale, and slow signals at {@link #defaultSlowSignalFrequencyHz} or
+     * faster, so optimizing doesn't turn them off.
+     * <p>
+     * Devices without a signals section are left streaming their default status frames.
+     */
+    private void applySignalFrequencies(
+        IPhoenix6 devInst, DeviceConfiguration deviceConfig, SubsystemConfig subsystemConfig, CANBus canbus
+    ) {
+        var busName = canbus.getName();
+        if (deviceConfig.signals == null || !(devInst instanceof ParentDevice device)) {
+            if (devInst != null) {
+                unoptimizedDevicesByBus.merge(busName, 1, Integer::sum);
+            }
+            return;
+        }
+        var logPath = subsystemConfig.name + "/" + deviceConfig.name + "/";
+        var frequencies = new IdentityHashMap<BaseStatusSignal, Double>();
+
+        // keep the signals read every loop updating
+        for (var registration : Singleton.get(SignalRegistry.class).getRegistrations()) {
+            if (!registration.logPath().equals(logPath) || registration.bus() != canbus) continue;
+            for (var signal : registration.signals()) {
+                frequencies.put(
+                    signal, registration.waited() ? defaultRegisteredSignalFrequencyHz : defaultSlowSignalFrequencyHz
+                );
+            }
+        }
+
+        for (var entry : deviceConfig.signals.entrySet()) {
+            var signal = getStatusSignal(device, entry.getKey());
+            if (signal == null) {
+                GreenLogger.log("  Unknown signal " + entry.getKey() + " for " + deviceConfig.name);
+                continue;
+            }
+            // registered signals can only be sped up, never slowed down
+            frequencies.merge(signal, entry.getValue(), Math::max);
+        }
+
+        double framesPerSecond = 0;
+        for (var entry : frequencies.entrySet()) {
+            var status = entry.getKey().setUpdateFrequency(entry.getValue());
+            if (!status.isOK()) {
+                GreenLogger.log("  Failed to set " + entry.getKey().getName() + " to " + entry.getValue() + "Hz: " + status);
+            }
+            framesPerSecond += entry.getValue();
+        }
+
+        var status = device.optimizeBusUtilization();
+        if (!status.isOK()) {
+            GreenLogger.log("  Failed to optimize bus utilization for " + deviceConfig.name + ": " + status);
+        }
+        GreenLogger.log("  signals: " + deviceConfig.signals);
+        signalFramesPerSecondByBus.merge(busName, framesPerSecond, Double::sum);
+    }
+
+    /**
+     * Looks up a status signal on a device by the name of its getter without the {@code get}
+     * prefix, for example {@code supplyCurrent} for {@code getSupplyCurrent(boolean)}.
+     *
+     * @return The status signal, or null if the device has no such signal.
+     */
+    private BaseStatusSignal getStatusSignal(ParentDevice device, String signalName) {
+        if (signalName == null || signalName.isEmpty()) return null;
+        var getterName = "get" + Character.toUpperCase(signalName.charAt(0)) + signalName.substring(1);
+        try {
+            Object signal;
+            try {
+                // don't refresh, we only want the signal object
+                signal = device.getClass().getMethod(getterName, boolean.class).invoke(device, false);
+            } catch (NoSuchMethodException e) {
+                signal = device.getClass().getMethod(getterName).invoke(device);
+            }
+            return signal instanceof BaseStatusSignal statusSignal ? statusSignal : null;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Logs the estimated utilization of each CAN bus from the status signal update frequencies
+     * applied from YAML.
+     * <p>
+     * This assumes every signal is sent in its own classic CAN frame at 1 Mbit/s, so it is an
+     * upper bound; Phoenix packs several signals into one frame when they share an update
+     * frequency, and CAN FD buses send the data at a higher bitrate. Devices without a signals
+     * section are not included in the estimate, since they stream every default status frame.
+     */
+    public void logEstimatedBusUtilization() {
+        var busNames = new LinkedHashSet<String>();
+        busNames.addAll(signalFramesPerSecondByBus.keySet());
+        busNames.addAll(unoptimizedDevicesByBus.keySet());
+        for (var busName : busNames) {
+            if (busName.equals("ghost")) continue;
+            double framesPerSecond = signalFramesPerSecondByBus.getOrDefault(busName, 0.0);
+            double utilization = framesPerSecond * bitsPerCanFrame / classicCanBitrate;
+            GreenLogger.log(
+                "CAN bus \"" + busName + "\" estimated utilization from configured signals: " +
+                    GetDisplay(utilization * 100) + "% (" + GetDisplay(framesPerSecond) + " frames/s), " +
+                    unoptimizedDevicesByBus.getOrDefault(busName, 0) + " devices streaming default signals"
+            );
+        }
+    }
+
     /**
      * Takes YAML Device configuration and creates a CTRE configuration object
      */
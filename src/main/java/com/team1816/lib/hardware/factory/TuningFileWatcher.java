@@ -0,0 +1,86 @@
+package com.team1816.lib.hardware.factory;
+
+import com.team1816.lib.hardware.RobotConfiguration;
+import com.team1816.lib.util.GreenLogger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Watches a tuning YAML file and hands it to a consumer every time it changes, so values can be
+ * tuned without redeploying and restarting the robot code.
+ * <p>
+ * The file is polled on its own daemon thread, so the consumer is called from that thread. A change
+ * is only loaded once the file has stopped changing for a poll, so a file caught halfway through
+ * being copied isn't loaded. A file that fails to parse is logged and skipped, and is tried again
+ * the next time it changes.
+ */
+public class TuningFileWatcher {
+    private static final long POLL_MILLISECONDS = 500;
+
+    private final File file;
+    private final Consumer<RobotConfiguration> onChange;
+    private long lastModified = 0;
+    private long changedModified = 0;
+
+    /**
+     * Constructs a {@link TuningFileWatcher}. Call {@link #start()} to start watching.
+     *
+     * @param file     The tuning file. It is in the same format as the robot YAML, but only needs
+     *                 the values being tuned. It doesn't need to exist yet.
+     * @param onChange Called with the parsed file when it is first found and every time it
+     *                 changes after that.
+     */
+    public TuningFileWatcher(File file, Consumer<RobotConfiguration> onChange) {
+        this.file = file;
+        this.onChange = onChange;
+    }
+
+    /**
+     * Starts watching the file on a daemon thread.
+     */
+    public void start() {
+        GreenLogger.log("Watching " + file + " for tuning");
+        var watcher = new Thread(this::watch, "TuningFileWatcher");
+        watcher.setDaemon(true);
+        watcher.setPriority(Thread.MIN_PRIORITY);
+        watcher.start();
+    }
+
+    private void watch() {
+        while (true) {
+            // lastModified is 0 if the file doesn't exist.
+            long modified = file.lastModified();
+            if (modified != 0 && modified != lastModified) {
+                if (modified == changedModified) {
+                    lastModified = modified;
+                    load();
+                } else {
+                    // Wait for the next poll to see if it is still being written.
+                    changedModified = modified;
+                }
+            }
+            try {
+                Thread.sleep(POLL_MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void load() {
+        RobotConfiguration tuning;
+        try (InputStream input = new FileInputStream(file)) {
+            tuning = YamlConfig.loadFrom(input);
+        } catch (Exception e) {
+            GreenLogger.log("Couldn't read tuning from " + file + ": " + e.getMessage());
+            return;
+        }
+        // An empty file parses to null.
+        if (tuning == null) return;
+        GreenLogger.log("Reloading tuning from " + file);
+        onChange.accept(tuning);
+    }
+}
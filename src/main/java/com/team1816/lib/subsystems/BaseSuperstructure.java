@@ -3,15 +3,13 @@ package com.team1816.lib.subsystems;
 import com.team1816.lib.BaseRobotState;
 import com.team1816.lib.subsystems.drivetrain.Swerve;
 import edu.wpi.first.math.Matrix;
-import edu.wpi.first.math.Pair;
 import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
-import org.photonvision.EstimatedRobotPose;
 
-import java.util.List;
+import java.util.function.Consumer;
 
 import static com.team1816.lib.BaseConstants.DrivetrainConstants.defaultStateStdDevs;
 
@@ -31,9 +29,17 @@ public abstract class BaseSuperstructure extends SubsystemBase {
      */
     private Matrix<N3, N1> visionEstimateSincePoseLossVarianceSum = VecBuilder.fill(0, 0, 0);
 
+    /**
+     * {@link #addVisionMeasurement(VisionMeasurementQueue.VisionMeasurement)} bound once, so
+     * draining vision measurements every loop doesn't allocate.
+     */
+    private final Consumer<VisionMeasurementQueue.VisionMeasurement> addVisionMeasurement =
+        this::addVisionMeasurement;
+
     protected BaseSuperstructure(Swerve swerve, Vision vision) {
         this.swerve = swerve;
         this.vision = vision;
+        vision.startProcessing(swerve::samplePoseAt, swerve::getStateStdDevs);
     }
 
     @Override
@@ -48,9 +54,8 @@ public abstract class BaseSuperstructure extends SubsystemBase {
      * lost wheel contact with the ground or are driving over an uneven surface, and therefore our
      * pose estimate (which includes wheel odometry) will no longer be accurate.
      *
-     * Synchronized because {@link #addVisionMeasurementsToDrivetrain()} runs on the vision thread
-     * and both methods access {@code goodVisionEstimatesSincePoseLoss} and
-     * {@link BaseRobotState#hasAccuratePoseEstimate}.
+     * This runs on the main robot thread, the same as {@link #addVisionMeasurementsToDrivetrain()},
+     * so they can share {@code goodVisionEstimatesSincePoseLoss} without locking.
      */
     private void handlePoseLossFromTilting() {
         // The threshold of how far the robot can be tilted before we decide we don't have an
@@ -66,90 +71,88 @@ public abstract class BaseSuperstructure extends SubsystemBase {
     }
 
     /**
-     * Updates the drivetrain's pose estimate by passing in unread vision pose estimates from the
-     * {@link Vision} subsystem. Also handles deciding when we have gotten enough good vision
-     * estimates to be confident in our combined pose estimate again after losing pose.
-     *
-     * Synchronized because this method is called from the vision thread (via
-     * {@link com.team1816.lib.BaseRobot}'s addPeriodic) while {@link #handlePoseLossFromTilting()}
-     * runs on the main robot thread. Both methods read/write shared state
-     * ({@code goodVisionEstimatesSincePoseLoss}, {@code visionEstimateSincePoseLossVarianceSum},
-     * and {@link BaseRobotState#hasAccuratePoseEstimate}).
+     * Updates the drivetrain's pose estimate by passing in the vision pose estimates finished by
+     * the {@link Vision} worker thread since the last call. Also handles deciding when we have
+     * gotten enough good vision estimates to be confident in our combined pose estimate again
+     * after losing pose.
+     * <p>
+     * This must be called from the main robot thread (via {@link com.team1816.lib.BaseRobot}'s
+     * addPeriodic). The slow part of vision (decoding camera results and estimating poses) already
+     * happened on the vision worker thread, so this only adds the finished measurements.
      */
     public void addVisionMeasurementsToDrivetrain() {
-        List<Pair<EstimatedRobotPose, Matrix<N3, N1>>> visionMeasurements = vision
-            .getVisionEstimatedPosesWithStdDevs(swerve::samplePoseAt);
-
-        for (Pair<EstimatedRobotPose, Matrix<N3, N1>> visionMeasurement : visionMeasurements) {
-            Matrix<N3, N1> visionStdDevs = visionMeasurement.getSecond();
-
-            if (!BaseRobotState.hasAccuratePoseEstimate && goodVisionEstimatesSincePoseLoss == 0) {
-                // If we just lost pose and haven't had any good vision estimates since, assume
-                // very little trust in the current state estimate. This will essentially make the
-                // next vision measurement added set the pose almost completely.
-                swerve.setStateStdDevs(
-                    VecBuilder.fill(1000, 1000, 1000)
-                );
-                // Set the sum of the vision estimate variances to zero for performing state
-                // standard deviation calculations.
-                visionEstimateSincePoseLossVarianceSum = VecBuilder.fill(0, 0, 0);
-            }
+        vision.drainMeasurements(addVisionMeasurement);
+    }
+
+    private void addVisionMeasurement(VisionMeasurementQueue.VisionMeasurement visionMeasurement) {
+        Matrix<N3, N1> visionStdDevs = visionMeasurement.getStdDevs();
 
-            // Add the vision measurements to the drivetrain.
-            swerve.addVisionMeasurement(
-                visionMeasurement.getFirst().estimatedPose.toPose2d(),
-                visionMeasurement.getFirst().timestampSeconds,
-                visionStdDevs
+        if (!BaseRobotState.hasAccuratePoseEstimate && goodVisionEstimatesSincePoseLoss == 0) {
+            // If we just lost pose and haven't had any good vision estimates since, assume
+            // very little trust in the current state estimate. This will essentially make the
+            // next vision measurement added set the pose almost completely.
+            swerve.setStateStdDevs(
+                VecBuilder.fill(1000, 1000, 1000)
             );
+            // Set the sum of the vision estimate variances to zero for performing state
+            // standard deviation calculations.
+            visionEstimateSincePoseLossVarianceSum = VecBuilder.fill(0, 0, 0);
+        }
 
-            // If we don't currently have a good pose estimate and the vision pose estimate that
-            // we just added to the state estimate was good enough, increase our trust in the state
-            // estimate and increment our counter toward deciding if we have a good enough estimate
-            // again.
-
-            // The maximum x and y standard deviations to allow for a vision estimate to count it
-            // as trustworthy enough to work toward reestablishing our pose estimate.
-            final double maxTrustworthyTranslationStdDev = 1.0;
-            // The maximum rotation standard deviations to allow for a vision estimate to count it
-            // as trustworthy enough to work toward reestablishing our pose estimate.
-            final double maxTrustworthyRotationStdDev = Units.degreesToRadians(5);
-
-            if (
-                !BaseRobotState.hasAccuratePoseEstimate
-                    && visionStdDevs.get(0, 0) <= maxTrustworthyTranslationStdDev
-                    && visionStdDevs.get(1, 0) <= maxTrustworthyTranslationStdDev
-                    && visionStdDevs.get(2, 0) <= maxTrustworthyRotationStdDev
-            ) {
-                goodVisionEstimatesSincePoseLoss += 1;
-
-                // The minimum number of good vision pose estimates to wait for until we decide we
-                // are confident in our pose estimate again.
-                final int minGoodPoseEstimatesUntilConfident = 8;
-
-                // If we've gotten enough good vision pose estimates since losing pose, we know
-                // where we are again.
-                if (goodVisionEstimatesSincePoseLoss >= minGoodPoseEstimatesUntilConfident) {
-                    BaseRobotState.hasAccuratePoseEstimate = true;
-                    goodVisionEstimatesSincePoseLoss = 0;
-                    // Once we know where we are, set the state standard deviations of the estimate
-                    // back to their defaults.
-                    swerve.setStateStdDevs(defaultStateStdDevs);
-                }
-                // If we haven't gotten enough good vision pose estimates yet, increase our trust
-                // in the state estimate based on the good estimates we've gotten so far.
-                else {
-                    // If we treat the state pose estimate as the average of each of the vision pose
-                    // estimates since losing pose (the sum of the pose estimates over the number of
-                    // pose estimates added), then according to statistics, the standard deviation
-                    // should be the square root of the sum of the variances (standard deviations
-                    // squared) over the number of pose estimates.
-                    visionEstimateSincePoseLossVarianceSum = visionEstimateSincePoseLossVarianceSum
-                        .plus(visionStdDevs.elementTimes(visionStdDevs));
-                    var stateStdDev = visionEstimateSincePoseLossVarianceSum
-                        .elementPower(0.5)
-                        .div(goodVisionEstimatesSincePoseLoss);
-                    swerve.setStateStdDevs(stateStdDev);
-                }
+        // Add the vision measurements to the drivetrain.
+        swerve.addVisionMeasurement(
+            visionMeasurement.getPose(),
+            visionMeasurement.getTimestampSeconds(),
+            visionStdDevs
+        );
+
+        // If we don't currently have a good pose estimate and the vision pose estimate that
+        // we just added to the state estimate was good enough, increase our trust in the state
+        // estimate and increment our counter toward deciding if we have a good enough estimate
+        // again.
+
+        // The maximum x and y standard deviations to allow for a vision estimate to count it
+        // as trustworthy enough to work toward reestablishing our pose estimate.
+        final double maxTrustworthyTranslationStdDev = 1.0;
+        // The maximum rotation standard deviations to allow for a vision estimate to count it
+        // as trustworthy enough to work toward reestablishing our pose estimate.
+        final double maxTrustworthyRotationStdDev = Units.degreesToRadians(5);
+
+        if (
+            !BaseRobotState.hasAccuratePoseEstimate
+                && visionStdDevs.get(0, 0) <= maxTrustworthyTranslationStdDev
+                && visionStdDevs.get(1, 0) <= maxTrustworthyTranslationStdDev
+                && visionStdDevs.get(2, 0) <= maxTrustworthyRotationStdDev
+        ) {
+            goodVisionEstimatesSincePoseLoss += 1;
+
+            // The minimum number of good vision pose estimates to wait for until we decide we
+            // are confident in our pose estimate again.
+            final int minGoodPoseEstimatesUntilConfident = 8;
+
+            // If we've gotten enough good vision pose estimates since losing pose, we know
+            // where we are again.
+            if (goodVisionEstimatesSincePoseLoss >= minGoodPoseEstimatesUntilConfident) {
+                BaseRobotState.hasAccuratePoseEstimate = true;
+                goodVisionEstimatesSincePoseLoss = 0;
+                // Once we know where we are, set the state standard deviations of the estimate
+                // back to their defaults.
+                swerve.setStateStdDevs(defaultStateStdDevs);
+            }
+            // If we haven't gotten enough good vision pose estimates yet, increase our trust
+            // in the state estimate based on the good estimates we've gotten so far.
+            else {
+                // If we treat the state pose estimate as the average of each of the vision pose
+                // estimates since losing pose (the sum of the pose estimates over the number of
+                // pose estimates added), then according to statistics, the standard deviation
+                // should be the square root of the sum of the variances (standard deviations
+                // squared) over the number of pose estimates.
+                visionEstimateSincePoseLossVarianceSum = visionEstimateSincePoseLossVarianceSum
+                    .plus(visionStdDevs.elementTimes(visionStdDevs));
+                var stateStdDev = visionEstimateSincePoseLossVarianceSum
+                    .elementPower(0.5)
+                    .div(goodVisionEstimatesSincePoseLoss);
+                swerve.setStateStdDevs(stateStdDev);
             }
         }
     }
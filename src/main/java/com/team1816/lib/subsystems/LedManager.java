@@ -9,6 +9,7 @@ import com.team1816.lib.events.PubSubConsumer;
 import com.team1816.lib.hardware.components.IPhoenix6;
 import com.team1816.lib.hardware.components.led.CANifierImpl;
 import com.team1816.lib.util.GreenLogger;
+import com.team1816.lib.util.LoopProfiler;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
@@ -23,6 +24,7 @@ public class LedManager extends SubsystemBase implements ITestableSubsystem {
     public static class RobotLEDStateEvent extends PubSubConsumer<LEDControlState>{}
 
     public static final String NAME = "ledManager";
+    private final LoopProfiler.Phase periodicPhase = LoopProfiler.phase(NAME + "/periodic");
 
     private static final int MAX = (int) factory.getConstant(NAME, "maxLevel", 255);
     private static final int LED_COUNT = (int) factory.getConstant(NAME, "ledCount", 8);
@@ -104,6 +106,12 @@ public class LedManager extends SubsystemBase implements ITestableSubsystem {
 
     @Override
     public void periodic() {
+        try (var ignored = periodicPhase.start()) {
+            updatePeriodic();
+        }
+    }
+
+    private void updatePeriodic() {
         if (controlState == LEDControlState.BLINK && System.currentTimeMillis() >= lastWriteTime + (period / 2)) {
             outputsChanged = true;
         }
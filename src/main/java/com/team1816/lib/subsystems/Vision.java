@@ -3,30 +3,35 @@ package com.team1816.lib.subsystems;
 import com.team1816.lib.BaseRobotState;
 import com.team1816.lib.hardware.components.sensor.Camera;
 import com.team1816.lib.util.GreenLogger;
+import com.team1816.lib.util.LoopProfiler;
 import com.team1816.lib.util.RectangularBoundingBox;
 import com.team1816.season.Robot;
 import com.team1816.season.RobotState;
 import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.Matrix;
-import edu.wpi.first.math.Pair;
 import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.geometry.Pose2d;
-import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.units.measure.Distance;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import org.photonvision.EstimatedRobotPose;
 import org.photonvision.PhotonPoseEstimator;
 import org.photonvision.simulation.VisionSystemSim;
 import org.photonvision.targeting.PhotonTrackedTarget;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static com.team1816.lib.BaseConstants.VisionConstants.*;
 import static com.team1816.lib.Singleton.factory;
@@ -41,7 +46,8 @@ import static edu.wpi.first.units.Units.Inches;
  * We use <a href="https://docs.photonvision.org/">PhotonVision</a> for vision processing.
  */
 public class Vision extends SubsystemBase implements ITestableSubsystem {
-    private static final String NAME = "vision";
+    public static final String NAME = "vision";
+    private final LoopProfiler.Phase simulationPhase = LoopProfiler.phase(NAME + "/simulation");
     /**
      * All cameras in the Vision subsystem.
      */
@@ -51,32 +57,41 @@ public class Vision extends SubsystemBase implements ITestableSubsystem {
      */
     private final List<Camera> aprilTagCameras;
     private VisionSystemSim visionSim;
+    /**
+     * Renders the simulated cameras off of the main robot thread, see {@link #updateSimulation()}.
+     */
+    private Notifier simulationWorker;
+    /**
+     * If any camera uses a physical camera in the sim, which needs its targets drawn on the sim
+     * field by hand.
+     */
+    private boolean hasPhysicalSimCameras;
     // TODO: Find and set values for singleTagStdDevs a and b. Currently just using the multi-tag
     //  values and multiplying a by three.
     /**
      * The initial value, a, for the standard deviation exponential growth formula (in the form a *
      * b ^ distance) to use for non-multi-tag estimates. (x meters, y meters, theta radians)
      */
-    private final Matrix<N3, N1> singleTagStdDevsA = VecBuilder.fill(0.00149636 * 3, 0.00149636 * 3, 0.00128821 * 3);
+    private static final Matrix<N3, N1> singleTagStdDevsA = VecBuilder.fill(0.00149636 * 3, 0.00149636 * 3, 0.00128821 * 3);
     /**
      * The growth factor, b, for the standard deviation exponential growth formula (in the form a *
      * b ^ distance) to use for non-multi-tag estimates. (x meters, y meters, theta radians)
      */
-    private final Matrix<N3, N1> singleTagStdDevsB = VecBuilder.fill(2.08045, 2.08045, 1.59073);
+    private static final Matrix<N3, N1> singleTagStdDevsB = VecBuilder.fill(2.08045, 2.08045, 1.59073);
     /**
      * The initial value, a, for the standard deviation exponential growth formula (in the form a *
      * b ^ distance) to use for multi-tag estimates. (x meters, y meters, theta radians)
      */
-    private final Matrix<N3, N1> multiTagStdDevsA = VecBuilder.fill(0.00149636, 0.00149636, 0.00128821);
+    private static final Matrix<N3, N1> multiTagStdDevsA = VecBuilder.fill(0.00149636, 0.00149636, 0.00128821);
     /**
      * The growth factor, b, for the standard deviation exponential growth formula (in the form a *
      * b ^ distance) to use for multi-tag estimates. (x meters, y meters, theta radians)
      */
-    private final Matrix<N3, N1> multiTagStdDevsB = VecBuilder.fill(2.08045, 2.08045, 1.59073);
+    private static final Matrix<N3, N1> multiTagStdDevsB = VecBuilder.fill(2.08045, 2.08045, 1.59073);
     /**
      * The standard deviations to use for an estimate that we should just throw out
      */
-    private final Matrix<N3, N1> noTrustStdDevs = VecBuilder.fill(
+    private static final Matrix<N3, N1> noTrustStdDevs = VecBuilder.fill(
         Double.NaN, Double.NaN, Double.NaN
     );
     /**
@@ -84,11 +99,78 @@ public class Vision extends SubsystemBase implements ITestableSubsystem {
      * from the combined pose estimate.
      */
     private int consecutiveDiscardedEstimates = 0;
+    /**
+     * Hands finished measurements from the vision worker thread to the main robot thread.
+     */
+    private final VisionMeasurementQueue measurementQueue = new VisionMeasurementQueue(64);
+    /**
+     * How often the vision worker thread checks the cameras for new results, in seconds.
+     */
+    private final double workerPeriodSeconds = factory.getConstant(NAME, "workerPeriodSeconds", 0.01);
+    /**
+     * Measurements accepted this cycle, copied out of the queue to be sorted and fused.
+     */
+    private final VisionMeasurementQueue.VisionMeasurement[] mergeBuffer =
+        new VisionMeasurementQueue.VisionMeasurement[measurementQueue.getCapacity()];
+    /**
+     * The maximum time between measurements from different cameras to fuse them, in seconds.
+     */
+    private final double fusionWindowSeconds = factory.getConstant(NAME, "fusionWindowSeconds", 0, false);
+    private long fusedMeasurementCount = 0;
+    private Notifier visionWorker;
+    private Function<Double, Optional<Pose2d>> samplePoseAtTimestampFunction;
+    private Supplier<Matrix<N3, N1>> stateStdDevsSupplier;
+    /**
+     * The default {@code innovationGate}, the 99% point of the chi-squared distribution with three
+     * degrees of freedom.
+     */
+    public static final double DEFAULT_INNOVATION_GATE = 11.34;
+    /**
+     * The largest squared Mahalanobis distance of a measurement's innovation to accept it, see
+     * {@link #calculateInnovationDistanceSquared}.
+     */
+    private final double innovationGate = factory.getConstant(NAME, "innovationGate", DEFAULT_INNOVATION_GATE);
+    /**
+     * The maximum difference the angle of a vision pose estimate can be from the angle of the
+     * current robot pose estimate to allow the vision estimate to be used.
+     */
+    private static final double visionEstimateAngleThresholdRadians = Units.degreesToRadians(5.0);
+    /**
+     * Reused for every estimate by {@link #filterEstimate}. Only used on the vision worker thread.
+     */
+    private final EstimateFilterResult filterResult = new EstimateFilterResult();
+    /**
+     * The standard deviation calibration for each AprilTag camera, see {@link
+     * VisionStdDevCalibrator}.
+     */
+    private final Map<Camera, StdDevCalibration> stdDevCalibrations = new HashMap<>();
+    /**
+     * The number of new residuals across all cameras between refitting the calibrated standard
+     * deviation curves.
+     */
+    private final double stdDevCalibrationRefitSamples =
+        factory.getConstant(NAME, "stdDevCalibrationRefitSamples", 100);
+    /**
+     * If the calibrated standard deviation curves should replace the cameras' curves as soon as
+     * they are fit (a vision constant, 0 by default, which only logs them). Otherwise, copy the
+     * logged YAML into the camera's configuration.
+     */
+    private final boolean applyStdDevCalibration =
+        factory.getConstant(NAME, "applyStdDevCalibration", 0, false) > 0;
+    /**
+     * The largest translation residual in meters to calibrate the standard deviations from, so a
+     * drivetrain pose thrown off by wheel slip can't swamp the calibration. This is fixed instead
+     * of using the innovation gate, since the gate depends on the standard deviations being
+     * calibrated and would truncate the residuals harder as they tighten.
+     */
+    private final double stdDevCalibrationMaxResidualMeters =
+        factory.getConstant(NAME, "stdDevCalibrationMaxResidualMeters", 1.0, false);
+    private long stdDevCalibrationSamplesSinceFit = 0;
 
     public static final Distance fieldLength = Inches.of(651.2);
     public static final Distance fieldWidth =  Inches.of(317.7);
 
-    private final RectangularBoundingBox acceptableFieldBox = new RectangularBoundingBox(
+    private static final RectangularBoundingBox acceptableFieldBox = new RectangularBoundingBox(
         new Translation2d(
 
         ),
@@ -107,48 +189,122 @@ public class Vision extends SubsystemBase implements ITestableSubsystem {
             camera -> camera.detectionType == Camera.DetectionType.APRIL_TAG
         ).toList();
 
+        for (int i = 0; i < mergeBuffer.length; i++) {
+            mergeBuffer[i] = new VisionMeasurementQueue.VisionMeasurement();
+        }
+
+        // Recording is for replaying vision offline with VisionReplay, see PhotonResultRecorder.
+        if (factory.getConstant(NAME, "recordResults", 0, false) > 0) {
+            File recordingDirectory = new File(DataLogManager.getLogDir());
+            for (Camera camera : aprilTagCameras) {
+                camera.startRecording(recordingDirectory);
+            }
+        }
+
+        for (Camera camera : aprilTagCameras) {
+            var calibration = new StdDevCalibration();
+            stdDevCalibrations.put(camera, calibration);
+            String logPath = NAME + "/" + camera.name + "/";
+            GreenLogger.periodicLogLong(
+                logPath + "Std Dev Calibration Samples", calibration.calibrator::getSampleCount
+            ).withMinPublishInterval(1);
+            GreenLogger.periodicLog(logPath + "Calibrated Std Devs YAML", () -> calibration.yaml)
+                .publishOnChange();
+        }
+
+        GreenLogger.periodicLogLong(NAME + "/Dropped Measurements", measurementQueue::getDroppedCount)
+            .publishOnChange();
+        GreenLogger.periodicLogLong(NAME + "/Fused Measurements", () -> fusedMeasurementCount)
+            .publishOnChange();
+
         if (Robot.isSimulation()) {
             visionSim = new VisionSystemSim("VisionSim");
             visionSim.addAprilTags(aprilTagFieldLayout);
+            double maxSimFps = 0;
             for (Camera camera : cameras) {
                 camera.addToSim(visionSim);
+                if (camera.isSimulated()) {
+                    maxSimFps = Math.max(maxSimFps, camera.getSimFps());
+                } else {
+                    hasPhysicalSimCameras = true;
+                }
             }
+            // Each simulated camera only renders a frame once its own frame period has passed, so
+            // running at the fastest camera's frame rate lets every camera run at its own. Run
+            // twice that fast so timing jitter can't make a camera miss every other frame.
+            // Without simulated cameras, this only draws the debug field, so the robot loop rate
+            // is plenty.
+            double simPeriodSeconds = maxSimFps > 0 ? 1 / (2 * maxSimFps) : Robot.kDefaultPeriod;
+            simulationWorker = new Notifier(() -> {
+                try (var ignored = simulationPhase.start()) {
+                    updateSimulation();
+                }
+            });
+            simulationWorker.setName("VisionSim");
+            simulationWorker.startPeriodic(simPeriodSeconds);
         }
     }
 
+    /**
+     * Returns true if the given pose is within the field, estimates anywhere else are thrown out.
+     */
+    public static boolean isOnField(Pose2d pose) {
+        return acceptableFieldBox.withinBounds(pose.getTranslation());
+    }
+
     /**
      * Returns true if the given strategy is a multi-tag strategy.
      */
-    private static boolean isMultiTag(PhotonPoseEstimator.PoseStrategy strategy) {
+    static boolean isMultiTag(PhotonPoseEstimator.PoseStrategy strategy) {
         return strategy == PhotonPoseEstimator.PoseStrategy.MULTI_TAG_PNP_ON_COPROCESSOR
             || strategy == PhotonPoseEstimator.PoseStrategy.MULTI_TAG_PNP_ON_RIO;
     }
 
     /**
-     * Gets all {@link EstimatedRobotPose}s that have not yet been returned by calls to this method
-     * from all AprilTag cameras. Estimates are in {@link Pair}s with the standard deviations for
-     * the estimate calculated by {@link #calculateEstimateStandardDeviations(EstimatedRobotPose)}.
+     * Starts the vision worker thread, which reads every unread result from the AprilTag cameras,
+     * calculates pose estimates, filters them and calculates their standard deviations with
+     * {@link #filterEstimate}, and hands them to the main robot thread through a {@link
+     * VisionMeasurementQueue}. This keeps PhotonVision decoding and pose estimation out of the
+     * robot loop. Read the measurements with {@link #drainMeasurements(Consumer)}.
+     * <p>
+     * Calling this more than once does nothing.
      *
-     * @return All unread vision pose estimates with corresponding standard deviations.
+     * @param samplePoseAtTimestampFunction A function to get the drivetrain's pose estimate at an
+     *                                      FPGA timestamp. This is called from the worker thread,
+     *                                      so it must be thread safe.
+     * @param stateStdDevsSupplier          A supplier of the drivetrain's current state standard
+     *                                      deviations, used for gating measurements. This is
+     *                                      also called from the worker thread.
      */
-    public List<Pair<EstimatedRobotPose, Matrix<N3, N1>>> getVisionEstimatedPosesWithStdDevs(
-        Function<Double, Optional<Pose2d>> samplePoseAtTimestampFunction
+    public void startProcessing(
+        Function<Double, Optional<Pose2d>> samplePoseAtTimestampFunction,
+        Supplier<Matrix<N3, N1>> stateStdDevsSupplier
     ) {
-        List<Pair<EstimatedRobotPose, Matrix<N3, N1>>> posesWithStdDevs = new ArrayList<>();
-
-        // The maximum difference the angle of a vision pose estimate can be from the angle
-        // of the current robot pose estimate to allow the vision estimate to be used.
-        double visionEstimateAngleThresholdRadians = Units.degreesToRadians(5.0);
+        if (visionWorker != null) return;
+        this.samplePoseAtTimestampFunction = samplePoseAtTimestampFunction;
+        this.stateStdDevsSupplier = stateStdDevsSupplier;
+        visionWorker = new Notifier(this::processCameras);
+        visionWorker.setName("Vision");
+        visionWorker.startPeriodic(workerPeriodSeconds);
+    }
 
+    /**
+     * Reads every unread result from the AprilTag cameras and pushes the resulting pose estimates
+     * onto the {@link #measurementQueue}. Runs on the vision worker thread.
+     */
+    private void processCameras() {
+        boolean resetCameraQueue = RobotState.resetCameraQueue;
+        if (resetCameraQueue) {
+            // Measurements already in the queue are from before the reset too.
+            measurementQueue.invalidate();
+        }
         for (Camera camera : aprilTagCameras) {
             var results = camera.getEstimatedRobotPosesFromAllUnreadResults();
-            if(RobotState.resetCameraQueue) continue;
-            for (EstimatedRobotPose estimatedRobotPose : results) {
-                Pose2d visionEstimatedPose2d = estimatedRobotPose.estimatedPose.toPose2d();
-
-                var inField = acceptableFieldBox.withinBounds(estimatedRobotPose.estimatedPose.toPose2d().getTranslation());
+            if (resetCameraQueue) continue;
+            for (int i = 0; i < results.size(); i++) {
+                EstimatedRobotPose estimatedRobotPose = results.get(i);
 
-                if (!inField){
+                if (!isOnField(estimatedRobotPose.estimatedPose.toPose2d())) {
                     continue;
                 }
 
@@ -163,75 +319,404 @@ public class Vision extends SubsystemBase implements ITestableSubsystem {
                         // function.
                         .apply(estimatedRobotPose.timestampSeconds);
 
-                // Only add the vision measurement to the list to return if it is within the angle
-                // threshold from the current pose estimate. This is to filter out unreasonable
-                // estimates caused by pose ambiguity (see here:
-                // https://docs.photonvision.org/en/latest/docs/apriltag-pipelines/3D-tracking.html#ambiguity
-                // ).
-                if (
-                    // If we don't currently have an accurate pose estimate, we can't use current
-                    // pose estimate to throw out far off vision estimates, so we'll just add the
-                    // vision estimate to the list no matter where it is.
-                    !BaseRobotState.hasAccuratePoseEstimate
-                        // Check if the vision estimate is within the angle threshold of
-                        // the current pose estimate. Get the absolute value of the
-                        // difference between the angles constrained from -pi radians to pi
-                        // radians to find the positive shortest difference.
-                        || Math.abs(
-                            MathUtil.angleModulus(
-                                visionEstimatedPose2d.getRotation()
-                                    .minus(
-                                        // Get the rotation of the robot at the timestamp when the
-                                        // estimate was from. This will prevent us from discarding
-                                        // estimates that are just behind from the current
-                                        // position, since the Kalman filter correctly handles old
-                                        // estimates using the timestamp.
-                                            pose
-                                            // If the pose was empty, default to the current pose.
-                                            .orElse(BaseRobotState.robotPose)
-                                            // Get the rotation of the pose.
-                                            .getRotation()
-                                    )
-                                    .getRadians()
+                filterEstimate(
+                    estimatedRobotPose,
+                    camera.singleTagStdDevCurve,
+                    camera.multiTagStdDevCurve,
+                    pose.orElse(null),
+                    BaseRobotState.robotPose,
+                    BaseRobotState.hasAccuratePoseEstimate,
+                    stateStdDevsSupplier,
+                    innovationGate,
+                    filterResult
+                );
+
+                var slot = measurementQueue.claim();
+                if (slot == null) continue;
+                slot.set(
+                    camera,
+                    estimatedRobotPose,
+                    filterResult.standardDeviations,
+                    isMultiTag(estimatedRobotPose.strategy),
+                    filterResult.withinAngleThreshold,
+                    filterResult.trusted,
+                    filterResult.passedGate,
+                    filterResult.innovationDistanceSquared
+                );
+                if (filterResult.gated) {
+                    slot.setResidual(
+                        filterResult.tagDistance,
+                        filterResult.residualX,
+                        filterResult.residualY,
+                        filterResult.residualTheta,
+                        filterResult.stateStdDevs
+                    );
+                }
+                measurementQueue.publish();
+            }
+        }
+        if (resetCameraQueue) {
+            // Only cleared after invalidating, so drainMeasurements always catches the stale
+            // measurements with one or the other.
+            RobotState.resetCameraQueue = false;
+        }
+    }
+
+    /**
+     * The outcome of filtering a single vision pose estimate with {@link #filterEstimate}. This is
+     * reused between estimates so filtering doesn't allocate.
+     */
+    public static class EstimateFilterResult {
+        /**
+         * The standard deviations of the estimate, or a matrix of {@link Double#NaN} if it isn't
+         * trusted.
+         */
+        public Matrix<N3, N1> standardDeviations;
+        /**
+         * If the heading of the estimate was close enough to the reference pose to use it.
+         */
+        public boolean withinAngleThreshold;
+        /**
+         * If the estimate passed the heading check and got standard deviations.
+         */
+        public boolean trusted;
+        /**
+         * If the estimate was gated on its innovation, which needs an accurate pose estimate to
+         * compare to. The residual fields are only set if this is true.
+         */
+        public boolean gated;
+        /**
+         * If the estimate passed the innovation gate, or wasn't gated.
+         */
+        public boolean passedGate;
+        public double innovationDistanceSquared;
+        /**
+         * The tag distance the standard deviation curve was evaluated at.
+         */
+        public double tagDistance;
+        public double residualX;
+        public double residualY;
+        public double residualTheta;
+        public Matrix<N3, N1> stateStdDevs;
+    }
+
+    /**
+     * Decides if a vision pose estimate that is on the field should be used, and with what
+     * standard deviations. This is shared by the vision worker thread and {@link
+     * com.team1816.tools.VisionReplay}, so replayed estimates are filtered exactly like the
+     * robot filters them.
+     * <p>
+     * The estimate is first checked against the heading of the reference pose, then given
+     * standard deviations with {@link #calculateEstimateStandardDeviations(Camera.StdDevCurve,
+     * Camera.StdDevCurve, EstimatedRobotPose, EstimateFilterResult)}, and then gated on the
+     * squared Mahalanobis distance of its innovation (see {@link
+     * #calculateInnovationDistanceSquared}).
+     *
+     * @param estimatedRobotPose      The estimate to filter.
+     * @param singleTagStdDevCurve    The camera's single-tag standard deviation curve, or null for
+     *                                the default.
+     * @param multiTagStdDevCurve     The camera's multi-tag standard deviation curve, or null for
+     *                                the default.
+     * @param statePose               The drivetrain's pose estimate at the estimate's timestamp, or
+     *                                null if there isn't one.
+     * @param currentPose             The current pose estimate, used for the heading check if
+     *                                there is no {@code statePose}.
+     * @param hasAccuratePoseEstimate If the pose estimates are accurate enough to check and gate
+     *                                the estimate against.
+     * @param stateStdDevsSupplier    A supplier of the drivetrain's state standard deviations, only
+     *                                called if the estimate is gated.
+     * @param innovationGate          The largest squared Mahalanobis distance of the innovation to
+     *                                accept.
+     * @param result                  Where to write the outcome.
+     */
+    public static void filterEstimate(
+        EstimatedRobotPose estimatedRobotPose,
+        Camera.StdDevCurve singleTagStdDevCurve,
+        Camera.StdDevCurve multiTagStdDevCurve,
+        Pose2d statePose,
+        Pose2d currentPose,
+        boolean hasAccuratePoseEstimate,
+        Supplier<Matrix<N3, N1>> stateStdDevsSupplier,
+        double innovationGate,
+        EstimateFilterResult result
+    ) {
+        Pose2d visionEstimatedPose2d = estimatedRobotPose.estimatedPose.toPose2d();
+
+        // Only use the vision measurement if it is within the angle threshold from the
+        // current pose estimate. This is to filter out unreasonable estimates caused by
+        // pose ambiguity (see here:
+        // https://docs.photonvision.org/en/latest/docs/apriltag-pipelines/3D-tracking.html#ambiguity
+        // ).
+        boolean withinAngleThreshold =
+            // If we don't currently have an accurate pose estimate, we can't use current
+            // pose estimate to throw out far off vision estimates, so we'll just use the
+            // vision estimate no matter where it is.
+            !hasAccuratePoseEstimate
+                // Check if the vision estimate is within the angle threshold of
+                // the current pose estimate. Get the absolute value of the
+                // difference between the angles constrained from -pi radians to pi
+                // radians to find the positive shortest difference.
+                || Math.abs(
+                    MathUtil.angleModulus(
+                        visionEstimatedPose2d.getRotation()
+                            .minus(
+                                // If the pose was empty, default to the current pose.
+                                (statePose != null ? statePose : currentPose)
+                                    // Get the rotation of the pose.
+                                    .getRotation()
                             )
-                        ) < visionEstimateAngleThresholdRadians
+                            .getRadians()
+                    )
+                ) < visionEstimateAngleThresholdRadians;
+
+        // Only calculate the standard deviations for estimates we might use.
+        result.tagDistance = Double.NaN;
+        Matrix<N3, N1> standardDeviations = withinAngleThreshold
+            ? calculateEstimateStandardDeviations(
+                singleTagStdDevCurve, multiTagStdDevCurve, estimatedRobotPose, result
+            )
+            : noTrustStdDevs;
+
+        // If the standard deviations are the noTrustStdDevs, the estimate should be
+        // thrown out.
+        boolean trusted = standardDeviations != noTrustStdDevs;
+
+        // The heading check above can't catch translation outliers (like reflections or
+        // misidentified tags), so also gate the estimate on its innovation: how far it is
+        // from the drivetrain's pose at the same timestamp, relative to how uncertain both
+        // are. Like the heading check, this needs an accurate pose estimate to compare to.
+        double innovationDistanceSquared = 0;
+        boolean passedGate = true;
+        boolean gated = trusted && hasAccuratePoseEstimate && statePose != null;
+        if (gated) {
+            result.residualX = visionEstimatedPose2d.getX() - statePose.getX();
+            result.residualY = visionEstimatedPose2d.getY() - statePose.getY();
+            result.residualTheta = MathUtil.angleModulus(
+                visionEstimatedPose2d.getRotation().getRadians() - statePose.getRotation().getRadians()
+            );
+            result.stateStdDevs = stateStdDevsSupplier.get();
+            innovationDistanceSquared = calculateInnovationDistanceSquared(
+                result.residualX, result.residualY, result.residualTheta, standardDeviations, result.stateStdDevs
+            );
+            passedGate = innovationDistanceSquared <= innovationGate;
+        }
+
+        result.standardDeviations = standardDeviations;
+        result.withinAngleThreshold = withinAngleThreshold;
+        result.trusted = trusted;
+        result.gated = gated;
+        result.passedGate = passedGate;
+        result.innovationDistanceSquared = innovationDistanceSquared;
+    }
+
+    /**
+     * Calculates the squared Mahalanobis distance of a vision estimate's innovation (its
+     * difference from the drivetrain's pose estimate at the same time, with the heading difference
+     * wrapped to [-pi, pi]). The innovation covariance
+     * is the sum of the vision and state variances, which are both diagonal, so this is just the
+     * sum of each axis's squared difference over its variance.
+     * <p>
+     * If the estimate and the pose estimate agree and the standard deviations are right, this
+     * follows a chi-squared distribution with three degrees of freedom, so the default {@code
+     * innovationGate} of 11.34 rejects about 1% of good measurements.
+     */
+    static double calculateInnovationDistanceSquared(
+        double dx, double dy, double dTheta, Matrix<N3, N1> visionStdDevs, Matrix<N3, N1> stateStdDevs
+    ) {
+        return dx * dx / innovationVariance(visionStdDevs, stateStdDevs, 0)
+            + dy * dy / innovationVariance(visionStdDevs, stateStdDevs, 1)
+            + dTheta * dTheta / innovationVariance(visionStdDevs, stateStdDevs, 2);
+    }
+
+    private static double innovationVariance(Matrix<N3, N1> visionStdDevs, Matrix<N3, N1> stateStdDevs, int row) {
+        double vision = visionStdDevs.get(row, 0);
+        double state = stateStdDevs.get(row, 0);
+        // Clamp so a zero standard deviation can't divide by zero.
+        return Math.max(vision * vision + state * state, 1e-12);
+    }
+
+    /**
+     * Passes every vision measurement the worker thread has finished since the last call to the
+     * consumer. Only measurements that passed filtering and are trusted are passed on. This must
+     * be called from the main robot thread.
+     * <p>
+     * Cameras finish frames independently, so the measurements are merged before they are passed
+     * on: they are sorted by their frame timestamps (so the drivetrain's pose estimator doesn't
+     * have to rewind its history for a measurement older than the one before it), and
+     * measurements from different cameras less than {@code fusionWindowSeconds} (a vision
+     * constant, zero by default, which disables fusion) apart are fused into one inverse-variance
+     * weighted measurement.
+     * <p>
+     * This also handles deciding when we have discarded enough estimates in a row that the
+     * current pose estimate is probably what's wrong, in which case {@link
+     * BaseRobotState#hasAccuratePoseEstimate} is set to false to allow vision to fully recorrect.
+     *
+     * @param consumer The consumer to pass each measurement to. The measurement must not be used
+     *                 after the consumer returns, since it is reused.
+     */
+    public void drainMeasurements(Consumer<VisionMeasurementQueue.VisionMeasurement> consumer) {
+        // Collect this cycle's accepted measurements. Anything past the merge buffer's capacity
+        // stays in the queue for the next cycle.
+        int count = 0;
+        VisionMeasurementQueue.VisionMeasurement measurement;
+        while (count < mergeBuffer.length && (measurement = measurementQueue.peek()) != null) {
+            try {
+                // Measurements from before the queue was reset are stale. Until the worker gets to
+                // the reset it's flagged, and after that they are from an old epoch.
+                if (
+                    !RobotState.resetCameraQueue
+                        && measurementQueue.isCurrent(measurement)
+                        && acceptMeasurement(measurement)
                 ) {
-                    // We didn't discard this estimate for being too far off from the combined
-                    // estimate, so reset the counter.
-                    consecutiveDiscardedEstimates = 0;
-                    // Calculate the standard deviations for the estimate.
-                    Matrix<N3, N1> standardDeviations = calculateEstimateStandardDeviations(estimatedRobotPose);
-                    // If the standard deviations are the noTrustStdDevs, we'll just throw the
-                    // estimate out. Otherwise, add the estimate to the list to return.
-                    if (standardDeviations != noTrustStdDevs) {
-                        posesWithStdDevs.add(Pair.of(estimatedRobotPose, standardDeviations));
-                    }
-                    // Tell the camera what the standard deviations for its latest estimate were,
-                    // for logging purposes.
-                    camera.latestVisionStdDevs = standardDeviations;
+                    mergeBuffer[count++].copyFrom(measurement);
                 }
-                // If we discarded enough estimates in a row because they were too far off from the
-                // current pose estimate, then it is probably because something is wrong with the
-                // current pose estimate (likely due to wheel slippage from hitting something). If
-                // this is the case, say that we don't trust the current estimate to allow vision
-                // to fully recorrect.
-                else {
-                    // Only use multi-tag estimates for incrementing if we don't trust the current
-                    // estimate, since single-tag estimates often have some normal flickering.
-                    if (isMultiTag(estimatedRobotPose.strategy)) {
-                        consecutiveDiscardedEstimates++;
-                        // The number of estimates to allow to be discarded before determining that we
-                        // have lost a good pose estimate.
-                        int discardsBeforePoseLoss = 5;
-                        if (consecutiveDiscardedEstimates >= discardsBeforePoseLoss) {
-                            BaseRobotState.hasAccuratePoseEstimate = false;
-                        }
-                    }
+            } finally {
+                measurementQueue.release();
+            }
+        }
+        refitStdDevCalibrations();
+        if (count == 0) return;
+
+        // Insertion sort by timestamp, there are only ever a few measurements and they are
+        // already in order for each camera.
+        for (int i = 1; i < count; i++) {
+            var current = mergeBuffer[i];
+            int j = i - 1;
+            while (j >= 0 && mergeBuffer[j].getTimestampSeconds() > current.getTimestampSeconds()) {
+                mergeBuffer[j + 1] = mergeBuffer[j];
+                j--;
+            }
+            mergeBuffer[j + 1] = current;
+        }
+
+        // Fuse runs of measurements from different cameras that are close enough together, then
+        // pass everything on in order.
+        int i = 0;
+        while (i < count) {
+            var merged = mergeBuffer[i];
+            double firstTimestamp = merged.getTimestampSeconds();
+            int next = i + 1;
+            while (
+                fusionWindowSeconds > 0
+                    && next < count
+                    && mergeBuffer[next].getTimestampSeconds() - firstTimestamp <= fusionWindowSeconds
+                    && isFromNewCamera(i, next)
+            ) {
+                merged.fuse(mergeBuffer[next]);
+                next++;
+            }
+            if (merged.getFusedCount() > 1) {
+                fusedMeasurementCount++;
+            }
+            consumer.accept(merged);
+            i = next;
+        }
+    }
+
+    /**
+     * @return If the measurement at index {@code candidate} of the merge buffer is from a camera
+     * that isn't already in the run of measurements starting at {@code runStart}.
+     */
+    private boolean isFromNewCamera(int runStart, int candidate) {
+        Camera camera = mergeBuffer[candidate].getCamera();
+        for (int i = runStart; i < candidate; i++) {
+            if (mergeBuffer[i].getCamera() == camera) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Updates the discarded estimate bookkeeping for a measurement from the queue.
+     *
+     * @return If the measurement should be passed on to the drivetrain.
+     */
+    private boolean acceptMeasurement(VisionMeasurementQueue.VisionMeasurement measurement) {
+        Camera camera = measurement.getCamera();
+        if (measurement.isTrusted() && measurement.isWithinAngleThreshold()) {
+            camera.latestInnovationDistanceSquared = measurement.getInnovationDistanceSquared();
+            if (
+                measurement.hasResidual()
+                    && Math.hypot(measurement.getResidualX(), measurement.getResidualY())
+                    <= stdDevCalibrationMaxResidualMeters
+            ) {
+                Matrix<N3, N1> stateStdDevs = measurement.getStateStdDevs();
+                stdDevCalibrations.get(camera).calibrator.addResidual(
+                    measurement.isMultiTag(),
+                    measurement.getTagDistance(),
+                    measurement.getResidualX(),
+                    measurement.getResidualY(),
+                    measurement.getResidualTheta(),
+                    stateStdDevs.get(0, 0),
+                    stateStdDevs.get(1, 0),
+                    stateStdDevs.get(2, 0)
+                );
+                stdDevCalibrationSamplesSinceFit++;
+            }
+            if (measurement.passedGate()) {
+                camera.gateAcceptedCount++;
+            } else {
+                camera.gateRejectedCount++;
+            }
+        }
+        if (measurement.isWithinAngleThreshold() && measurement.passedGate()) {
+            // We didn't discard this estimate for being too far off from the combined
+            // estimate, so reset the counter.
+            consecutiveDiscardedEstimates = 0;
+            // Tell the camera what the standard deviations for its latest estimate were,
+            // for logging purposes.
+            camera.latestVisionStdDevs = measurement.getStdDevs();
+            return measurement.isTrusted();
+        }
+        // If we discarded enough estimates in a row because they were too far off from the
+        // current pose estimate, then it is probably because something is wrong with the
+        // current pose estimate (likely due to wheel slippage from hitting something). If
+        // this is the case, say that we don't trust the current estimate to allow vision
+        // to fully recorrect.
+        else {
+            // Only use multi-tag estimates for incrementing if we don't trust the current
+            // estimate, since single-tag estimates often have some normal flickering.
+            if (measurement.isMultiTag()) {
+                consecutiveDiscardedEstimates++;
+                // The number of estimates to allow to be discarded before determining that we
+                // have lost a good pose estimate.
+                int discardsBeforePoseLoss = 5;
+                if (consecutiveDiscardedEstimates >= discardsBeforePoseLoss) {
+                    BaseRobotState.hasAccuratePoseEstimate = false;
                 }
             }
+            return false;
+        }
+    }
+
+    /**
+     * Refits every camera's calibrated standard deviation curves once enough new residuals have
+     * been added, logs them as YAML for the camera's configuration, and applies them to the
+     * cameras if {@link #applyStdDevCalibration} is set.
+     */
+    private void refitStdDevCalibrations() {
+        if (stdDevCalibrationSamplesSinceFit < stdDevCalibrationRefitSamples) return;
+        stdDevCalibrationSamplesSinceFit = 0;
+        for (Map.Entry<Camera, StdDevCalibration> entry : stdDevCalibrations.entrySet()) {
+            Camera camera = entry.getKey();
+            StdDevCalibration calibration = entry.getValue();
+            Camera.StdDevCurve singleTag = calibration.calibrator.fit(false);
+            Camera.StdDevCurve multiTag = calibration.calibrator.fit(true);
+            if (singleTag == null && multiTag == null) continue;
+            calibration.yaml = VisionStdDevCalibrator.toYaml("singleTagStdDevs", singleTag)
+                + VisionStdDevCalibrator.toYaml("multiTagStdDevs", multiTag);
+            if (applyStdDevCalibration) {
+                if (singleTag != null) camera.singleTagStdDevCurve = singleTag;
+                if (multiTag != null) camera.multiTagStdDevCurve = multiTag;
+            }
         }
-        RobotState.resetCameraQueue = false;
-        return posesWithStdDevs;
+    }
+
+    /**
+     * The standard deviation calibration state for a single camera.
+     */
+    private static class StdDevCalibration {
+        final VisionStdDevCalibrator calibrator = new VisionStdDevCalibrator(0.5, 12, 20, 500);
+        volatile String yaml = "";
     }
 
     /**
@@ -284,14 +769,71 @@ public class Vision extends SubsystemBase implements ITestableSubsystem {
      *     distance, but that would be problematic when the combined position is not accurate, and
      *     therefore is probably not worth it.</li>
      * </ul>
+     * <p>
+     * The curves come from the camera's {@link Camera#singleTagStdDevCurve} and {@link
+     * Camera#multiTagStdDevCurve} if it has them, and otherwise from the defaults in this class.
+     * The tag distance the curve was evaluated at is saved to {@link
+     * EstimateFilterResult#tagDistance}.
      *
-     * @param estimatedRobotPose The {@link EstimatedRobotPose} from a {@link PhotonPoseEstimator}
-     *                           to calculate standard deviations for.
+     * @param singleTagStdDevCurve The camera's single-tag standard deviation curve, or null for the
+     *                             default.
+     * @param multiTagStdDevCurve  The camera's multi-tag standard deviation curve, or null for the
+     *                             default.
+     * @param estimatedRobotPose   The {@link EstimatedRobotPose} from a {@link PhotonPoseEstimator}
+     *                             to calculate standard deviations for.
+     * @param result               Where to save the tag distance.
      * @return The calculated standard deviations for the vision pose estimate (x position in
      * meters, y position in meters, and heading in radians). Returns a matrix of {@link
      * Double#NaN} if the estimate should be completely thrown out.
      */
-    private Matrix<N3, N1> calculateEstimateStandardDeviations(EstimatedRobotPose estimatedRobotPose) {
+    private static Matrix<N3, N1> calculateEstimateStandardDeviations(
+        Camera.StdDevCurve singleTagStdDevCurve,
+        Camera.StdDevCurve multiTagStdDevCurve,
+        EstimatedRobotPose estimatedRobotPose,
+        EstimateFilterResult result
+    ) {
+        double distance = calculateEstimateTagDistance(estimatedRobotPose);
+        if (Double.isNaN(distance)) {
+            return noTrustStdDevs;
+        }
+        result.tagDistance = distance;
+        boolean multiTag = isMultiTag(estimatedRobotPose.strategy);
+        return calculateEstimateStandardDeviations(
+            multiTag ? multiTagStdDevCurve : singleTagStdDevCurve, multiTag, distance
+        );
+    }
+
+    /**
+     * Evaluates a standard deviation curve, or the default curve for the tag count if it is null.
+     */
+    static Matrix<N3, N1> calculateEstimateStandardDeviations(
+        Camera.StdDevCurve curve, boolean multiTag, double distance
+    ) {
+        if (curve != null) {
+            return curve.at(distance);
+        }
+        return multiTag
+            ? multiTagStdDevsA.elementTimes(multiTagStdDevsB.elementPower(distance))
+            : singleTagStdDevsA.elementTimes(singleTagStdDevsB.elementPower(distance));
+    }
+
+    /**
+     * Finds the tag distance to scale an estimate's standard deviations by, see {@link
+     * #calculateEstimateStandardDeviations(Camera.StdDevCurve, Camera.StdDevCurve,
+     * EstimatedRobotPose, EstimateFilterResult)}.
+     *
+     * @return The distance of the closest tag for single-tag estimates or the average distance of
+     * the closest two tags for multi-tag estimates, in meters, or {@link Double#NaN} if the
+     * estimate should be completely thrown out.
+     */
+    static double calculateEstimateTagDistance(EstimatedRobotPose estimatedRobotPose) {
+        // Look tags up in the precomputed tag table with plain doubles, so going through the
+        // targets doesn't allocate.
+        List<PhotonTrackedTarget> targets = estimatedRobotPose.targetsUsed;
+        double robotX = estimatedRobotPose.estimatedPose.getX();
+        double robotY = estimatedRobotPose.estimatedPose.getY();
+        double robotZ = estimatedRobotPose.estimatedPose.getZ();
+
         // If we didn't use a multi-tag strategy. This would happen if we only saw one tag, or
         // decided for some other reason not to use multi-tag.
         if (!isMultiTag(estimatedRobotPose.strategy)) {
@@ -299,17 +841,15 @@ public class Vision extends SubsystemBase implements ITestableSubsystem {
             double lowestAmbiguity = 1;
 
             // Find the closest distance and lowest ambiguity of the AprilTags seen.
-            for (PhotonTrackedTarget target : estimatedRobotPose.targetsUsed) {
-                Optional<Pose3d> tagPose = aprilTagFieldLayout.getTagPose(target.getFiducialId());
+            for (int i = 0; i < targets.size(); i++) {
+                PhotonTrackedTarget target = targets.get(i);
+                double distance = distanceToAprilTag(target.getFiducialId(), robotX, robotY, robotZ);
 
-                // Theoretically the tag pose could be empty if it saw a tag that isn't in the
+                // Theoretically the distance could be NaN if it saw a tag that isn't in the
                 // layout. It couldn't have given us an estimate unless there was at least one
                 // valid tag, so we can just ignore any invalid ones.
-                if (tagPose.isEmpty()) continue;
+                if (Double.isNaN(distance)) continue;
 
-                double distance = tagPose.get().getTranslation().getDistance(
-                    estimatedRobotPose.estimatedPose.getTranslation()
-                );
                 if (distance < closestDistance)
                     closestDistance = distance;
 
@@ -323,14 +863,14 @@ public class Vision extends SubsystemBase implements ITestableSubsystem {
             // (see https://docs.photonvision.org/en/latest/docs/apriltag-pipelines/3D-tracking.html#ambiguity)
             // was too high, we don't trust this estimate at all.
             if (closestDistance > 6 || lowestAmbiguity > 0.2) {
-                return noTrustStdDevs;
+                return Double.NaN;
             }
 
             // If we trust the estimate enough to consider it, decrease our trust (increase the
             // standard deviations) with distance, because farther away tags give us less reliable
             // readings. We are using an exponential growth equation (a * b ^ distance) as that was
             // a good fit for the data we found through empirical testing.
-            return singleTagStdDevsA.elementTimes(singleTagStdDevsB.elementPower(closestDistance));
+            return closestDistance;
         }
 
         // Otherwise, if we were able to use multi-tag:
@@ -340,17 +880,16 @@ public class Vision extends SubsystemBase implements ITestableSubsystem {
 
             // Find the two closest distances of the AprilTags seen. Note that ambiguity does not
             // really matter for multi-tag, as having multiple tags can help account for it.
-            for (PhotonTrackedTarget target : estimatedRobotPose.targetsUsed) {
-                Optional<Pose3d> tagPose = aprilTagFieldLayout.getTagPose(target.getFiducialId());
+            for (int i = 0; i < targets.size(); i++) {
+                double distance = distanceToAprilTag(
+                    targets.get(i).getFiducialId(), robotX, robotY, robotZ
+                );
 
                 // As before, we could theoretically have a tag not in the layout, but we wouldn't
                 // have gotten a multi-tag result unless there were at least two valid tags, so we
                 // can just ignore any invalid ones.
-                if (tagPose.isEmpty()) continue;
+                if (Double.isNaN(distance)) continue;
 
-                double distance = tagPose.get().getTranslation().getDistance(
-                    estimatedRobotPose.estimatedPose.getTranslation()
-                );
                 if (distance < closestDistance) {
                     secondClosestDistance = closestDistance;
                     closestDistance = distance;
@@ -368,12 +907,16 @@ public class Vision extends SubsystemBase implements ITestableSubsystem {
 
             // Decrease trust (increase standard deviations) with average distance of the closest
             // two tags using an exponential growth equation (a * b ^ distance).
-            return multiTagStdDevsA.elementTimes(multiTagStdDevsB.elementPower(averageDistance));
+            return averageDistance;
         }
     }
 
-    @Override
-    public void simulationPeriodic() {
+    /**
+     * Renders the simulated cameras and updates the vision sim field. Runs on the vision sim
+     * thread, so the slow part of simulating cameras (projecting every AprilTag into every camera
+     * and publishing the simulated results) stays out of the robot loop.
+     */
+    private void updateSimulation() {
         // Update the vision sim with the simulated "actual" robot pose to use as the location that
         // the simulated cameras will simulate seeing from. This pose will show up under the name
         // "Robot" on the vision field. Note that this is different from the "Robot" on the other
@@ -387,8 +930,10 @@ public class Vision extends SubsystemBase implements ITestableSubsystem {
 
         // Clear the visibleTargetPoses and camera poses on the vision sim field for the physical
         // sim cameras before we add the new poses.
-        visionSim.getDebugField().getObject("physicalCams/visibleTargetPoses").setPoses();
-        visionSim.getDebugField().getObject("physicalCams/cameras").setPoses();
+        if (hasPhysicalSimCameras) {
+            visionSim.getDebugField().getObject("physicalCams/visibleTargetPoses").setPoses();
+            visionSim.getDebugField().getObject("physicalCams/cameras").setPoses();
+        }
 
         // Update the vision field with individual camera data.
         for (Camera camera : cameras) {
@@ -0,0 +1,414 @@
+package com.team1816.lib.subsystems;
+
+import com.team1816.lib.hardware.components.sensor.Camera;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import org.photonvision.EstimatedRobotPose;
+
+/**
+ * A lock-free, single producer, single consumer ring of {@link VisionMeasurement}s, used to hand
+ * measurements from the vision worker thread to the main robot thread.
+ * <p>
+ * Every slot is allocated up front and reused, so handing off a measurement never allocates. The
+ * producer fills a slot between {@link #claim()} and {@link #publish()}, and the consumer reads a
+ * slot between {@link #peek()} and {@link #release()}:
+ * <pre>{@code
+ * // vision worker thread
+ * var slot = queue.claim();
+ * if (slot != null) {
+ *     slot.set(...);
+ *     queue.publish();
+ * }
+ *
+ * // main robot thread
+ * VisionMeasurement measurement;
+ * while ((measurement = queue.peek()) != null) {
+ *     ...
+ *     queue.release();
+ * }
+ * }</pre>
+ * If the consumer falls a full ring behind, new measurements are dropped (and counted) instead of
+ * blocking the producer.
+ * <p>
+ * The producer can make every measurement it has already published stale with {@link
+ * #invalidate()}, and the consumer skips those with {@link #isCurrent(VisionMeasurement)}, so a
+ * reset never races measurements still waiting in the ring.
+ */
+public class VisionMeasurementQueue {
+    private final VisionMeasurement[] slots;
+    private final int mask;
+    // Only written by the producer.
+    private volatile long published = 0;
+    // Only written by the consumer.
+    private volatile long released = 0;
+    private volatile long droppedCount = 0;
+    // Only written by the producer. Stamped into each slot when it is published.
+    private volatile int epoch = 0;
+
+    /**
+     * Constructs a {@link VisionMeasurementQueue}.
+     *
+     * @param capacity The number of slots in the ring. This must be a power of two.
+     */
+    public VisionMeasurementQueue(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        slots = new VisionMeasurement[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new VisionMeasurement();
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Claims the next free slot to be filled in. Only call this from the producer thread.
+     *
+     * @return The slot to fill in, or null if the ring is full and the measurement was dropped.
+     */
+    public VisionMeasurement claim() {
+        long index = published;
+        if (index - released >= slots.length) {
+            droppedCount++;
+            return null;
+        }
+        return slots[(int) (index & mask)];
+    }
+
+    /**
+     * Hands the slot from the latest {@link #claim()} to the consumer. Only call this from the
+     * producer thread.
+     */
+    public void publish() {
+        slots[(int) (published & mask)].epoch = epoch;
+        published = published + 1;
+    }
+
+    /**
+     * Makes every measurement published so far stale, including any the consumer hasn't read
+     * yet. Only call this from the producer thread.
+     */
+    public void invalidate() {
+        epoch = epoch + 1;
+    }
+
+    /**
+     * Checks if a measurement was published after the latest {@link #invalidate()}. Only call this
+     * from the consumer thread, on a slot from {@link #peek()}.
+     *
+     * @return If the measurement is not stale.
+     */
+    public boolean isCurrent(VisionMeasurement measurement) {
+        return measurement.epoch == epoch;
+    }
+
+    /**
+     * Gets the oldest published measurement without removing it. Only call this from the consumer
+     * thread.
+     *
+     * @return The oldest measurement, or null if there are none.
+     */
+    public VisionMeasurement peek() {
+        long index = released;
+        if (index == published) {
+            return null;
+        }
+        return slots[(int) (index & mask)];
+    }
+
+    /**
+     * Gives the slot from the latest {@link #peek()} back to the producer. The slot must not be
+     * used after this. Only call this from the consumer thread.
+     */
+    public void release() {
+        released = released + 1;
+    }
+
+    /**
+     * @return The number of slots in the ring.
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return The number of measurements dropped because the ring was full.
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * A vision pose estimate from a single camera frame, along with the standard deviations and
+     * filtering results calculated for it on the vision worker thread.
+     */
+    public static class VisionMeasurement {
+        private Camera camera;
+        private EstimatedRobotPose estimate;
+        private Pose2d pose;
+        private double timestampSeconds;
+        private Matrix<N3, N1> stdDevs;
+        private boolean multiTag;
+        private boolean withinAngleThreshold;
+        private boolean trusted;
+        private boolean passedGate;
+        private double innovationDistanceSquared;
+        private boolean hasResidual;
+        private double tagDistance;
+        private double residualX;
+        private double residualY;
+        private double residualTheta;
+        private Matrix<N3, N1> stateStdDevs;
+        private int fusedCount = 1;
+        private int epoch;
+
+        /**
+         * Constructs an empty measurement. Outside of the queue, this is only used for buffers
+         * that measurements are copied into.
+         */
+        VisionMeasurement() {}
+
+        /**
+         * Fills in this measurement. Only call this on a slot from {@link #claim()}.
+         */
+        public void set(
+            Camera camera,
+            EstimatedRobotPose estimate,
+            Matrix<N3, N1> stdDevs,
+            boolean multiTag,
+            boolean withinAngleThreshold,
+            boolean trusted,
+            boolean passedGate,
+            double innovationDistanceSquared
+        ) {
+            this.camera = camera;
+            this.estimate = estimate;
+            this.pose = estimate.estimatedPose.toPose2d();
+            this.timestampSeconds = estimate.timestampSeconds;
+            this.stdDevs = stdDevs;
+            this.multiTag = multiTag;
+            this.withinAngleThreshold = withinAngleThreshold;
+            this.trusted = trusted;
+            this.passedGate = passedGate;
+            this.innovationDistanceSquared = innovationDistanceSquared;
+            this.hasResidual = false;
+            this.fusedCount = 1;
+        }
+
+        /**
+         * Adds the estimate's residual from the drivetrain's pose estimate, for calibrating the
+         * camera's standard deviations. Only call this on a slot from {@link #claim()}, after
+         * {@link #set}.
+         */
+        public void setResidual(
+            double tagDistance,
+            double residualX,
+            double residualY,
+            double residualTheta,
+            Matrix<N3, N1> stateStdDevs
+        ) {
+            this.hasResidual = true;
+            this.tagDistance = tagDistance;
+            this.residualX = residualX;
+            this.residualY = residualY;
+            this.residualTheta = residualTheta;
+            this.stateStdDevs = stateStdDevs;
+        }
+
+        /**
+         * Copies every value from another measurement into this one.
+         */
+        void copyFrom(VisionMeasurement other) {
+            camera = other.camera;
+            estimate = other.estimate;
+            pose = other.pose;
+            timestampSeconds = other.timestampSeconds;
+            stdDevs = other.stdDevs;
+            multiTag = other.multiTag;
+            withinAngleThreshold = other.withinAngleThreshold;
+            trusted = other.trusted;
+            passedGate = other.passedGate;
+            innovationDistanceSquared = other.innovationDistanceSquared;
+            hasResidual = other.hasResidual;
+            tagDistance = other.tagDistance;
+            residualX = other.residualX;
+            residualY = other.residualY;
+            residualTheta = other.residualTheta;
+            stateStdDevs = other.stateStdDevs;
+            fusedCount = other.fusedCount;
+        }
+
+        /**
+         * Fuses another measurement of (nearly) the same instant into this one, weighting each
+         * axis by the inverse of its variance. The fused standard deviation of each axis is the
+         * square root of the inverse of the summed weights, so fusing measurements one at a time
+         * gives the same result as fusing them all at once.
+         * <p>
+         * The camera and {@link #getEstimate() estimate} stay those of this measurement.
+         */
+        void fuse(VisionMeasurement other) {
+            // Clamp the variances so a zero standard deviation can't divide by zero.
+            final double minVariance = 1e-12;
+            double weightX1 = 1 / Math.max(stdDevs.get(0, 0) * stdDevs.get(0, 0), minVariance);
+            double weightY1 = 1 / Math.max(stdDevs.get(1, 0) * stdDevs.get(1, 0), minVariance);
+            double weightTheta1 = 1 / Math.max(stdDevs.get(2, 0) * stdDevs.get(2, 0), minVariance);
+            Matrix<N3, N1> otherStdDevs = other.stdDevs;
+            double weightX2 = 1 / Math.max(otherStdDevs.get(0, 0) * otherStdDevs.get(0, 0), minVariance);
+            double weightY2 = 1 / Math.max(otherStdDevs.get(1, 0) * otherStdDevs.get(1, 0), minVariance);
+            double weightTheta2 = 1 / Math.max(otherStdDevs.get(2, 0) * otherStdDevs.get(2, 0), minVariance);
+
+            double x = (pose.getX() * weightX1 + other.pose.getX() * weightX2) / (weightX1 + weightX2);
+            double y = (pose.getY() * weightY1 + other.pose.getY() * weightY2) / (weightY1 + weightY2);
+            // Average the headings relative to this heading so they wrap correctly.
+            double theta = pose.getRotation().getRadians() + weightTheta2 * MathUtil.angleModulus(
+                other.pose.getRotation().getRadians() - pose.getRotation().getRadians()
+            ) / (weightTheta1 + weightTheta2);
+            double translationWeight1 = weightX1 + weightY1;
+            double translationWeight2 = weightX2 + weightY2;
+            timestampSeconds = (timestampSeconds * translationWeight1 + other.timestampSeconds * translationWeight2)
+                / (translationWeight1 + translationWeight2);
+
+            pose = new Pose2d(x, y, new Rotation2d(theta));
+            stdDevs = VecBuilder.fill(
+                Math.sqrt(1 / (weightX1 + weightX2)),
+                Math.sqrt(1 / (weightY1 + weightY2)),
+                Math.sqrt(1 / (weightTheta1 + weightTheta2))
+            );
+            multiTag |= other.multiTag;
+            // The residual belongs to a single camera's estimate.
+            hasResidual = false;
+            fusedCount += other.fusedCount;
+        }
+
+        /**
+         * @return The camera the measurement came from.
+         */
+        public Camera getCamera() {
+            return camera;
+        }
+
+        /**
+         * @return The full estimate from the camera's {@link org.photonvision.PhotonPoseEstimator}.
+         */
+        public EstimatedRobotPose getEstimate() {
+            return estimate;
+        }
+
+        /**
+         * @return The estimated robot pose on the field.
+         */
+        public Pose2d getPose() {
+            return pose;
+        }
+
+        /**
+         * @return The FPGA timestamp of the camera frame in seconds.
+         */
+        public double getTimestampSeconds() {
+            return timestampSeconds;
+        }
+
+        /**
+         * @return The standard deviations for the estimate (x position in meters, y position in
+         * meters, and heading in radians), only meaningful if the estimate is {@link #isTrusted()}
+         * and {@link #isWithinAngleThreshold()}.
+         */
+        public Matrix<N3, N1> getStdDevs() {
+            return stdDevs;
+        }
+
+        /**
+         * @return If the estimate used a multi-tag strategy.
+         */
+        public boolean isMultiTag() {
+            return multiTag;
+        }
+
+        /**
+         * @return If the estimate's heading was close enough to the drivetrain's heading at the
+         * time of the frame (or we had no accurate pose estimate to compare it to).
+         */
+        public boolean isWithinAngleThreshold() {
+            return withinAngleThreshold;
+        }
+
+        /**
+         * @return If the standard deviation heuristic trusts the estimate at all.
+         */
+        public boolean isTrusted() {
+            return trusted;
+        }
+
+        /**
+         * @return If the estimate's innovation was within the gate, or it wasn't gated because we
+         * had no accurate pose estimate to compare it to.
+         */
+        public boolean passedGate() {
+            return passedGate;
+        }
+
+        /**
+         * @return The squared Mahalanobis distance of the estimate from the drivetrain's pose
+         * estimate at the same time, or 0 if it wasn't gated. For a fused measurement, this is
+         * the value of the first measurement fused.
+         */
+        public double getInnovationDistanceSquared() {
+            return innovationDistanceSquared;
+        }
+
+        /**
+         * @return If the estimate has a residual from the drivetrain's pose estimate, which is
+         * only calculated for gated estimates and cleared by fusion.
+         */
+        public boolean hasResidual() {
+            return hasResidual;
+        }
+
+        /**
+         * @return The tag distance the standard deviations were calculated from, in meters.
+         */
+        public double getTagDistance() {
+            return tagDistance;
+        }
+
+        /**
+         * @return The x difference from the drivetrain's pose estimate in meters.
+         */
+        public double getResidualX() {
+            return residualX;
+        }
+
+        /**
+         * @return The y difference from the drivetrain's pose estimate in meters.
+         */
+        public double getResidualY() {
+            return residualY;
+        }
+
+        /**
+         * @return The heading difference from the drivetrain's pose estimate in radians.
+         */
+        public double getResidualTheta() {
+            return residualTheta;
+        }
+
+        /**
+         * @return The drivetrain's state standard deviations when the residual was calculated.
+         */
+        public Matrix<N3, N1> getStateStdDevs() {
+            return stateStdDevs;
+        }
+
+        /**
+         * @return The number of camera measurements fused into this one, 1 if it wasn't fused.
+         */
+        public int getFusedCount() {
+            return fusedCount;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.team1816.lib.subsystems;
+
+import com.team1816.lib.hardware.components.sensor.Camera;
+
+import java.util.Locale;
+
+/**
+ * Estimates the standard deviation curves of a single camera's vision estimates from how far they
+ * land from the drivetrain's pose estimate.
+ * <p>
+ * Every trusted estimate's residual (the vision pose minus the drivetrain's pose at the same
+ * timestamp), whether or not it passed the innovation gate, is added to a bin by tag count (single-tag or multi-tag) and tag distance. If the
+ * drivetrain's pose estimate is accurate, the mean squared residual of a bin is the vision
+ * variance plus the drivetrain's state variance, so subtracting the state variance leaves the
+ * vision variance at that distance. {@link #fit(boolean)} then fits the a * b ^ distance curve
+ * used by {@link Vision} through the bins with a weighted least squares line in log space.
+ * <p>
+ * Memory is fixed: each bin only holds sums. Once a bin has {@code maxSamplesPerBin} samples,
+ * its sums are halved, so old samples fade out and the estimate keeps up with changes to the
+ * camera. This is not thread safe, and is only used from the main robot thread.
+ */
+public class VisionStdDevCalibrator {
+    private static final int SINGLE_TAG = 0;
+    private static final int MULTI_TAG = 1;
+    // The smallest standard deviation a bin can estimate, so a bin that agrees with the
+    // drivetrain better than its state standard deviations can't fit a zero or negative value.
+    private static final double MIN_STD_DEV = 1e-4;
+
+    private final double binWidthMeters;
+    private final int minSamplesPerBin;
+    private final int maxSamplesPerBin;
+    // Indexed by [tag count][distance bin].
+    private final double[][] counts;
+    private final double[][] distanceSums;
+    private final double[][] translationExcessVarianceSums;
+    private final double[][] thetaExcessVarianceSums;
+    private long sampleCount = 0;
+
+    /**
+     * Constructs a {@link VisionStdDevCalibrator}.
+     *
+     * @param binWidthMeters   The width of each distance bin in meters.
+     * @param binCount         The number of distance bins. Samples past the last bin are added to
+     *                         the last bin.
+     * @param minSamplesPerBin The number of samples a bin needs to be used in a fit.
+     * @param maxSamplesPerBin The number of samples a bin holds before its older samples start to
+     *                         fade out.
+     */
+    public VisionStdDevCalibrator(
+        double binWidthMeters, int binCount, int minSamplesPerBin, int maxSamplesPerBin
+    ) {
+        if (binWidthMeters <= 0 || binCount < 2) {
+            throw new IllegalArgumentException("There must be at least two bins with a positive width");
+        }
+        if (minSamplesPerBin < 1 || maxSamplesPerBin < 2 * minSamplesPerBin) {
+            throw new IllegalArgumentException(
+                "The maximum samples per bin must be at least twice the minimum samples per bin"
+            );
+        }
+        this.binWidthMeters = binWidthMeters;
+        this.minSamplesPerBin = minSamplesPerBin;
+        this.maxSamplesPerBin = maxSamplesPerBin;
+        counts = new double[2][binCount];
+        distanceSums = new double[2][binCount];
+        translationExcessVarianceSums = new double[2][binCount];
+        thetaExcessVarianceSums = new double[2][binCount];
+    }
+
+    /**
+     * Adds the residual of a trusted vision estimate. This shouldn't be limited by the innovation
+     * gate, which would cut off the large residuals and bias the fit low.
+     *
+     * @param multiTag             If the estimate used a multi-tag strategy.
+     * @param distance             The tag distance the estimate's standard deviations were
+     *                             calculated from, in meters.
+     * @param residualX            The x difference from the drivetrain's pose in meters.
+     * @param residualY            The y difference from the drivetrain's pose in meters.
+     * @param residualTheta        The heading difference from the drivetrain's pose in radians.
+     * @param stateStdDevX         The drivetrain's x state standard deviation in meters.
+     * @param stateStdDevY         The drivetrain's y state standard deviation in meters.
+     * @param stateStdDevTheta     The drivetrain's heading state standard deviation in radians.
+     */
+    public void addResidual(
+        boolean multiTag,
+        double distance,
+        double residualX,
+        double residualY,
+        double residualTheta,
+        double stateStdDevX,
+        double stateStdDevY,
+        double stateStdDevTheta
+    ) {
+        if (!Double.isFinite(distance) || distance < 0) return;
+        int tags = multiTag ? MULTI_TAG : SINGLE_TAG;
+        int bin = Math.min((int) (distance / binWidthMeters), counts[tags].length - 1);
+
+        if (counts[tags][bin] >= maxSamplesPerBin) {
+            counts[tags][bin] /= 2;
+            distanceSums[tags][bin] /= 2;
+            translationExcessVarianceSums[tags][bin] /= 2;
+            thetaExcessVarianceSums[tags][bin] /= 2;
+        }
+
+        // Average x and y, since the curves use the same values for both.
+        double translationExcessVariance = (
+            residualX * residualX - stateStdDevX * stateStdDevX
+                + residualY * residualY - stateStdDevY * stateStdDevY
+        ) / 2;
+        double thetaExcessVariance = residualTheta * residualTheta - stateStdDevTheta * stateStdDevTheta;
+
+        counts[tags][bin]++;
+        distanceSums[tags][bin] += distance;
+        translationExcessVarianceSums[tags][bin] += translationExcessVariance;
+        thetaExcessVarianceSums[tags][bin] += thetaExcessVariance;
+        sampleCount++;
+    }
+
+    /**
+     * @return The total number of residuals added.
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Fits a standard deviation curve through the bins for single-tag or multi-tag estimates.
+     * The growth factor is kept at or above 1, since estimates shouldn't get more accurate with
+     * distance.
+     *
+     * @param multiTag If the curve for multi-tag estimates should be fit.
+     * @return The fitted curve, or null if fewer than two bins have enough samples.
+     */
+    public Camera.StdDevCurve fit(boolean multiTag) {
+        int tags = multiTag ? MULTI_TAG : SINGLE_TAG;
+        double[] translation = fitLogLine(tags, translationExcessVarianceSums[tags]);
+        if (translation == null) return null;
+        double[] theta = fitLogLine(tags, thetaExcessVarianceSums[tags]);
+        return new Camera.StdDevCurve(translation[0], translation[1], theta[0], theta[1]);
+    }
+
+    /**
+     * Fits ln(standard deviation) = ln(a) + ln(b) * distance, weighting each bin by its sample
+     * count.
+     *
+     * @return a and b, or null if fewer than two bins with different distances have enough
+     * samples.
+     */
+    private double[] fitLogLine(int tags, double[] excessVarianceSums) {
+        double weightSum = 0, distanceSum = 0, logStdDevSum = 0;
+        double distanceSquaredSum = 0, distanceLogStdDevSum = 0;
+        int bins = 0;
+        for (int bin = 0; bin < counts[tags].length; bin++) {
+            double n = counts[tags][bin];
+            if (n < minSamplesPerBin) continue;
+            double distance = distanceSums[tags][bin] / n;
+            double variance = excessVarianceSums[bin] / n;
+            double logStdDev = Math.log(Math.max(Math.sqrt(Math.max(variance, 0)), MIN_STD_DEV));
+            weightSum += n;
+            distanceSum += n * distance;
+            logStdDevSum += n * logStdDev;
+            distanceSquaredSum += n * distance * distance;
+            distanceLogStdDevSum += n * distance * logStdDev;
+            bins++;
+        }
+        if (bins < 2) return null;
+
+        double denominator = weightSum * distanceSquaredSum - distanceSum * distanceSum;
+        if (denominator <= 1e-9 * weightSum * weightSum) return null;
+        double slope = (weightSum * distanceLogStdDevSum - distanceSum * logStdDevSum) / denominator;
+        if (slope < 0) {
+            // Flat is the closest a non-shrinking curve can get, which is the weighted mean.
+            return new double[] {Math.exp(logStdDevSum / weightSum), 1};
+        }
+        double intercept = (logStdDevSum - slope * distanceSum) / weightSum;
+        return new double[] {Math.exp(intercept), Math.exp(slope)};
+    }
+
+    /**
+     * Formats a fitted curve as a camera's standard deviation configuration in the robot YAML.
+     *
+     * @param key   The configuration key, singleTagStdDevs or multiTagStdDevs.
+     * @param curve The curve to format.
+     * @return The YAML, or an empty string if the curve is null.
+     */
+    public static String toYaml(String key, Camera.StdDevCurve curve) {
+        if (curve == null) return "";
+        return String.format(
+            Locale.ROOT,
+            "%s:\n  xyA: %.6g\n  xyB: %.6g\n  thetaA: %.6g\n  thetaB: %.6g\n",
+            key,
+            curve.a().get(0, 0),
+            curve.b().get(0, 0),
+            curve.a().get(2, 0),
+            curve.b().get(2, 0)
+        );
+    }
+}
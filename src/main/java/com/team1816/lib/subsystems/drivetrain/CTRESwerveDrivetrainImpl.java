@@ -52,9 +52,10 @@ public class CTRESwerveDrivetrainImpl extends SwerveDrivetrain<CommonTalon, Comm
     private final SwerveDriveOdometry simActualOdometryOrRawOdometry;
 
     /**
-     * The latest state standard deviations sent to the pose estimator, for logging purposes.
+     * The latest state standard deviations sent to the pose estimator. Volatile because the
+     * vision worker thread reads it for gating measurements.
      */
-    private Matrix<N3, N1> latestStateStdDevs = DrivetrainConstants.defaultStateStdDevs;
+    private volatile Matrix<N3, N1> latestStateStdDevs = DrivetrainConstants.defaultStateStdDevs;
 
     /**
      * Swerve request to apply during robot-centric path following
@@ -133,6 +134,11 @@ public class CTRESwerveDrivetrainImpl extends SwerveDrivetrain<CommonTalon, Comm
         super.setStateStdDevs(stateStdDevs);
     }
 
+    @Override
+    public Matrix<N3, N1> getStateStdDevs() {
+        return latestStateStdDevs;
+    }
+
     @Override
     public void simTeleportRobot(Pose2d pose) {
         if (Utils.isSimulation()) {
@@ -158,7 +164,7 @@ public class CTRESwerveDrivetrainImpl extends SwerveDrivetrain<CommonTalon, Comm
             () -> BaseRobotState.simActualOrRawOdometryPose,
             Pose2d.struct
         );
-        GreenLogger.periodicLog(
+        GreenLogger.periodicLogDouble(
             logPath + "Robot Tilt (radians)",
             () -> BaseRobotState.robotTiltRadians
         );
@@ -167,7 +173,7 @@ public class CTRESwerveDrivetrainImpl extends SwerveDrivetrain<CommonTalon, Comm
             () -> latestStateStdDevs,
             Matrix.getStruct(Nat.N3(), Nat.N1())
         );
-        GreenLogger.periodicLog(
+        GreenLogger.periodicLogBoolean(
             logPath + "Has Accurate Pose Estimate",
             () -> BaseRobotState.hasAccuratePoseEstimate
         );
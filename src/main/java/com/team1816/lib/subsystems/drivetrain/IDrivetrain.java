@@ -100,4 +100,13 @@ public interface IDrivetrain extends ITestableSubsystem {
      *                     theta]ᵀ, with units in meters and radians.
      */
     void setStateStdDevs(Matrix<N3, N1> stateStdDevs);
+
+    /**
+     * Gets the pose estimator's current trust in robot odometry, as last set by {@link
+     * #setStateStdDevs(Matrix)}. This must be safe to call from any thread.
+     *
+     * @return Standard deviations of the pose estimate in the form [x, y, theta]ᵀ, with units in
+     * meters and radians.
+     */
+    Matrix<N3, N1> getStateStdDevs();
 }
@@ -6,6 +6,7 @@ import com.team1816.lib.Singleton;
 import com.team1816.lib.hardware.factory.RobotFactory;
 import com.team1816.lib.subsystems.ITestableSubsystem;
 import com.team1816.lib.util.GreenLogger;
+import com.team1816.lib.util.LoopProfiler;
 import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.filter.SlewRateLimiter;
 import edu.wpi.first.math.geometry.Pose2d;
@@ -24,6 +25,7 @@ import static edu.wpi.first.units.Units.RotationsPerSecond;
 public class Swerve extends SubsystemBase implements ITestableSubsystem {
 
     private final String NAME = "drivetrain";
+    private final LoopProfiler.Phase periodicPhase = LoopProfiler.phase(NAME + "/periodic");
 
     private final IDrivetrain drivetrain;
 
@@ -73,11 +75,17 @@ public class Swerve extends SubsystemBase implements ITestableSubsystem {
         // setup teleop drivetrain command
         maxAngularRate = RotationsPerSecond.of(kinematics.maxAngularRate).in(RadiansPerSecond);
 
-        GreenLogger.periodicLog(NAME + "/Wanted State", () -> wantedState);
+        GreenLogger.periodicLog(NAME + "/Wanted State", () -> wantedState).publishOnChange();
     }
 
     @Override
     public void periodic() {
+        try (var ignored = periodicPhase.start()) {
+            updatePeriodic();
+        }
+    }
+
+    private void updatePeriodic() {
         readFromHardware();
         applyStates();
         setForwardPerspective();
@@ -255,6 +263,17 @@ public class Swerve extends SubsystemBase implements ITestableSubsystem {
         drivetrain.setStateStdDevs(stateStdDevs);
     }
 
+    /**
+     * Gets the pose estimator's current trust in robot odometry. This is safe to call from any
+     * thread.
+     *
+     * @return Standard deviations of the pose estimate in the form [x, y, theta]ᵀ, with units in
+     * meters and radians.
+     */
+    public Matrix<N3, N1> getStateStdDevs() {
+        return drivetrain.getStateStdDevs();
+    }
+
     public void simTeleportRobot(Pose2d pose) {
         drivetrain.simTeleportRobot(pose);
     }
@@ -0,0 +1,36 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.BooleanArrayPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A {@link LogTopic} that publishes a {@link List} of {@link Boolean}s as a {@code boolean[]}.
+ */
+public class BooleanListLogTopic extends ObjectLogTopic<List<Boolean>> {
+    private final BooleanArrayPublisher publisher;
+
+    public BooleanListLogTopic(BooleanArrayPublisher publisher, Supplier<List<Boolean>> supplier) {
+        super(publisher, supplier);
+        this.publisher = publisher;
+    }
+
+    @Override
+    protected void set(List<Boolean> list, long timestampMicros) {
+        boolean[] value = new boolean[list.size()];
+        for (int i = 0; i < value.length; i++) {
+            // If the Boolean Object is null, default to false.
+            value[i] = Objects.requireNonNullElse(list.get(i), false);
+        }
+        publisher.set(value, timestampMicros);
+    }
+
+    @Override
+    protected List<Boolean> snapshot(List<Boolean> list) {
+        // Copy the list on the main thread, since the supplier may change it after it is sampled.
+        return new ArrayList<>(list);
+    }
+}
@@ -0,0 +1,37 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.BooleanPublisher;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * A {@link LogTopic} that publishes a primitive {@code boolean} without boxing it.
+ */
+public class BooleanLogTopic extends LogTopic {
+    private final BooleanPublisher publisher;
+    private final BooleanSupplier supplier;
+    private final boolean[] frames = new boolean[FRAME_COUNT];
+    private boolean lastValue;
+
+    public BooleanLogTopic(BooleanPublisher publisher, BooleanSupplier supplier) {
+        super(publisher);
+        this.publisher = publisher;
+        this.supplier = supplier;
+    }
+
+    @Override
+    protected void capture(int frame) {
+        frames[frame] = supplier.getAsBoolean();
+    }
+
+    @Override
+    protected boolean publish(int frame, long timestampMicros, boolean onlyIfChanged) {
+        boolean value = frames[frame];
+        if (onlyIfChanged && value == lastValue) {
+            return false;
+        }
+        publisher.set(value, timestampMicros);
+        lastValue = value;
+        return true;
+    }
+}
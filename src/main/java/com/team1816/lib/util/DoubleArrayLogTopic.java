@@ -0,0 +1,51 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * A {@link LogTopic} that publishes a {@code double[]} directly, skipping the
+ * {@code List<Double>} to array conversion done for {@link GreenLogger#periodicLogList}.
+ * <p>
+ * The supplied array is copied into a per-frame array when sampled, so the supplier may reuse the
+ * same array every loop. The frame arrays are only reallocated when the length changes.
+ */
+public class DoubleArrayLogTopic extends LogTopic {
+    private final DoubleArrayPublisher publisher;
+    private final Supplier<double[]> supplier;
+    private final double[][] frames = new double[FRAME_COUNT][0];
+    private double[] lastValue = new double[0];
+
+    public DoubleArrayLogTopic(DoubleArrayPublisher publisher, Supplier<double[]> supplier) {
+        super(publisher);
+        this.publisher = publisher;
+        this.supplier = supplier;
+    }
+
+    @Override
+    protected void capture(int frame) {
+        double[] value = supplier.get();
+        if (frames[frame].length != value.length) {
+            frames[frame] = new double[value.length];
+        }
+        System.arraycopy(value, 0, frames[frame], 0, value.length);
+    }
+
+    @Override
+    protected boolean publish(int frame, long timestampMicros, boolean onlyIfChanged) {
+        double[] value = frames[frame];
+        if (onlyIfChanged && Arrays.equals(value, lastValue)) {
+            return false;
+        }
+        publisher.set(value, timestampMicros);
+        if (isPublishOnChange()) {
+            if (lastValue.length != value.length) {
+                lastValue = new double[value.length];
+            }
+            System.arraycopy(value, 0, lastValue, 0, value.length);
+        }
+        return true;
+    }
+}
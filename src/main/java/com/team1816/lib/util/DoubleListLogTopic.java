@@ -0,0 +1,38 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A {@link LogTopic} that publishes a {@link List} of {@link Double}s as a {@code double[]}.
+ * Values that never change length should use {@link DoubleArrayLogTopic} instead, which skips the
+ * conversion.
+ */
+public class DoubleListLogTopic extends ObjectLogTopic<List<Double>> {
+    private final DoubleArrayPublisher publisher;
+
+    public DoubleListLogTopic(DoubleArrayPublisher publisher, Supplier<List<Double>> supplier) {
+        super(publisher, supplier);
+        this.publisher = publisher;
+    }
+
+    @Override
+    protected void set(List<Double> list, long timestampMicros) {
+        double[] value = new double[list.size()];
+        for (int i = 0; i < value.length; i++) {
+            // Default null entries to NaN rather than throwing.
+            value[i] = Objects.requireNonNullElse(list.get(i), Double.NaN);
+        }
+        publisher.set(value, timestampMicros);
+    }
+
+    @Override
+    protected List<Double> snapshot(List<Double> list) {
+        // Copy the list on the main thread, since the supplier may change it after it is sampled.
+        return new ArrayList<>(list);
+    }
+}
@@ -0,0 +1,58 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.DoublePublisher;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * A {@link LogTopic} that publishes a primitive {@code double} without boxing it.
+ */
+public class DoubleLogTopic extends LogTopic {
+    private final DoublePublisher publisher;
+    private final DoubleSupplier supplier;
+    private final double[] frames = new double[FRAME_COUNT];
+    private double changeEpsilon = 0;
+    private double lastValue = Double.NaN;
+
+    public DoubleLogTopic(DoublePublisher publisher, DoubleSupplier supplier) {
+        super(publisher);
+        this.publisher = publisher;
+        this.supplier = supplier;
+    }
+
+    /**
+     * Only publishes this topic when its value moves by more than the given epsilon from the last
+     * published value.
+     *
+     * @param epsilon The smallest change that will be published.
+     * @return This topic, for chaining.
+     */
+    public DoubleLogTopic withChangeEpsilon(double epsilon) {
+        if (epsilon < 0) {
+            throw new IllegalArgumentException("Change epsilon cannot be negative");
+        }
+        changeEpsilon = epsilon;
+        publishOnChange();
+        return this;
+    }
+
+    @Override
+    protected void capture(int frame) {
+        frames[frame] = supplier.getAsDouble();
+    }
+
+    @Override
+    protected boolean publish(int frame, long timestampMicros, boolean onlyIfChanged) {
+        double value = frames[frame];
+        // Double.compare also treats NaN as equal to NaN, so a NaN value is not republished.
+        if (
+            onlyIfChanged
+                && (Math.abs(value - lastValue) <= changeEpsilon || Double.compare(value, lastValue) == 0)
+        ) {
+            return false;
+        }
+        publisher.set(value, timestampMicros);
+        lastValue = value;
+        return true;
+    }
+}
@@ -0,0 +1,36 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.FloatArrayPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A {@link LogTopic} that publishes a {@link List} of {@link Float}s as a {@code float[]}.
+ */
+public class FloatListLogTopic extends ObjectLogTopic<List<Float>> {
+    private final FloatArrayPublisher publisher;
+
+    public FloatListLogTopic(FloatArrayPublisher publisher, Supplier<List<Float>> supplier) {
+        super(publisher, supplier);
+        this.publisher = publisher;
+    }
+
+    @Override
+    protected void set(List<Float> list, long timestampMicros) {
+        float[] value = new float[list.size()];
+        for (int i = 0; i < value.length; i++) {
+            // If the Float Object is null, default to Float.NaN.
+            value[i] = Objects.requireNonNullElse(list.get(i), Float.NaN);
+        }
+        publisher.set(value, timestampMicros);
+    }
+
+    @Override
+    protected List<Float> snapshot(List<Float> list) {
+        // Copy the list on the main thread, since the supplier may change it after it is sampled.
+        return new ArrayList<>(list);
+    }
+}
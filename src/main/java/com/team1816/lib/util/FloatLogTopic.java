@@ -0,0 +1,22 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.FloatPublisher;
+
+import java.util.function.Supplier;
+
+/**
+ * A {@link LogTopic} that publishes a {@link Float}.
+ */
+public class FloatLogTopic extends ObjectLogTopic<Float> {
+    private final FloatPublisher publisher;
+
+    public FloatLogTopic(FloatPublisher publisher, Supplier<Float> supplier) {
+        super(publisher, supplier);
+        this.publisher = publisher;
+    }
+
+    @Override
+    protected void set(Float value, long timestampMicros) {
+        publisher.set(value, timestampMicros);
+    }
+}
@@ -17,22 +17,56 @@ import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.reflect.Field;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 import static com.team1816.lib.util.FormatUtils.GetDisplay;
 
 public class GreenLogger {
 
-    private static final Map<LogTopic, Supplier<?>> periodicLogs = new HashMap<>();
+    // Flat array of pre-bound topics so updating them is a plain array walk. The count is volatile
+    // and only incremented after the topic is in the array, so the logging thread always sees a
+    // fully registered topic.
+    private static LogTopic[] periodicLogs = new LogTopic[64];
+    private static volatile int periodicLogCount = 0;
     // using an empty string here to make the logs and live views consistent
     private static final NetworkTable netTable;
     private static final StringPublisher msg;
-    private static Notifier mLogNotifier;
-    private static boolean mLogFirstStart = true;
+    // How often periodic logs are snapshotted, in microseconds.
+    private static final long LOG_PERIOD_MICROS = 50_000;
+    private static Thread mLogThread;
+    private static volatile boolean mLogFirstStart = true;
+    // Ring of frames handed from the main thread to the logging thread, see snapshotPeriodic. Each
+    // topic keeps its own values for each frame, these are just the shared bits.
+    private static final long[] frameTimestampsMicros = new long[LogTopic.FRAME_COUNT];
+    private static final int[] frameTopicCounts = new int[LogTopic.FRAME_COUNT];
+    private static volatile long framesWritten = 0;
+    private static volatile long framesPublished = 0;
+    private static long lastSnapshotTimeMicros = 0;
+    private static long droppedFrames = 0;
+    private static double snapshotTimeMs = 0;
+    private static long lastSnapshotErrorLogMs = 0;
+    private static long lastPublishErrorLogMs = 0;
+    // Created when logging starts, since the profiler logs through this class.
+    private static LoopProfiler.Phase snapshotPhase;
+    private static LoopProfiler.Phase publishPhase;
+    // Returned for NTSendables, which the SmartDashboard updates instead. Never captures or
+    // publishes anything.
+    private static final LogTopic NO_OP = new LogTopic(null) {
+        @Override
+        protected void capture(int frame) {}
+
+        @Override
+        protected boolean publish(int frame, long timestampMicros, boolean onlyIfChanged) {
+            return false;
+        }
+    };
     static Notifier delay = null;
 
     static {
@@ -78,9 +112,11 @@ public class GreenLogger {
      * @param name The topic name to log under.
      * @param supplier A supplier of the values to log.
      * @param <T> The type returned by the supplier.
+     * @return The registered topic, which can be configured to publish less often (see {@link
+     * LogTopic#publishOnChange()} and {@link LogTopic#withMinPublishInterval(double)}).
      */
-    public static <T> void periodicLog(String name, Supplier<T> supplier) {
-        periodicLog(name, supplier, null);
+    public static <T> LogTopic periodicLog(String name, Supplier<T> supplier) {
+        return periodicLog(name, supplier, null);
     }
 
     /**
@@ -109,8 +145,30 @@ public class GreenLogger {
      * @param supplier A supplier of the values to log.
      * @param struct The {@link Struct} for the {@link StructSerializable} class being logged.
      * @param <T> The type returned by the supplier.
+     * @return The registered topic, which can be configured to publish less often (see {@link
+     * LogTopic#publishOnChange()} and {@link LogTopic#withMinPublishInterval(double)}).
+     */
+    public static <T> LogTopic periodicLog(String name, Supplier<T> supplier, Struct<T> struct) {
+        LogTopic topic = createPeriodicLog(netTable, name, supplier, struct);
+        if (topic == null) {
+            // NTSendables are updated by the SmartDashboard, so hand back a topic that is never
+            // updated to keep chained configuration calls safe.
+            return NO_OP;
+        }
+        return addPeriodicLog(topic);
+    }
+
+    /**
+     * Creates the {@link LogTopic} for {@link #periodicLog(String, Supplier, Struct)}, resolving
+     * the publisher type once from the first value returned by the supplier.
+     *
+     * @return The bound topic, or null for {@link NTSendable}s, which are handled by the
+     * SmartDashboard instead.
      */
-    public static <T> void periodicLog(String name, Supplier<T> supplier, Struct<T> struct) {
+    @SuppressWarnings("unchecked")
+    static <T> LogTopic createPeriodicLog(
+        NetworkTable table, String name, Supplier<T> supplier, Struct<T> struct
+    ) {
         T result = supplier.get();
 
         if (
@@ -142,15 +200,22 @@ public class GreenLogger {
             );
         }
 
-        Publisher pub;
         if (result instanceof Double) {
-            pub = netTable.getDoubleTopic(name).publish();
+            return new DoubleLogTopic(
+                table.getDoubleTopic(name).publish(), () -> (Double) supplier.get()
+            );
         } else if (result instanceof Integer) {
-            pub = netTable.getIntegerTopic(name).publish();
+            return new LongLogTopic(
+                table.getIntegerTopic(name).publish(), () -> (Integer) supplier.get()
+            );
         } else if (result instanceof Boolean) {
-            pub = netTable.getBooleanTopic(name).publish();
+            return new BooleanLogTopic(
+                table.getBooleanTopic(name).publish(), () -> (Boolean) supplier.get()
+            );
         } else if (result instanceof Float) {
-            pub = netTable.getFloatTopic(name).publish();
+            return new FloatLogTopic(
+                table.getFloatTopic(name).publish(), (Supplier<Float>) supplier
+            );
         } else if (
             (
                 result instanceof StructSerializable
@@ -160,19 +225,17 @@ public class GreenLogger {
                     || result instanceof SwerveDrivetrain.SwerveDriveState
             ) && struct != null
         ) {
-            pub = netTable.getStructTopic(name, struct).publish();
+            return new StructLogTopic<>(table.getStructTopic(name, struct).publish(), supplier);
         } else if (result instanceof NTSendable) {
             // For NTSendables, log using the SmartDashboard. This will automatically hand periodic
             // updating based on the NTSendable's internal state. Note that this will not work
             // properly if the result of the supplier changes after the initial call.
             SmartDashboard.putData(name, (NTSendable) result);
-            // The publisher is null for NTSendables, since we use the SmartDashboard instead.
-            pub = null;
+            // There is no topic to update for NTSendables, since we use the SmartDashboard instead.
+            return null;
         } else {
-            pub = netTable.getStringTopic(name).publish();
+            return new StringLogTopic(table.getStringTopic(name).publish(), supplier);
         }
-
-        periodicLogs.put(new LogTopic(pub), supplier);
     }
 
     /**
@@ -203,9 +266,11 @@ public class GreenLogger {
      *                 if you wanted to log a {@link List} of {@link Double}s, you would pass in
      *                 {@code Double.class}.
      * @param <T>      The type that the supplier returns a {@link List} of.
+     * @return The registered topic, which can be configured to publish less often (see {@link
+     * LogTopic#publishOnChange()} and {@link LogTopic#withMinPublishInterval(double)}).
      */
-    public static <T> void periodicLogList(String name, Supplier<List<T>> supplier, Class<T> type) {
-        periodicLogList(name, supplier, type, null);
+    public static <T> LogTopic periodicLogList(String name, Supplier<List<T>> supplier, Class<T> type) {
+        return periodicLogList(name, supplier, type, null);
     }
 
     /**
@@ -240,9 +305,22 @@ public class GreenLogger {
      *                 {@code Double.class}.
      * @param struct   The {@link Struct} for the {@link StructSerializable} class being logged.
      * @param <T>      The type that the supplier returns a {@link List} of.
+     * @return The registered topic, which can be configured to publish less often (see {@link
+     * LogTopic#publishOnChange()} and {@link LogTopic#withMinPublishInterval(double)}).
      */
-    public static <T> void periodicLogList(
+    public static <T> LogTopic periodicLogList(
         String name, Supplier<List<T>> supplier, Class<T> type, Struct<T> struct
+    ) {
+        return addPeriodicLog(createPeriodicLogList(netTable, name, supplier, type, struct));
+    }
+
+    /**
+     * Creates the {@link LogTopic} for {@link #periodicLogList(String, Supplier, Class, Struct)},
+     * resolving the publisher type once from the type held by the {@link List}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <T> LogTopic createPeriodicLogList(
+        NetworkTable table, String name, Supplier<List<T>> supplier, Class<T> type, Struct<T> struct
     ) {
         if (
             (
@@ -262,15 +340,16 @@ public class GreenLogger {
             );
         }
 
-        Publisher pub;
+        // The casts below are safe because the type held by the list has just been checked.
+        Supplier rawSupplier = supplier;
         if (Double.class.isAssignableFrom(type)) {
-            pub = netTable.getDoubleArrayTopic(name).publish();
+            return new DoubleListLogTopic(table.getDoubleArrayTopic(name).publish(), rawSupplier);
         } else if (Integer.class.isAssignableFrom(type)) {
-            pub = netTable.getIntegerArrayTopic(name).publish();
+            return new IntegerListLogTopic(table.getIntegerArrayTopic(name).publish(), rawSupplier);
         } else if (Boolean.class.isAssignableFrom(type)) {
-            pub = netTable.getBooleanArrayTopic(name).publish();
+            return new BooleanListLogTopic(table.getBooleanArrayTopic(name).publish(), rawSupplier);
         } else if (Float.class.isAssignableFrom(type)) {
-            pub = netTable.getFloatArrayTopic(name).publish();
+            return new FloatListLogTopic(table.getFloatArrayTopic(name).publish(), rawSupplier);
         } else if (
             (
                 StructSerializable.class.isAssignableFrom(type)
@@ -280,12 +359,100 @@ public class GreenLogger {
                     || SwerveDrivetrain.SwerveDriveState.class.isAssignableFrom(type)
             ) && struct != null
         ) {
-            pub = netTable.getStructArrayTopic(name, struct).publish();
+            return new StructListLogTopic<>(
+                table.getStructArrayTopic(name, struct).publish(), supplier
+            );
         } else {
-            pub = netTable.getStringArrayTopic(name).publish();
+            return new StringListLogTopic(table.getStringArrayTopic(name).publish(), supplier);
         }
+    }
+
+    /**
+     * Adds a new periodic log of a primitive {@code double}.
+     * <p>
+     * Unlike {@link #periodicLog(String, Supplier)}, the value is never boxed into a {@link
+     * Double}, so this does not allocate on every logging cycle. Prefer this for any numeric value
+     * that is logged every loop.
+     *
+     * @param name The topic name to log under.
+     * @param supplier A supplier of the values to log.
+     * @return The registered topic, which can be configured to publish less often.
+     */
+    public static DoubleLogTopic periodicLogDouble(String name, DoubleSupplier supplier) {
+        return addPeriodicLog(new DoubleLogTopic(netTable.getDoubleTopic(name).publish(), supplier));
+    }
+
+    /**
+     * Adds a new periodic log of a primitive {@code boolean}.
+     * <p>
+     * Unlike {@link #periodicLog(String, Supplier)}, the value is never boxed into a {@link
+     * Boolean}. Prefer this for any flag that is logged every loop.
+     *
+     * @param name The topic name to log under.
+     * @param supplier A supplier of the values to log.
+     * @return The registered topic, which can be configured to publish less often.
+     */
+    public static LogTopic periodicLogBoolean(String name, BooleanSupplier supplier) {
+        return addPeriodicLog(new BooleanLogTopic(netTable.getBooleanTopic(name).publish(), supplier));
+    }
 
-        periodicLogs.put(new LogTopic(pub), supplier);
+    /**
+     * Adds a new periodic log of a primitive {@code long}, published as a NetworkTables integer.
+     * <p>
+     * Unlike {@link #periodicLog(String, Supplier)}, the value is never boxed. Prefer this for
+     * counters and IDs that are logged every loop.
+     *
+     * @param name The topic name to log under.
+     * @param supplier A supplier of the values to log.
+     * @return The registered topic, which can be configured to publish less often.
+     */
+    public static LogTopic periodicLogLong(String name, LongSupplier supplier) {
+        return addPeriodicLog(new LongLogTopic(netTable.getIntegerTopic(name).publish(), supplier));
+    }
+
+    /**
+     * Adds a new periodic log of a {@code double[]}.
+     * <p>
+     * The array returned by the supplier is published as-is, so there is no {@link List} to array
+     * conversion like there is with {@link #periodicLogList(String, Supplier, Class)}. The supplier
+     * may return the same array instance every time, as long as its contents are not being
+     * written to while it is being logged.
+     *
+     * @param name The topic name to log under.
+     * @param supplier A supplier of the values to log.
+     * @return The registered topic, which can be configured to publish less often.
+     */
+    public static LogTopic periodicLogDoubleArray(String name, Supplier<double[]> supplier) {
+        return addPeriodicLog(
+            new DoubleArrayLogTopic(netTable.getDoubleArrayTopic(name).publish(), supplier)
+        );
+    }
+
+    /**
+     * Adds a new periodic log of a {@code long[]}, published as a NetworkTables integer array.
+     * <p>
+     * Like {@link #periodicLogDoubleArray(String, Supplier)}, the supplier may return the same
+     * array instance every time, as long as its contents are not being written to while it is
+     * being logged.
+     *
+     * @param name The topic name to log under.
+     * @param supplier A supplier of the values to log.
+     * @return The registered topic, which can be configured to publish less often.
+     */
+    public static LogTopic periodicLogLongArray(String name, Supplier<long[]> supplier) {
+        return addPeriodicLog(
+            new LongArrayLogTopic(netTable.getIntegerArrayTopic(name).publish(), supplier)
+        );
+    }
+
+    private static synchronized <L extends LogTopic> L addPeriodicLog(L topic) {
+        if (periodicLogCount == periodicLogs.length) {
+            periodicLogs = Arrays.copyOf(periodicLogs, periodicLogs.length * 2);
+        }
+        periodicLogs[periodicLogCount] = topic;
+        // Publish the new count last so the logging thread never sees an empty slot.
+        periodicLogCount++;
+        return topic;
     }
 
     public static void log(Object s) {
@@ -328,99 +495,114 @@ public class GreenLogger {
 
     public static void startLogging(){
         // don't log until DS is attached
-        if(mLogNotifier != null || !DriverStation.isDSAttached()) return;
+        if(mLogThread != null || !DriverStation.isDSAttached()) return;
         // once we are attached, delay and then log to give WPI time to rename file
         if(delay == null){
             DataLogManager.logNetworkTables(true);
             // this will trigger rename
             DataLogManager.start();
             delay = new Notifier(()->{
-                GreenLogger.log(periodicLogs.size() + " periodic logs registered");
+                GreenLogger.log(periodicLogCount + " periodic logs registered");
                 DriverStation.startDataLog(DataLogManager.getLog(), false);
                 mLogFirstStart = false;
             });
             delay.startSingle(5);
         }
-        // if log init is complete update periodic logs
+        // if log init is complete start publishing periodic logs
         if(mLogFirstStart) return;
-        mLogNotifier = new Notifier(() -> {
-            updatePeriodic();
-        });
-        mLogNotifier.startPeriodic(.05);
+        periodicLogDouble("timings/GreenLogger Snapshot (ms)", () -> snapshotTimeMs);
+        periodicLogLong("timings/GreenLogger Dropped Frames", () -> droppedFrames).publishOnChange();
+        snapshotPhase = LoopProfiler.phase("GreenLogger/snapshot");
+        publishPhase = LoopProfiler.phase("GreenLogger/publish");
+        mLogThread = new Thread(GreenLogger::publishLoop, "GreenLogger");
+        mLogThread.setDaemon(true);
+        // Publishing is not time critical, so let the robot loop and vendor threads win.
+        mLogThread.setPriority(Thread.MIN_PRIORITY);
+        mLogThread.start();
     }
 
-    // Will update all registered periodic loggers
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    private static void updatePeriodic() {
-        for (LogTopic entry : periodicLogs.keySet()) {
-            var supplier = periodicLogs.get(entry);
-            if (entry.Publisher instanceof DoublePublisher) {
-                var value = (Double) supplier.get();
-                ((DoublePublisher) entry.Publisher).set(value);
-            } else if (entry.Publisher instanceof IntegerPublisher) {
-                var value = (Integer) supplier.get();
-                ((IntegerPublisher) entry.Publisher).set(value);
-            } else if (entry.Publisher instanceof BooleanPublisher) {
-                var value = (Boolean) supplier.get();
-                ((BooleanPublisher) entry.Publisher).set(value);
-            } else if (entry.Publisher instanceof FloatPublisher) {
-                var value = (Float) supplier.get();
-                ((FloatPublisher) entry.Publisher).set(value);
-            } else if (entry.Publisher instanceof StructPublisher) {
-                var value = supplier.get();
-                ((StructPublisher) entry.Publisher).set(value);
-            } else if (entry.Publisher instanceof DoubleArrayPublisher) {
-                // Convert the result of the supplier from a List<Double> to a double[].
-                var value = ((List<Double>) supplier.get()).stream()
-                    .mapToDouble(Double::doubleValue)
-                    .toArray();
-                ((DoubleArrayPublisher) entry.Publisher).set(value);
-            } else if (entry.Publisher instanceof IntegerArrayPublisher) {
-                // Convert the result of the supplier from a List<Integer> to an int[].
-                var value = ((List<Integer>) supplier.get()).stream()
-                    .mapToLong(Integer::longValue)
-                    .toArray();
-                ((IntegerArrayPublisher) entry.Publisher).set(value);
-            } else if (entry.Publisher instanceof BooleanArrayPublisher) {
-                List<Boolean> booleanList = (List<Boolean>) supplier.get();
-                // Convert the result of the supplier from a List<Boolean> to a boolean[].
-                boolean[] value = new boolean[booleanList.size()];
-                for (int i = 0; i < booleanList.size(); i++) {
-                    // Set the boolean primitive at the corresponding index to the Boolean Object
-                    // from the list. If the Boolean Object is null, default to false.
-                    value[i] = Objects.requireNonNullElse(booleanList.get(i), false);
+    /**
+     * Snapshots the values of all registered periodic logs into the next frame, then wakes the
+     * logging thread up to publish them.
+     * <p>
+     * This should be called on the main robot thread at the very end of every loop, so that every
+     * supplier is called on the same thread that changes its values and the snapshot shows a
+     * consistent view of the loop that just finished. The only work done here is calling each
+     * supplier and copying its value; serializing and publishing to NetworkTables and the DataLog
+     * happens on the logging thread. The time this takes is logged under "timings".
+     * <p>
+     * If the logging thread falls a full {@link LogTopic#FRAME_COUNT} frames behind, new frames
+     * are dropped (and counted) instead of blocking the main thread.
+     */
+    public static void snapshotPeriodic() {
+        if (mLogThread == null) return;
+        long startMicros = RobotController.getFPGATime();
+        if (startMicros - lastSnapshotTimeMicros < LOG_PERIOD_MICROS) return;
+        lastSnapshotTimeMicros = startMicros;
+
+        long frameNumber = framesWritten;
+        if (frameNumber - framesPublished >= LogTopic.FRAME_COUNT) {
+            droppedFrames++;
+            return;
+        }
+        int frame = (int) (frameNumber % LogTopic.FRAME_COUNT);
+        try (var ignored = snapshotPhase.start()) {
+            // Read the count before the array, see addPeriodicLog.
+            int count = periodicLogCount;
+            LogTopic[] topics = periodicLogs;
+            for (int i = 0; i < count; i++) {
+                try {
+                    topics[i].sample(frame, startMicros);
+                } catch (Throwable t) {
+                    // Skip just this topic so one broken supplier can't stop the rest of the
+                    // logs, and rate-limit error logging to once per second so it can't flood
+                    // them either.
+                    long now = System.currentTimeMillis();
+                    if (now - lastSnapshotErrorLogMs > 1000) {
+                        GreenLogger.log(t);
+                        lastSnapshotErrorLogMs = now;
+                    }
                 }
-                ((BooleanArrayPublisher) entry.Publisher).set(value);
-            } else if (entry.Publisher instanceof FloatArrayPublisher) {
-                List<Float> floatList = (List<Float>) supplier.get();
-                // Convert the result of the supplier from a List<Float> to a float[].
-                float[] value = new float[floatList.size()];
-                for (int i = 0; i < floatList.size(); i++) {
-                    // Set the float primitive at the corresponding index to the Float Object from
-                    // the list. If the Float Object is null, default to Float.NaN.
-                    value[i] = Objects.requireNonNullElse(floatList.get(i), Float.NaN);
+            }
+            frameTimestampsMicros[frame] = startMicros;
+            frameTopicCounts[frame] = count;
+        }
+        // Hand the frame over to the logging thread.
+        framesWritten = frameNumber + 1;
+        LockSupport.unpark(mLogThread);
+
+        snapshotTimeMs = (RobotController.getFPGATime() - startMicros) / 1000.0;
+    }
+
+    // Publishes frames from snapshotPeriodic as they come in, runs on the logging thread
+    private static void publishLoop() {
+        while (true) {
+            long frameNumber = framesPublished;
+            if (frameNumber == framesWritten) {
+                LockSupport.park();
+                continue;
+            }
+            int frame = (int) (frameNumber % LogTopic.FRAME_COUNT);
+            int count = frameTopicCounts[frame];
+            long timestampMicros = frameTimestampsMicros[frame];
+            LogTopic[] topics = periodicLogs;
+            try (var ignored = publishPhase.start()) {
+                for (int i = 0; i < count; i++) {
+                    try {
+                        topics[i].publish(frame, timestampMicros);
+                    } catch (Throwable t) {
+                        // Rate-limit error logging to once per second so a broken topic can't
+                        // flood the logs.
+                        long now = System.currentTimeMillis();
+                        if (now - lastPublishErrorLogMs > 1000) {
+                            GreenLogger.log(t);
+                            lastPublishErrorLogMs = now;
+                        }
+                    }
                 }
-                ((FloatArrayPublisher) entry.Publisher).set(value);
-            } else if (entry.Publisher instanceof StringArrayPublisher) {
-                // We are using a StringArrayPublisher for a List of any type that is not covered
-                // by the other array publishers (not just for Strings), so we need to get the
-                // String value of the Objects in the List.
-                var value = ((List<?>) supplier.get()).stream()
-                    .map(String::valueOf)
-                    .toArray(String[]::new);
-                ((StringArrayPublisher) entry.Publisher).set(value);
-            } else if (entry.Publisher instanceof StructArrayPublisher) {
-                var value = ((List) supplier.get()).toArray();
-                ((StructArrayPublisher) entry.Publisher).set(value);
-            } else if (
-                // Would be null if this was logging an NTSendable, which handle their own periodic
-                // updating, so we don't need to do anything.
-                entry.Publisher != null
-            ) {
-                // Default to logging as a string
-                var value = String.valueOf(supplier.get());
-                ((StringPublisher) entry.Publisher).set(value);
             }
+            // Give the frame back to the main thread.
+            framesPublished = frameNumber + 1;
         }
     }
 
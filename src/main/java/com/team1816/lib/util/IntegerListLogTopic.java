@@ -0,0 +1,36 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.IntegerArrayPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A {@link LogTopic} that publishes a {@link List} of {@link Integer}s as a {@code long[]}.
+ */
+public class IntegerListLogTopic extends ObjectLogTopic<List<Integer>> {
+    private final IntegerArrayPublisher publisher;
+
+    public IntegerListLogTopic(IntegerArrayPublisher publisher, Supplier<List<Integer>> supplier) {
+        super(publisher, supplier);
+        this.publisher = publisher;
+    }
+
+    @Override
+    protected void set(List<Integer> list, long timestampMicros) {
+        long[] value = new long[list.size()];
+        for (int i = 0; i < value.length; i++) {
+            // Default null entries to 0 rather than throwing.
+            value[i] = Objects.requireNonNullElse(list.get(i), 0);
+        }
+        publisher.set(value, timestampMicros);
+    }
+
+    @Override
+    protected List<Integer> snapshot(List<Integer> list) {
+        // Copy the list on the main thread, since the supplier may change it after it is sampled.
+        return new ArrayList<>(list);
+    }
+}
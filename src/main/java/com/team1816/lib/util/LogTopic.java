@@ -1,11 +1,131 @@
 package com.team1816.lib.util;
 
 import edu.wpi.first.networktables.Publisher;
-import edu.wpi.first.util.datalog.DataLogEntry;
 
-public class LogTopic {
-    public Publisher Publisher;
-    public LogTopic(Publisher Publisher) {
+/**
+ * A periodically logged topic, bound to its publisher and value supplier at registration time.
+ * <p>
+ * Each subclass knows the exact type it publishes, so {@link GreenLogger} can update every topic
+ * with a plain array walk instead of checking the publisher type on every logging cycle.
+ * <p>
+ * Logging happens in two steps. At the end of every robot loop, {@link #sample(int, long)} is
+ * called on the main thread to copy the supplier's value into one of {@link #FRAME_COUNT} frame
+ * slots. Later, {@link #publish(int, long)} is called on the logging thread to send that frame's
+ * value to NetworkTables (and through it, the DataLog). This keeps the suppliers on the same thread
+ * as the code that changes their values, while the slow part of logging happens off of it.
+ * <p>
+ * By default a topic is published every loop. Values that rarely change can opt into {@link
+ * #publishOnChange()} and/or {@link #withMinPublishInterval(double)} to cut down on NetworkTables
+ * traffic and DataLog size, for example:
+ * <pre>{@code
+ * GreenLogger.periodicLog(NAME + "/Wanted State", () -> wantedState).publishOnChange();
+ * }</pre>
+ */
+public abstract class LogTopic {
+    /**
+     * The number of frames each topic buffers between the main thread and the logging thread.
+     */
+    public static final int FRAME_COUNT = 8;
+
+    public final Publisher Publisher;
+
+    private boolean publishOnChange = false;
+    private long minPublishIntervalMicros = 0;
+
+    // Only touched by the main thread.
+    private final boolean[] sampledFrames = new boolean[FRAME_COUNT];
+    private boolean hasSampled = false;
+    private long lastSampleTimeMicros = 0;
+
+    // Only touched by the logging thread.
+    private boolean hasPublished = false;
+
+    protected LogTopic(Publisher Publisher) {
         this.Publisher = Publisher;
     }
+
+    /**
+     * Only publishes this topic when its value changes. The first value is always published.
+     * <p>
+     * Doubles are compared with an epsilon (see {@link DoubleLogTopic#withChangeEpsilon(double)}),
+     * and everything else is compared with {@link Object#equals(Object)}.
+     *
+     * @return This topic, for chaining.
+     */
+    public LogTopic publishOnChange() {
+        publishOnChange = true;
+        return this;
+    }
+
+    /**
+     * Sets the minimum time between publishes of this topic. Robot loops that happen sooner than
+     * this after the last sample are skipped entirely, without calling the supplier.
+     *
+     * @param seconds The minimum time between publishes in seconds.
+     * @return This topic, for chaining.
+     */
+    public LogTopic withMinPublishInterval(double seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Minimum publish interval cannot be negative");
+        }
+        minPublishIntervalMicros = (long) (seconds * 1e6);
+        return this;
+    }
+
+    /**
+     * @return If this topic only publishes when its value changes.
+     */
+    protected boolean isPublishOnChange() {
+        return publishOnChange;
+    }
+
+    /**
+     * Copies the latest value from this topic's supplier into a frame, unless the minimum publish
+     * interval has not passed yet. This must only be called from the main robot thread.
+     *
+     * @param frame           The frame slot to copy the value into.
+     * @param timestampMicros The timestamp of this frame in microseconds.
+     */
+    public final void sample(int frame, long timestampMicros) {
+        if (hasSampled && timestampMicros - lastSampleTimeMicros < minPublishIntervalMicros) {
+            sampledFrames[frame] = false;
+            return;
+        }
+        // Cleared first so a capture that throws leaves nothing to publish for the frame.
+        sampledFrames[frame] = false;
+        capture(frame);
+        sampledFrames[frame] = true;
+        hasSampled = true;
+        lastSampleTimeMicros = timestampMicros;
+    }
+
+    /**
+     * Publishes the value sampled into a frame, unless it was skipped or has not changed and this
+     * topic only publishes on change. This must only be called from the logging thread.
+     *
+     * @param frame           The frame slot to publish.
+     * @param timestampMicros The timestamp the frame was sampled at in microseconds.
+     */
+    public final void publish(int frame, long timestampMicros) {
+        if (!sampledFrames[frame]) {
+            return;
+        }
+        if (publish(frame, timestampMicros, publishOnChange && hasPublished)) {
+            hasPublished = true;
+        }
+    }
+
+    /**
+     * Gets the latest value from the supplier and copies it into a frame.
+     */
+    protected abstract void capture(int frame);
+
+    /**
+     * Publishes the value in a frame.
+     *
+     * @param onlyIfChanged If the value should only be published if it differs from the last
+     *                      published value.
+     * @return If the value was published.
+     */
+    protected abstract boolean publish(int frame, long timestampMicros, boolean onlyIfChanged);
 }
@@ -0,0 +1,52 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.IntegerArrayPublisher;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * A {@link LogTopic} that publishes a {@code long[]} directly as a NetworkTables integer array,
+ * skipping the {@code List<Integer>} to array conversion done for {@link
+ * GreenLogger#periodicLogList}.
+ * <p>
+ * The supplied array is copied into a per-frame array when sampled, so the supplier may reuse the
+ * same array every loop. The frame arrays are only reallocated when the length changes.
+ */
+public class LongArrayLogTopic extends LogTopic {
+    private final IntegerArrayPublisher publisher;
+    private final Supplier<long[]> supplier;
+    private final long[][] frames = new long[FRAME_COUNT][0];
+    private long[] lastValue = new long[0];
+
+    public LongArrayLogTopic(IntegerArrayPublisher publisher, Supplier<long[]> supplier) {
+        super(publisher);
+        this.publisher = publisher;
+        this.supplier = supplier;
+    }
+
+    @Override
+    protected void capture(int frame) {
+        long[] value = supplier.get();
+        if (frames[frame].length != value.length) {
+            frames[frame] = new long[value.length];
+        }
+        System.arraycopy(value, 0, frames[frame], 0, value.length);
+    }
+
+    @Override
+    protected boolean publish(int frame, long timestampMicros, boolean onlyIfChanged) {
+        long[] value = frames[frame];
+        if (onlyIfChanged && Arrays.equals(value, lastValue)) {
+            return false;
+        }
+        publisher.set(value, timestampMicros);
+        if (isPublishOnChange()) {
+            if (lastValue.length != value.length) {
+                lastValue = new long[value.length];
+            }
+            System.arraycopy(value, 0, lastValue, 0, value.length);
+        }
+        return true;
+    }
+}
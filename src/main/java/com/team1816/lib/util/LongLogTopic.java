@@ -0,0 +1,37 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.IntegerPublisher;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link LogTopic} that publishes a primitive {@code long} without boxing it.
+ */
+public class LongLogTopic extends LogTopic {
+    private final IntegerPublisher publisher;
+    private final LongSupplier supplier;
+    private final long[] frames = new long[FRAME_COUNT];
+    private long lastValue;
+
+    public LongLogTopic(IntegerPublisher publisher, LongSupplier supplier) {
+        super(publisher);
+        this.publisher = publisher;
+        this.supplier = supplier;
+    }
+
+    @Override
+    protected void capture(int frame) {
+        frames[frame] = supplier.getAsLong();
+    }
+
+    @Override
+    protected boolean publish(int frame, long timestampMicros, boolean onlyIfChanged) {
+        long value = frames[frame];
+        if (onlyIfChanged && value == lastValue) {
+            return false;
+        }
+        publisher.set(value, timestampMicros);
+        lastValue = value;
+        return true;
+    }
+}
@@ -0,0 +1,175 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records how long each part of the robot loop takes, so we can see exactly what blows the 20 ms
+ * budget instead of only the total loop time.
+ * <p>
+ * Each part of the loop is a {@link Phase}, created once with {@link #phase(String)} and then
+ * timed with try-with-resources:
+ * <pre>{@code
+ * private final LoopProfiler.Phase periodicPhase = LoopProfiler.phase(NAME + "/periodic");
+ *
+ * public void periodic() {
+ *     try (var ignored = periodicPhase.start()) {
+ *         updatePeriodic();
+ *     }
+ * }
+ * }</pre>
+ * Spans are measured in FPGA time and recorded into a preallocated fixed bin histogram, so timing
+ * a phase never allocates. Every {@link #WINDOW_MICROS} the 50th and 95th percentile and maximum
+ * of the window are computed, the histogram is cleared, and the results are logged under
+ * {@code timings/<phase name>/}.
+ * <p>
+ * Command {@code execute()} methods are profiled too, once {@link #profileCommands()} is called.
+ */
+public final class LoopProfiler {
+
+    // How long each statistics window is, in microseconds.
+    public static final long WINDOW_MICROS = 5_000_000;
+    // Histogram bins cover 0 to 50 ms in 50 us steps, anything slower goes in the last bin.
+    private static final long BIN_WIDTH_MICROS = 50;
+    private static final int BIN_COUNT = 1000;
+
+    private static final Map<String, Phase> commandPhases = new HashMap<>();
+    private static long commandMarkMicros = 0;
+    private static boolean profilingCommands = false;
+
+    private LoopProfiler() {}
+
+    /**
+     * Creates a phase and starts logging its statistics. This should be called once per phase,
+     * when the owning class is constructed, and the result kept in a field.
+     *
+     * @param name The name of the phase, logged under {@code timings/<name>/}.
+     * @return The new phase.
+     */
+    public static Phase phase(String name) {
+        var phase = new Phase();
+        var logPath = "timings/" + name + "/";
+        GreenLogger.periodicLogDouble(logPath + "p50 (ms)", () -> phase.p50Ms).publishOnChange();
+        GreenLogger.periodicLogDouble(logPath + "p95 (ms)", () -> phase.p95Ms).publishOnChange();
+        GreenLogger.periodicLogDouble(logPath + "max (ms)", () -> phase.maxMs).publishOnChange();
+        return phase;
+    }
+
+    /**
+     * Profiles the {@code execute()} of every scheduled command, under {@code
+     * timings/commands/<command name>/}.
+     * <p>
+     * {@link CommandScheduler} has no hook before a command executes, only after, so a mark is
+     * taken at the end of the default button loop (which the scheduler polls right before it
+     * runs commands), and each command's span runs from the previous mark to when its execute
+     * callback fires. Finishing commands move the mark too, so their {@code end()} isn't counted
+     * against the next command. Because of this, this must be called after every trigger binding
+     * has been made, so the mark is the last thing the button loop runs.
+     * <p>
+     * Each command's phase is created when it is first initialized, so executing it is only a
+     * lookup. Commands already scheduled when this is called aren't profiled until they are
+     * initialized again.
+     */
+    public static void profileCommands() {
+        if (profilingCommands) return;
+        profilingCommands = true;
+        var scheduler = CommandScheduler.getInstance();
+        scheduler.getDefaultButtonLoop().bind(LoopProfiler::markCommands);
+        scheduler.onCommandInitialize(LoopProfiler::addCommand);
+        scheduler.onCommandExecute(LoopProfiler::recordCommand);
+        scheduler.onCommandFinish(command -> markCommands());
+        scheduler.onCommandInterrupt(command -> markCommands());
+    }
+
+    private static void markCommands() {
+        commandMarkMicros = RobotController.getFPGATime();
+    }
+
+    private static void addCommand(Command command) {
+        commandPhases.computeIfAbsent(command.getName(), name -> phase("commands/" + name));
+    }
+
+    private static void recordCommand(Command command) {
+        long now = RobotController.getFPGATime();
+        var phase = commandPhases.get(command.getName());
+        if (phase != null) {
+            phase.record(now - commandMarkMicros, now);
+        }
+        commandMarkMicros = now;
+    }
+
+    /**
+     * A timed part of the robot loop. Each phase must only be timed from one thread, and spans of
+     * the same phase can't be nested.
+     */
+    public static final class Phase implements AutoCloseable {
+        private final int[] bins = new int[BIN_COUNT];
+        private int sampleCount = 0;
+        private long maxMicros = 0;
+        private long windowStartMicros = -1;
+        private long startMicros = 0;
+        // Written by the thread timing the phase, read by the logger on the main thread.
+        private volatile double p50Ms = 0;
+        private volatile double p95Ms = 0;
+        private volatile double maxMs = 0;
+
+        private Phase() {}
+
+        /**
+         * Starts timing a span of this phase. The span ends when this phase is closed.
+         *
+         * @return This phase, for use with try-with-resources.
+         */
+        public Phase start() {
+            startMicros = RobotController.getFPGATime();
+            return this;
+        }
+
+        /**
+         * Ends the span started by {@link #start()} and records it.
+         */
+        @Override
+        public void close() {
+            long now = RobotController.getFPGATime();
+            record(now - startMicros, now);
+        }
+
+        private void record(long spanMicros, long nowMicros) {
+            if (windowStartMicros < 0) windowStartMicros = nowMicros;
+            bins[(int) Math.min(Math.max(spanMicros, 0) / BIN_WIDTH_MICROS, BIN_COUNT - 1)]++;
+            sampleCount++;
+            maxMicros = Math.max(maxMicros, spanMicros);
+            if (nowMicros - windowStartMicros >= WINDOW_MICROS) {
+                publishWindow();
+                windowStartMicros = nowMicros;
+            }
+        }
+
+        private void publishWindow() {
+            p50Ms = percentileMs(0.50);
+            p95Ms = percentileMs(0.95);
+            maxMs = maxMicros / 1000.0;
+            Arrays.fill(bins, 0);
+            sampleCount = 0;
+            maxMicros = 0;
+        }
+
+        // The upper edge of the bin holding the percentile, capped at the exact maximum.
+        private double percentileMs(double percentile) {
+            int target = (int) Math.ceil(percentile * sampleCount);
+            int seen = 0;
+            for (int i = 0; i < BIN_COUNT; i++) {
+                seen += bins[i];
+                if (seen >= target) {
+                    return Math.min((i + 1) * BIN_WIDTH_MICROS, maxMicros) / 1000.0;
+                }
+            }
+            return maxMicros / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.Publisher;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Base class for {@link LogTopic}s whose value is an object, handling change detection with
+ * {@link Object#equals(Object)}.
+ * <p>
+ * Only the reference returned by the supplier is stored in a frame, which is safe for immutable
+ * values like WPILib geometry classes and enums. Topics for mutable values, like {@link
+ * java.util.List}s, override {@link #snapshot(Object)} to copy them on the main thread.
+ *
+ * @param <V> The type returned by the supplier.
+ */
+public abstract class ObjectLogTopic<V> extends LogTopic {
+    private final Supplier<? extends V> supplier;
+    private final Object[] frames = new Object[FRAME_COUNT];
+    private V lastValue;
+
+    protected ObjectLogTopic(Publisher publisher, Supplier<? extends V> supplier) {
+        super(publisher);
+        this.supplier = supplier;
+    }
+
+    @Override
+    protected final void capture(int frame) {
+        frames[frame] = snapshot(supplier.get());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected final boolean publish(int frame, long timestampMicros, boolean onlyIfChanged) {
+        V value = (V) frames[frame];
+        // Don't hold on to the value any longer than we need to.
+        frames[frame] = null;
+        if (onlyIfChanged && Objects.equals(value, lastValue)) {
+            return false;
+        }
+        set(value, timestampMicros);
+        lastValue = value;
+        return true;
+    }
+
+    /**
+     * Sends the value to the publisher.
+     */
+    protected abstract void set(V value, long timestampMicros);
+
+    /**
+     * Gets a copy of the value that will not change after it is sampled. This only needs to be
+     * overridden for mutable values, where the supplier may hand back the same instance after
+     * changing it.
+     */
+    protected V snapshot(V value) {
+        return value;
+    }
+}
@@ -0,0 +1,330 @@
+package com.team1816.lib.util.ShooterCalculator;
+
+import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A precomputed grid of {@link HenryShooterCalculator} solutions for a fixed angle of entry, so
+ * the shooter can be aimed with a few array reads instead of the full ballistic solution.
+ * <p>
+ * The grid is indexed in the frame of the shot: the horizontal distance from the shooter to the
+ * target, the height of the target above the shooter, and the field-relative chassis velocity
+ * split into the component toward the target (radial) and the component 90 degrees
+ * counterclockwise from it (tangential). In this frame the solution doesn't depend on which
+ * direction the target is in, so the grid only needs four dimensions. Each grid point stores the
+ * turret angle relative to the direction of the target, the incline angle, and the launch motor
+ * velocity, and lookups interpolate between the 16 surrounding points.
+ * <p>
+ * Grid points where the projectile would leave the shooter with less than {@link
+ * #MIN_HORIZONTAL_LAUNCH_VELOCITY_MPS} of horizontal velocity are left out. This happens when
+ * driving at the target about as fast as the shot needs to travel, and there the turret angle
+ * swings too quickly with the chassis velocity to interpolate. Lookups outside of the grid, or in
+ * cells touching a point that was left out, return false so the caller can fall back to the
+ * analytic solution.
+ * <p>
+ * The error bound is measured when the grid is built, by checking every output against the
+ * analytic solution at {@link #ERROR_SAMPLES_PER_CELL} random points in every cell. The largest
+ * errors found are available from {@link #getMaxTurretAngleErrorRadians()}, {@link
+ * #getMaxInclineAngleErrorRadians()} and {@link #getMaxLaunchVelocityErrorRPS()}. Since this is
+ * sampled, errors slightly past it are possible. With the {@link HenryShooterCalculator} grid, both
+ * angles are within about half a degree, and {@link HenryShooterCalculator} logs the bound when it
+ * builds the grid.
+ * <p>
+ * Lookups share a scratch buffer, so a grid must only be used from one thread.
+ */
+public class BallisticGrid {
+    private static final int OUTPUTS = 3;
+    public static final double MIN_HORIZONTAL_LAUNCH_VELOCITY_MPS = 2;
+    public static final int ERROR_SAMPLES_PER_CELL = 4;
+
+    private final double angleOfEntryDegrees;
+    private final Axis distanceAxis, deltaZAxis, radialVelocityAxis, tangentialVelocityAxis;
+    // Indexed by ((distance * deltaZ count + deltaZ) * radial count + radial) * tangential count
+    // + tangential, then by output.
+    private final double[] values;
+    private final int deltaZStride, radialStride, tangentialStride;
+    private final double[] scratch = new double[OUTPUTS];
+
+    private double maxTurretAngleErrorRadians = 0;
+    private double maxInclineAngleErrorRadians = 0;
+    private double maxLaunchVelocityErrorRPS = 0;
+
+    /**
+     * A uniformly spaced grid axis.
+     *
+     * @param min   The first grid value.
+     * @param step  The spacing between grid values.
+     * @param count The number of grid values.
+     */
+    public record Axis(double min, double step, int count) {
+        public Axis {
+            if (step <= 0 || count < 2) {
+                throw new IllegalArgumentException("A grid axis needs at least two points and a positive step");
+            }
+        }
+
+        /**
+         * Constructs an {@link Axis} from min to max with about the given step, adjusted so max
+         * is exactly on the grid.
+         */
+        public static Axis of(double min, double max, double approximateStep) {
+            int intervals = Math.max(1, (int) Math.ceil((max - min) / approximateStep));
+            return new Axis(min, (max - min) / intervals, intervals + 1);
+        }
+
+        double valueAt(int index) {
+            return min + step * index;
+        }
+    }
+
+    /**
+     * Builds the grid by solving every grid point with {@link HenryShooterCalculator#solve}.
+     *
+     * @param angleOfEntryDegrees    The angle of entry the grid is built for, in degrees up from
+     *                               horizontal.
+     * @param distanceAxis           The horizontal distances to the target, in meters.
+     * @param deltaZAxis             The heights of the target above the shooter, in meters.
+     * @param radialVelocityAxis     The chassis velocities toward the target, in m/s.
+     * @param tangentialVelocityAxis The chassis velocities across the target, in m/s.
+     * @param linearMPSToLauncherRPS Converts a linear launch velocity in m/s to a launch motor
+     *                               velocity in RPS.
+     */
+    public BallisticGrid(
+        double angleOfEntryDegrees,
+        Axis distanceAxis,
+        Axis deltaZAxis,
+        Axis radialVelocityAxis,
+        Axis tangentialVelocityAxis,
+        DoubleUnaryOperator linearMPSToLauncherRPS
+    ) {
+        this.angleOfEntryDegrees = angleOfEntryDegrees;
+        this.distanceAxis = distanceAxis;
+        this.deltaZAxis = deltaZAxis;
+        this.radialVelocityAxis = radialVelocityAxis;
+        this.tangentialVelocityAxis = tangentialVelocityAxis;
+        tangentialStride = OUTPUTS;
+        radialStride = tangentialStride * tangentialVelocityAxis.count();
+        deltaZStride = radialStride * radialVelocityAxis.count();
+        values = new double[deltaZStride * deltaZAxis.count() * distanceAxis.count()];
+
+        double tanAngleOfEntry = Math.tan(Math.toRadians(angleOfEntryDegrees));
+        for (int d = 0; d < distanceAxis.count(); d++) {
+            for (int z = 0; z < deltaZAxis.count(); z++) {
+                for (int r = 0; r < radialVelocityAxis.count(); r++) {
+                    for (int t = 0; t < tangentialVelocityAxis.count(); t++) {
+                        int index = index(d, z, r, t);
+                        var solution = solve(
+                            distanceAxis.valueAt(d),
+                            deltaZAxis.valueAt(z),
+                            radialVelocityAxis.valueAt(r),
+                            tangentialVelocityAxis.valueAt(t),
+                            tanAngleOfEntry,
+                            linearMPSToLauncherRPS,
+                            values,
+                            index
+                        );
+                        if (!isInterpolatable(solution)) {
+                            values[index] = values[index + 1] = values[index + 2] = Double.NaN;
+                        }
+                    }
+                }
+            }
+        }
+
+        measureError(tanAngleOfEntry, linearMPSToLauncherRPS);
+    }
+
+    /**
+     * Solves a single point in the frame of the shot into {@code out} at {@code offset}.
+     *
+     * @return The analytic solution that was stored.
+     */
+    private static HenryShooterCalculator.BallisticSolution solve(
+        double distance,
+        double deltaZ,
+        double radialVelocity,
+        double tangentialVelocity,
+        double tanAngleOfEntry,
+        DoubleUnaryOperator linearMPSToLauncherRPS,
+        double[] out,
+        int offset
+    ) {
+        var solution = HenryShooterCalculator.solve(
+            distance, 0, deltaZ, radialVelocity, tangentialVelocity, tanAngleOfEntry
+        );
+        out[offset] = solution.fieldRelativeTurretAngleRadians();
+        out[offset + 1] = solution.inclineAngleRadians();
+        out[offset + 2] = Double.isNaN(solution.linearLaunchVelocityMPS())
+            ? Double.NaN
+            : linearMPSToLauncherRPS.applyAsDouble(solution.linearLaunchVelocityMPS());
+        return solution;
+    }
+
+    /**
+     * @return If a grid point's solution can be interpolated. Past 90 degrees from the target, the
+     * turret angle is heading for its wrap at 180 degrees, which interpolation can't cross, and
+     * with little horizontal velocity it changes too quickly.
+     */
+    private static boolean isInterpolatable(HenryShooterCalculator.BallisticSolution solution) {
+        double horizontalLaunchVelocityMPS = solution.linearLaunchVelocityMPS()
+            * Math.sin(solution.inclineAngleRadians());
+        // Negated comparisons so points without a solution are rejected too.
+        return Math.abs(solution.fieldRelativeTurretAngleRadians()) <= Math.PI / 2
+            && horizontalLaunchVelocityMPS >= MIN_HORIZONTAL_LAUNCH_VELOCITY_MPS;
+    }
+
+    private int index(int distance, int deltaZ, int radial, int tangential) {
+        return distance * deltaZStride * deltaZAxis.count()
+            + deltaZ * deltaZStride
+            + radial * radialStride
+            + tangential * tangentialStride;
+    }
+
+    private void measureError(double tanAngleOfEntry, DoubleUnaryOperator linearMPSToLauncherRPS) {
+        // Seeded so the measured bound is the same every time the same grid is built.
+        var random = new Random(1816);
+        double[] expected = new double[OUTPUTS];
+        double[] actual = new double[OUTPUTS];
+        for (int d = 0; d < distanceAxis.count() - 1; d++) {
+            for (int z = 0; z < deltaZAxis.count() - 1; z++) {
+                for (int r = 0; r < radialVelocityAxis.count() - 1; r++) {
+                    for (int t = 0; t < tangentialVelocityAxis.count() - 1; t++) {
+                        for (int sample = 0; sample < ERROR_SAMPLES_PER_CELL; sample++) {
+                            double distance = distanceAxis.valueAt(d)
+                                + distanceAxis.step() * random.nextDouble();
+                            double deltaZ = deltaZAxis.valueAt(z)
+                                + deltaZAxis.step() * random.nextDouble();
+                            double radial = radialVelocityAxis.valueAt(r)
+                                + radialVelocityAxis.step() * random.nextDouble();
+                            double tangential = tangentialVelocityAxis.valueAt(t)
+                                + tangentialVelocityAxis.step() * random.nextDouble();
+                            if (!lookup(distance, deltaZ, radial, tangential, actual)) break;
+                            solve(
+                                distance, deltaZ, radial, tangential, tanAngleOfEntry,
+                                linearMPSToLauncherRPS, expected, 0
+                            );
+                            maxTurretAngleErrorRadians = Math.max(
+                                maxTurretAngleErrorRadians, Math.abs(actual[0] - expected[0])
+                            );
+                            maxInclineAngleErrorRadians = Math.max(
+                                maxInclineAngleErrorRadians, Math.abs(actual[1] - expected[1])
+                            );
+                            maxLaunchVelocityErrorRPS = Math.max(
+                                maxLaunchVelocityErrorRPS, Math.abs(actual[2] - expected[2])
+                            );
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up a solution in the frame of the shot.
+     *
+     * @param distance           The horizontal distance to the target, in meters.
+     * @param deltaZ             The height of the target above the shooter, in meters.
+     * @param radialVelocity     The chassis velocity toward the target, in m/s.
+     * @param tangentialVelocity The chassis velocity across the target (90 degrees
+     *                           counterclockwise from the direction of the target), in m/s.
+     * @param out                Where to store the turret angle relative to the direction of the
+     *                           target and the incline angle in radians, and the launch motor
+     *                           velocity in RPS.
+     * @return If the point was in the grid and had a solution. If not, {@code out} is unchanged.
+     */
+    public boolean lookup(
+        double distance, double deltaZ, double radialVelocity, double tangentialVelocity, double[] out
+    ) {
+        double d = (distance - distanceAxis.min()) / distanceAxis.step();
+        double z = (deltaZ - deltaZAxis.min()) / deltaZAxis.step();
+        double r = (radialVelocity - radialVelocityAxis.min()) / radialVelocityAxis.step();
+        double t = (tangentialVelocity - tangentialVelocityAxis.min()) / tangentialVelocityAxis.step();
+        // Negated comparisons so NaN inputs are rejected too.
+        if (!(d >= 0 && d <= distanceAxis.count() - 1
+            && z >= 0 && z <= deltaZAxis.count() - 1
+            && r >= 0 && r <= radialVelocityAxis.count() - 1
+            && t >= 0 && t <= tangentialVelocityAxis.count() - 1)) {
+            return false;
+        }
+        // Use the cell below the last grid point, so points on the upper edge interpolate with a
+        // fraction of 1.
+        int d0 = Math.min((int) d, distanceAxis.count() - 2);
+        int z0 = Math.min((int) z, deltaZAxis.count() - 2);
+        int r0 = Math.min((int) r, radialVelocityAxis.count() - 2);
+        int t0 = Math.min((int) t, tangentialVelocityAxis.count() - 2);
+        double fd = d - d0, fz = z - z0, fr = r - r0, ft = t - t0;
+
+        int base = index(d0, z0, r0, t0);
+        int distanceStride = deltaZStride * deltaZAxis.count();
+        for (int output = 0; output < OUTPUTS; output++) {
+            int i = base + output;
+            // Interpolate along tangential, then radial, then deltaZ, then distance.
+            double v000 = lerp(values[i], values[i + tangentialStride], ft);
+            double v001 = lerp(values[i + radialStride], values[i + radialStride + tangentialStride], ft);
+            double v010 = lerp(values[i + deltaZStride], values[i + deltaZStride + tangentialStride], ft);
+            double v011 = lerp(
+                values[i + deltaZStride + radialStride],
+                values[i + deltaZStride + radialStride + tangentialStride],
+                ft
+            );
+            int j = i + distanceStride;
+            double v100 = lerp(values[j], values[j + tangentialStride], ft);
+            double v101 = lerp(values[j + radialStride], values[j + radialStride + tangentialStride], ft);
+            double v110 = lerp(values[j + deltaZStride], values[j + deltaZStride + tangentialStride], ft);
+            double v111 = lerp(
+                values[j + deltaZStride + radialStride],
+                values[j + deltaZStride + radialStride + tangentialStride],
+                ft
+            );
+            double value = lerp(
+                lerp(lerp(v000, v001, fr), lerp(v010, v011, fr), fz),
+                lerp(lerp(v100, v101, fr), lerp(v110, v111, fr), fz),
+                fd
+            );
+            // A corner without a solution poisons the whole cell.
+            if (Double.isNaN(value)) return false;
+            scratch[output] = value;
+        }
+        System.arraycopy(scratch, 0, out, 0, OUTPUTS);
+        return true;
+    }
+
+    private static double lerp(double a, double b, double fraction) {
+        return a + (b - a) * fraction;
+    }
+
+    /**
+     * @return The angle of entry this grid was built for, in degrees up from horizontal.
+     */
+    public double getAngleOfEntryDegrees() {
+        return angleOfEntryDegrees;
+    }
+
+    /**
+     * @return The number of grid points.
+     */
+    public int getPointCount() {
+        return values.length / OUTPUTS;
+    }
+
+    /**
+     * @return The largest turret angle error found when the grid was built, in radians.
+     */
+    public double getMaxTurretAngleErrorRadians() {
+        return maxTurretAngleErrorRadians;
+    }
+
+    /**
+     * @return The largest incline angle error found when the grid was built, in radians.
+     */
+    public double getMaxInclineAngleErrorRadians() {
+        return maxInclineAngleErrorRadians;
+    }
+
+    /**
+     * @return The largest launch motor velocity error found when the grid was built, in RPS.
+     */
+    public double getMaxLaunchVelocityErrorRPS() {
+        return maxLaunchVelocityErrorRPS;
+    }
+}
@@ -1,13 +1,39 @@
 package com.team1816.lib.util.ShooterCalculator;
 
 import com.team1816.lib.BaseRobotState;
+import com.team1816.lib.util.GreenLogger;
 import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.util.Units;
 
 public class HenryShooterCalculator implements IShooterCalculator {
 
+    /**
+     * Acceleration due to gravity near earth's surface in m/s² - change this if we are competing
+     * on a different planet
+     */
+    private static final double g = 9.80665;
+
     private final LinearMPSToLauncherRPSLookup linearMPSToLauncherRPSLookup;
+    /**
+     * The precomputed solutions to use instead of solving every call, or null to always solve.
+     */
+    private final BallisticGrid ballisticGrid;
+    private final double[] gridLookup = new double[3];
+
+    /**
+     * The solution to a shot in the frame of the field.
+     *
+     * @param fieldRelativeTurretAngleRadians The field-relative direction to launch in, in
+     *                                        radians counterclockwise from the field x axis.
+     * @param inclineAngleRadians             The angle to launch at, in radians down from straight
+     *                                        up.
+     * @param linearLaunchVelocityMPS         The speed to launch at relative to the shooter, in
+     *                                        m/s.
+     */
+    public record BallisticSolution(
+        double fieldRelativeTurretAngleRadians, double inclineAngleRadians, double linearLaunchVelocityMPS
+    ) {}
 
     /**
      * Construct a {@link HenryShooterCalculator} to calculate how to shoot a projectile into a
@@ -19,7 +45,70 @@ public class HenryShooterCalculator implements IShooterCalculator {
      *                     velocity, in meters.
      */
     public HenryShooterCalculator(double deltaZMeters) {
-        linearMPSToLauncherRPSLookup = new LinearMPSToLauncherRPSLookup(deltaZMeters);
+        this(new LinearMPSToLauncherRPSLookup(deltaZMeters), deltaZMeters, Double.NaN);
+    }
+
+    /**
+     * Construct a {@link HenryShooterCalculator} that precomputes a {@link BallisticGrid} of
+     * solutions for the given angle of entry, so calls with that angle of entry only have to look
+     * up and interpolate a solution. Building the grid takes a moment, so do this at startup.
+     *
+     * @param deltaZMeters            The difference between the target height and shooter height
+     *                                used when calibrating the shooterSettings, in meters. The
+     *                                grid covers heights within half a meter of this.
+     * @param gridAngleOfEntryDegrees The angle of entry to precompute solutions for, in degrees up
+     *                                from horizontal.
+     */
+    public HenryShooterCalculator(double deltaZMeters, double gridAngleOfEntryDegrees) {
+        this(new LinearMPSToLauncherRPSLookup(deltaZMeters), deltaZMeters, gridAngleOfEntryDegrees);
+    }
+
+    /**
+     * Construct a {@link HenryShooterCalculator} with a given launch velocity lookup.
+     *
+     * @param gridAngleOfEntryDegrees The angle of entry to precompute solutions for, or {@link
+     *                                Double#NaN} to always solve.
+     */
+    HenryShooterCalculator(
+        LinearMPSToLauncherRPSLookup linearMPSToLauncherRPSLookup,
+        double deltaZMeters,
+        double gridAngleOfEntryDegrees
+    ) {
+        this.linearMPSToLauncherRPSLookup = linearMPSToLauncherRPSLookup;
+        if (Double.isNaN(gridAngleOfEntryDegrees)) {
+            ballisticGrid = null;
+        } else {
+            ballisticGrid = createBallisticGrid(
+                gridAngleOfEntryDegrees, deltaZMeters, linearMPSToLauncherRPSLookup
+            );
+            GreenLogger.log(String.format(
+                "Built a %d point ballistic grid, max error: turret %.3f deg, incline %.3f deg, launch %.3f RPS",
+                ballisticGrid.getPointCount(),
+                Math.toDegrees(ballisticGrid.getMaxTurretAngleErrorRadians()),
+                Math.toDegrees(ballisticGrid.getMaxInclineAngleErrorRadians()),
+                ballisticGrid.getMaxLaunchVelocityErrorRPS()
+            ));
+        }
+    }
+
+    /**
+     * Builds the {@link BallisticGrid} used by this calculator, covering 1 to 8 meters from the
+     * target, heights within half a meter of the calibrated height, and chassis velocities up to
+     * 4 m/s in any direction.
+     */
+    static BallisticGrid createBallisticGrid(
+        double angleOfEntryDegrees,
+        double deltaZMeters,
+        LinearMPSToLauncherRPSLookup linearMPSToLauncherRPSLookup
+    ) {
+        return new BallisticGrid(
+            angleOfEntryDegrees,
+            BallisticGrid.Axis.of(1, 8, 0.25),
+            BallisticGrid.Axis.of(deltaZMeters - 0.5, deltaZMeters + 0.5, 0.25),
+            BallisticGrid.Axis.of(-4, 4, 0.5),
+            BallisticGrid.Axis.of(-4, 4, 0.5),
+            linearMPSToLauncherRPSLookup::getLaunchVelocityRPS
+        );
     }
 
     /**
@@ -27,6 +116,9 @@ public class HenryShooterCalculator implements IShooterCalculator {
      * uses physics to determine the mechanism settings to enter the target as close to the passed
      * in angle of entry as possible. It also uses a lookup table to convert from the calculated
      * linear launch velocity to the necessary launch motor RPS.
+     * <p>
+     * If this calculator has a {@link BallisticGrid} for the angle of entry and the shot is
+     * within it, the settings are interpolated from the grid instead.
      *
      * @param shooterTranslation3dMeters The field-relative {@link Translation3d} of where the
      *                                   shooter is shooting from, in meters.
@@ -34,7 +126,10 @@ public class HenryShooterCalculator implements IShooterCalculator {
      *                                  to, in meters.
      * @param angleOfEntryDegrees The desired angle of entry of the projectile into the target, in
      *                            degrees up from horizontal, in meters.
-     * @param useChassisSpeedForHoodAngleAndSpeed Unused for this calculator.
+     * @param useChassisSpeedForHoodAngleAndSpeed If the chassis velocity should be compensated
+     *                                            for. If false, the shot is solved as if the robot
+     *                                            were stationary, like {@link MovingShotSolver}
+     *                                            needs.
      * @param lookAheadTimeSeconds The time to project forward the shooter's position before
      *                             performing calculations, in seconds. This can be used to give
      *                             mechanisms that cannot keep up with the robot's movement a head
@@ -50,47 +145,107 @@ public class HenryShooterCalculator implements IShooterCalculator {
         boolean useChassisSpeedForHoodAngleAndSpeed,
         double lookAheadTimeSeconds
     ) {
-        // Acceleration due to gravity near earth's surface in m/s² - change this if we are
-        // competing on a different planet
-        final double g = 9.80665;
-
-        // Get the field-relative ChassisSpeeds from the robot-relative ChassisSpeeds
-        ChassisSpeeds chassisSpeeds = ChassisSpeeds.fromRobotRelativeSpeeds(
-            BaseRobotState.robotSpeeds, BaseRobotState.robotPose.getRotation()
-        );
         // Current field-relative chassis (robot) velocity components in m/s
-        double vCX = chassisSpeeds.vxMetersPerSecond;
-        double vCY = chassisSpeeds.vyMetersPerSecond;
+        double vCX = 0;
+        double vCY = 0;
+        if (useChassisSpeedForHoodAngleAndSpeed) {
+            // Get the field-relative ChassisSpeeds from the robot-relative ChassisSpeeds
+            ChassisSpeeds chassisSpeeds = ChassisSpeeds.fromRobotRelativeSpeeds(
+                BaseRobotState.robotSpeeds, BaseRobotState.robotPose.getRotation()
+            );
+            vCX = chassisSpeeds.vxMetersPerSecond;
+            vCY = chassisSpeeds.vyMetersPerSecond;
+        }
 
         // Project ahead where the shooter will be after lookAheadTimeSeconds based on the robot's
-        // velocity
-        Translation3d projectedShooterTranslation3dMeters = shooterTranslation3dMeters.plus(
-            new Translation3d(vCX * lookAheadTimeSeconds, vCY * lookAheadTimeSeconds, 0)
+        // velocity, and find the distance from start to target components in meters
+        double deltaX = targetTranslation3dMeters.getX()
+            - (shooterTranslation3dMeters.getX() + vCX * lookAheadTimeSeconds);
+        double deltaY = targetTranslation3dMeters.getY()
+            - (shooterTranslation3dMeters.getY() + vCY * lookAheadTimeSeconds);
+        double deltaZ = targetTranslation3dMeters.getZ() - shooterTranslation3dMeters.getZ();
+
+        double fieldRelativeTurretAngleRadians;
+        double inclineAngleRadians;
+        double launchMotorVelocityRPS;
+        if (lookUpInGrid(deltaX, deltaY, deltaZ, vCX, vCY, angleOfEntryDegrees)) {
+            fieldRelativeTurretAngleRadians = gridLookup[0];
+            inclineAngleRadians = gridLookup[1];
+            launchMotorVelocityRPS = gridLookup[2];
+        } else {
+            BallisticSolution solution = solve(
+                deltaX, deltaY, deltaZ, vCX, vCY, Math.tan(Units.degreesToRadians(angleOfEntryDegrees))
+            );
+            fieldRelativeTurretAngleRadians = solution.fieldRelativeTurretAngleRadians();
+            inclineAngleRadians = solution.inclineAngleRadians();
+            // Calculated m/s to motor rps
+            launchMotorVelocityRPS = linearMPSToLauncherRPSLookup.getLaunchVelocityRPS(
+                solution.linearLaunchVelocityMPS()
+            );
+        }
+
+        // Field relative turret angle to robot relative turret angle
+        double robotRelativeTurretAngleRadians = fieldRelativeTurretAngleRadians
+            - BaseRobotState.robotPose.getRotation().getRadians();
+        // Turret angle radians to degrees
+        double robotRelativeTurretAngleDegrees = Units.radiansToDegrees(
+            robotRelativeTurretAngleRadians
         );
+        // Incline angle radians to degrees
+        double inclineAngleDegrees = Units.radiansToDegrees(inclineAngleRadians);
 
-        Translation3d deltaTranslation3d = targetTranslation3dMeters.minus(
-            projectedShooterTranslation3dMeters
+        return new IShooterCalculator.ShooterCalculatorResponse(
+            robotRelativeTurretAngleDegrees, inclineAngleDegrees, launchMotorVelocityRPS
         );
-        // Distance from start to target components in meters
-        double deltaX = deltaTranslation3d.getX();
-        double deltaY = deltaTranslation3d.getY();
-        double deltaZ = deltaTranslation3d.getZ();
+    }
+
+    /**
+     * Looks the shot up in the {@link #ballisticGrid}, storing the field-relative turret angle,
+     * incline angle and launch motor velocity in {@link #gridLookup}.
+     *
+     * @return If the grid had the shot. If not, it has to be solved.
+     */
+    private boolean lookUpInGrid(
+        double deltaX, double deltaY, double deltaZ, double vCX, double vCY, double angleOfEntryDegrees
+    ) {
+        if (ballisticGrid == null || angleOfEntryDegrees != ballisticGrid.getAngleOfEntryDegrees()) {
+            return false;
+        }
+        double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        if (distance == 0) return false;
+        // Split the chassis velocity into the components toward and across the target.
+        double towardX = deltaX / distance;
+        double towardY = deltaY / distance;
+        double radialVelocity = vCX * towardX + vCY * towardY;
+        double tangentialVelocity = vCY * towardX - vCX * towardY;
+        if (!ballisticGrid.lookup(distance, deltaZ, radialVelocity, tangentialVelocity, gridLookup)) {
+            return false;
+        }
+        // The grid's turret angle is relative to the direction of the target.
+        gridLookup[0] += Math.atan2(deltaY, deltaX);
+        return true;
+    }
 
+    /**
+     * Solves for how to launch a projectile so it enters the target at the given angle of entry.
+     *
+     * @param deltaX          The field-relative x distance from the shooter to the target, in
+     *                        meters.
+     * @param deltaY          The field-relative y distance from the shooter to the target, in
+     *                        meters.
+     * @param deltaZ          The height of the target above the shooter, in meters.
+     * @param vCX             The field-relative x velocity of the chassis, in m/s.
+     * @param vCY             The field-relative y velocity of the chassis, in m/s.
+     * @param tanAngleOfEntry The tangent of the angle of entry.
+     * @return The solution. Every value is {@link Double#NaN} if the target can't be reached at
+     * this angle of entry.
+     */
+    public static BallisticSolution solve(
+        double deltaX, double deltaY, double deltaZ, double vCX, double vCY, double tanAngleOfEntry
+    ) {
         // Time of travel through the air in seconds - depends only on positions and angle of entry
-        double time = Math.sqrt(
-            2
-            * (
-                deltaZ
-                + (
-                    Math.tan(
-                        Units.degreesToRadians(angleOfEntryDegrees)
-                    )
-                    * Math.sqrt(
-                        deltaX * deltaX + deltaY * deltaY
-                    )
-                )
-            )
-            / g
+        double time = getTimeOfFlightSeconds(
+            Math.sqrt(deltaX * deltaX + deltaY * deltaY), deltaZ, tanAngleOfEntry
         );
 
         // Calculated shooter velocity components in m/s
@@ -103,22 +258,34 @@ public class HenryShooterCalculator implements IShooterCalculator {
         double fieldRelativeTurretAngleRadians = Math.atan2(vSY, vSX);
         double inclineAngleRadians = Math.acos(vSZ / linearLaunchVelocityMPS);
 
-        // Calculated m/s to motor rps
-        double launchMotorVelocityRPS = linearMPSToLauncherRPSLookup.getLaunchVelocityRPS(
-            linearLaunchVelocityMPS
-        );
-        // Field relative turret angle to robot relative turret angle
-        double robotRelativeTurretAngleRadians = fieldRelativeTurretAngleRadians
-            - BaseRobotState.robotPose.getRotation().getRadians();
-        // Turret angle radians to degrees
-        double robotRelativeTurretAngleDegrees = Units.radiansToDegrees(
-            robotRelativeTurretAngleRadians
+        return new BallisticSolution(
+            fieldRelativeTurretAngleRadians, inclineAngleRadians, linearLaunchVelocityMPS
         );
-        // Incline angle radians to degrees
-        double inclineAngleDegrees = Units.radiansToDegrees(inclineAngleRadians);
+    }
 
-        return new IShooterCalculator.ShooterCalculatorResponse(
-            robotRelativeTurretAngleDegrees, inclineAngleDegrees, launchMotorVelocityRPS
+    /**
+     * Gets how long a projectile is in the air when shot into a target at the given angle of
+     * entry. This only depends on the positions and the angle of entry, not the chassis velocity.
+     *
+     * @param horizontalDistanceMeters The horizontal distance from the shooter to the target, in
+     *                                 meters.
+     * @param deltaZMeters             The height of the target above the shooter, in meters.
+     * @param tanAngleOfEntry          The tangent of the angle of entry.
+     * @return The time of flight, in seconds.
+     */
+    public static double getTimeOfFlightSeconds(
+        double horizontalDistanceMeters, double deltaZMeters, double tanAngleOfEntry
+    ) {
+        return Math.sqrt(
+            2
+            * (
+                deltaZMeters
+                + (
+                    tanAngleOfEntry
+                    * horizontalDistanceMeters
+                )
+            )
+            / g
         );
     }
 }
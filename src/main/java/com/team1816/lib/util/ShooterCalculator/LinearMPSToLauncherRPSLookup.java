@@ -1,17 +1,13 @@
 package com.team1816.lib.util.ShooterCalculator;
 
 import com.team1816.lib.hardware.LinearMPSToLauncherRPSConfig;
-import edu.wpi.first.math.MathUtil;
-import org.apache.commons.math3.analysis.interpolation.LinearInterpolator;
-import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
-
-import java.util.List;
+import com.team1816.lib.util.UniformInterpolationTable;
 
 import static com.team1816.lib.Singleton.factory;
 
 public class LinearMPSToLauncherRPSLookup {
 
-    private final PolynomialSplineFunction linearMPSToLauncherRPSFunction;
+    private final UniformInterpolationTable linearMPSToLauncherRPSTable;
 
     /**
      * Constructs a {@link LinearMPSToLauncherRPSLookup} to convert from linear exit velocities
@@ -23,29 +19,31 @@ public class LinearMPSToLauncherRPSLookup {
      *                     velocity, in meters.
      */
     public LinearMPSToLauncherRPSLookup(double deltaZMeters) {
-        // TODO: If we calibrate this using the linearMPSToLaunchRPS YAML, we can use the line below.
-        //  For now we are just trying to use some physics to get data from the shooterSettings table.
-//        LinearMPSToLauncherRPSConfig table = factory.getLinearMPSToLauncherRPSConfig();
-        LinearMPSToLauncherRPSConfig table = factory.stealLinearMPSToLauncherRPSConfigFromShooterSettings(deltaZMeters);
-
-        List<Double> linearVelocitiesMPS = table.linearVelocitiesMPS;
-        List<Double> launchVelocitiesRPS = table.launchVelocitiesRPS;
-        LinearInterpolator linearMPSToLauncherRPSLI = new LinearInterpolator();
-
-        double[] linearVelocitiesMPSArray = linearVelocitiesMPS.stream()
-            .mapToDouble(Double::doubleValue)
-            .toArray();
-        double[] launchVelocitiesRPSArray = launchVelocitiesRPS.stream()
-            .mapToDouble(Double::doubleValue)
-            .toArray();
-
-        this.linearMPSToLauncherRPSFunction = linearMPSToLauncherRPSLI.interpolate(linearVelocitiesMPSArray, launchVelocitiesRPSArray);
+        // TODO: If we calibrate this using the linearMPSToLaunchRPS YAML, we can use
+        //  factory.getLinearMPSToLauncherRPSConfig() instead. For now we are just trying to use
+        //  some physics to get data from the shooterSettings table.
+        this(factory.stealLinearMPSToLauncherRPSConfigFromShooterSettings(deltaZMeters));
+    }
+
+    private LinearMPSToLauncherRPSLookup(LinearMPSToLauncherRPSConfig table) {
+        this.linearMPSToLauncherRPSTable = UniformInterpolationTable.of(
+            table.linearVelocitiesMPS, table.launchVelocitiesRPS
+        );
+    }
+
+    /**
+     * Constructs a {@link LinearMPSToLauncherRPSLookup} from a table of matching linear exit
+     * velocities and launch motor velocities, without needing the YAML configuration.
+     *
+     * @param linearVelocitiesMPS The linear exit velocities, in m/s, in increasing order.
+     * @param launchVelocitiesRPS The launch motor velocities for each linear exit velocity, in RPS.
+     */
+    public LinearMPSToLauncherRPSLookup(double[] linearVelocitiesMPS, double[] launchVelocitiesRPS) {
+        this.linearMPSToLauncherRPSTable = new UniformInterpolationTable(linearVelocitiesMPS, launchVelocitiesRPS);
     }
 
     public double getLaunchVelocityRPS(double linearVelocityMPS) {
-        var knots = linearMPSToLauncherRPSFunction.getKnots();
-        // Clamp the distance to within the interpolation range.
-        double clampedLinearVelocityMPS = MathUtil.clamp(linearVelocityMPS, knots[0], knots[knots.length - 1]);
-        return linearMPSToLauncherRPSFunction.value(clampedLinearVelocityMPS);
+        // The table clamps the velocity to within the interpolation range.
+        return linearMPSToLauncherRPSTable.get(linearVelocityMPS);
     }
 }
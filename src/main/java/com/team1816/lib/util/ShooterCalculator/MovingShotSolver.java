@@ -0,0 +1,198 @@
+package com.team1816.lib.util.ShooterCalculator;
+
+import com.team1816.lib.BaseRobotState;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.util.Units;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Aims shots taken while driving by wrapping a calculator that assumes the shooter is stationary.
+ * <p>
+ * A projectile keeps the velocity of the shooter it leaves, so while moving it drifts by the
+ * shooter's velocity times its time of flight. This solver aims the stationary calculator at a
+ * virtual target offset by that drift instead. The time of flight depends on the distance to the
+ * virtual target, so it is refined a fixed number of times, starting from the real target. The
+ * first refinement just re-looks up the time of flight to the virtual target, and the rest use the
+ * secant method, which converges much faster when driving toward or away from the target. A fixed
+ * count keeps the cost of every call the same.
+ * <p>
+ * Everything is also projected forward by the actuation latency, the time between calculating a
+ * shot and the mechanisms acting on it. The shooter's position is predicted from the chassis
+ * velocity, including the velocity of the shooter swinging around the center of the robot while
+ * turning, and the turret angle accounts for how far the robot will have turned.
+ * <p>
+ * The stationary calculator is always called with {@code useChassisSpeedForHoodAngleAndSpeed}
+ * false and a look ahead time of 0, so it must not compensate for the chassis velocity itself.
+ */
+public class MovingShotSolver implements IShooterCalculator {
+
+    private final IShooterCalculator stationaryCalculator;
+    private final DoubleBinaryOperator timeOfFlightSeconds;
+    private final double latencySeconds;
+    private final int iterations;
+
+    private double lastTimeOfFlightSeconds = 0;
+    private double lastTimeOfFlightResidualSeconds = 0;
+    private Translation3d lastVirtualTarget = Translation3d.kZero;
+
+    /**
+     * Constructs a {@link MovingShotSolver}.
+     *
+     * @param stationaryCalculator The calculator to aim at the virtual target. It must not
+     *                             compensate for the chassis velocity when called with {@code
+     *                             useChassisSpeedForHoodAngleAndSpeed} false.
+     * @param timeOfFlightSeconds  The time of flight of a stationary shot, in seconds, given the
+     *                             horizontal distance to the target and the height of the target
+     *                             above the shooter, in meters.
+     * @param latencySeconds       The measured time between calculating a shot and the mechanisms
+     *                             acting on it, in seconds.
+     * @param iterations           The number of times to refine the time of flight. Each one
+     *                             looks up the time of flight once, plus one lookup for the
+     *                             starting guess.
+     */
+    public MovingShotSolver(
+        IShooterCalculator stationaryCalculator,
+        DoubleBinaryOperator timeOfFlightSeconds,
+        double latencySeconds,
+        int iterations
+    ) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("A moving shot needs at least one iteration");
+        }
+        if (latencySeconds < 0) {
+            throw new IllegalArgumentException("The actuation latency can't be negative");
+        }
+        this.stationaryCalculator = stationaryCalculator;
+        this.timeOfFlightSeconds = timeOfFlightSeconds;
+        this.latencySeconds = latencySeconds;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Calculate the necessary settings to shoot from the shooter to the target while moving with
+     * the current {@link BaseRobotState#robotSpeeds}.
+     *
+     * @param shooterTranslation3dMeters The field-relative {@link Translation3d} of where the
+     *                                   shooter is shooting from, in meters.
+     * @param targetTranslation3dMeters The field-relative {@link Translation3d} of where to shoot
+     *                                  to, in meters.
+     * @param angleOfEntryDegrees Passed through to the stationary calculator.
+     * @param useChassisSpeedForHoodAngleAndSpeed Unused, the chassis speed is always used.
+     * @param lookAheadTimeSeconds Extra time to project forward on top of the actuation latency,
+     *                             in seconds.
+     * @return The {@link ShooterCalculatorResponse} describing how to shoot at the virtual target.
+     */
+    @Override
+    public ShooterCalculatorResponse calculate(
+        Translation3d shooterTranslation3dMeters,
+        Translation3d targetTranslation3dMeters,
+        double angleOfEntryDegrees,
+        boolean useChassisSpeedForHoodAngleAndSpeed,
+        double lookAheadTimeSeconds
+    ) {
+        Pose2d robotPose = BaseRobotState.robotPose;
+        ChassisSpeeds robotSpeeds = BaseRobotState.robotSpeeds;
+        double headingRadians = robotPose.getRotation().getRadians();
+        double cos = Math.cos(headingRadians);
+        double sin = Math.sin(headingRadians);
+        double omega = robotSpeeds.omegaRadiansPerSecond;
+
+        // Field-relative velocity of the shooter, including it swinging around the robot center
+        // while turning (omega cross the center to shooter offset).
+        double offsetX = shooterTranslation3dMeters.getX() - robotPose.getX();
+        double offsetY = shooterTranslation3dMeters.getY() - robotPose.getY();
+        double vX = robotSpeeds.vxMetersPerSecond * cos - robotSpeeds.vyMetersPerSecond * sin - omega * offsetY;
+        double vY = robotSpeeds.vxMetersPerSecond * sin + robotSpeeds.vyMetersPerSecond * cos + omega * offsetX;
+
+        // Where the shooter will be when the mechanisms act on this shot.
+        double predictionSeconds = latencySeconds + lookAheadTimeSeconds;
+        double shooterX = shooterTranslation3dMeters.getX() + vX * predictionSeconds;
+        double shooterY = shooterTranslation3dMeters.getY() + vY * predictionSeconds;
+        double deltaZ = targetTranslation3dMeters.getZ() - shooterTranslation3dMeters.getZ();
+
+        double targetDeltaX = targetTranslation3dMeters.getX() - shooterX;
+        double targetDeltaY = targetTranslation3dMeters.getY() - shooterY;
+        // Find the time of flight t where the time of flight to the virtual target is t, by
+        // finding the zero of residual(t) = timeOfFlight(virtual target at t) - t.
+        double previousTimeOfFlight = timeOfFlightSeconds.applyAsDouble(
+            Math.hypot(targetDeltaX, targetDeltaY), deltaZ
+        );
+        double previousResidual = timeOfFlightResidual(previousTimeOfFlight, targetDeltaX, targetDeltaY, vX, vY, deltaZ);
+        double timeOfFlight = previousTimeOfFlight + previousResidual;
+        double residual = previousResidual;
+        for (int i = 1; i < iterations; i++) {
+            residual = timeOfFlightResidual(timeOfFlight, targetDeltaX, targetDeltaY, vX, vY, deltaZ);
+            double nextTimeOfFlight = timeOfFlight
+                - residual * (timeOfFlight - previousTimeOfFlight) / (residual - previousResidual);
+            // Fall back to re-looking up the time of flight if the secant step is unusable, like
+            // when the residual didn't change.
+            if (!(nextTimeOfFlight >= 0) || Double.isInfinite(nextTimeOfFlight)) {
+                nextTimeOfFlight = timeOfFlight + residual;
+            }
+            previousTimeOfFlight = timeOfFlight;
+            previousResidual = residual;
+            timeOfFlight = nextTimeOfFlight;
+        }
+
+        lastTimeOfFlightSeconds = timeOfFlight;
+        lastTimeOfFlightResidualSeconds = residual;
+        lastVirtualTarget = new Translation3d(
+            targetTranslation3dMeters.getX() - vX * timeOfFlight,
+            targetTranslation3dMeters.getY() - vY * timeOfFlight,
+            targetTranslation3dMeters.getZ()
+        );
+
+        ShooterCalculatorResponse stationaryResponse = stationaryCalculator.calculate(
+            new Translation3d(shooterX, shooterY, shooterTranslation3dMeters.getZ()),
+            lastVirtualTarget,
+            angleOfEntryDegrees,
+            false,
+            0
+        );
+        // The stationary calculator made the turret angle relative to the current heading, but the
+        // robot will have turned by the time the turret acts on it.
+        return new ShooterCalculatorResponse(
+            stationaryResponse.turretAngleDegrees() - Units.radiansToDegrees(omega * predictionSeconds),
+            stationaryResponse.inclineAngleDegrees(),
+            stationaryResponse.launchVelocityRPS()
+        );
+    }
+
+    /**
+     * @return How far a time of flight is from the time of flight to the virtual target it gives,
+     * in seconds.
+     */
+    private double timeOfFlightResidual(
+        double timeOfFlight, double targetDeltaX, double targetDeltaY, double vX, double vY, double deltaZ
+    ) {
+        return timeOfFlightSeconds.applyAsDouble(
+            Math.hypot(targetDeltaX - vX * timeOfFlight, targetDeltaY - vY * timeOfFlight), deltaZ
+        ) - timeOfFlight;
+    }
+
+    /**
+     * @return The time of flight of the last shot calculated, in seconds.
+     */
+    public double getLastTimeOfFlightSeconds() {
+        return lastTimeOfFlightSeconds;
+    }
+
+    /**
+     * @return How far the last time of flight before the final refinement was from the time of
+     * flight to its virtual target, in seconds. This should be close to 0 if the iterations
+     * converged.
+     */
+    public double getLastTimeOfFlightResidualSeconds() {
+        return lastTimeOfFlightResidualSeconds;
+    }
+
+    /**
+     * @return The field-relative virtual target the last shot was aimed at.
+     */
+    public Translation3d getLastVirtualTarget() {
+        return lastVirtualTarget;
+    }
+}
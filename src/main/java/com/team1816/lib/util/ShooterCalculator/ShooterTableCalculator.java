@@ -1,41 +1,25 @@
 package com.team1816.lib.util.ShooterCalculator;
 
 import com.team1816.lib.hardware.ShooterSettingsConfig;
-import edu.wpi.first.math.MathUtil;
+import com.team1816.lib.util.UniformInterpolationTable;
 import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.math.util.Units;
-import org.apache.commons.math3.analysis.interpolation.LinearInterpolator;
-import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
-
-import java.util.List;
 
 import static com.team1816.lib.Singleton.factory;
 
 public class ShooterTableCalculator extends BaseShooterCalculator {
 
-    private final PolynomialSplineFunction inclineAngleRotationsFunction, launchVelocityRPSFunction;
+    private final UniformInterpolationTable inclineAngleRotationsTable, launchVelocityRPSTable;
 
     public ShooterTableCalculator() {
         ShooterSettingsConfig shooterSettings = factory.getShooterSettingsConfig();
 
-        List<Double> distancesInches = shooterSettings.distancesInches;
-        List<Double> inclineAnglesRotations = shooterSettings.inclineAnglesRotations;
-        List<Double> launchVelocitiesRPS = shooterSettings.launchVelocitiesRPS;
-        LinearInterpolator inclineAngleRotationsLI = new LinearInterpolator();
-        LinearInterpolator launchVelocityRPSLI = new LinearInterpolator();
-
-        double[] distancesInchesArray = distancesInches.stream()
-            .mapToDouble(Double::doubleValue)
-            .toArray();
-        double[] inclineAnglesRotationsArray = inclineAnglesRotations.stream()
-            .mapToDouble(Double::doubleValue)
-            .toArray();
-        double[] launchVelocitiesRPSArray = launchVelocitiesRPS.stream()
-            .mapToDouble(Double::doubleValue)
-            .toArray();
-
-        this.inclineAngleRotationsFunction = inclineAngleRotationsLI.interpolate(distancesInchesArray, inclineAnglesRotationsArray);
-        this.launchVelocityRPSFunction = launchVelocityRPSLI.interpolate(distancesInchesArray, launchVelocitiesRPSArray);
+        this.inclineAngleRotationsTable = UniformInterpolationTable.of(
+            shooterSettings.distancesInches, shooterSettings.inclineAnglesRotations
+        );
+        this.launchVelocityRPSTable = UniformInterpolationTable.of(
+            shooterSettings.distancesInches, shooterSettings.launchVelocitiesRPS
+        );
     }
 
     public ShooterCalculatorResponse calculate(
@@ -64,16 +48,12 @@ public class ShooterTableCalculator extends BaseShooterCalculator {
     }
 
     private double getInclineAngleRotations(double distanceInches) {
-        var knots = inclineAngleRotationsFunction.getKnots();
-        // Clamp the distance to within the interpolation range.
-        double clampedDistanceInches = MathUtil.clamp(distanceInches, knots[0], knots[knots.length - 1]);
-        return inclineAngleRotationsFunction.value(clampedDistanceInches);
+        // The table clamps the distance to within the interpolation range.
+        return inclineAngleRotationsTable.get(distanceInches);
     }
 
     private double getLaunchVelocityRPS(double distanceInches) {
-        var knots = launchVelocityRPSFunction.getKnots();
-        // Clamp the distance to within the interpolation range.
-        double clampedDistanceInches = MathUtil.clamp(distanceInches, knots[0], knots[knots.length - 1]);
-        return launchVelocityRPSFunction.value(clampedDistanceInches);
+        // The table clamps the distance to within the interpolation range.
+        return launchVelocityRPSTable.get(distanceInches);
     }
 }
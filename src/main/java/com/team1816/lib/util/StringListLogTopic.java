@@ -0,0 +1,36 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.StringArrayPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A {@link LogTopic} that publishes a {@link List} of any type as a {@code String[]}, using the
+ * {@link String} value of each entry. This is the fallback for lists that do not have a more
+ * specific topic.
+ */
+public class StringListLogTopic extends ObjectLogTopic<List<?>> {
+    private final StringArrayPublisher publisher;
+
+    public StringListLogTopic(StringArrayPublisher publisher, Supplier<? extends List<?>> supplier) {
+        super(publisher, supplier);
+        this.publisher = publisher;
+    }
+
+    @Override
+    protected void set(List<?> list, long timestampMicros) {
+        String[] value = new String[list.size()];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = String.valueOf(list.get(i));
+        }
+        publisher.set(value, timestampMicros);
+    }
+
+    @Override
+    protected List<?> snapshot(List<?> list) {
+        // Copy the list on the main thread, since the supplier may change it after it is sampled.
+        return new ArrayList<>(list);
+    }
+}
@@ -0,0 +1,26 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.StringPublisher;
+
+import java.util.function.Supplier;
+
+/**
+ * A {@link LogTopic} that publishes the {@link String} value of any object. This is the fallback
+ * for types that do not have a more specific topic.
+ * <p>
+ * Change detection compares the objects themselves rather than their {@link String} values, so an
+ * unchanged enum state does not even get converted to a {@link String}.
+ */
+public class StringLogTopic extends ObjectLogTopic<Object> {
+    private final StringPublisher publisher;
+
+    public StringLogTopic(StringPublisher publisher, Supplier<?> supplier) {
+        super(publisher, supplier);
+        this.publisher = publisher;
+    }
+
+    @Override
+    protected void set(Object value, long timestampMicros) {
+        publisher.set(String.valueOf(value), timestampMicros);
+    }
+}
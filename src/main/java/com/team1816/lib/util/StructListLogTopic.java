@@ -0,0 +1,35 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.StructArrayPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A {@link LogTopic} that publishes a {@link List} of struct-serializable values as a struct
+ * array.
+ *
+ * @param <T> The type held by the published list.
+ */
+public class StructListLogTopic<T> extends ObjectLogTopic<List<T>> {
+    private final StructArrayPublisher<T> publisher;
+
+    public StructListLogTopic(StructArrayPublisher<T> publisher, Supplier<List<T>> supplier) {
+        super(publisher, supplier);
+        this.publisher = publisher;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void set(List<T> list, long timestampMicros) {
+        // The publisher only reads the array, so the erased Object[] is fine here.
+        publisher.set((T[]) list.toArray(), timestampMicros);
+    }
+
+    @Override
+    protected List<T> snapshot(List<T> list) {
+        // Copy the list on the main thread, since the supplier may change it after it is sampled.
+        return new ArrayList<>(list);
+    }
+}
@@ -0,0 +1,25 @@
+package com.team1816.lib.util;
+
+import edu.wpi.first.networktables.StructPublisher;
+
+import java.util.function.Supplier;
+
+/**
+ * A {@link LogTopic} that publishes a struct-serializable value using its
+ * {@link edu.wpi.first.util.struct.Struct}.
+ *
+ * @param <T> The type being published.
+ */
+public class StructLogTopic<T> extends ObjectLogTopic<T> {
+    private final StructPublisher<T> publisher;
+
+    public StructLogTopic(StructPublisher<T> publisher, Supplier<T> supplier) {
+        super(publisher, supplier);
+        this.publisher = publisher;
+    }
+
+    @Override
+    protected void set(T value, long timestampMicros) {
+        publisher.set(value, timestampMicros);
+    }
+}
@@ -0,0 +1,130 @@
+package com.team1816.lib.util;
+
+import java.util.List;
+
+/**
+ * A piecewise linear interpolation table with O(1), allocation-free lookups, for tables like the
+ * shooter settings that are read every loop.
+ * <p>
+ * At construction, the x range is split into uniform buckets no wider than the closest pair of
+ * points, and each bucket stores the segment its left edge falls in. A lookup finds its bucket
+ * with one multiply, and since a bucket holds at most one point, is at most one comparison away
+ * from its segment. The result is exactly the same as linearly interpolating the original points,
+ * without rounding off the corners like resampling the values onto a grid would.
+ * <p>
+ * Lookups outside of the table are clamped to the first or last value.
+ */
+public class UniformInterpolationTable {
+    /**
+     * The most buckets to use, so a table with two points very close together doesn't use too
+     * much memory. Past this, lookups may need a few more comparisons to find their segment.
+     */
+    private static final int MAX_BUCKETS = 4096;
+
+    private final double[] xs, ys, slopes;
+    private final int[] bucketSegments;
+    private final double minX, maxX, bucketsPerX;
+
+    /**
+     * Constructs a {@link UniformInterpolationTable} from matching x and y values.
+     *
+     * @param xs The x values, in strictly increasing order.
+     * @param ys The y value at each x value.
+     * @throws IllegalArgumentException If there are fewer than two points, the lengths don't
+     *                                  match, or the x values aren't strictly increasing.
+     */
+    public UniformInterpolationTable(double[] xs, double[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException(
+                "An interpolation table needs the same number of x values (" + xs.length
+                    + ") and y values (" + ys.length + ")"
+            );
+        }
+        if (xs.length < 2) {
+            throw new IllegalArgumentException("An interpolation table needs at least two points");
+        }
+        double minSpacing = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < xs.length - 1; i++) {
+            // Negated so NaN is rejected too.
+            if (!(xs[i + 1] > xs[i])) {
+                throw new IllegalArgumentException(
+                    "Interpolation table x values must be strictly increasing, but " + xs[i + 1]
+                        + " follows " + xs[i]
+                );
+            }
+            minSpacing = Math.min(minSpacing, xs[i + 1] - xs[i]);
+        }
+
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+        minX = xs[0];
+        maxX = xs[xs.length - 1];
+        slopes = new double[xs.length - 1];
+        for (int i = 0; i < slopes.length; i++) {
+            slopes[i] = (ys[i + 1] - ys[i]) / (xs[i + 1] - xs[i]);
+        }
+
+        int bucketCount = (int) Math.min(MAX_BUCKETS, Math.ceil((maxX - minX) / minSpacing));
+        bucketsPerX = bucketCount / (maxX - minX);
+        bucketSegments = new int[bucketCount];
+        int segment = 0;
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            double bucketMinX = minX + bucket / bucketsPerX;
+            while (segment < slopes.length - 1 && xs[segment + 1] <= bucketMinX) {
+                segment++;
+            }
+            bucketSegments[bucket] = segment;
+        }
+    }
+
+    /**
+     * Constructs a {@link UniformInterpolationTable} from matching lists of x and y values, like
+     * the ones in the robot YAML.
+     *
+     * @see #UniformInterpolationTable(double[], double[])
+     */
+    public static UniformInterpolationTable of(List<Double> xs, List<Double> ys) {
+        return new UniformInterpolationTable(
+            xs.stream().mapToDouble(Double::doubleValue).toArray(),
+            ys.stream().mapToDouble(Double::doubleValue).toArray()
+        );
+    }
+
+    /**
+     * Gets the linearly interpolated y value at an x value.
+     *
+     * @param x The x value to look up.
+     * @return The interpolated y value, or the first or last y value if x is outside of the table.
+     * {@link Double#NaN} if x is.
+     */
+    public double get(double x) {
+        if (x <= minX) return ys[0];
+        if (x >= maxX) return ys[ys.length - 1];
+        if (Double.isNaN(x)) return Double.NaN;
+
+        int bucket = Math.min((int) ((x - minX) * bucketsPerX), bucketSegments.length - 1);
+        int segment = bucketSegments[bucket];
+        while (x > xs[segment + 1]) {
+            segment++;
+        }
+        // Rounding can put an x just below a point into the bucket starting at it.
+        while (x < xs[segment]) {
+            segment--;
+        }
+        return ys[segment] + slopes[segment] * (x - xs[segment]);
+    }
+
+    /**
+     * @return The smallest x value in the table. Lookups below this are clamped.
+     */
+    public double getMinX() {
+        return minX;
+    }
+
+    /**
+     * @return The largest x value in the table. Lookups above this are clamped.
+     */
+    public double getMaxX() {
+        return maxX;
+    }
+}
@@ -6,9 +6,12 @@ import com.team1816.lib.BaseRobotContainer;
 import com.team1816.lib.Singleton;
 import com.team1816.lib.commands.SubsystemTestCommand;
 import com.team1816.lib.events.PubSubHandler;
+import com.team1816.lib.hardware.CanBusMonitor;
+import com.team1816.lib.hardware.HardwareSnapshot;
 import com.team1816.lib.subsystems.LedManager;
 import com.team1816.lib.util.Elastic;
 import com.team1816.lib.util.GreenLogger;
+import com.team1816.lib.util.LoopProfiler;
 import edu.wpi.first.hal.HALUtil;
 import edu.wpi.first.net.WebServer;
 import edu.wpi.first.wpilibj.Filesystem;
@@ -21,6 +24,9 @@ public class Robot extends BaseRobot {
     double periodicLoopTime;
     private Command autonomousCommand;
     private final PubSubHandler pubsub = Singleton.get(PubSubHandler.class);
+    private final HardwareSnapshot hardwareSnapshot = Singleton.get(HardwareSnapshot.class);
+    private final CanBusMonitor canBusMonitor = Singleton.get(CanBusMonitor.class);
+    private final LoopProfiler.Phase schedulerPhase = LoopProfiler.phase("CommandScheduler");
     private final LedManager.RobotLEDStatusEvent robotStatusEvent = pubsub.GetEvent(LedManager.RobotLEDStatusEvent.class);
     private final LedManager.RobotLEDStateEvent robotStateEvent = pubsub.GetEvent(LedManager.RobotLEDStateEvent.class);
 
@@ -30,7 +36,13 @@ public class Robot extends BaseRobot {
             GreenLogger.silenceLoopOverrun(this);
             // used to serve elastic dashboards must be port 5800
             WebServer.start(5800, Filesystem.getDeployDirectory().getPath());
-            GreenLogger.periodicLog("timings/RobotLoop (ms)", () -> periodicLoopTime);
+            GreenLogger.periodicLogDouble("timings/RobotLoop (ms)", () -> periodicLoopTime);
+            // every trigger is bound by now, so the command profiling mark runs last
+            LoopProfiler.profileCommands();
+            // all devices were created with the robot container, so the signal rates are known
+            Singleton.factory.logEstimatedBusUtilization();
+            // every tuning listener was added with the robot container, so reloads can start
+            Singleton.factory.startTuningWatcher();
         } catch (Throwable t) {
             robotStatusEvent.Publish(LedManager.RobotLEDStatus.ERROR);
             GreenLogger.log(t);
@@ -102,11 +114,19 @@ public class Robot extends BaseRobot {
             super.robotPeriodic();
             Threads.setCurrentThreadPriority(true, 99);
             double start = HALUtil.getFPGATime();
-            CommandScheduler.getInstance().run();
+            // capture all the hardware inputs once so every subsystem reads the same time-aligned values
+            hardwareSnapshot.capture();
+            canBusMonitor.update();
+            try (var ignored = schedulerPhase.start()) {
+                CommandScheduler.getInstance().run();
+            }
             // update logs
             GreenLogger.startLogging();
             double end = HALUtil.getFPGATime();
             periodicLoopTime = (end - start) / 1000;
+            // snapshot the periodic logs last so they see everything this loop did, the logging
+            // thread takes care of publishing them
+            GreenLogger.snapshotPeriodic();
         } catch (Throwable t) {
             robotStatusEvent.Publish(LedManager.RobotLEDStatus.ERROR);
             GreenLogger.log(t);
@@ -121,6 +121,9 @@ public class RobotContainer extends BaseRobotContainer {
         buttonBoard.bottomCenter().whileTrue(Commands.run(() -> superstructure.decreaseInclineAngleAdjustment()));
         buttonBoard.middleRight().whileTrue(Commands.run(() -> superstructure.increaseTurretAngleAdjustment()));
         buttonBoard.bottomRight().whileTrue(Commands.run(() -> superstructure.decreaseTurretAngleAdjustment()));
+        // Shot outcomes, for fitting the shooter tables
+        buttonBoard.topLeft().onTrue(Commands.runOnce(() -> superstructure.tagLastShot(true)));
+        buttonBoard.topRight().onTrue(Commands.runOnce(() -> superstructure.tagLastShot(false)));
     }
 
     public final void registerCommands() {
@@ -3,7 +3,7 @@ package com.team1816.season;
 import com.team1816.lib.BaseRobotState;
 
 public class RobotState extends BaseRobotState {
-    public static boolean resetCameraQueue;
+    public static volatile boolean resetCameraQueue;
 
     public RobotState(){
         super();
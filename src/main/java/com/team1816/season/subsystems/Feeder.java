@@ -4,6 +4,7 @@ import com.ctre.phoenix6.controls.DutyCycleOut;
 import com.team1816.lib.hardware.components.motor.IMotor;
 import com.team1816.lib.subsystems.ITestableSubsystem;
 import com.team1816.lib.util.GreenLogger;
+import com.team1816.lib.util.LoopProfiler;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
 import java.util.Timer;
@@ -14,6 +15,7 @@ import static com.team1816.lib.Singleton.factory;
 public class Feeder extends SubsystemBase implements ITestableSubsystem {
     //CLASS
     public static final String NAME = "feeder";
+    private final LoopProfiler.Phase periodicPhase = LoopProfiler.phase(NAME + "/periodic");
 
     private FeederState wantedState = FeederState.STOPPED;
 
@@ -27,11 +29,17 @@ public class Feeder extends SubsystemBase implements ITestableSubsystem {
     public Feeder() {
         super();
 
-        GreenLogger.periodicLog(NAME + "/Wanted State", () -> wantedState);
+        GreenLogger.periodicLog(NAME + "/Wanted State", () -> wantedState).publishOnChange();
     }
 
     @Override
     public void periodic() {
+        try (var ignored = periodicPhase.start()) {
+            updatePeriodic();
+        }
+    }
+
+    private void updatePeriodic() {
         readFromHardware();
         applyState();
     }
@@ -4,6 +4,7 @@ import com.ctre.phoenix6.controls.VelocityVoltage;
 import com.team1816.lib.hardware.components.motor.IMotor;
 import com.team1816.lib.subsystems.ITestableSubsystem;
 import com.team1816.lib.util.GreenLogger;
+import com.team1816.lib.util.LoopProfiler;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
 import static com.team1816.lib.Singleton.factory;
@@ -11,6 +12,7 @@ import static com.team1816.lib.Singleton.factory;
 public class Gatekeeper extends SubsystemBase implements ITestableSubsystem {
     //CLASS
     public static final String NAME = "gatekeeper";
+    private final LoopProfiler.Phase periodicPhase = LoopProfiler.phase(NAME + "/periodic");
 
     private GatekeeperState wantedState = GatekeeperState.CLOSED;
 
@@ -21,11 +23,17 @@ public class Gatekeeper extends SubsystemBase implements ITestableSubsystem {
 
     public Gatekeeper() {
         super();
-        GreenLogger.periodicLog(NAME + "/Wanted State", () -> wantedState);
+        GreenLogger.periodicLog(NAME + "/Wanted State", () -> wantedState).publishOnChange();
     }
 
     @Override
     public void periodic() {
+        try (var ignored = periodicPhase.start()) {
+            updatePeriodic();
+        }
+    }
+
+    private void updatePeriodic() {
         readFromHardware();
         applyState();
     }
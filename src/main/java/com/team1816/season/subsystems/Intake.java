@@ -5,6 +5,7 @@ import com.ctre.phoenix6.controls.MotionMagicExpoVoltage;
 import com.team1816.lib.hardware.components.motor.IMotor;
 import com.team1816.lib.subsystems.ITestableSubsystem;
 import com.team1816.lib.util.GreenLogger;
+import com.team1816.lib.util.LoopProfiler;
 import edu.wpi.first.wpilibj.smartdashboard.Mechanism2d;
 import edu.wpi.first.wpilibj.smartdashboard.MechanismLigament2d;
 import edu.wpi.first.wpilibj.smartdashboard.MechanismRoot2d;
@@ -17,6 +18,7 @@ import static com.team1816.lib.Singleton.factory;
 public class Intake extends SubsystemBase implements ITestableSubsystem {
     //CLASS
     public static final String NAME = "intake";
+    private final LoopProfiler.Phase periodicPhase = LoopProfiler.phase(NAME + "/periodic");
 
     private IntakeState wantedState = IntakeState.STOW;
 
@@ -47,13 +49,19 @@ public class Intake extends SubsystemBase implements ITestableSubsystem {
         FLIPPER_MOTOR_OUT_POSITION = factory.getConstant(NAME, "flipperMotorOutPosition", 0);
         FLIPPER_MOTOR_IN_POSITION = factory.getConstant(NAME, "flipperMotorInPosition", 0);
 
-        GreenLogger.periodicLog(NAME + "/Wanted State", () -> wantedState);
+        GreenLogger.periodicLog(NAME + "/Wanted State", () -> wantedState).publishOnChange();
         GreenLogger.periodicLog(NAME + "/Wanted Flipper Position", () -> wantedFlipperPosition);
         GreenLogger.periodicLog(NAME + "/Wanted Intake Duty Cycle", () -> wantedIntakeDutyCycle);
     }
 
     @Override
     public void periodic() {
+        try (var ignored = periodicPhase.start()) {
+            updatePeriodic();
+        }
+    }
+
+    private void updatePeriodic() {
         readFromHardware();
         applyState();
     }
@@ -3,16 +3,24 @@ package com.team1816.season.subsystems;
 import com.ctre.phoenix6.controls.*;
 import com.pathplanner.lib.util.FlippingUtil;
 import com.team1816.lib.BaseRobotState;
+import com.team1816.lib.Singleton;
+import com.team1816.lib.hardware.HardwareSnapshot;
 import com.team1816.lib.hardware.components.IPhoenix6;
 import com.team1816.lib.hardware.components.motor.IMotor;
 import com.team1816.lib.subsystems.ITestableSubsystem;
 import com.team1816.lib.util.FieldContainer;
 import com.team1816.lib.util.GreenLogger;
+import com.team1816.lib.util.LoopProfiler;
 import com.team1816.lib.util.ShooterCalculator.HenryShooterCalculator;
 import com.team1816.lib.util.ShooterCalculator.IShooterCalculator;
+import com.team1816.lib.util.ShooterCalculator.MovingShotSolver;
 import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.*;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.util.Units;
+import edu.wpi.first.util.datalog.BooleanLogEntry;
+import edu.wpi.first.util.datalog.StructLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.DigitalInput;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Timer;
@@ -22,11 +30,23 @@ import edu.wpi.first.wpilibj.smartdashboard.MechanismRoot2d;
 import edu.wpi.first.wpilibj.util.Color8Bit;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import static com.team1816.lib.Singleton.factory;
 public class Shooter extends SubsystemBase implements ITestableSubsystem {
 
     //CLASS
     public static final String NAME = "shooter";
+    /**
+     * The DataLog entry {@link ShotRecord}s are written to.
+     */
+    public static final String SHOT_RECORD_ENTRY = NAME + "/shots/Record";
+    /**
+     * The DataLog entry shot outcomes are written to, true for a made shot and false for a miss.
+     * Each one is for the last {@link ShotRecord} before it.
+     */
+    public static final String SHOT_OUTCOME_ENTRY = NAME + "/shots/Made";
+    private final LoopProfiler.Phase periodicPhase = LoopProfiler.phase(NAME + "/periodic");
 
     //STATES
     private ShooterDistanceState wantedDistanceState = ShooterDistanceState.PRESET_CLOSE;
@@ -81,7 +101,7 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
      */
     private double turretAngleAdjustmentDegrees = 0;
 
-    private boolean useChassisSpeedForHoodAngleAndSpeed = false;
+    private boolean useChassisSpeedForHoodAngleAndSpeed = true;
 
     //MOTORS
     private final IMotor topLaunchMotor = (IMotor) factory.getDevice(NAME, "topLaunchMotor");
@@ -104,6 +124,17 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
     private final DigitalInput leftTurretSensor = new DigitalInput((int) factory.getConstant(NAME, "leftTurretSensorChannel", 0));
     private final DigitalInput rightTurretSensor = new DigitalInput((int) factory.getConstant(NAME, "rightTurretSensorChannel", 1));
 
+    //SNAPSHOT SAMPLES
+    // Everything below is captured together at the start of the loop, so every check this loop
+    // (aiming, calibration, turret pose) sees the same time-aligned values.
+    private final HardwareSnapshot hardwareSnapshot = Singleton.get(HardwareSnapshot.class);
+    private final HardwareSnapshot.MotorSample topLaunchMotorSample = hardwareSnapshot.registerMotor(topLaunchMotor);
+    private final HardwareSnapshot.MotorSample bottomLaunchMotorSample = hardwareSnapshot.registerMotor(bottomLaunchMotor);
+    private final HardwareSnapshot.MotorSample inclineMotorSample = hardwareSnapshot.registerMotor(inclineMotor);
+    private final HardwareSnapshot.MotorSample turretMotorSample = hardwareSnapshot.registerMotor(turretMotor);
+    private final HardwareSnapshot.DigitalInputSample leftTurretSensorSample = hardwareSnapshot.registerDigitalInput(leftTurretSensor);
+    private final HardwareSnapshot.DigitalInputSample rightTurretSensorSample = hardwareSnapshot.registerDigitalInput(rightTurretSensor);
+
     //HARDWARE RECORDED VALUES
     private boolean leftSensorTriggered = false;
     private boolean rightSensorTriggered = false;
@@ -113,24 +144,25 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
     private boolean previousSensorValuesKnown = false;
 
     //CONSTANTS
+    // The constants that aren't final are reloaded from the tuning file, see ShooterTuning.
     private final Translation3d SHOOTER_OFFSET;
     /**
      * The tolerance for the turret rotation to consider it aimed at the target (in degrees).
      */
-    private final double TURRET_ROTATION_TOLERANCE_DEGREES;
+    private double TURRET_ROTATION_TOLERANCE_DEGREES;
     /**
      * The tolerance for the incline angle to consider it aimed at the target (in degrees).
      */
-    private final double INCLINE_ANGLE_TOLERANCE_DEGREES;
+    private double INCLINE_ANGLE_TOLERANCE_DEGREES;
     /**
      * The tolerance for the velocity of the launchers to consider them aimed at the target (in
      * RPS).
      */
-    private final double LAUNCHER_VELOCITY_TOLERANCE_RPS;
+    private double LAUNCHER_VELOCITY_TOLERANCE_RPS;
     /**
      * The maximum angle the incline can go up to for fitting under the trench (in rotations).
      */
-    private final double INCLINE_DUCKING_LIMIT_ROTATIONS;
+    private double INCLINE_DUCKING_LIMIT_ROTATIONS;
     /**
      * The turret position opposite the dead zone, (in rotations).
      */
@@ -160,24 +192,35 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
      * call to {@link #increaseLaunchVelocityAdjustment()} or {@link
      * #decreaseLaunchVelocityAdjustment()} (in RPS).
      */
-    private final double LAUNCH_VELOCITY_ADJUSTMENT_AMOUNT_RPS;
+    private double LAUNCH_VELOCITY_ADJUSTMENT_AMOUNT_RPS;
     /**
      * The amount by which to increase or decrease the {@link #inclineAngleAdjustmentDegrees} per
      * call to {@link #increaseInclineAngleAdjustment()} or {@link
      * #decreaseInclineAngleAdjustment()} (in degrees).
      */
-    private final double INCLINE_ANGLE_ADJUSTMENT_AMOUNT_DEGREES;
+    private double INCLINE_ANGLE_ADJUSTMENT_AMOUNT_DEGREES;
     /**
      * The amount by which to increase or decrease the {@link #turretAngleAdjustmentDegrees} per
      * call to {@link #increaseTurretAngleAdjustment()} or {@link
      * #decreaseTurretAngleAdjustment()} (in degrees).
      */
-    private final double TURRET_ANGLE_ADJUSTMENT_AMOUNT_DEGREES;
+    private double TURRET_ANGLE_ADJUSTMENT_AMOUNT_DEGREES;
     /**
      * A multiplier on all requests to the {@link #topLaunchMotor} to create backspin on the fuel.
      * Values less than one will cause backspin.
      */
-    private final double TOP_LAUNCH_MOTOR_BACKSPIN_MULTIPLIER;
+    private double TOP_LAUNCH_MOTOR_BACKSPIN_MULTIPLIER;
+    /**
+     * The feedforward voltage per unit of turret velocity, used to keep up with the robot turning
+     * (in volts per RPS).
+     */
+    private double TURRET_VELOCITY_KV;
+    /**
+     * How far past the edge of its wrapped range the turret can follow a target into the dead zone
+     * before swinging around to the other side, so a target right at the edge doesn't swing it
+     * back and forth (in rotations).
+     */
+    private double TURRET_WRAP_HYSTERESIS_ROTATIONS;
 
     //CALIBRATION
     private final double FAST_CALIBRATION_SPEED = 0.09;
@@ -186,6 +229,15 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
     private double initialCalibrationStallingTimestamp = -1;
     private final double CALIBRATION_STALL_SECONDS = 1;
 
+    //TURRET FEEDFORWARD
+    /**
+     * The turret only gets a velocity feedforward while it is this close to its wanted position
+     * (in rotations). Bigger moves are left to the motion profile.
+     */
+    private final double TURRET_FEEDFORWARD_MAX_ERROR_ROTATIONS = 0.1;
+    private double wantedTurretVelocityRPS = 0;
+    private double turretFeedforwardVolts = 0;
+
     //MECHANISMS
     private final Mechanism2d inclineMech2d = new Mechanism2d(3, 3, new Color8Bit(50, 15, 50));
     private final MechanismRoot2d inclineMechRoot = inclineMech2d.getRoot("Incline Root", 1.5, 0);
@@ -201,12 +253,39 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
 //    private final double ROBOT_STARTING_LINE = Units.inchesToMeters(156.61); True position.
     private final double ROBOT_STARTING_LINE = 4.2684; // Fudged position to shoot into the hub from only partially over the line.
 
-    private final IShooterCalculator shooterTableCalculator;
+    private IShooterCalculator shooterTableCalculator;
+    /**
+     * The solver compensating for shooting while driving, or null if we aren't.
+     */
+    private MovingShotSolver movingShotSolver;
+    private final double CALCULATOR_ANGLE_OF_ENTRY_DEGREES = 45;
+    /**
+     * Tuning reloaded on the tuning watcher thread, waiting to be swapped in at the start of the
+     * next loop.
+     */
+    private final AtomicReference<ShooterTuning> pendingTuning = new AtomicReference<>();
+    /**
+     * Meters balls into the launch motors one at a time, or null if we only wait for them to be
+     * within tolerance.
+     */
+    private ShotSequencer shotSequencer;
+    /**
+     * If the gatekeeper is letting balls into the launch motors.
+     */
+    private boolean isFeeding = false;
 
-    private Translation3d target = Translation3d.kZero;
-    private Pose3d turretPose = Pose3d.kZero;
+    /**
+     * Everything this loop's aiming is based on, computed once after reading from hardware.
+     */
+    private final ShooterSolution solution = new ShooterSolution();
     private boolean isBlueAlliance = false;
 
+    //SHOT RECORDING
+    // These are created on the first shot, so they don't start the DataLog before GreenLogger does.
+    private StructLogEntry<ShotRecord> shotRecordLogEntry;
+    private BooleanLogEntry shotOutcomeLogEntry;
+    private long shotsRecorded = 0;
+
     public Shooter() {
         super();
         // if the turret is ghosted we can say we are calibrated because the motors will not move
@@ -216,8 +295,6 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
             factory.getConstant(NAME, "shooterOffsetYMeters",0),
             factory.getConstant(NAME, "shooterOffsetZMeters",0)
         );
-        // Just change this line to use a new ShooterTableCalculator to switch the calculator type.
-        shooterTableCalculator = new HenryShooterCalculator(HUB_TRANSLATION_3D.getZ() - SHOOTER_OFFSET.getZ());
 
         // Find the turret positions of the four spots that we would see beam break values change.
         double closeDistanceBetweenBeamBreaks = factory.getConstant(NAME, "closeDistanceBetweenBeamBreaks", 0);
@@ -232,62 +309,192 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
             SECOND_BEAM_BREAK_POSITION_ROTATIONS + THIRD_BEAM_BREAK_POSITION_ROTATIONS
         ) / 2;
 
-        TURRET_ROTATION_TOLERANCE_DEGREES = factory.getConstant(NAME, "turretRotationToleranceDegrees", 0);
-        INCLINE_ANGLE_TOLERANCE_DEGREES = factory.getConstant(NAME, "inclineAngleToleranceDegrees", 0);
-        LAUNCHER_VELOCITY_TOLERANCE_RPS = factory.getConstant(NAME, "launcherVelocityToleranceRPS", 0);
-
-        INCLINE_DUCKING_LIMIT_ROTATIONS = factory.getConstant(NAME, "inclineDuckingLimitRotations", 0);
-
-        LAUNCH_VELOCITY_ADJUSTMENT_AMOUNT_RPS = factory.getConstant(NAME, "launchVelocityAdjustmentAmountRPS", 0);
-        INCLINE_ANGLE_ADJUSTMENT_AMOUNT_DEGREES = factory.getConstant(NAME, "inclineAngleAdjustmentAmountDegrees", 0);
-        TURRET_ANGLE_ADJUSTMENT_AMOUNT_DEGREES = factory.getConstant(NAME, "turretAngleAdjustmentAmountDegrees", 0);
-
-        TOP_LAUNCH_MOTOR_BACKSPIN_MULTIPLIER = factory.getConstant(NAME, "topLaunchMotorBackspinMultiplier", 1);
+        applyTuning(loadTuning());
+        // Reloads run on the tuning watcher thread, so rebuilding the calculators (which can take
+        // a while for the ballistic grid) doesn't hold up a loop.
+        factory.addTuningListener(() -> pendingTuning.set(loadTuning()));
 
-        GreenLogger.periodicLog(NAME + "/Wanted Distance State", () -> wantedDistanceState);
-        GreenLogger.periodicLog(NAME + "/Aimed", this::isAimed);
-        GreenLogger.periodicLog(NAME + "/Is Auto Aiming", () -> isAutoAiming);
+        GreenLogger.periodicLog(NAME + "/Wanted Distance State", () -> wantedDistanceState).publishOnChange();
+        GreenLogger.periodicLogBoolean(NAME + "/Aimed", solution::isAimed);
+        GreenLogger.periodicLogBoolean(NAME + "/Is Auto Aiming", () -> isAutoAiming);
+        GreenLogger.periodicLogLong(NAME + "/shots/Recorded", () -> shotsRecorded).publishOnChange();
 
         // The current launch velocities (in RPS) are already logged by the motor, so we don't need to log them here.
-        GreenLogger.periodicLog(NAME + "/launchMotors/Wanted Velocity RPS", () -> wantedLaunchVelocityRPS);
-        GreenLogger.periodicLog(NAME + "/launchMotors/Aimed", this::areLaunchMotorsAimed);
-        GreenLogger.periodicLog(NAME + "/launchMotors/Spinning Up", () -> spinUpLaunchMotors);
-        GreenLogger.periodicLog(NAME + "/launchMotors/Velocity Adjustment RPS", () -> launchVelocityAdjustmentRPS);
+        GreenLogger.periodicLogDouble(NAME + "/launchMotors/Wanted Velocity RPS", () -> wantedLaunchVelocityRPS);
+        GreenLogger.periodicLogBoolean(NAME + "/launchMotors/Aimed", solution::areLaunchMotorsAimed);
+        GreenLogger.periodicLogBoolean(NAME + "/launchMotors/Spinning Up", () -> spinUpLaunchMotors);
+        GreenLogger.periodicLogDouble(NAME + "/launchMotors/Velocity Adjustment RPS", () -> launchVelocityAdjustmentRPS).publishOnChange();
+        GreenLogger.periodicLogBoolean(NAME + "/launchMotors/Ready To Feed", this::isReadyToFeed);
+        GreenLogger.periodicLogBoolean(NAME + "/launchMotors/Feeding", () -> isFeeding);
+        // Feed metering can be turned on or off by a reload, so these are always logged.
+        GreenLogger.periodicLogLong(
+            NAME + "/launchMotors/Balls Detected",
+            () -> shotSequencer == null ? 0 : shotSequencer.getBallsDetected()
+        ).publishOnChange();
+        GreenLogger.periodicLogBoolean(
+            NAME + "/launchMotors/Recovering",
+            () -> shotSequencer != null && shotSequencer.isRecovering()
+        );
+        GreenLogger.periodicLogDouble(
+            NAME + "/launchMotors/Recovery Time Constant Seconds",
+            () -> shotSequencer == null ? 0 : shotSequencer.getTimeConstantSeconds()
+        ).publishOnChange();
+        GreenLogger.periodicLogDouble(
+            NAME + "/launchMotors/Last Recovery Seconds",
+            () -> shotSequencer == null ? 0 : shotSequencer.getLastRecoverySeconds()
+        ).publishOnChange();
 
         // Because this first one is a Mechanism2d, it will be under the SmartDashboard section of the NetworkTables.
         GreenLogger.periodicLog("Shooter Incline", () -> inclineMech2d);
-        GreenLogger.periodicLog(NAME + "/incline/Current Angle Degrees", this::getCurrentInclineAngleDegrees);
-        GreenLogger.periodicLog(NAME + "/incline/Wanted Angle Degrees", () -> wantedInclineAngleDegrees);
-        GreenLogger.periodicLog(NAME + "/incline/Aimed", this::isInclineAimed);
-        GreenLogger.periodicLog(NAME + "/incline/Ducking", () -> isInclineDucking);
-        GreenLogger.periodicLog(NAME + "/incline/Angle Adjustment Degrees", () -> inclineAngleAdjustmentDegrees);
-
-        GreenLogger.periodicLog(NAME + "/turret/Aimed", this::isTurretAimed);
-        GreenLogger.periodicLog(NAME + "/turret/Calibrated", () -> isTurretCalibrated);
-        GreenLogger.periodicLog(NAME + "/turret/Left Sensor Triggered", () -> leftSensorTriggered);
-        GreenLogger.periodicLog(NAME + "/turret/Right Sensor Triggered", () -> rightSensorTriggered);
-        GreenLogger.periodicLog(NAME + "/turret/Fixed Angle Degrees", () -> turretFixedAngleDegrees);
-        GreenLogger.periodicLog(NAME + "/turret/Auto Aiming Turret", () -> autoAimTurret);
-        GreenLogger.periodicLog(NAME + "/turret/Angle Adjustment Degrees", () -> turretAngleAdjustmentDegrees);
-        GreenLogger.periodicLog(NAME + "/turret/Is Blue Alliance", () -> isBlueAlliance);
-        GreenLogger.periodicLog(NAME + "/turret/calc/Turret Pose", () -> turretPose, Pose3d.struct);
-        GreenLogger.periodicLog(NAME + "/turret/calc/Target Translation", () -> target, Translation3d.struct);
-        GreenLogger.periodicLog(NAME + "/turret/calc/Robot Pose", () -> BaseRobotState.robotPose, Pose2d.struct);
-        GreenLogger.periodicLog(NAME + "/turret/calc/Shooter Offset", () -> SHOOTER_OFFSET, Translation3d.struct);
+        GreenLogger.periodicLogDouble(NAME + "/incline/Current Angle Degrees", solution::getCurrentInclineAngleDegrees);
+        GreenLogger.periodicLogDouble(NAME + "/incline/Wanted Angle Degrees", () -> wantedInclineAngleDegrees);
+        GreenLogger.periodicLogBoolean(NAME + "/incline/Aimed", solution::isInclineAimed);
+        GreenLogger.periodicLogBoolean(NAME + "/incline/Ducking", () -> isInclineDucking);
+        GreenLogger.periodicLogDouble(NAME + "/incline/Angle Adjustment Degrees", () -> inclineAngleAdjustmentDegrees).publishOnChange();
+
+        GreenLogger.periodicLogBoolean(NAME + "/turret/Aimed", solution::isTurretAimed);
+        GreenLogger.periodicLogBoolean(NAME + "/turret/Calibrated", () -> isTurretCalibrated).publishOnChange();
+        GreenLogger.periodicLogBoolean(NAME + "/turret/Left Sensor Triggered", () -> leftSensorTriggered);
+        GreenLogger.periodicLogBoolean(NAME + "/turret/Right Sensor Triggered", () -> rightSensorTriggered);
+        GreenLogger.periodicLogDouble(NAME + "/turret/Fixed Angle Degrees", () -> turretFixedAngleDegrees);
+        GreenLogger.periodicLogBoolean(NAME + "/turret/Auto Aiming Turret", () -> autoAimTurret);
+        GreenLogger.periodicLogDouble(NAME + "/turret/Angle Adjustment Degrees", () -> turretAngleAdjustmentDegrees).publishOnChange();
+        GreenLogger.periodicLogDouble(NAME + "/turret/Wanted Velocity RPS", () -> wantedTurretVelocityRPS);
+        GreenLogger.periodicLogDouble(NAME + "/turret/Feedforward Volts", () -> turretFeedforwardVolts);
+        GreenLogger.periodicLogBoolean(NAME + "/turret/Is Blue Alliance", () -> isBlueAlliance).publishOnChange();
+        GreenLogger.periodicLogDouble(NAME + "/turret/calc/Solution Timestamp", solution::getTimestampSeconds);
+        GreenLogger.periodicLog(NAME + "/turret/calc/Turret Pose", solution::getTurretPose, Pose3d.struct);
+        GreenLogger.periodicLog(NAME + "/turret/calc/Target Translation", solution::getTarget, Translation3d.struct).publishOnChange();
+        GreenLogger.periodicLog(NAME + "/turret/calc/Robot Pose", solution::getRobotPose, Pose2d.struct);
+        GreenLogger.periodicLog(NAME + "/turret/calc/Shooter Offset", () -> SHOOTER_OFFSET, Translation3d.struct).publishOnChange();
+        GreenLogger.periodicLogDouble(NAME + "/turret/calc/Distance to Target", solution::getDistanceToTargetMeters);
+        GreenLogger.periodicLogDouble(NAME + "/turret/calc/Wanted Angle Degrees", () -> wantedTurretAngleDegrees);
+        GreenLogger.periodicLogDouble(NAME + "/turret/calc/Current Angle Degrees", solution::getCurrentTurretAngleDegrees);
+        // Shooting on the move can be turned on or off by a reload, so these are always logged.
         GreenLogger.periodicLog(
-            NAME + "/turret/calc/Distance to Target",
-            // Get the 2d distance between the turret and the target.
-            () -> turretPose.getTranslation().toTranslation2d().getDistance(target.toTranslation2d())
+            NAME + "/turret/calc/Virtual Target",
+            () -> movingShotSolver == null ? Translation3d.kZero : movingShotSolver.getLastVirtualTarget(),
+            Translation3d.struct
         );
-        GreenLogger.periodicLog(NAME + "/turret/calc/Wanted Angle Degrees", () -> wantedTurretAngleDegrees);
-        GreenLogger.periodicLog(
-            NAME + "/turret/calc/Current Angle Degrees",
-            () -> getCurrentRobotRelativeTurretRotation2d().getDegrees()
+        GreenLogger.periodicLogDouble(
+            NAME + "/turret/calc/Time of Flight Seconds",
+            () -> movingShotSolver == null ? 0 : movingShotSolver.getLastTimeOfFlightSeconds()
+        );
+        GreenLogger.periodicLogDouble(
+            NAME + "/turret/calc/Time of Flight Residual Seconds",
+            () -> movingShotSolver == null ? 0 : movingShotSolver.getLastTimeOfFlightResidualSeconds()
+        );
+    }
+
+    /**
+     * The shooter calculators and constants that can be reloaded from the tuning file without
+     * restarting, see {@link com.team1816.lib.hardware.factory.RobotFactory#startTuningWatcher()}.
+     * Everything is built ahead of time so swapping it in is just assigning fields.
+     */
+    private record ShooterTuning(
+        IShooterCalculator shooterTableCalculator,
+        MovingShotSolver movingShotSolver,
+        ShotSequencer shotSequencer,
+        double turretRotationToleranceDegrees,
+        double inclineAngleToleranceDegrees,
+        double launcherVelocityToleranceRPS,
+        double inclineDuckingLimitRotations,
+        double launchVelocityAdjustmentAmountRPS,
+        double inclineAngleAdjustmentAmountDegrees,
+        double turretAngleAdjustmentAmountDegrees,
+        double topLaunchMotorBackspinMultiplier,
+        double turretVelocityKV,
+        double turretWrapHysteresisRotations
+    ) {}
+
+    /**
+     * Reads the tunable constants and builds new shooter calculators from the current
+     * configuration.
+     */
+    private ShooterTuning loadTuning() {
+        // Just change this line to use a new ShooterTableCalculator to switch the calculator type.
+        IShooterCalculator stationaryCalculator;
+        if (factory.getConstant(NAME, "useBallisticGrid", 0, false) > 0) {
+            stationaryCalculator = new HenryShooterCalculator(
+                HUB_TRANSLATION_3D.getZ() - SHOOTER_OFFSET.getZ(), CALCULATOR_ANGLE_OF_ENTRY_DEGREES
+            );
+        } else {
+            stationaryCalculator = new HenryShooterCalculator(HUB_TRANSLATION_3D.getZ() - SHOOTER_OFFSET.getZ());
+        }
+        IShooterCalculator calculator = stationaryCalculator;
+        MovingShotSolver solver = null;
+        if (factory.getConstant(NAME, "shootOnTheMove", 0, false) > 0) {
+            double tanAngleOfEntry = Math.tan(Units.degreesToRadians(CALCULATOR_ANGLE_OF_ENTRY_DEGREES));
+            solver = new MovingShotSolver(
+                stationaryCalculator,
+                (distanceMeters, deltaZMeters) -> HenryShooterCalculator.getTimeOfFlightSeconds(
+                    distanceMeters, deltaZMeters, tanAngleOfEntry
+                ),
+                factory.getConstant(NAME, "actuationLatencySeconds", 0, false),
+                (int) factory.getConstant(NAME, "movingShotIterations", 3)
+            );
+            calculator = solver;
+        }
+
+        double launcherVelocityToleranceRPS = factory.getConstant(NAME, "launcherVelocityToleranceRPS", 0);
+        ShotSequencer sequencer = null;
+        if (factory.getConstant(NAME, "meterFeeding", 0, false) > 0) {
+            sequencer = new ShotSequencer(
+                launcherVelocityToleranceRPS,
+                factory.getConstant(NAME, "ballExitDipRPS", 0),
+                factory.getConstant(NAME, "feedLeadSeconds", 0, false),
+                factory.getConstant(NAME, "launcherRecoveryTimeConstantSeconds", 0.1)
+            );
+        }
+
+        return new ShooterTuning(
+            calculator,
+            solver,
+            sequencer,
+            factory.getConstant(NAME, "turretRotationToleranceDegrees", 0),
+            factory.getConstant(NAME, "inclineAngleToleranceDegrees", 0),
+            launcherVelocityToleranceRPS,
+            factory.getConstant(NAME, "inclineDuckingLimitRotations", 0),
+            factory.getConstant(NAME, "launchVelocityAdjustmentAmountRPS", 0),
+            factory.getConstant(NAME, "inclineAngleAdjustmentAmountDegrees", 0),
+            factory.getConstant(NAME, "turretAngleAdjustmentAmountDegrees", 0),
+            factory.getConstant(NAME, "topLaunchMotorBackspinMultiplier", 1),
+            factory.getConstant(NAME, "turretVelocityKV", 0),
+            factory.getConstant(NAME, "turretWrapHysteresisRotations", 0, false)
         );
     }
 
+    private void applyTuning(ShooterTuning tuning) {
+        shooterTableCalculator = tuning.shooterTableCalculator();
+        movingShotSolver = tuning.movingShotSolver();
+        shotSequencer = tuning.shotSequencer();
+        TURRET_ROTATION_TOLERANCE_DEGREES = tuning.turretRotationToleranceDegrees();
+        INCLINE_ANGLE_TOLERANCE_DEGREES = tuning.inclineAngleToleranceDegrees();
+        LAUNCHER_VELOCITY_TOLERANCE_RPS = tuning.launcherVelocityToleranceRPS();
+        INCLINE_DUCKING_LIMIT_ROTATIONS = tuning.inclineDuckingLimitRotations();
+        LAUNCH_VELOCITY_ADJUSTMENT_AMOUNT_RPS = tuning.launchVelocityAdjustmentAmountRPS();
+        INCLINE_ANGLE_ADJUSTMENT_AMOUNT_DEGREES = tuning.inclineAngleAdjustmentAmountDegrees();
+        TURRET_ANGLE_ADJUSTMENT_AMOUNT_DEGREES = tuning.turretAngleAdjustmentAmountDegrees();
+        TOP_LAUNCH_MOTOR_BACKSPIN_MULTIPLIER = tuning.topLaunchMotorBackspinMultiplier();
+        TURRET_VELOCITY_KV = tuning.turretVelocityKV();
+        TURRET_WRAP_HYSTERESIS_ROTATIONS = tuning.turretWrapHysteresisRotations();
+    }
+
     @Override
     public void periodic() {
+        try (var ignored = periodicPhase.start()) {
+            updatePeriodic();
+        }
+    }
+
+    private void updatePeriodic() {
+        // Swap in any reloaded tuning between loops, so a loop never mixes old and new values.
+        ShooterTuning tuning = pendingTuning.getAndSet(null);
+        if (tuning != null) {
+            applyTuning(tuning);
+            GreenLogger.log("Applied reloaded shooter tuning");
+        }
+
         readFromHardware();
 
         if (turretMotor.hasDeviceCrashed()) {
@@ -298,7 +505,18 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
             calibrateTurretMotor();
         }
 
+        updateSolution();
         applyState();
+        solution.updateAimed(isTurretAimed(), isInclineAimed(), areLaunchMotorsAimed());
+        solution.updateRequests(
+            wantedLaunchVelocityRPS * TOP_LAUNCH_MOTOR_BACKSPIN_MULTIPLIER,
+            wantedLaunchVelocityRPS,
+            topLaunchMotorSample.getVelocityRPS(),
+            bottomLaunchMotorSample.getVelocityRPS(),
+            wantedInclineAngleDegrees,
+            wantedTurretAngleDegrees
+        );
+        updateShotSequencer();
     }
 
     @Override
@@ -314,35 +532,58 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
         }
         // Set the sensor triggered values from the hardware. get() returning false means the
         // sensor is triggered.
-        leftSensorTriggered = !leftTurretSensor.get();
-        rightSensorTriggered = !rightTurretSensor.get();
+        leftSensorTriggered = !leftTurretSensorSample.get();
+        rightSensorTriggered = !rightTurretSensorSample.get();
         // Now the sensor triggered values have been set at least once.
         sensorValuesHaveBeenSet = true;
 
-        FieldContainer.field.getObject("Turret").setPose(getCurrentTurretPose3d().toPose2d());
-
         inclineMotorML.setAngle(getCurrentInclineAngleDegrees());
     }
 
-    private void applyState() {
-        target = getTargetTranslation3d();
-        final double calculatorAngleOfEntryDegrees = 45;
+    /**
+     * Computes this loop's {@link #solution} from the latest hardware readings and robot pose.
+     * The shooter calculator is only run once, and only if something is auto aiming.
+     */
+    private void updateSolution() {
+        Pose2d robotPose = BaseRobotState.robotPose;
+        Pose3d turretPose = getCurrentTurretPose3d(robotPose);
+        Translation3d target = getTargetTranslation3d(robotPose);
 
         isAutoAiming = autoAimTurret || wantedDistanceState == ShooterDistanceState.AUTOMATIC;
 
-        if (autoAimTurret) {
-            double turretLookAheadTimeSeconds = 0;
-            IShooterCalculator.ShooterCalculatorResponse calculatorResponse = shooterTableCalculator.calculate(
-                getCurrentTurretPose3d().getTranslation(),
+        IShooterCalculator.ShooterCalculatorResponse calculatorResponse = null;
+        if (isAutoAiming) {
+            double lookAheadTimeSeconds = 0;
+            calculatorResponse = shooterTableCalculator.calculate(
+                turretPose.getTranslation(),
                 target,
-                calculatorAngleOfEntryDegrees,
+                CALCULATOR_ANGLE_OF_ENTRY_DEGREES,
                 useChassisSpeedForHoodAngleAndSpeed,
-                turretLookAheadTimeSeconds
+                lookAheadTimeSeconds
             );
-            setTurretAngle(calculatorResponse.turretAngleDegrees());
+        }
+
+        solution.update(
+            Timer.getFPGATimestamp(),
+            robotPose,
+            BaseRobotState.robotSpeeds,
+            turretPose,
+            getCurrentRobotRelativeTurretRotation2d().getDegrees(),
+            getCurrentInclineAngleDegrees(),
+            target,
+            calculatorResponse
+        );
+
+        FieldContainer.field.getObject("Turret").setPose(turretPose.toPose2d());
+    }
+
+    private void applyState() {
+        if (autoAimTurret) {
+            setTurretAngle(solution.getCalculatorResponse().turretAngleDegrees(), getTrackingTurretVelocityRPS());
         }
         else {
-            setTurretAngle(turretFixedAngleDegrees);
+            // The fixed angle is robot-relative, so it doesn't move as the robot does.
+            setTurretAngle(turretFixedAngleDegrees, 0);
         }
 
         switch (wantedDistanceState) {
@@ -351,13 +592,7 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
                 setLaunchVelocities(wantedDistanceState.getLaunchVelocityRPS());
             }
             case AUTOMATIC -> {
-                IShooterCalculator.ShooterCalculatorResponse calculatorResponse = shooterTableCalculator.calculate(
-                    getCurrentTurretPose3d().getTranslation(),
-                    target,
-                    calculatorAngleOfEntryDegrees,
-                    useChassisSpeedForHoodAngleAndSpeed,
-                    0
-                );
+                IShooterCalculator.ShooterCalculatorResponse calculatorResponse = solution.getCalculatorResponse();
                 setInclineAngle(calculatorResponse.inclineAngleDegrees());
                 setLaunchVelocities(calculatorResponse.launchVelocityRPS());
             }
@@ -473,10 +708,10 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
      * of the alliance zone, determines which corner to aim at if aiming at the corner, and gets
      * the correct {@link Translation3d} of this target based on the alliance.
      *
+     * @param robotPose The pose of the robot this loop.
      * @return The {@link Translation3d} of the target we should aim at.
      */
-    private Translation3d getTargetTranslation3d() {
-        Pose2d robotPose = BaseRobotState.robotPose;
+    private Translation3d getTargetTranslation3d(Pose2d robotPose) {
         double robotXMeters = robotPose.getX();
         double robotYMeters = robotPose.getY();
         isBlueAlliance = DriverStation.getAlliance().orElse(DriverStation.Alliance.Blue) == DriverStation.Alliance.Blue;
@@ -624,17 +859,40 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
      */
     private boolean areLaunchMotorsAimed() {
         return MathUtil.isNear(
-            wantedLaunchVelocityRPS,
-            topLaunchMotor.getMotorVelocity(),
+            wantedLaunchVelocityRPS * TOP_LAUNCH_MOTOR_BACKSPIN_MULTIPLIER,
+            topLaunchMotorSample.getVelocityRPS(),
             LAUNCHER_VELOCITY_TOLERANCE_RPS
         )
             && MathUtil.isNear(
                 wantedLaunchVelocityRPS,
-                bottomLaunchMotor.getMotorVelocity(),
+                bottomLaunchMotorSample.getVelocityRPS(),
                 LAUNCHER_VELOCITY_TOLERANCE_RPS
             );
     }
 
+    /**
+     * Gets how far below their wanted velocities the launch motors are, taking whichever motor is
+     * further off.
+     *
+     * @return The launch motor velocity error (in RPS), negative if it is above the wanted
+     * velocity.
+     */
+    private double getLaunchVelocityErrorRPS() {
+        double topErrorRPS = wantedLaunchVelocityRPS * TOP_LAUNCH_MOTOR_BACKSPIN_MULTIPLIER
+            - topLaunchMotorSample.getVelocityRPS();
+        double bottomErrorRPS = wantedLaunchVelocityRPS - bottomLaunchMotorSample.getVelocityRPS();
+        return Math.abs(topErrorRPS) > Math.abs(bottomErrorRPS) ? topErrorRPS : bottomErrorRPS;
+    }
+
+    private void updateShotSequencer() {
+        if (shotSequencer == null) return;
+        if (spinUpLaunchMotors) {
+            shotSequencer.update(solution.getTimestampSeconds(), getLaunchVelocityErrorRPS(), isFeeding);
+        } else {
+            shotSequencer.reset();
+        }
+    }
+
     /**
      * Sends a position request to the {@link #inclineMotor} based on the passed in angle in
      * degrees. This method will duck the incline under the trench if {@link #isInclineDucking} is
@@ -659,7 +917,7 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
      * @return The current angle of the incline (in degrees).
      */
     private double getCurrentInclineAngleDegrees() {
-        double rotations = inclineMotor.getMotorPosition();
+        double rotations = inclineMotorSample.getPositionRotations();
         return Units.rotationsToDegrees(rotations);
     }
 
@@ -679,32 +937,116 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
     /**
      * Sends a position request to the {@link #turretMotor} based on the passed in robot-relative
      * angle in counterclockwise positive degrees. This method will only move the turret is it is
-     * calibrated and will avoid the dead zone.
+     * calibrated and will avoid the dead zone. The wanted velocity is fed forward so the turret
+     * keeps up with the robot turning instead of lagging behind the motion profile.
      *
      * @param wantedAngleDegrees The desired robot-relative angle to point the turret at, in
      *                           degrees counterclockwise from forward.
+     * @param wantedVelocityRPS  How fast the desired angle is changing, in counterclockwise
+     *                           positive rotations per second.
      */
-    private void setTurretAngle(double wantedAngleDegrees) {
+    private void setTurretAngle(double wantedAngleDegrees, double wantedVelocityRPS) {
         wantedTurretAngleDegrees = wantedAngleDegrees + turretAngleAdjustmentDegrees;
+        wantedTurretVelocityRPS = wantedVelocityRPS;
+        turretFeedforwardVolts = 0;
         if (isTurretCalibrated) {
             double wantedRotations = Units.degreesToRotations(wantedTurretAngleDegrees);
+            double currentRotations = turretMotorSample.getPositionRotations();
+            double wrappedWantedRotations = wrapTurretRotations(wantedRotations, currentRotations);
+
+            // Only feed forward while tracking. A big move, like swinging around after the target
+            // crossed the dead zone, is left to the motion profile so the feedforward doesn't push
+            // against it.
+            if (Math.abs(wrappedWantedRotations - currentRotations) < TURRET_FEEDFORWARD_MAX_ERROR_ROTATIONS) {
+                boolean isPushingIntoDeadZone =
+                    (wrappedWantedRotations >= OPPOSITE_OF_DEAD_ZONE_POSITION_ROTATIONS + 0.5 && wantedVelocityRPS > 0)
+                        || (wrappedWantedRotations <= OPPOSITE_OF_DEAD_ZONE_POSITION_ROTATIONS - 0.5 && wantedVelocityRPS < 0);
+                // Past the edge of the range, let the turret stop and wrap around instead.
+                if (!isPushingIntoDeadZone) {
+                    turretFeedforwardVolts = TURRET_VELOCITY_KV * wantedVelocityRPS;
+                }
+            }
 
-            double wrappedWantedRotations = MathUtil.inputModulus(
-                wantedRotations,
-                OPPOSITE_OF_DEAD_ZONE_POSITION_ROTATIONS - 0.5,
-                OPPOSITE_OF_DEAD_ZONE_POSITION_ROTATIONS + 0.5
+            turretMotor.setControl(
+                turretMotorPositionRequest
+                    .withPosition(wrappedWantedRotations)
+                    .withFeedForward(turretFeedforwardVolts)
             );
+        }
+    }
 
-            turretMotor.setControl(turretMotorPositionRequest.withPosition(wrappedWantedRotations));
+    /**
+     * Wraps a wanted turret position into the one rotation range centered opposite the dead zone.
+     * <p>
+     * Right at the dead zone, the same angle is just inside both ends of the range. Within {@link
+     * #TURRET_WRAP_HYSTERESIS_ROTATIONS} of the edge, this stays on whichever end the turret is
+     * already on, so a target sitting at the dead zone doesn't swing the turret all the way around
+     * and back.
+     *
+     * @param wantedRotations  The wanted robot-relative turret position (in rotations).
+     * @param currentRotations The current turret position (in rotations).
+     * @return The turret position to go to (in rotations).
+     */
+    private double wrapTurretRotations(double wantedRotations, double currentRotations) {
+        double minRotations = OPPOSITE_OF_DEAD_ZONE_POSITION_ROTATIONS - 0.5;
+        double maxRotations = OPPOSITE_OF_DEAD_ZONE_POSITION_ROTATIONS + 0.5;
+        double wrappedRotations = MathUtil.inputModulus(wantedRotations, minRotations, maxRotations);
+
+        double otherEndRotations = wrappedRotations < OPPOSITE_OF_DEAD_ZONE_POSITION_ROTATIONS
+            ? wrappedRotations + 1
+            : wrappedRotations - 1;
+        if (
+            otherEndRotations >= minRotations - TURRET_WRAP_HYSTERESIS_ROTATIONS
+                && otherEndRotations <= maxRotations + TURRET_WRAP_HYSTERESIS_ROTATIONS
+                && Math.abs(otherEndRotations - currentRotations) < Math.abs(wrappedRotations - currentRotations)
+        ) {
+            return otherEndRotations;
         }
+        return wrappedRotations;
+    }
+
+    /**
+     * Gets the robot-relative turret velocity that keeps it pointed at this loop's target. This is
+     * how fast the bearing from the shooter to the target turns as the shooter moves, minus how
+     * fast the robot itself is turning.
+     *
+     * @return The turret velocity to track the target (in RPS).
+     */
+    private double getTrackingTurretVelocityRPS() {
+        Pose2d robotPose = solution.getRobotPose();
+        Translation3d shooter = solution.getTurretPose().getTranslation();
+        Translation3d target = solution.getTarget();
+        var robotSpeeds = BaseRobotState.robotSpeeds;
+        double omega = robotSpeeds.omegaRadiansPerSecond;
+        double headingRadians = robotPose.getRotation().getRadians();
+        double cos = Math.cos(headingRadians);
+        double sin = Math.sin(headingRadians);
+
+        // Field-relative velocity of the shooter, including it swinging around the robot center
+        // while turning.
+        double offsetX = shooter.getX() - robotPose.getX();
+        double offsetY = shooter.getY() - robotPose.getY();
+        double vX = robotSpeeds.vxMetersPerSecond * cos - robotSpeeds.vyMetersPerSecond * sin - omega * offsetY;
+        double vY = robotSpeeds.vxMetersPerSecond * sin + robotSpeeds.vyMetersPerSecond * cos + omega * offsetX;
+
+        double toTargetX = target.getX() - shooter.getX();
+        double toTargetY = target.getY() - shooter.getY();
+        double distanceSquared = toTargetX * toTargetX + toTargetY * toTargetY;
+        double bearingRateRadiansPerSecond = 0;
+        // Right on top of the target the bearing is meaningless.
+        if (distanceSquared > 1e-6) {
+            bearingRateRadiansPerSecond = (toTargetY * vX - toTargetX * vY) / distanceSquared;
+        }
+        return Units.radiansToRotations(bearingRateRadiansPerSecond - omega);
     }
 
     /**
      * Gets the {@link Pose3d} representing the turret's current pose on the field.
      *
+     * @param robotPose The pose of the robot this loop.
      * @return The current field-relative {@link Pose3d} of the turret.
      */
-    private Pose3d getCurrentTurretPose3d() {
+    private Pose3d getCurrentTurretPose3d(Pose2d robotPose) {
         Rotation2d robotToTurretRotation2d = getCurrentRobotRelativeTurretRotation2d();
 
         Transform3d robotToTurretTransform3d = new Transform3d(
@@ -712,11 +1054,9 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
             new Rotation3d(robotToTurretRotation2d)
         );
 
-        Pose3d robotPose3d = new Pose3d(BaseRobotState.robotPose);
-
-        turretPose = robotPose3d.transformBy(robotToTurretTransform3d);
+        Pose3d robotPose3d = new Pose3d(robotPose);
 
-        return turretPose;
+        return robotPose3d.transformBy(robotToTurretTransform3d);
     }
 
     /**
@@ -725,7 +1065,7 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
      * @return The current robot-relative {@link Rotation2d} of the turret.
      */
     private Rotation2d getCurrentRobotRelativeTurretRotation2d() {
-        double turretRotations = turretMotor.getMotorPosition();
+        double turretRotations = turretMotorSample.getPositionRotations();
         return Rotation2d.fromRotations(turretRotations);
     }
 
@@ -739,20 +1079,316 @@ public class Shooter extends SubsystemBase implements ITestableSubsystem {
             && MathUtil.isNear(
                 wantedTurretAngleDegrees,
                 getCurrentRobotRelativeTurretRotation2d().getDegrees(),
-                TURRET_ROTATION_TOLERANCE_DEGREES
+                TURRET_ROTATION_TOLERANCE_DEGREES,
+                // Compare around the circle, since the turret can be a full rotation off of the
+                // wanted angle on the other side of the dead zone.
+                -180,
+                180
             );
     }
 
     /**
-     * Gets if the whole shooter (turret and incline) is aimed at the target and ready to shoot. We
-     * are assuming the launch motor spinup time is negligible, so we are not currently checking
-     * them.
+     * Gets if the whole shooter (turret, incline and launch motors) is aimed at the target and
+     * ready to shoot, as of this loop's {@link ShooterSolution}.
      *
      * @return If the shooter is aimed.
      */
     public boolean isAimed() {
-        return isInclineAimed()
-            && isTurretAimed();
+        return solution.isAimed();
+    }
+
+    /**
+     * Gets if the next ball should be fed into the shooter. The turret and incline need to be
+     * aimed, and if feeding is metered, the {@link ShotSequencer} decides when the launch motors
+     * will be up to speed for it. Otherwise, the launch motors need to be up to speed already.
+     *
+     * @return If the next ball should be fed.
+     */
+    public boolean isReadyToFeed() {
+        boolean launchMotorsReady = shotSequencer == null
+            ? solution.areLaunchMotorsAimed()
+            : shotSequencer.isReadyToFeed();
+        return solution.isTurretAimed() && solution.isInclineAimed() && launchMotorsReady;
+    }
+
+    /**
+     * Sets if the gatekeeper is letting balls into the launch motors, so dips in their velocity
+     * can be told apart from changes to the wanted velocity.
+     *
+     * @param isFeeding If balls are being fed.
+     */
+    public void setFeeding(boolean isFeeding) {
+        this.isFeeding = isFeeding;
+    }
+
+    /**
+     * Writes a {@link ShotRecord} of the latest {@link ShooterSolution} to the DataLog. This should
+     * be called when the gatekeeper opens with the shooter aimed.
+     * <p>
+     * The {@link com.team1816.season.subsystems.Superstructure} runs before the shooter each
+     * loop, so the latest solution is from the previous loop. Everything in the record comes from
+     * that solution, so the readings always match what was commanded alongside them.
+     */
+    public void recordShot() {
+        if (shotRecordLogEntry == null) {
+            shotRecordLogEntry = StructLogEntry.create(DataLogManager.getLog(), SHOT_RECORD_ENTRY, ShotRecord.struct);
+        }
+        shotRecordLogEntry.append(new ShotRecord(
+            solution.getTimestampSeconds(),
+            solution.getDistanceToTargetMeters(),
+            solution.getRobotSpeeds(),
+            solution.getWantedTopLaunchVelocityRPS(),
+            solution.getWantedBottomLaunchVelocityRPS(),
+            solution.getTopLaunchVelocityRPS(),
+            solution.getBottomLaunchVelocityRPS(),
+            solution.getWantedInclineAngleDegrees(),
+            solution.getCurrentInclineAngleDegrees(),
+            solution.getWantedTurretAngleDegrees(),
+            solution.getCurrentTurretAngleDegrees()
+        ));
+        shotsRecorded++;
+    }
+
+    /**
+     * Tags the outcome of the last recorded shot in the DataLog, for {@link
+     * com.team1816.tools.ShotTableFitter} to fit the shooter tables from.
+     *
+     * @param made If the shot went in.
+     */
+    public void tagLastShot(boolean made) {
+        if (shotsRecorded == 0) return;
+        if (shotOutcomeLogEntry == null) {
+            shotOutcomeLogEntry = new BooleanLogEntry(DataLogManager.getLog(), SHOT_OUTCOME_ENTRY);
+        }
+        shotOutcomeLogEntry.append(made);
+        GreenLogger.log("Tagged shot " + shotsRecorded + (made ? " made" : " missed"));
+    }
+
+    /**
+     * @return If the shooter compensates for the robot's motion, so it can shoot accurately while
+     * driving at full speed.
+     */
+    public boolean isShootingOnTheMove() {
+        return movingShotSolver != null;
+    }
+
+    /**
+     * @return This loop's {@link ShooterSolution}. It is updated in place every loop, so copy out
+     * anything that needs to be kept.
+     */
+    public ShooterSolution getSolution() {
+        return solution;
+    }
+
+    /**
+     * Everything the shooter's aiming is based on for one loop, computed once right after reading
+     * from hardware so aiming, gating and logging all agree with what was actually commanded.
+     * <p>
+     * This is updated in place every loop rather than replaced, so it doesn't allocate.
+     */
+    public static class ShooterSolution {
+        private double timestampSeconds = 0;
+        private Pose2d robotPose = Pose2d.kZero;
+        private ChassisSpeeds robotSpeeds = new ChassisSpeeds();
+        private Pose3d turretPose = Pose3d.kZero;
+        private double currentTurretAngleDegrees = 0;
+        private double currentInclineAngleDegrees = 0;
+        private Translation3d target = Translation3d.kZero;
+        private double distanceToTargetMeters = 0;
+        private IShooterCalculator.ShooterCalculatorResponse calculatorResponse = null;
+        private boolean turretAimed = false;
+        private boolean inclineAimed = false;
+        private boolean launchMotorsAimed = false;
+        private double wantedTopLaunchVelocityRPS = 0;
+        private double wantedBottomLaunchVelocityRPS = 0;
+        private double topLaunchVelocityRPS = 0;
+        private double bottomLaunchVelocityRPS = 0;
+        private double wantedInclineAngleDegrees = 0;
+        private double wantedTurretAngleDegrees = 0;
+
+        private ShooterSolution() {}
+
+        private void update(
+            double timestampSeconds,
+            Pose2d robotPose,
+            ChassisSpeeds robotSpeeds,
+            Pose3d turretPose,
+            double currentTurretAngleDegrees,
+            double currentInclineAngleDegrees,
+            Translation3d target,
+            IShooterCalculator.ShooterCalculatorResponse calculatorResponse
+        ) {
+            this.timestampSeconds = timestampSeconds;
+            this.robotPose = robotPose;
+            this.robotSpeeds = robotSpeeds;
+            this.turretPose = turretPose;
+            this.currentTurretAngleDegrees = currentTurretAngleDegrees;
+            this.currentInclineAngleDegrees = currentInclineAngleDegrees;
+            this.target = target;
+            // Get the 2d distance between the turret and the target.
+            distanceToTargetMeters = turretPose.getTranslation().toTranslation2d()
+                .getDistance(target.toTranslation2d());
+            this.calculatorResponse = calculatorResponse;
+        }
+
+        private void updateAimed(boolean turretAimed, boolean inclineAimed, boolean launchMotorsAimed) {
+            this.turretAimed = turretAimed;
+            this.inclineAimed = inclineAimed;
+            this.launchMotorsAimed = launchMotorsAimed;
+        }
+
+        private void updateRequests(
+            double wantedTopLaunchVelocityRPS,
+            double wantedBottomLaunchVelocityRPS,
+            double topLaunchVelocityRPS,
+            double bottomLaunchVelocityRPS,
+            double wantedInclineAngleDegrees,
+            double wantedTurretAngleDegrees
+        ) {
+            this.wantedTopLaunchVelocityRPS = wantedTopLaunchVelocityRPS;
+            this.wantedBottomLaunchVelocityRPS = wantedBottomLaunchVelocityRPS;
+            this.topLaunchVelocityRPS = topLaunchVelocityRPS;
+            this.bottomLaunchVelocityRPS = bottomLaunchVelocityRPS;
+            this.wantedInclineAngleDegrees = wantedInclineAngleDegrees;
+            this.wantedTurretAngleDegrees = wantedTurretAngleDegrees;
+        }
+
+        /**
+         * @return When this solution was computed, in FPGA seconds.
+         */
+        public double getTimestampSeconds() {
+            return timestampSeconds;
+        }
+
+        /**
+         * @return The robot pose this solution was computed from.
+         */
+        public Pose2d getRobotPose() {
+            return robotPose;
+        }
+
+        /**
+         * @return The robot-relative speeds of the robot when this solution was computed.
+         */
+        public ChassisSpeeds getRobotSpeeds() {
+            return robotSpeeds;
+        }
+
+        /**
+         * @return The field-relative pose of the turret.
+         */
+        public Pose3d getTurretPose() {
+            return turretPose;
+        }
+
+        /**
+         * @return The robot-relative angle of the turret, in degrees counterclockwise from
+         * forward.
+         */
+        public double getCurrentTurretAngleDegrees() {
+            return currentTurretAngleDegrees;
+        }
+
+        /**
+         * @return The angle of the incline, in degrees.
+         */
+        public double getCurrentInclineAngleDegrees() {
+            return currentInclineAngleDegrees;
+        }
+
+        /**
+         * @return The field-relative translation being aimed at.
+         */
+        public Translation3d getTarget() {
+            return target;
+        }
+
+        /**
+         * @return The horizontal distance from the turret to the target, in meters.
+         */
+        public double getDistanceToTargetMeters() {
+            return distanceToTargetMeters;
+        }
+
+        /**
+         * @return The shooter calculator's response, or null if nothing was auto aiming.
+         */
+        public IShooterCalculator.ShooterCalculatorResponse getCalculatorResponse() {
+            return calculatorResponse;
+        }
+
+        /**
+         * @return If the turret had reached its wanted angle after this loop's requests.
+         */
+        public boolean isTurretAimed() {
+            return turretAimed;
+        }
+
+        /**
+         * @return If the incline had reached its wanted angle after this loop's requests.
+         */
+        public boolean isInclineAimed() {
+            return inclineAimed;
+        }
+
+        /**
+         * @return If the launch motors had reached their wanted velocity after this loop's
+         * requests.
+         */
+        public boolean areLaunchMotorsAimed() {
+            return launchMotorsAimed;
+        }
+
+        /**
+         * @return If the turret, incline and launch motors are all aimed.
+         */
+        public boolean isAimed() {
+            return inclineAimed && turretAimed && launchMotorsAimed;
+        }
+
+        /**
+         * @return The velocity requested of the top launch motor this loop, in RPS.
+         */
+        public double getWantedTopLaunchVelocityRPS() {
+            return wantedTopLaunchVelocityRPS;
+        }
+
+        /**
+         * @return The velocity requested of the bottom launch motor this loop, in RPS.
+         */
+        public double getWantedBottomLaunchVelocityRPS() {
+            return wantedBottomLaunchVelocityRPS;
+        }
+
+        /**
+         * @return The velocity of the top launch motor from the same snapshot as this solution,
+         * in RPS.
+         */
+        public double getTopLaunchVelocityRPS() {
+            return topLaunchVelocityRPS;
+        }
+
+        /**
+         * @return The velocity of the bottom launch motor from the same snapshot as this solution,
+         * in RPS.
+         */
+        public double getBottomLaunchVelocityRPS() {
+            return bottomLaunchVelocityRPS;
+        }
+
+        /**
+         * @return The incline angle requested this loop, in degrees.
+         */
+        public double getWantedInclineAngleDegrees() {
+            return wantedInclineAngleDegrees;
+        }
+
+        /**
+         * @return The turret angle requested this loop, in degrees.
+         */
+        public double getWantedTurretAngleDegrees() {
+            return wantedTurretAngleDegrees;
+        }
     }
 
     public enum ShooterDistanceState {
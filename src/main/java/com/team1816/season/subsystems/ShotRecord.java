@@ -0,0 +1,116 @@
+package com.team1816.season.subsystems;
+
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.util.struct.Struct;
+import edu.wpi.first.util.struct.StructSerializable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Everything about the {@link Shooter} at the moment the gatekeeper opened with it aimed, written
+ * to the DataLog as a struct so shots can be analyzed and the shooter tables fit offline with
+ * {@link com.team1816.tools.ShotTableFitter}.
+ *
+ * @param timestampSeconds               The FPGA timestamp of the shot (in seconds).
+ * @param distanceToTargetMeters         The horizontal distance from the turret to the target (in
+ *                                       meters).
+ * @param robotSpeeds                    The robot-relative {@link ChassisSpeeds} of the robot.
+ * @param wantedTopLaunchVelocityRPS     The velocity the top launch motor was commanded to, including
+ *                                       backspin (in RPS).
+ * @param wantedBottomLaunchVelocityRPS  The velocity the bottom launch motor was commanded to (in
+ *                                       RPS).
+ * @param topLaunchVelocityRPS           The measured velocity of the top launch motor (in RPS).
+ * @param bottomLaunchVelocityRPS        The measured velocity of the bottom launch motor (in RPS).
+ * @param wantedInclineAngleDegrees      The angle the incline was commanded to (in degrees).
+ * @param inclineAngleDegrees            The measured angle of the incline (in degrees).
+ * @param wantedTurretAngleDegrees       The robot-relative angle the turret was commanded to (in
+ *                                       degrees).
+ * @param turretAngleDegrees             The measured robot-relative angle of the turret (in degrees).
+ */
+public record ShotRecord(
+    double timestampSeconds,
+    double distanceToTargetMeters,
+    ChassisSpeeds robotSpeeds,
+    double wantedTopLaunchVelocityRPS,
+    double wantedBottomLaunchVelocityRPS,
+    double topLaunchVelocityRPS,
+    double bottomLaunchVelocityRPS,
+    double wantedInclineAngleDegrees,
+    double inclineAngleDegrees,
+    double wantedTurretAngleDegrees,
+    double turretAngleDegrees
+) implements StructSerializable {
+    public static final ShotRecordStruct struct = new ShotRecordStruct();
+
+    public static class ShotRecordStruct implements Struct<ShotRecord> {
+        @Override
+        public Class<ShotRecord> getTypeClass() {
+            return ShotRecord.class;
+        }
+
+        @Override
+        public String getTypeName() {
+            return "ShotRecord";
+        }
+
+        @Override
+        public int getSize() {
+            return kSizeDouble * 2 + ChassisSpeeds.struct.getSize() + kSizeDouble * 8;
+        }
+
+        @Override
+        public String getSchema() {
+            return "double TimestampSeconds;" +
+                "double DistanceToTargetMeters;" +
+                "ChassisSpeeds RobotSpeeds;" +
+                "double WantedTopLaunchVelocityRPS;" +
+                "double WantedBottomLaunchVelocityRPS;" +
+                "double TopLaunchVelocityRPS;" +
+                "double BottomLaunchVelocityRPS;" +
+                "double WantedInclineAngleDegrees;" +
+                "double InclineAngleDegrees;" +
+                "double WantedTurretAngleDegrees;" +
+                "double TurretAngleDegrees";
+        }
+
+        @Override
+        public Struct<?>[] getNested() {
+            return new Struct<?>[] {ChassisSpeeds.struct};
+        }
+
+        @Override
+        public ShotRecord unpack(ByteBuffer bb) {
+            double timestampSeconds = bb.getDouble();
+            double distanceToTargetMeters = bb.getDouble();
+            ChassisSpeeds robotSpeeds = ChassisSpeeds.struct.unpack(bb);
+            return new ShotRecord(
+                timestampSeconds,
+                distanceToTargetMeters,
+                robotSpeeds,
+                bb.getDouble(),
+                bb.getDouble(),
+                bb.getDouble(),
+                bb.getDouble(),
+                bb.getDouble(),
+                bb.getDouble(),
+                bb.getDouble(),
+                bb.getDouble()
+            );
+        }
+
+        @Override
+        public void pack(ByteBuffer bb, ShotRecord value) {
+            bb.putDouble(value.timestampSeconds);
+            bb.putDouble(value.distanceToTargetMeters);
+            ChassisSpeeds.struct.pack(bb, value.robotSpeeds);
+            bb.putDouble(value.wantedTopLaunchVelocityRPS);
+            bb.putDouble(value.wantedBottomLaunchVelocityRPS);
+            bb.putDouble(value.topLaunchVelocityRPS);
+            bb.putDouble(value.bottomLaunchVelocityRPS);
+            bb.putDouble(value.wantedInclineAngleDegrees);
+            bb.putDouble(value.inclineAngleDegrees);
+            bb.putDouble(value.wantedTurretAngleDegrees);
+            bb.putDouble(value.turretAngleDegrees);
+        }
+    }
+}
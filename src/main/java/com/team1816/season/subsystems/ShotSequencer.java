@@ -0,0 +1,180 @@
+package com.team1816.season.subsystems;
+
+/**
+ * Meters fuel into the {@link Shooter} one ball at a time, so each ball is launched with the launch
+ * motors back up to speed instead of on a sagging wheel.
+ * <p>
+ * A ball leaving the launch motors drags them down, so a ball exit is detected when the velocity
+ * shortfall crosses above the exit dip threshold while feeding. Feeding then stops until the
+ * motors recover. The recovery is modeled as the closed loop error decaying exponentially from the
+ * deepest point of the dip, so the time it gets back within tolerance can be predicted from how
+ * deep the dip was. Feeding restarts early by the feed lead time, the time a ball takes to reach
+ * the launch motors, so the next ball gets there right as they are back within tolerance.
+ * <p>
+ * The time constant of the decay is learned from every recovery, so the prediction follows the
+ * real launch motors (and battery) rather than a guess.
+ * <p>
+ * This doesn't allocate, so it can be updated every loop.
+ */
+public class ShotSequencer {
+    /**
+     * How much each recovery moves the learned time constant toward its own, from 0 to 1.
+     */
+    private static final double LEARNING_RATE = 0.25;
+
+    private final double toleranceRPS;
+    private final double exitDipRPS;
+    private final double feedLeadSeconds;
+
+    private double timeConstantSeconds;
+    private boolean isRecovering = false;
+    private double previousErrorRPS = 0;
+    private double peakErrorRPS = 0;
+    private double peakTimestampSeconds = 0;
+    private double dipStartTimestampSeconds = 0;
+    private double predictedRecoveryTimestampSeconds = 0;
+    private double lastRecoverySeconds = 0;
+    private long ballsDetected = 0;
+    private boolean readyToFeed = false;
+
+    /**
+     * Constructs a {@link ShotSequencer}.
+     *
+     * @param toleranceRPS               How close the launch motors need to be to their wanted
+     *                                   velocity to be up to speed (in RPS).
+     * @param exitDipRPS                 How far below their wanted velocity a ball leaving drags the
+     *                                   launch motors (in RPS). Must be more than the tolerance.
+     * @param feedLeadSeconds            The time from starting to feed to a ball reaching the launch
+     *                                   motors (in seconds).
+     * @param initialTimeConstantSeconds The starting guess for the time constant of the launch
+     *                                   motors recovering (in seconds).
+     */
+    public ShotSequencer(
+        double toleranceRPS,
+        double exitDipRPS,
+        double feedLeadSeconds,
+        double initialTimeConstantSeconds
+    ) {
+        if (!(toleranceRPS > 0)) {
+            throw new IllegalArgumentException("The launch velocity tolerance must be positive");
+        }
+        if (!(exitDipRPS > toleranceRPS)) {
+            throw new IllegalArgumentException(
+                "The ball exit dip (" + exitDipRPS + " RPS) must be more than the launch velocity tolerance ("
+                    + toleranceRPS + " RPS)"
+            );
+        }
+        if (feedLeadSeconds < 0) {
+            throw new IllegalArgumentException("The feed lead time can't be negative");
+        }
+        if (!(initialTimeConstantSeconds > 0)) {
+            throw new IllegalArgumentException("The recovery time constant must be positive");
+        }
+        this.toleranceRPS = toleranceRPS;
+        this.exitDipRPS = exitDipRPS;
+        this.feedLeadSeconds = feedLeadSeconds;
+        timeConstantSeconds = initialTimeConstantSeconds;
+    }
+
+    /**
+     * Updates the sequencer with this loop's launch motor velocities.
+     *
+     * @param timestampSeconds The timestamp of the velocities (in seconds).
+     * @param errorRPS         How far below their wanted velocity the launch motors are (in RPS).
+     *                         Negative if they are above it.
+     * @param isFeeding        If balls are being fed into the launch motors. Dips while not
+     *                         feeding, like from raising the wanted velocity, aren't ball exits.
+     */
+    public void update(double timestampSeconds, double errorRPS, boolean isFeeding) {
+        if (isFeeding && previousErrorRPS <= exitDipRPS && errorRPS > exitDipRPS) {
+            ballsDetected++;
+            isRecovering = true;
+            peakErrorRPS = errorRPS;
+            peakTimestampSeconds = timestampSeconds;
+            dipStartTimestampSeconds = timestampSeconds;
+            predictRecovery();
+        } else if (isRecovering && errorRPS > peakErrorRPS) {
+            // Still dipping, so the recovery starts later and takes longer.
+            peakErrorRPS = errorRPS;
+            peakTimestampSeconds = timestampSeconds;
+            predictRecovery();
+        }
+        previousErrorRPS = errorRPS;
+
+        boolean isWithinTolerance = Math.abs(errorRPS) <= toleranceRPS;
+        if (isRecovering && isWithinTolerance) {
+            isRecovering = false;
+            lastRecoverySeconds = timestampSeconds - dipStartTimestampSeconds;
+            double measuredTimeConstantSeconds =
+                (timestampSeconds - peakTimestampSeconds) / Math.log(peakErrorRPS / toleranceRPS);
+            if (measuredTimeConstantSeconds > 0) {
+                timeConstantSeconds += LEARNING_RATE * (measuredTimeConstantSeconds - timeConstantSeconds);
+            }
+        }
+
+        if (isRecovering) {
+            readyToFeed = timestampSeconds >= predictedRecoveryTimestampSeconds - feedLeadSeconds;
+        } else {
+            readyToFeed = isWithinTolerance;
+        }
+    }
+
+    private void predictRecovery() {
+        predictedRecoveryTimestampSeconds =
+            peakTimestampSeconds + timeConstantSeconds * Math.log(peakErrorRPS / toleranceRPS);
+    }
+
+    /**
+     * Forgets the current dip, for when the launch motors stop. The learned time constant is kept.
+     */
+    public void reset() {
+        isRecovering = false;
+        previousErrorRPS = 0;
+        readyToFeed = false;
+    }
+
+    /**
+     * @return If the next ball should be fed, either because the launch motors are up to speed or
+     * because they will be by the time it reaches them.
+     */
+    public boolean isReadyToFeed() {
+        return readyToFeed;
+    }
+
+    /**
+     * @return If the launch motors are recovering from a ball exit.
+     */
+    public boolean isRecovering() {
+        return isRecovering;
+    }
+
+    /**
+     * @return The number of ball exits detected.
+     */
+    public long getBallsDetected() {
+        return ballsDetected;
+    }
+
+    /**
+     * @return The learned time constant of the launch motors recovering (in seconds).
+     */
+    public double getTimeConstantSeconds() {
+        return timeConstantSeconds;
+    }
+
+    /**
+     * @return When the launch motors are predicted to be back within tolerance from the current
+     * or last dip (in seconds).
+     */
+    public double getPredictedRecoveryTimestampSeconds() {
+        return predictedRecoveryTimestampSeconds;
+    }
+
+    /**
+     * @return How long the last recovery took, from the ball exit to being back within tolerance
+     * (in seconds).
+     */
+    public double getLastRecoverySeconds() {
+        return lastRecoverySeconds;
+    }
+}
@@ -5,9 +5,11 @@ import com.team1816.lib.subsystems.BaseSuperstructure;
 import com.team1816.lib.subsystems.Vision;
 import com.team1816.lib.subsystems.drivetrain.Swerve;
 import com.team1816.lib.util.GreenLogger;
+import com.team1816.lib.util.LoopProfiler;
 import edu.wpi.first.wpilibj.DriverStation;
 
 public class Superstructure extends BaseSuperstructure {
+    private final LoopProfiler.Phase periodicPhase = LoopProfiler.phase("superstructure/periodic");
     private final Shooter shooter;
     private final Gatekeeper gatekeeper;
     private final Intake intake;
@@ -27,6 +29,10 @@ public class Superstructure extends BaseSuperstructure {
      * and it thinks it is never aimed.
      */
     private boolean forceAllowGatekeeperControl = false;
+    /**
+     * If the gatekeeper was told to open last loop, so a shot is only recorded when it opens.
+     */
+    private boolean wasGatekeeperOpen = false;
 
     public Superstructure(Swerve swerve, Vision vision) {
         super(swerve, vision);
@@ -35,13 +41,19 @@ public class Superstructure extends BaseSuperstructure {
         this.intake = Singleton.CreateSubSystem(Intake.class);
         this.feeder = Singleton.CreateSubSystem(Feeder.class);
 
-        GreenLogger.periodicLog("superstructure/Wanted Super State", () -> wantedSuperState);
-        GreenLogger.periodicLog("superstructure/Actual Super State", () -> actualSuperState);
-        GreenLogger.periodicLog("superstructure/Force Allowing Gatekeeper Control", () -> forceAllowGatekeeperControl);
+        GreenLogger.periodicLog("superstructure/Wanted Super State", () -> wantedSuperState).publishOnChange();
+        GreenLogger.periodicLog("superstructure/Actual Super State", () -> actualSuperState).publishOnChange();
+        GreenLogger.periodicLog("superstructure/Force Allowing Gatekeeper Control", () -> forceAllowGatekeeperControl).publishOnChange();
     }
 
     @Override
     public void periodic() {
+        try (var ignored = periodicPhase.start()) {
+            updatePeriodic();
+        }
+    }
+
+    private void updatePeriodic() {
         super.periodic();
 
         actualSuperState = handleStateTransitions();
@@ -172,6 +184,15 @@ public class Superstructure extends BaseSuperstructure {
         shooter.decreaseTurretAngleAdjustment();
     }
 
+    /**
+     * Tags the outcome of the last recorded shot, for fitting the shooter tables offline.
+     *
+     * @param made If the shot went in.
+     */
+    public void tagLastShot(boolean made) {
+        shooter.tagLastShot(made);
+    }
+
     /**
      * Sets the turret back into calibration mode.
      */
@@ -207,9 +228,9 @@ public class Superstructure extends BaseSuperstructure {
             }
         );
 
-        if (shooter.isAimed() || forceAllowGatekeeperControl) {
-            // Only let fuel into the shooter if the shooter is ready, or if we are force
-            // allowing control.
+        if (shooter.isReadyToFeed() || forceAllowGatekeeperControl) {
+            // Only let fuel into the shooter if the shooter is ready for the next ball, or if we
+            // are force allowing control.
             gatekeeper.setWantedState(
                 switch (wantedGatekeeperState) {
                     case OPEN -> Gatekeeper.GatekeeperState.OPEN;
@@ -220,9 +241,20 @@ public class Superstructure extends BaseSuperstructure {
             gatekeeper.setWantedState(Gatekeeper.GatekeeperState.CLOSED);
         }
 
+        // Record a shot whenever the gatekeeper opens with the shooter ready. With metered
+        // feeding, this is once per ball. The shooter runs after this, so the shot is recorded
+        // from the previous loop's solution, the same one isReadyToFeed used.
+        boolean isGatekeeperOpen = gatekeeper.getState() == Gatekeeper.GatekeeperState.OPEN;
+        if (isGatekeeperOpen && !wasGatekeeperOpen && shooter.isReadyToFeed()) {
+            shooter.recordShot();
+        }
+        wasGatekeeperOpen = isGatekeeperOpen;
+        shooter.setFeeding(isGatekeeperOpen);
+
         // Limit the drive speed if we are trying to shoot and in teleop. In auto, the speed should
-        // be handled by the path.
-        double shootingLinearSpeedLimitMPS = 3;
+        // be handled by the path. If the shooter compensates for our motion, we only need to
+        // limit turning so the turret can keep up.
+        double shootingLinearSpeedLimitMPS = shooter.isShootingOnTheMove() ? Double.POSITIVE_INFINITY : 3;
         double shootingAngularSpeedLimitRadPerSec = 1.5;
         if (wantedGatekeeperState == WantedGatekeeperState.OPEN && DriverStation.isTeleop()) {
             swerve.limitDriveSpeed(shootingLinearSpeedLimitMPS, shootingAngularSpeedLimitRadPerSec);
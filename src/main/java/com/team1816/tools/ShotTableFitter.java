@@ -0,0 +1,314 @@
+package com.team1816.tools;
+
+import com.team1816.season.subsystems.Shooter;
+import com.team1816.season.subsystems.ShotRecord;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Fits new {@code shooterSettings} tables from the {@link ShotRecord}s and tagged outcomes in
+ * wpilog files, so the tables can be tuned from real shots instead of by hand.
+ * <p>
+ * Run with {@code ./gradlew fitShotTables -Plogs=<file>[,<file>...]}, plus any of these options
+ * passed as {@code -P<option>=<value>}:
+ * <ul>
+ *     <li>{@code distances}: The comma separated distances to fit (in inches). Defaults to every
+ *     foot within the range of made shots.</li>
+ *     <li>{@code bandwidth}: How far from each distance shots still count, as the standard
+ *     deviation of a Gaussian weight (in inches). Defaults to 12.</li>
+ *     <li>{@code minShots}: The least weighted number of made shots a distance needs to be fit.
+ *     Defaults to 3.</li>
+ *     <li>{@code maxSpeed}: The fastest the robot can be driving for a shot to count, since the
+ *     tables are for stationary shots (in meters per second). Defaults to 0.5.</li>
+ *     <li>{@code maxTagDelay}: The longest time after a shot its outcome can be tagged (in
+ *     seconds). Defaults to 5.</li>
+ * </ul>
+ * Each outcome tags the last shot recorded before it, and a shot is only tagged once. Each
+ * distance is fit with a weighted linear regression of the wanted incline angle and bottom launch
+ * velocity of nearby made shots, which follows the slope of the data instead of being pulled
+ * toward the middle at the edges like an average would. The wanted values are what the tables
+ * produce, and the measured ones are biased low since feeding starts before the launch motors
+ * have fully recovered, so those are only kept in the records for diagnostics. The result is
+ * printed as YAML to paste into the robot YAML or a tuning file, with how many shots each
+ * distance is based on and the make rate around it.
+ */
+public final class ShotTableFitter {
+    private ShotTableFitter() {}
+
+    /**
+     * A recorded shot and if it went in.
+     */
+    record TaggedShot(ShotRecord shot, boolean made) {}
+
+    /**
+     * One fitted distance of the shooter tables.
+     *
+     * @param effectiveShots The weighted number of made shots the fit is based on.
+     * @param makeRate       The weighted fraction of tagged shots around this distance that went
+     *                       in.
+     */
+    record FitRow(
+        double distanceInches,
+        double inclineAngleRotations,
+        double launchVelocityRPS,
+        double effectiveShots,
+        double makeRate
+    ) {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println(
+                "Usage: ShotTableFitter <wpilog>... [--distances <inches,...>] [--bandwidth <inches>]"
+                    + " [--min-shots <n>] [--max-speed <m/s>] [--max-tag-delay <s>]"
+            );
+            System.exit(1);
+        }
+
+        double[] distancesInches = null;
+        double bandwidthInches = 12;
+        double minShots = 3;
+        double maxSpeedMPS = 0.5;
+        double maxTagDelaySeconds = 5;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            boolean hasValue = i + 1 < args.length;
+            switch (args[i]) {
+                case "--distances" -> {
+                    if (hasValue) {
+                        distancesInches = Arrays.stream(args[++i].split(","))
+                            .mapToDouble(Double::parseDouble)
+                            .toArray();
+                    }
+                }
+                case "--bandwidth" -> {
+                    if (hasValue) bandwidthInches = Double.parseDouble(args[++i]);
+                }
+                case "--min-shots" -> {
+                    if (hasValue) minShots = Double.parseDouble(args[++i]);
+                }
+                case "--max-speed" -> {
+                    if (hasValue) maxSpeedMPS = Double.parseDouble(args[++i]);
+                }
+                case "--max-tag-delay" -> {
+                    if (hasValue) maxTagDelaySeconds = Double.parseDouble(args[++i]);
+                }
+                default -> files.add(args[i]);
+            }
+        }
+        if (bandwidthInches <= 0) {
+            throw new IllegalArgumentException("The bandwidth must be positive");
+        }
+
+        List<TaggedShot> taggedShots = new ArrayList<>();
+        for (String file : files) {
+            int tagged = taggedShots.size();
+            int recorded = readTaggedShots(file, maxTagDelaySeconds, taggedShots);
+            System.out.printf(
+                Locale.ROOT, "# %s: %d shots, %d tagged%n", file, recorded, taggedShots.size() - tagged
+            );
+        }
+
+        List<TaggedShot> stationaryShots = new ArrayList<>();
+        for (TaggedShot taggedShot : taggedShots) {
+            var speeds = taggedShot.shot().robotSpeeds();
+            if (Math.hypot(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond) <= maxSpeedMPS) {
+                stationaryShots.add(taggedShot);
+            }
+        }
+        long made = stationaryShots.stream().filter(TaggedShot::made).count();
+        System.out.printf(
+            Locale.ROOT, "# %d stationary tagged shots, %d made, %d moving faster than %.2f m/s skipped%n",
+            stationaryShots.size(), made, taggedShots.size() - stationaryShots.size(), maxSpeedMPS
+        );
+        if (made == 0) {
+            System.err.println("There are no made shots to fit");
+            System.exit(1);
+        }
+
+        if (distancesInches == null) {
+            distancesInches = defaultDistancesInches(stationaryShots);
+        }
+        List<FitRow> rows = fit(stationaryShots, distancesInches, bandwidthInches, minShots);
+        printTables(rows, distancesInches.length);
+    }
+
+    /**
+     * Streams a wpilog file, pairing each shot outcome with the last shot recorded before it.
+     *
+     * @param taggedShots The list to add the tagged shots to.
+     * @return The number of shots recorded in the file, tagged or not.
+     */
+    static int readTaggedShots(String file, double maxTagDelaySeconds, List<TaggedShot> taggedShots)
+        throws IOException {
+        var reader = new DataLogReader(file);
+        if (!reader.isValid()) {
+            throw new IOException(file + " is not a wpilog file");
+        }
+
+        int shotRecordEntry = -1;
+        int shotOutcomeEntry = -1;
+        int recorded = 0;
+        ShotRecord lastShot = null;
+        long lastShotMicros = 0;
+        for (DataLogRecord record : reader) {
+            if (record.isStart()) {
+                var start = record.getStartData();
+                if (start.name.equals(Shooter.SHOT_RECORD_ENTRY)) {
+                    shotRecordEntry = start.entry;
+                } else if (start.name.equals(Shooter.SHOT_OUTCOME_ENTRY)) {
+                    shotOutcomeEntry = start.entry;
+                }
+            } else if (record.isControl()) {
+                continue;
+            } else if (record.getEntry() == shotRecordEntry) {
+                lastShot = ShotRecord.struct.unpack(
+                    ByteBuffer.wrap(record.getRaw()).order(ByteOrder.LITTLE_ENDIAN)
+                );
+                lastShotMicros = record.getTimestamp();
+                recorded++;
+            } else if (record.getEntry() == shotOutcomeEntry && lastShot != null) {
+                if ((record.getTimestamp() - lastShotMicros) / 1e6 <= maxTagDelaySeconds) {
+                    taggedShots.add(new TaggedShot(lastShot, record.getBoolean()));
+                }
+                // Either way, later outcomes aren't for this shot.
+                lastShot = null;
+            }
+        }
+        return recorded;
+    }
+
+    /**
+     * Fits the shooter tables at each distance from the made shots near it.
+     *
+     * @param shots           The tagged shots, made and missed.
+     * @param distancesInches The distances to fit (in inches).
+     * @param bandwidthInches The standard deviation of the Gaussian weight of each shot by its
+     *                        distance from the distance being fit (in inches).
+     * @param minShots        The least weighted number of made shots a distance needs to be fit.
+     * @return The fitted distances in increasing order, leaving out any without enough shots.
+     */
+    static List<FitRow> fit(
+        List<TaggedShot> shots, double[] distancesInches, double bandwidthInches, double minShots
+    ) {
+        double[] sortedDistancesInches = distancesInches.clone();
+        Arrays.sort(sortedDistancesInches);
+        List<FitRow> rows = new ArrayList<>();
+        for (int i = 0; i < sortedDistancesInches.length; i++) {
+            double distanceInches = sortedDistancesInches[i];
+            // The tables need strictly increasing distances.
+            if (i > 0 && distanceInches == sortedDistancesInches[i - 1]) continue;
+
+            double weightSum = 0, weightSquaredSum = 0, madeWeightSum = 0, taggedWeightSum = 0;
+            double xSum = 0, xxSum = 0, inclineSum = 0, xInclineSum = 0, launchSum = 0, xLaunchSum = 0;
+            for (TaggedShot taggedShot : shots) {
+                ShotRecord shot = taggedShot.shot();
+                double x = Units.metersToInches(shot.distanceToTargetMeters()) - distanceInches;
+                double weight = Math.exp(-0.5 * (x / bandwidthInches) * (x / bandwidthInches));
+                taggedWeightSum += weight;
+                if (!taggedShot.made()) continue;
+                madeWeightSum += weight;
+
+                double incline = Units.degreesToRotations(shot.wantedInclineAngleDegrees());
+                double launch = shot.wantedBottomLaunchVelocityRPS();
+                weightSum += weight;
+                weightSquaredSum += weight * weight;
+                xSum += weight * x;
+                xxSum += weight * x * x;
+                inclineSum += weight * incline;
+                xInclineSum += weight * x * incline;
+                launchSum += weight * launch;
+                xLaunchSum += weight * x * launch;
+            }
+            // Kish's effective sample size, so a few shots right at the distance count for more
+            // than many far away.
+            double effectiveShots = weightSquaredSum > 0 ? weightSum * weightSum / weightSquaredSum : 0;
+            if (effectiveShots < minShots) continue;
+
+            // x is relative to the distance being fit, so the intercept is the fitted value.
+            double meanX = xSum / weightSum;
+            double varianceX = xxSum / weightSum - meanX * meanX;
+            double meanIncline = inclineSum / weightSum;
+            double meanLaunch = launchSum / weightSum;
+            double inclineSlope = 0, launchSlope = 0;
+            // With every shot at about the same distance there is no slope to fit.
+            if (varianceX > 1e-6) {
+                inclineSlope = (xInclineSum / weightSum - meanX * meanIncline) / varianceX;
+                launchSlope = (xLaunchSum / weightSum - meanX * meanLaunch) / varianceX;
+            }
+            rows.add(new FitRow(
+                distanceInches,
+                meanIncline - inclineSlope * meanX,
+                meanLaunch - launchSlope * meanX,
+                effectiveShots,
+                madeWeightSum / taggedWeightSum
+            ));
+        }
+        return rows;
+    }
+
+    /**
+     * @return Every foot within the range of made shots, or just the ends if they are closer than
+     * that.
+     */
+    private static double[] defaultDistancesInches(List<TaggedShot> shots) {
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (TaggedShot taggedShot : shots) {
+            if (!taggedShot.made()) continue;
+            double distanceInches = Units.metersToInches(taggedShot.shot().distanceToTargetMeters());
+            min = Math.min(min, distanceInches);
+            max = Math.max(max, distanceInches);
+        }
+        double first = Math.ceil(min / 12) * 12;
+        double last = Math.floor(max / 12) * 12;
+        if (first > last) {
+            return new double[] {min, max};
+        }
+        int count = (int) Math.round((last - first) / 12) + 1;
+        double[] distancesInches = new double[count];
+        for (int i = 0; i < count; i++) {
+            distancesInches[i] = first + 12 * i;
+        }
+        return distancesInches;
+    }
+
+    private static void printTables(List<FitRow> rows, int requestedCount) {
+        System.out.printf(Locale.ROOT, "# fit %d of %d distances%n", rows.size(), requestedCount);
+        for (FitRow row : rows) {
+            System.out.printf(
+                Locale.ROOT, "# %.1f in: %.1f shots, %.0f%% made%n",
+                row.distanceInches(), row.effectiveShots(), row.makeRate() * 100
+            );
+        }
+        if (rows.size() < 2) {
+            System.err.println("The tables need at least two distances, take more shots or lower --min-shots");
+            return;
+        }
+
+        System.out.println("shooterSettings:");
+        System.out.println("    distancesInches:");
+        for (FitRow row : rows) {
+            System.out.printf(Locale.ROOT, "        - %.1f%n", row.distanceInches());
+        }
+        System.out.println("    inclineAnglesRotations:");
+        for (FitRow row : rows) {
+            System.out.printf(
+                Locale.ROOT, "        - %.4f # %.1f%n", row.inclineAngleRotations(), row.distanceInches()
+            );
+        }
+        System.out.println("    launchVelocitiesRPS:");
+        for (FitRow row : rows) {
+            System.out.printf(
+                Locale.ROOT, "        - %.1f # %.1f%n", row.launchVelocityRPS(), row.distanceInches()
+            );
+        }
+    }
+}
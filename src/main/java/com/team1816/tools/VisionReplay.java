@@ -0,0 +1,362 @@
+package com.team1816.tools;
+
+import com.team1816.lib.hardware.RobotConfiguration;
+import com.team1816.lib.hardware.components.sensor.Camera;
+import com.team1816.lib.hardware.components.sensor.PhotonResultRecorder;
+import com.team1816.lib.hardware.factory.RobotFactory;
+import com.team1816.lib.hardware.factory.YamlConfig;
+import com.team1816.lib.subsystems.Vision;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Quaternion;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import org.photonvision.EstimatedRobotPose;
+import org.photonvision.PhotonPoseEstimator;
+import org.photonvision.common.dataflow.structures.Packet;
+import org.photonvision.targeting.PhotonPipelineResult;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import static com.team1816.lib.BaseConstants.DrivetrainConstants.defaultStateStdDevs;
+import static com.team1816.lib.BaseConstants.VisionConstants.aprilTagFieldLayout;
+
+/**
+ * Replays recordings from {@link PhotonResultRecorder} through the same pose estimation and
+ * filtering code the robot uses ({@link Vision#filterEstimate}), so vision changes can be
+ * benchmarked and checked for regressions on a laptop.
+ * <p>
+ * Run with {@code ./gradlew replayVision -Precordings=<file>[,<file>...] [-Ppasses=<n>]
+ * [-Probot=<name>]}. The robot defaults to the {@code ROBOT_NAME} environment variable, and its
+ * YAML supplies each camera's standard deviation curves and the {@code innovationGate}. Without a
+ * robot, the defaults in {@link Vision} are used. Each estimate is checked and gated against the
+ * raw odometry pose recorded with it, using the default state standard deviations. For each
+ * recording, this reports:
+ * <ul>
+ *     <li>Throughput in results per second and bytes allocated per result, over the timed passes
+ *     (decoding the result is included, since the robot decodes every result too).</li>
+ *     <li>How many estimates are on the field, pass the heading check, are trusted, and pass the
+ *     innovation gate.</li>
+ *     <li>The translation and heading error of every accepted estimate against the fused robot
+ *     pose and the raw odometry pose recorded with it. In simulation, the odometry pose is the
+ *     simulated actual pose, so it is the true error.</li>
+ *     <li>A checksum of every estimate, standard deviation and innovation. Replay is
+ *     deterministic, so the checksum only changes if the vision math changes.</li>
+ * </ul>
+ */
+public final class VisionReplay {
+    private static final int WARMUP_PASSES = 2;
+
+    private VisionReplay() {}
+
+    /**
+     * The robot's configuration for filtering a camera's estimates.
+     */
+    private record Filter(
+        Camera.StdDevCurve singleTagStdDevCurve,
+        Camera.StdDevCurve multiTagStdDevCurve,
+        double innovationGate
+    ) {
+        void apply(EstimatedRobotPose estimate, Pose2d odometryPose, Vision.EstimateFilterResult result) {
+            Vision.filterEstimate(
+                estimate,
+                singleTagStdDevCurve,
+                multiTagStdDevCurve,
+                odometryPose,
+                odometryPose,
+                true,
+                () -> defaultStateStdDevs,
+                innovationGate,
+                result
+            );
+        }
+    }
+
+    /**
+     * A recording loaded into memory.
+     */
+    private record Recording(
+        String cameraName,
+        Transform3d robotToCamera,
+        double[] timestamps,
+        Pose2d[] odometryPoses,
+        Pose2d[] robotPoses,
+        byte[][] results
+    ) {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: VisionReplay <recording>... [--passes <n>] [--robot <name>]");
+            System.exit(1);
+        }
+        HAL.initialize(500, 0);
+
+        int passes = 5;
+        String robotName = System.getenv("ROBOT_NAME");
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--passes") && i + 1 < args.length) {
+                passes = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--robot") && i + 1 < args.length) {
+                robotName = args[++i];
+            } else {
+                files.add(args[i]);
+            }
+        }
+        if (passes < 1) {
+            throw new IllegalArgumentException("There must be at least one pass");
+        }
+
+        RobotConfiguration config = null;
+        if (robotName == null) {
+            System.out.println("No robot given, using the default standard deviation curves");
+        } else {
+            config = loadConfig(robotName.toLowerCase());
+        }
+
+        for (String file : files) {
+            Recording recording = load(file);
+            replay(recording, getFilter(config, recording.cameraName()), passes);
+        }
+    }
+
+    private static RobotConfiguration loadConfig(String robotName) throws IOException {
+        try (
+            InputStream input = VisionReplay.class.getClassLoader()
+                .getResourceAsStream("yaml/" + robotName + ".yml")
+        ) {
+            if (input == null) {
+                throw new IOException("There is no YAML for robot " + robotName);
+            }
+            return YamlConfig.loadFrom(input);
+        }
+    }
+
+    /**
+     * Gets a camera's standard deviation curves and the innovation gate from the robot YAML,
+     * falling back to the defaults for anything that isn't configured.
+     */
+    private static Filter getFilter(RobotConfiguration config, String cameraName) {
+        var vision = config == null || config.subsystems == null ? null : config.subsystems.get(Vision.NAME);
+        if (vision == null) {
+            return new Filter(null, null, Vision.DEFAULT_INNOVATION_GATE);
+        }
+        var cameraConfig = vision.cameras == null ? null : vision.cameras.get(cameraName);
+        if (cameraConfig == null) {
+            System.out.println(cameraName + " isn't in the robot YAML, using the default standard deviation curves");
+        }
+        return new Filter(
+            cameraConfig == null ? null : RobotFactory.getStdDevCurve(cameraConfig.singleTagStdDevs),
+            cameraConfig == null ? null : RobotFactory.getStdDevCurve(cameraConfig.multiTagStdDevs),
+            vision.constants == null
+                ? Vision.DEFAULT_INNOVATION_GATE
+                : vision.constants.getOrDefault("innovationGate", Vision.DEFAULT_INNOVATION_GATE)
+        );
+    }
+
+    private static Recording load(String file) throws IOException {
+        try (var input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readLong() != PhotonResultRecorder.MAGIC) {
+                throw new IOException(file + " is not a vision recording");
+            }
+            int version = input.readInt();
+            if (version != PhotonResultRecorder.VERSION) {
+                throw new IOException(file + " is recording version " + version
+                    + ", expected " + PhotonResultRecorder.VERSION);
+            }
+            String cameraName = input.readUTF();
+            var translation = new Translation3d(input.readDouble(), input.readDouble(), input.readDouble());
+            var rotation = new Rotation3d(new Quaternion(
+                input.readDouble(), input.readDouble(), input.readDouble(), input.readDouble()
+            ));
+
+            List<Double> timestamps = new ArrayList<>();
+            List<Pose2d> odometryPoses = new ArrayList<>();
+            List<Pose2d> robotPoses = new ArrayList<>();
+            List<byte[]> results = new ArrayList<>();
+            while (true) {
+                double timestamp;
+                try {
+                    timestamp = input.readDouble();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    Pose2d odometryPose = readPose(input);
+                    Pose2d robotPose = readPose(input);
+                    byte[] result = new byte[input.readInt()];
+                    input.readFully(result);
+                    timestamps.add(timestamp);
+                    odometryPoses.add(odometryPose);
+                    robotPoses.add(robotPose);
+                    results.add(result);
+                } catch (EOFException e) {
+                    // The robot was likely turned off mid-write, keep everything before it.
+                    System.err.println(file + " ends with a partial record, ignoring it");
+                    break;
+                }
+            }
+
+            return new Recording(
+                cameraName,
+                new Transform3d(translation, rotation),
+                timestamps.stream().mapToDouble(Double::doubleValue).toArray(),
+                odometryPoses.toArray(new Pose2d[0]),
+                robotPoses.toArray(new Pose2d[0]),
+                results.toArray(new byte[0][])
+            );
+        }
+    }
+
+    private static Pose2d readPose(DataInputStream input) throws IOException {
+        return new Pose2d(input.readDouble(), input.readDouble(), new Rotation2d(input.readDouble()));
+    }
+
+    private static void replay(Recording recording, Filter filter, int passes) {
+        var poseEstimator = new PhotonPoseEstimator(aprilTagFieldLayout, recording.robotToCamera());
+        int count = recording.results().length;
+        System.out.printf(
+            Locale.ROOT, "%s: %d results over %.1f s%n",
+            recording.cameraName(),
+            count,
+            count > 0 ? recording.timestamps()[count - 1] - recording.timestamps()[0] : 0.0
+        );
+        if (count == 0) return;
+
+        // Accuracy, from a single pass.
+        var result = new Vision.EstimateFilterResult();
+        int onField = 0;
+        int withinAngleThreshold = 0;
+        int trusted = 0;
+        int accepted = 0;
+        double[] fusedTranslationErrors = new double[count];
+        double[] fusedHeadingErrors = new double[count];
+        double[] odometryTranslationErrors = new double[count];
+        double[] odometryHeadingErrors = new double[count];
+        for (int i = 0; i < count; i++) {
+            var estimate = estimate(poseEstimator, recording.results()[i]);
+            if (estimate == null) continue;
+            Pose2d pose = estimate.estimatedPose.toPose2d();
+            if (!Vision.isOnField(pose)) continue;
+            onField++;
+            filter.apply(estimate, recording.odometryPoses()[i], result);
+            if (result.withinAngleThreshold) withinAngleThreshold++;
+            if (!result.trusted) continue;
+            trusted++;
+            if (!result.passedGate) continue;
+            fusedTranslationErrors[accepted] = translationError(pose, recording.robotPoses()[i]);
+            fusedHeadingErrors[accepted] = headingError(pose, recording.robotPoses()[i]);
+            odometryTranslationErrors[accepted] = translationError(pose, recording.odometryPoses()[i]);
+            odometryHeadingErrors[accepted] = headingError(pose, recording.odometryPoses()[i]);
+            accepted++;
+        }
+        System.out.printf(
+            Locale.ROOT, "  on field: %d, within heading: %d, trusted: %d, passed gate: %d%n",
+            onField, withinAngleThreshold, trusted, accepted
+        );
+        if (accepted > 0) {
+            printErrors("fused pose", fusedTranslationErrors, fusedHeadingErrors, accepted);
+            printErrors("odometry pose", odometryTranslationErrors, odometryHeadingErrors, accepted);
+        }
+
+        // Throughput and allocations, from the timed passes.
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        double checksum = 0;
+        for (int pass = 0; pass < WARMUP_PASSES; pass++) {
+            checksum = replayPass(poseEstimator, filter, recording);
+        }
+        long startBytes = threadBean.getCurrentThreadAllocatedBytes();
+        long startNanos = System.nanoTime();
+        for (int pass = 0; pass < passes; pass++) {
+            double passChecksum = replayPass(poseEstimator, filter, recording);
+            if (passChecksum != checksum) {
+                System.out.println("  WARNING: replay is not deterministic");
+            }
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long allocatedBytes = threadBean.getCurrentThreadAllocatedBytes() - startBytes;
+        long replayed = (long) count * passes;
+        System.out.printf(
+            Locale.ROOT, "  throughput: %.0f results/s, %.0f bytes allocated/result%n",
+            replayed / (elapsedNanos / 1e9),
+            (double) allocatedBytes / replayed
+        );
+        System.out.printf(Locale.ROOT, "  checksum: %.9e%n", checksum);
+    }
+
+    /**
+     * Runs every result through estimation and filtering, like the vision worker does.
+     *
+     * @return A checksum of every estimate, standard deviation and innovation.
+     */
+    private static double replayPass(PhotonPoseEstimator poseEstimator, Filter filter, Recording recording) {
+        var result = new Vision.EstimateFilterResult();
+        double checksum = 0;
+        for (int i = 0; i < recording.results().length; i++) {
+            var estimate = estimate(poseEstimator, recording.results()[i]);
+            if (estimate == null) continue;
+            Pose2d pose = estimate.estimatedPose.toPose2d();
+            if (!Vision.isOnField(pose)) continue;
+            checksum += pose.getX() + pose.getY() + pose.getRotation().getRadians();
+            filter.apply(estimate, recording.odometryPoses()[i], result);
+            if (!result.trusted) continue;
+            Matrix<N3, N1> stdDevs = result.standardDeviations;
+            checksum += stdDevs.get(0, 0) + stdDevs.get(1, 0) + stdDevs.get(2, 0)
+                + result.innovationDistanceSquared;
+        }
+        return checksum;
+    }
+
+    private static EstimatedRobotPose estimate(PhotonPoseEstimator poseEstimator, byte[] result) {
+        PhotonPipelineResult pipelineResult = PhotonPipelineResult.photonStruct.unpack(new Packet(result));
+        Optional<EstimatedRobotPose> estimate = Camera.estimateRobotPose(poseEstimator, pipelineResult);
+        return estimate.orElse(null);
+    }
+
+    private static double translationError(Pose2d estimate, Pose2d reference) {
+        return estimate.getTranslation().getDistance(reference.getTranslation());
+    }
+
+    private static double headingError(Pose2d estimate, Pose2d reference) {
+        return Math.abs(MathUtil.angleModulus(
+            estimate.getRotation().getRadians() - reference.getRotation().getRadians()
+        ));
+    }
+
+    private static void printErrors(String reference, double[] translation, double[] heading, int count) {
+        double[] sortedTranslation = Arrays.copyOf(translation, count);
+        double[] sortedHeading = Arrays.copyOf(heading, count);
+        Arrays.sort(sortedTranslation);
+        Arrays.sort(sortedHeading);
+        int p95 = Math.min(count - 1, (int) Math.ceil(count * 0.95) - 1);
+        System.out.printf(
+            Locale.ROOT,
+            "  error vs %s: translation mean %.3f m, p95 %.3f m, max %.3f m; "
+                + "heading mean %.2f deg, p95 %.2f deg, max %.2f deg%n",
+            reference,
+            Arrays.stream(sortedTranslation).average().orElse(0),
+            sortedTranslation[p95],
+            sortedTranslation[count - 1],
+            Math.toDegrees(Arrays.stream(sortedHeading).average().orElse(0)),
+            Math.toDegrees(sortedHeading[p95]),
+            Math.toDegrees(sortedHeading[count - 1])
+        );
+    }
+}
@@ -0,0 +1,33 @@
+package com.team1816.lib.hardware;
+
+import com.team1816.lib.Singleton;
+import com.team1816.lib.hardware.components.motor.IMotor;
+import com.team1816.lib.hardware.factory.RobotFactory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HardwareSnapshotTest {
+
+    @Test
+    public void testCaptureStaysUnderAMillisecond() {
+        var factory = Singleton.get(RobotFactory.class);
+        factory.robotIsReal = true;
+        var snapshot = new HardwareSnapshot();
+        snapshot.registerMotor((IMotor) factory.getDevice("drivetrain", "leftMain"));
+        snapshot.registerMotor((IMotor) factory.getDevice("turret", "turret"));
+        factory.getDevice("drivetrain", "imu");
+
+        for (int i = 0; i < 50; i++) {
+            snapshot.capture();
+        }
+        int captures = 200;
+        long start = System.nanoTime();
+        for (int i = 0; i < captures; i++) {
+            snapshot.capture();
+        }
+        double averageMs = (System.nanoTime() - start) / 1e6 / captures;
+        // The capture runs every loop before any subsystem, so it must never block on signals.
+        assertTrue(averageMs < 1, "average capture took " + averageMs + "ms");
+    }
+}
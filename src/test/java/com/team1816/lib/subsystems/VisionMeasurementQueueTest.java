@@ -0,0 +1,133 @@
+package com.team1816.lib.subsystems;
+
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.util.Units;
+import org.junit.jupiter.api.Test;
+import org.photonvision.EstimatedRobotPose;
+import org.photonvision.PhotonPoseEstimator.PoseStrategy;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisionMeasurementQueueTest {
+
+    private static void set(
+        VisionMeasurementQueue.VisionMeasurement measurement,
+        double x,
+        double headingRadians,
+        double timestampSeconds,
+        double stdDev,
+        boolean multiTag
+    ) {
+        measurement.set(
+            null,
+            new EstimatedRobotPose(
+                new Pose3d(x, 0, 0, new Rotation3d(0, 0, headingRadians)),
+                timestampSeconds,
+                List.of(),
+                multiTag ? PoseStrategy.MULTI_TAG_PNP_ON_COPROCESSOR : PoseStrategy.LOWEST_AMBIGUITY
+            ),
+            VecBuilder.fill(stdDev, stdDev, stdDev),
+            multiTag,
+            true,
+            true,
+            true,
+            0
+        );
+    }
+
+    private static void publish(VisionMeasurementQueue queue, double x, double timestampSeconds) {
+        var slot = queue.claim();
+        assertNotNull(slot);
+        set(slot, x, 0, timestampSeconds, 0.1, true);
+        queue.publish();
+    }
+
+    private static VisionMeasurementQueue.VisionMeasurement measurement(
+        double x, double headingRadians, double timestampSeconds, double stdDev, boolean multiTag
+    ) {
+        var measurement = new VisionMeasurementQueue.VisionMeasurement();
+        set(measurement, x, headingRadians, timestampSeconds, stdDev, multiTag);
+        return measurement;
+    }
+
+    @Test
+    void handsOffInOrder() {
+        var queue = new VisionMeasurementQueue(4);
+        publish(queue, 1, 0.1);
+        publish(queue, 2, 0.2);
+
+        assertEquals(1, queue.peek().getPose().getX());
+        queue.release();
+        assertEquals(2, queue.peek().getPose().getX());
+        queue.release();
+        assertNull(queue.peek());
+    }
+
+    @Test
+    void dropsWhenFull() {
+        var queue = new VisionMeasurementQueue(2);
+        publish(queue, 1, 0.1);
+        publish(queue, 2, 0.2);
+
+        assertNull(queue.claim());
+        assertEquals(1, queue.getDroppedCount());
+        queue.release();
+        assertNotNull(queue.claim());
+    }
+
+    @Test
+    void invalidateMakesQueuedMeasurementsStale() {
+        var queue = new VisionMeasurementQueue(4);
+        publish(queue, 1, 0.1);
+        queue.invalidate();
+        publish(queue, 2, 0.2);
+
+        assertFalse(queue.isCurrent(queue.peek()));
+        queue.release();
+        assertTrue(queue.isCurrent(queue.peek()));
+        assertEquals(2, queue.peek().getPose().getX());
+    }
+
+    @Test
+    void rejectsCapacityThatIsNotAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new VisionMeasurementQueue(3));
+    }
+
+    @Test
+    void fuseWeightsByInverseVariance() {
+        var fused = measurement(1, 0, 0.10, 0.1, false);
+        fused.setResidual(1, 0, 0, 0, VecBuilder.fill(0.1, 0.1, 0.1));
+        // A quarter of the weight of the first.
+        fused.fuse(measurement(2, 0, 0.15, 0.2, true));
+
+        assertEquals(1.2, fused.getPose().getX(), 1e-9);
+        assertEquals(0.11, fused.getTimestampSeconds(), 1e-9);
+        assertEquals(Math.sqrt(1 / 125.0), fused.getStdDevs().get(0, 0), 1e-9);
+        assertEquals(2, fused.getFusedCount());
+        assertTrue(fused.isMultiTag());
+        assertFalse(fused.hasResidual());
+    }
+
+    @Test
+    void fusingOneAtATimeMatchesFusingAtOnce() {
+        var pairwise = measurement(1, 0, 0, 0.1, false);
+        pairwise.fuse(measurement(2, 0, 0, 0.1, false));
+        pairwise.fuse(measurement(4, 0, 0, 0.1, false));
+
+        assertEquals(7 / 3.0, pairwise.getPose().getX(), 1e-9);
+        assertEquals(0.1 / Math.sqrt(3), pairwise.getStdDevs().get(0, 0), 1e-9);
+        assertEquals(3, pairwise.getFusedCount());
+    }
+
+    @Test
+    void fuseWrapsHeadings() {
+        var fused = measurement(0, Units.degreesToRadians(179), 0, 0.1, false);
+        fused.fuse(measurement(0, Units.degreesToRadians(-179), 0, 0.1, false));
+
+        assertEquals(180, Math.abs(fused.getPose().getRotation().getDegrees()), 1e-9);
+    }
+}
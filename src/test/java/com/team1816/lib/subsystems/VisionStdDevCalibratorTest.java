@@ -0,0 +1,127 @@
+package com.team1816.lib.subsystems;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisionStdDevCalibratorTest {
+    private static final double BIN_WIDTH_METERS = 0.5;
+    private static final int BIN_COUNT = 12;
+
+    /**
+     * Adds the same residual on both translation axes and the heading, with zero state standard
+     * deviations, so each bin's standard deviation is just the residual.
+     */
+    private static void addResidual(VisionStdDevCalibrator calibrator, double distance, double residual) {
+        calibrator.addResidual(false, distance, residual, residual, residual, 0, 0, 0);
+    }
+
+    @Test
+    void fitsTheCurveResidualsWereDrawnFrom() {
+        double xyA = 0.02, xyB = 1.5, thetaA = 0.01, thetaB = 1.3, stateStdDev = 0.01;
+        var calibrator = new VisionStdDevCalibrator(BIN_WIDTH_METERS, BIN_COUNT, 20, 1000);
+        var random = new Random(1816);
+        for (int bin = 0; bin < BIN_COUNT; bin++) {
+            for (int i = 0; i < 400; i++) {
+                double distance = (bin + random.nextDouble()) * BIN_WIDTH_METERS;
+                double xyStdDev = Math.hypot(xyA * Math.pow(xyB, distance), stateStdDev);
+                double thetaStdDev = Math.hypot(thetaA * Math.pow(thetaB, distance), stateStdDev);
+                calibrator.addResidual(
+                    true,
+                    distance,
+                    random.nextGaussian() * xyStdDev,
+                    random.nextGaussian() * xyStdDev,
+                    random.nextGaussian() * thetaStdDev,
+                    stateStdDev,
+                    stateStdDev,
+                    stateStdDev
+                );
+            }
+        }
+
+        var curve = calibrator.fit(true);
+
+        assertNotNull(curve);
+        assertEquals(xyA, curve.a().get(0, 0), 0.15 * xyA);
+        assertEquals(xyB, curve.b().get(0, 0), 0.15 * xyB);
+        assertEquals(thetaA, curve.a().get(2, 0), 0.15 * thetaA);
+        assertEquals(thetaB, curve.b().get(2, 0), 0.15 * thetaB);
+        // Nothing was added for single-tag estimates.
+        assertNull(calibrator.fit(false));
+    }
+
+    @Test
+    void needsTwoBinsWithEnoughSamples() {
+        var calibrator = new VisionStdDevCalibrator(BIN_WIDTH_METERS, BIN_COUNT, 2, 8);
+        addResidual(calibrator, 0.25, 0.1);
+        addResidual(calibrator, 0.25, 0.1);
+        addResidual(calibrator, 1.25, 0.1);
+        assertNull(calibrator.fit(false));
+
+        addResidual(calibrator, 1.25, 0.1);
+        assertNotNull(calibrator.fit(false));
+        assertEquals(4, calibrator.getSampleCount());
+    }
+
+    @Test
+    void fitsFlatWhenEstimatesGetBetterWithDistance() {
+        var calibrator = new VisionStdDevCalibrator(BIN_WIDTH_METERS, BIN_COUNT, 2, 8);
+        for (int i = 0; i < 4; i++) {
+            addResidual(calibrator, 0.25, 0.2);
+            addResidual(calibrator, 2.25, 0.05);
+        }
+
+        var curve = calibrator.fit(false);
+
+        assertEquals(1, curve.b().get(0, 0));
+        // The geometric mean, since the bins have the same number of samples.
+        assertEquals(0.1, curve.a().get(0, 0), 1e-9);
+    }
+
+    @Test
+    void halvingKeepsTheMeanOfABin() {
+        var calibrator = new VisionStdDevCalibrator(BIN_WIDTH_METERS, BIN_COUNT, 2, 8);
+        for (int i = 0; i < 50; i++) {
+            addResidual(calibrator, 0.25, 0.1);
+            addResidual(calibrator, 1.25, 0.1);
+        }
+
+        var curve = calibrator.fit(false);
+
+        assertEquals(0.1, curve.a().get(0, 0), 1e-9);
+        assertEquals(1, curve.b().get(0, 0), 1e-9);
+    }
+
+    @Test
+    void oldResidualsFadeOut() {
+        var calibrator = new VisionStdDevCalibrator(BIN_WIDTH_METERS, BIN_COUNT, 2, 8);
+        for (int i = 0; i < 8; i++) {
+            addResidual(calibrator, 0.25, 0.1);
+            addResidual(calibrator, 1.25, 0.1);
+        }
+        // Each bin halves every 4 new samples, so the old samples are weighted by 2^-10 by the end.
+        for (int i = 0; i < 40; i++) {
+            addResidual(calibrator, 0.25, 0.2);
+            addResidual(calibrator, 1.25, 0.2);
+        }
+
+        var curve = calibrator.fit(false);
+
+        assertEquals(0.2, curve.a().get(0, 0), 1e-3);
+        assertEquals(1, curve.b().get(0, 0), 1e-9);
+    }
+
+    @Test
+    void rejectsBadBins() {
+        assertThrows(IllegalArgumentException.class, () -> new VisionStdDevCalibrator(0, BIN_COUNT, 2, 8));
+        assertThrows(IllegalArgumentException.class, () -> new VisionStdDevCalibrator(BIN_WIDTH_METERS, 1, 2, 8));
+        assertThrows(IllegalArgumentException.class, () -> new VisionStdDevCalibrator(BIN_WIDTH_METERS, BIN_COUNT, 5, 8));
+    }
+
+    @Test
+    void formatsNothingForNoCurve() {
+        assertEquals("", VisionStdDevCalibrator.toYaml("singleTagStdDevs", null));
+    }
+}
@@ -0,0 +1,49 @@
+package com.team1816.lib.subsystems;
+
+import edu.wpi.first.math.VecBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisionTest {
+
+    @Test
+    void innovationDistanceSumsEachAxisOverItsVariance() {
+        var visionStdDevs = VecBuilder.fill(0.3, 0.4, 0.1);
+        var stateStdDevs = VecBuilder.fill(0.4, 0.3, 0.1);
+
+        // Each axis's innovation variance is the vision variance plus the state variance.
+        double distanceSquared = Vision.calculateInnovationDistanceSquared(
+            0.5, -1.0, 0.02, visionStdDevs, stateStdDevs
+        );
+
+        assertEquals(0.25 / 0.25 + 1.0 / 0.25 + 0.0004 / 0.02, distanceSquared, 1e-9);
+    }
+
+    @Test
+    void gateAcceptsOneStandardDeviationOnEveryAxis() {
+        var stdDevs = VecBuilder.fill(0.1, 0.1, 0.05);
+        double sigma = Math.sqrt(2) * 0.1;
+        double thetaSigma = Math.sqrt(2) * 0.05;
+
+        double distanceSquared = Vision.calculateInnovationDistanceSquared(
+            sigma, sigma, thetaSigma, stdDevs, stdDevs
+        );
+
+        assertEquals(3, distanceSquared, 1e-9);
+        assertTrue(distanceSquared <= Vision.DEFAULT_INNOVATION_GATE);
+        // Two standard deviations on every axis is well outside the 99% gate.
+        assertTrue(
+            Vision.calculateInnovationDistanceSquared(2 * sigma, 2 * sigma, 2 * thetaSigma, stdDevs, stdDevs)
+                > Vision.DEFAULT_INNOVATION_GATE
+        );
+    }
+
+    @Test
+    void zeroStandardDeviationsDoNotDivideByZero() {
+        var zero = VecBuilder.fill(0, 0, 0);
+
+        assertEquals(0, Vision.calculateInnovationDistanceSquared(0, 0, 0, zero, zero));
+        assertTrue(Double.isFinite(Vision.calculateInnovationDistanceSquared(1, 1, 1, zero, zero)));
+    }
+}
@@ -0,0 +1,102 @@
+package com.team1816.lib.util.ShooterCalculator;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BallisticGridTest {
+
+    private static final double ANGLE_OF_ENTRY_DEGREES = 45;
+    private static final double DELTA_Z_METERS = 1.4;
+    // The error bound is sampled, so allow a little past it at points it didn't sample.
+    private static final double BOUND_SLACK = 1.25;
+
+    private static LinearMPSToLauncherRPSLookup linearMPSToLauncherRPSLookup;
+    private static BallisticGrid grid;
+
+    @BeforeAll
+    static void setUp() {
+        linearMPSToLauncherRPSLookup = new LinearMPSToLauncherRPSLookup(
+            new double[] {4, 6, 8, 10, 12, 14},
+            new double[] {26, 37, 50, 64, 79, 95}
+        );
+        grid = HenryShooterCalculator.createBallisticGrid(
+            ANGLE_OF_ENTRY_DEGREES, DELTA_Z_METERS, linearMPSToLauncherRPSLookup
+        );
+    }
+
+    @Test
+    void documentedBoundIsTight() {
+        assertTrue(Math.toDegrees(grid.getMaxTurretAngleErrorRadians()) < 0.5);
+        assertTrue(Math.toDegrees(grid.getMaxInclineAngleErrorRadians()) < 0.5);
+        assertTrue(grid.getMaxLaunchVelocityErrorRPS() < 0.5);
+    }
+
+    @Test
+    void matchesAnalyticSolutionWithinBound() {
+        double tanAngleOfEntry = Math.tan(Math.toRadians(ANGLE_OF_ENTRY_DEGREES));
+        var random = new Random(0);
+        double[] out = new double[3];
+        int found = 0;
+        for (int i = 0; i < 20000; i++) {
+            double distance = 1 + 7 * random.nextDouble();
+            double deltaZ = DELTA_Z_METERS - 0.5 + random.nextDouble();
+            double radialVelocity = -4 + 8 * random.nextDouble();
+            double tangentialVelocity = -4 + 8 * random.nextDouble();
+            if (!grid.lookup(distance, deltaZ, radialVelocity, tangentialVelocity, out)) continue;
+            found++;
+
+            var solution = HenryShooterCalculator.solve(
+                distance, 0, deltaZ, radialVelocity, tangentialVelocity, tanAngleOfEntry
+            );
+            assertEquals(
+                solution.fieldRelativeTurretAngleRadians(), out[0],
+                grid.getMaxTurretAngleErrorRadians() * BOUND_SLACK
+            );
+            assertEquals(
+                solution.inclineAngleRadians(), out[1],
+                grid.getMaxInclineAngleErrorRadians() * BOUND_SLACK
+            );
+            assertEquals(
+                linearMPSToLauncherRPSLookup.getLaunchVelocityRPS(solution.linearLaunchVelocityMPS()),
+                out[2],
+                grid.getMaxLaunchVelocityErrorRPS() * BOUND_SLACK
+            );
+        }
+        // Only shots driving at the target fall back to the analytic solution.
+        assertTrue(found > 15000, "Only " + found + " points were in the grid");
+    }
+
+    @Test
+    void matchesAnalyticSolutionAtGridPoints() {
+        double[] out = new double[3];
+        assertTrue(grid.lookup(4, DELTA_Z_METERS, 1, -2, out));
+        var solution = HenryShooterCalculator.solve(
+            4, 0, DELTA_Z_METERS, 1, -2, Math.tan(Math.toRadians(ANGLE_OF_ENTRY_DEGREES))
+        );
+        assertEquals(solution.fieldRelativeTurretAngleRadians(), out[0], 1e-9);
+        assertEquals(solution.inclineAngleRadians(), out[1], 1e-9);
+        assertEquals(
+            linearMPSToLauncherRPSLookup.getLaunchVelocityRPS(solution.linearLaunchVelocityMPS()),
+            out[2],
+            1e-9
+        );
+    }
+
+    @Test
+    void rejectsShotsOutsideOfGrid() {
+        double[] out = {1, 2, 3};
+        assertFalse(grid.lookup(0.5, DELTA_Z_METERS, 0, 0, out));
+        assertFalse(grid.lookup(9, DELTA_Z_METERS, 0, 0, out));
+        assertFalse(grid.lookup(4, DELTA_Z_METERS + 1, 0, 0, out));
+        assertFalse(grid.lookup(4, DELTA_Z_METERS, 5, 0, out));
+        assertFalse(grid.lookup(4, DELTA_Z_METERS, 0, -5, out));
+        assertFalse(grid.lookup(Double.NaN, DELTA_Z_METERS, 0, 0, out));
+        // Driving at the target about as fast as the shot travels.
+        assertFalse(grid.lookup(1, DELTA_Z_METERS, 3, 0, out));
+        assertArrayEquals(new double[] {1, 2, 3}, out);
+    }
+}
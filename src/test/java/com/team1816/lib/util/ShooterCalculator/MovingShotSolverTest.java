@@ -0,0 +1,132 @@
+package com.team1816.lib.util.ShooterCalculator;
+
+import com.team1816.lib.BaseRobotState;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovingShotSolverTest {
+
+    private static final double HORIZONTAL_SPEED_MPS = 8;
+    private static final double ANGLE_OF_ENTRY_DEGREES = 45;
+    private static final int ITERATIONS = 3;
+
+    /**
+     * Aims straight at the target, with the incline angle and launch velocity standing in for the
+     * horizontal distance and height difference so the tests can tell what it was called with.
+     */
+    private static final IShooterCalculator STATIONARY_CALCULATOR = (
+        shooter, target, angleOfEntryDegrees, useChassisSpeedForHoodAngleAndSpeed, lookAheadTimeSeconds
+    ) -> {
+        double deltaX = target.getX() - shooter.getX();
+        double deltaY = target.getY() - shooter.getY();
+        return new IShooterCalculator.ShooterCalculatorResponse(
+            Math.toDegrees(Math.atan2(deltaY, deltaX)) - BaseRobotState.robotPose.getRotation().getDegrees(),
+            Math.hypot(deltaX, deltaY),
+            target.getZ() - shooter.getZ()
+        );
+    };
+
+    /**
+     * A constant horizontal speed, so the time of flight is just the distance over it.
+     */
+    private static double timeOfFlightSeconds(double distanceMeters, double deltaZMeters) {
+        return distanceMeters / HORIZONTAL_SPEED_MPS;
+    }
+
+    private static MovingShotSolver solver(double latencySeconds) {
+        return new MovingShotSolver(
+            STATIONARY_CALCULATOR, MovingShotSolverTest::timeOfFlightSeconds, latencySeconds, ITERATIONS
+        );
+    }
+
+    @AfterEach
+    void resetRobotState() {
+        BaseRobotState.robotPose = Pose2d.kZero;
+        BaseRobotState.robotSpeeds = new ChassisSpeeds();
+    }
+
+    private static void assertConverged(MovingShotSolver solver, Translation3d shooter, Translation3d target) {
+        var virtualTarget = solver.getLastVirtualTarget();
+        double virtualDistance = Math.hypot(
+            virtualTarget.getX() - shooter.getX(), virtualTarget.getY() - shooter.getY()
+        );
+        // The residual is from before the final refinement, so it is looser than the result.
+        assertEquals(0, solver.getLastTimeOfFlightResidualSeconds(), 1e-3);
+        assertEquals(
+            timeOfFlightSeconds(virtualDistance, target.getZ() - shooter.getZ()),
+            solver.getLastTimeOfFlightSeconds(),
+            1e-6
+        );
+    }
+
+    @Test
+    void zeroVelocityMatchesStationary() {
+        BaseRobotState.robotPose = new Pose2d(2, 3, Rotation2d.fromDegrees(30));
+        var solver = solver(0.1);
+        var shooter = new Translation3d(2.1, 2.9, 0.5);
+        var target = new Translation3d(6, 4, 1.8);
+
+        var stationary = STATIONARY_CALCULATOR.calculate(shooter, target, ANGLE_OF_ENTRY_DEGREES, false, 0);
+        var moving = solver.calculate(shooter, target, ANGLE_OF_ENTRY_DEGREES, true, 0);
+
+        assertEquals(stationary.turretAngleDegrees(), moving.turretAngleDegrees(), 1e-9);
+        assertEquals(stationary.inclineAngleDegrees(), moving.inclineAngleDegrees(), 1e-9);
+        assertEquals(stationary.launchVelocityRPS(), moving.launchVelocityRPS(), 1e-9);
+        assertEquals(target, solver.getLastVirtualTarget());
+    }
+
+    @Test
+    void convergesDrivingTowardTarget() {
+        BaseRobotState.robotSpeeds = new ChassisSpeeds(3, 0, 0);
+        var solver = solver(0);
+        var shooter = new Translation3d(0, 0, 0.5);
+        var target = new Translation3d(6, 0, 1.8);
+
+        solver.calculate(shooter, target, ANGLE_OF_ENTRY_DEGREES, true, 0);
+
+        assertConverged(solver, shooter, target);
+        // The ball keeps the robot's speed, so it only needs to cover what's left.
+        assertEquals(6 / (HORIZONTAL_SPEED_MPS + 3), solver.getLastTimeOfFlightSeconds(), 1e-6);
+    }
+
+    @Test
+    void convergesDrivingAcrossTarget() {
+        BaseRobotState.robotSpeeds = new ChassisSpeeds(0, 3, 0);
+        var solver = solver(0);
+        var shooter = new Translation3d(0, 0, 0.5);
+        var target = new Translation3d(6, 0, 1.8);
+
+        var response = solver.calculate(shooter, target, ANGLE_OF_ENTRY_DEGREES, true, 0);
+
+        assertConverged(solver, shooter, target);
+        // Aimed behind the target, by the sideways drift over the time of flight.
+        assertEquals(-3 * solver.getLastTimeOfFlightSeconds(), solver.getLastVirtualTarget().getY(), 1e-9);
+        assertTrue(response.turretAngleDegrees() < 0);
+    }
+
+    @Test
+    void correctsTurretForTurningDuringLatency() {
+        double latencySeconds = 0.1;
+        double omega = 2;
+        BaseRobotState.robotSpeeds = new ChassisSpeeds(0, 0, omega);
+        var solver = solver(latencySeconds);
+        // At the center of the robot, so turning doesn't move the shooter.
+        var shooter = new Translation3d(0, 0, 0.5);
+        var target = new Translation3d(4, 3, 1.8);
+
+        var stationary = STATIONARY_CALCULATOR.calculate(shooter, target, ANGLE_OF_ENTRY_DEGREES, false, 0);
+        var moving = solver.calculate(shooter, target, ANGLE_OF_ENTRY_DEGREES, true, 0);
+
+        assertEquals(
+            stationary.turretAngleDegrees() - Math.toDegrees(omega * latencySeconds),
+            moving.turretAngleDegrees(),
+            1e-9
+        );
+    }
+}
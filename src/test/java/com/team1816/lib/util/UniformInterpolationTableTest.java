@@ -0,0 +1,62 @@
+package com.team1816.lib.util;
+
+import org.apache.commons.math3.analysis.interpolation.LinearInterpolator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UniformInterpolationTableTest {
+
+    @Test
+    void matchesLinearInterpolation() {
+        var random = new Random(0);
+        // Uneven spacing, including a pair of points much closer than the rest.
+        double[] xs = {50, 62.5, 63, 80, 101.25, 140, 180};
+        double[] ys = new double[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            ys[i] = 40 * random.nextDouble();
+        }
+        var expected = new LinearInterpolator().interpolate(xs, ys);
+        var table = new UniformInterpolationTable(xs, ys);
+
+        for (double x : xs) {
+            assertEquals(expected.value(x), table.get(x), 1e-9);
+        }
+        for (int i = 0; i < 10000; i++) {
+            double x = 50 + 130 * random.nextDouble();
+            assertEquals(expected.value(x), table.get(x), 1e-9);
+        }
+    }
+
+    @Test
+    void clampsOutsideOfTable() {
+        var table = new UniformInterpolationTable(new double[] {1, 2, 4}, new double[] {10, 20, 0});
+        assertEquals(10, table.get(-5));
+        assertEquals(10, table.get(Double.NEGATIVE_INFINITY));
+        assertEquals(0, table.get(4.5));
+        assertEquals(0, table.get(Double.POSITIVE_INFINITY));
+        assertTrue(Double.isNaN(table.get(Double.NaN)));
+    }
+
+    @Test
+    void rejectsInvalidTables() {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new UniformInterpolationTable(new double[] {1}, new double[] {1})
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new UniformInterpolationTable(new double[] {1, 2}, new double[] {1})
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new UniformInterpolationTable(new double[] {1, 3, 2}, new double[] {1, 2, 3})
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new UniformInterpolationTable(new double[] {1, 1}, new double[] {1, 2})
+        );
+    }
+}
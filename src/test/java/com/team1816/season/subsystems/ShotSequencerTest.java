@@ -0,0 +1,93 @@
+package com.team1816.season.subsystems;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShotSequencerTest {
+    private static final double LOOP_SECONDS = 0.02;
+    private static final double TOLERANCE_RPS = 2;
+    private static final double BALL_DIP_RPS = 8;
+    private static final double TIME_CONSTANT_SECONDS = 0.1;
+    private static final double FEED_LEAD_SECONDS = 0.1;
+
+    /**
+     * The result of feeding a simulated launch motor for 10 seconds.
+     */
+    private record Run(int balls, double maxErrorAtArrivalRPS, ShotSequencer sequencer) {}
+
+    /**
+     * Simulates launch motors whose error decays exponentially, where a ball reaches them {@link
+     * #FEED_LEAD_SECONDS} after feeding starts and drags them down by {@link #BALL_DIP_RPS}.
+     */
+    private static Run feed(ShotSequencer sequencer) {
+        double errorRPS = 0;
+        double arrivalSeconds = -1;
+        boolean isFeeding = false;
+        int balls = 0;
+        double maxErrorAtArrivalRPS = 0;
+        for (int i = 0; i < 500; i++) {
+            double startSeconds = i * LOOP_SECONDS;
+            double endSeconds = startSeconds + LOOP_SECONDS;
+            if (arrivalSeconds >= 0 && arrivalSeconds < endSeconds) {
+                errorRPS *= Math.exp(-(arrivalSeconds - startSeconds) / TIME_CONSTANT_SECONDS);
+                // Give the time constant a few balls to be learned.
+                if (balls >= 5) {
+                    maxErrorAtArrivalRPS = Math.max(maxErrorAtArrivalRPS, Math.abs(errorRPS));
+                }
+                errorRPS += BALL_DIP_RPS;
+                errorRPS *= Math.exp(-(endSeconds - arrivalSeconds) / TIME_CONSTANT_SECONDS);
+                balls++;
+                arrivalSeconds = -1;
+            } else {
+                errorRPS *= Math.exp(-LOOP_SECONDS / TIME_CONSTANT_SECONDS);
+            }
+
+            sequencer.update(endSeconds, errorRPS, isFeeding);
+            isFeeding = sequencer.isReadyToFeed();
+            if (isFeeding && arrivalSeconds < 0) {
+                arrivalSeconds = endSeconds + FEED_LEAD_SECONDS;
+            }
+        }
+        return new Run(balls, maxErrorAtArrivalRPS, sequencer);
+    }
+
+    @Test
+    void feedsEachBallOnARecoveredWheel() {
+        var run = feed(new ShotSequencer(TOLERANCE_RPS, 4, FEED_LEAD_SECONDS, 0.2));
+
+        assertEquals(run.balls(), run.sequencer().getBallsDetected());
+        assertEquals(TIME_CONSTANT_SECONDS, run.sequencer().getTimeConstantSeconds(), 0.01);
+        assertTrue(run.maxErrorAtArrivalRPS() <= TOLERANCE_RPS, "error at arrival " + run.maxErrorAtArrivalRPS());
+    }
+
+    @Test
+    void leadsFeedingFasterThanWaitingForTolerance() {
+        var predicted = feed(new ShotSequencer(TOLERANCE_RPS, 4, FEED_LEAD_SECONDS, 0.2));
+        // No lead is the same as waiting for the launch motors to be within tolerance.
+        var waiting = feed(new ShotSequencer(TOLERANCE_RPS, 4, 0, 0.2));
+
+        assertTrue(
+            predicted.balls() > waiting.balls() * 1.2,
+            predicted.balls() + " balls vs " + waiting.balls() + " balls"
+        );
+    }
+
+    @Test
+    void ignoresDipsWhileNotFeeding() {
+        var sequencer = new ShotSequencer(TOLERANCE_RPS, 4, FEED_LEAD_SECONDS, 0.2);
+        // Spinning up from a stop.
+        sequencer.update(0, 30, false);
+        assertFalse(sequencer.isReadyToFeed());
+        sequencer.update(0.02, 1, false);
+
+        assertEquals(0, sequencer.getBallsDetected());
+        assertFalse(sequencer.isRecovering());
+        assertTrue(sequencer.isReadyToFeed());
+    }
+
+    @Test
+    void rejectsADipWithinTolerance() {
+        assertThrows(IllegalArgumentException.class, () -> new ShotSequencer(2, 2, 0.1, 0.1));
+    }
+}
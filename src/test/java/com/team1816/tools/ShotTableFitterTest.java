@@ -0,0 +1,87 @@
+package com.team1816.tools;
+
+import com.team1816.season.subsystems.ShotRecord;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.util.Units;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShotTableFitterTest {
+
+    private static ShotRecord shotAt(double distanceInches, double inclineRotations, double launchRPS) {
+        // The measured values lag behind the wanted ones, which are what should be fit.
+        return new ShotRecord(
+            0, Units.inchesToMeters(distanceInches), new ChassisSpeeds(),
+            launchRPS, launchRPS, launchRPS - 3, launchRPS - 3,
+            Units.rotationsToDegrees(inclineRotations), Units.rotationsToDegrees(inclineRotations) - 0.5,
+            0, 0
+        );
+    }
+
+    @Test
+    void recoversLinearTables() {
+        var random = new Random(0);
+        List<ShotTableFitter.TaggedShot> shots = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            double distanceInches = 48 + 200 * random.nextDouble();
+            shots.add(new ShotTableFitter.TaggedShot(
+                shotAt(distanceInches, 0.05 + 0.0002 * distanceInches, 30 + 0.1 * distanceInches),
+                true
+            ));
+            // Misses far off of the table only change the make rate.
+            shots.add(new ShotTableFitter.TaggedShot(shotAt(distanceInches, 0.2, 90), false));
+        }
+
+        var rows = ShotTableFitter.fit(shots, new double[] {240, 60, 120, 120}, 12, 3);
+
+        assertEquals(3, rows.size());
+        double previousDistanceInches = Double.NEGATIVE_INFINITY;
+        for (var row : rows) {
+            assertTrue(row.distanceInches() > previousDistanceInches);
+            previousDistanceInches = row.distanceInches();
+            assertEquals(0.05 + 0.0002 * row.distanceInches(), row.inclineAngleRotations(), 1e-9);
+            assertEquals(30 + 0.1 * row.distanceInches(), row.launchVelocityRPS(), 1e-9);
+            assertEquals(0.5, row.makeRate(), 1e-9);
+        }
+    }
+
+    @Test
+    void skipsDistancesWithoutEnoughShots() {
+        List<ShotTableFitter.TaggedShot> shots = List.of(
+            new ShotTableFitter.TaggedShot(shotAt(100, 0.07, 42), true),
+            new ShotTableFitter.TaggedShot(shotAt(101, 0.07, 42), true)
+        );
+
+        assertTrue(ShotTableFitter.fit(shots, new double[] {100}, 12, 3).isEmpty());
+        assertEquals(1, ShotTableFitter.fit(shots, new double[] {100}, 12, 1.5).size());
+    }
+
+    @Test
+    void structRoundTrips() {
+        var shot = new ShotRecord(
+            12.5, 3.2, new ChassisSpeeds(0.1, -0.2, 0.3), 40, 50, 39.5, 49.5, 25, 24.8, -30, -29.5
+        );
+        var buffer = ByteBuffer.allocate(ShotRecord.struct.getSize()).order(ByteOrder.LITTLE_ENDIAN);
+        ShotRecord.struct.pack(buffer, shot);
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+
+        var unpacked = ShotRecord.struct.unpack(buffer);
+        assertEquals(shot.timestampSeconds(), unpacked.timestampSeconds());
+        assertEquals(shot.distanceToTargetMeters(), unpacked.distanceToTargetMeters());
+        assertEquals(shot.robotSpeeds().vxMetersPerSecond, unpacked.robotSpeeds().vxMetersPerSecond);
+        assertEquals(shot.robotSpeeds().vyMetersPerSecond, unpacked.robotSpeeds().vyMetersPerSecond);
+        assertEquals(shot.robotSpeeds().omegaRadiansPerSecond, unpacked.robotSpeeds().omegaRadiansPerSecond);
+        assertEquals(shot.wantedTopLaunchVelocityRPS(), unpacked.wantedTopLaunchVelocityRPS());
+        assertEquals(shot.bottomLaunchVelocityRPS(), unpacked.bottomLaunchVelocityRPS());
+        assertEquals(shot.inclineAngleDegrees(), unpacked.inclineAngleDegrees());
+        assertEquals(shot.turretAngleDegrees(), unpacked.turretAngleDegrees());
+    }
+}